@@ -1,17 +1,60 @@
 package com.sky.context;
 
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
 /**
- * BaseContext 类用于管理当前线程的上下文数据（如当前用户的ID）。
+ * BaseContext 类用于管理当前线程的上下文数据（RequestContext：当前用户的ID、角色、请求id等）。
  * 通过使用 ThreadLocal，确保每个线程都有独立的上下文数据，线程之间的数据互不干扰。
- * 通常用于在请求生命周期中保存用户身份信息，供业务逻辑和安全验证使用。
+ * 上下文由请求过滤器创建并在请求结束时清理；提交到线程池的任务需要用 wrap 包装，
+ * 任务执行期间使用提交时的上下文，执行完成后恢复线程原来的上下文。
+ * 上下文是显式传递的普通对象，不依赖 InheritableThreadLocal，也不涉及锁，
+ * 在虚拟线程中使用不会导致线程固定（pinning）。
  */
 public class BaseContext {
 
     /**
-     * ThreadLocal 用于存储当前线程的上下文数据（这里是用户ID）。
+     * ThreadLocal 用于存储当前线程的上下文数据。
      * 每个线程都有自己的独立副本，不会与其他线程的数据冲突。
      */
-    private static ThreadLocal<Long> threadLocal = new ThreadLocal<>();
+    private static final ThreadLocal<RequestContext> threadLocal = new ThreadLocal<>();
+
+    // 请求id前缀，区分不同的节点
+    private static final String NODE_PREFIX = UUID.randomUUID().toString().substring(0, 8) + "-";
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    /**
+     * 生成新的请求id
+     *
+     * @return
+     */
+    public static String nextRequestId() {
+        return NODE_PREFIX + SEQUENCE.incrementAndGet();
+    }
+
+    /**
+     * 获取当前线程的上下文
+     *
+     * @return 当前线程的上下文，如果未设置则返回 null
+     */
+    public static RequestContext get() {
+        return threadLocal.get();
+    }
+
+    /**
+     * 设置当前线程的上下文
+     *
+     * @param context 上下文，为 null 时清除
+     */
+    public static void set(RequestContext context) {
+        if (context == null) {
+            threadLocal.remove();
+        } else {
+            threadLocal.set(context);
+        }
+    }
 
     /**
      * 设置当前线程的用户ID到线程上下文中。
@@ -19,7 +62,19 @@ public class BaseContext {
      * @param id 要存储的用户ID
      */
     public static void setCurrentId(Long id) {
-        threadLocal.set(id);
+        current().setUserId(id);
+    }
+
+    /**
+     * 设置当前登录者的ID和角色
+     *
+     * @param id   员工ID或用户ID
+     * @param role 角色，见 RequestContext.ROLE_*
+     */
+    public static void setCurrent(Long id, String role) {
+        RequestContext context = current();
+        context.setUserId(id);
+        context.setRole(role);
     }
 
     /**
@@ -28,14 +83,90 @@ public class BaseContext {
      * @return 当前线程的用户ID，如果未设置则返回 null
      */
     public static Long getCurrentId() {
-        return threadLocal.get();
+        RequestContext context = threadLocal.get();
+        return context == null ? null : context.getUserId();
+    }
+
+    /**
+     * 获取当前登录者的角色
+     *
+     * @return 当前登录者的角色，如果未设置则返回 null
+     */
+    public static String getCurrentRole() {
+        RequestContext context = threadLocal.get();
+        return context == null ? null : context.getRole();
     }
 
     /**
-     * 从线程上下文中移除当前线程存储的用户ID。
-     * 通常在请求处理结束时调用，避免内存泄漏。
+     * 从线程上下文中移除当前线程的上下文。
+     * 在请求处理结束时调用，避免线程池中的线程把上下文带到下一个请求。
      */
     public static void removeCurrentId() {
         threadLocal.remove();
     }
+
+    /**
+     * 包装任务，任务在其它线程执行时使用当前线程的上下文
+     *
+     * @param task
+     * @return
+     */
+    public static Runnable wrap(Runnable task) {
+        RequestContext captured = threadLocal.get();
+        return () -> {
+            RequestContext previous = threadLocal.get();
+            set(captured);
+            try {
+                task.run();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    /**
+     * 包装任务，用于 CompletableFuture.supplyAsync 等场景
+     *
+     * @param task
+     * @return
+     */
+    public static <T> Supplier<T> wrapSupplier(Supplier<T> task) {
+        RequestContext captured = threadLocal.get();
+        return () -> {
+            RequestContext previous = threadLocal.get();
+            set(captured);
+            try {
+                return task.get();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    /**
+     * 在新的后台任务上下文中执行任务（定时任务等没有请求的场景），执行完成后恢复原来的上下文
+     *
+     * @param task
+     */
+    public static void runAsSystem(Runnable task) {
+        RequestContext context = new RequestContext(nextRequestId());
+        context.setRole(RequestContext.ROLE_SYSTEM);
+        RequestContext previous = threadLocal.get();
+        threadLocal.set(context);
+        try {
+            task.run();
+        } finally {
+            set(previous);
+        }
+    }
+
+    // 当前线程的上下文，没有时创建一个（如不经过过滤器的调用）
+    private static RequestContext current() {
+        RequestContext context = threadLocal.get();
+        if (context == null) {
+            context = new RequestContext(nextRequestId());
+            threadLocal.set(context);
+        }
+        return context;
+    }
 }
@@ -0,0 +1,74 @@
+package com.sky.context;
+
+/**
+ * RequestContext 保存一次请求（或一次后台任务）的上下文数据。
+ * 请求开始时由过滤器创建，身份认证通过后由拦截器填入当前登录者的ID和角色，
+ * 请求结束时统一清理；需要在其它线程中使用时通过 BaseContext.wrap 传递。
+ */
+public class RequestContext {
+
+    /**
+     * 角色：管理端员工
+     */
+    public static final String ROLE_EMPLOYEE = "employee";
+
+    /**
+     * 角色：用户端微信用户
+     */
+    public static final String ROLE_USER = "user";
+
+    /**
+     * 角色：定时任务等后台任务
+     */
+    public static final String ROLE_SYSTEM = "system";
+
+    // 请求id，用于串联同一个请求的日志
+    private final String requestId;
+
+    // 请求开始时间（System.nanoTime）
+    private final long startNanos;
+
+    // 当前登录者的ID（员工ID或用户ID）
+    private Long userId;
+
+    // 当前登录者的角色
+    private String role;
+
+    public RequestContext(String requestId) {
+        this.requestId = requestId;
+        this.startNanos = System.nanoTime();
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * 请求开始至今的耗时（毫秒）
+     *
+     * @return
+     */
+    public long getElapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public void setRole(String role) {
+        this.role = role;
+    }
+}
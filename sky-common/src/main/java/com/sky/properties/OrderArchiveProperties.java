@@ -0,0 +1,39 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * OrderArchiveProperties 类用于加载订单归档相关的配置项。
+ * 配置项来自 Spring Boot 配置文件，以 "sky.order-archive" 为前缀。
+ */
+@Component
+@ConfigurationProperties(prefix = "sky.order-archive")
+@Data
+public class OrderArchiveProperties {
+
+    /**
+     * 已完成、已取消的订单在下单多少天后移入归档表。
+     * 配置文件对应项：sky.order-archive.retention-days
+     */
+    private int retentionDays = 90;
+
+    /**
+     * 每一批归档的订单数量，避免一个事务锁住过多的行。
+     * 配置文件对应项：sky.order-archive.chunk-size
+     */
+    private int chunkSize = 500;
+
+    /**
+     * 两批之间的间隔（毫秒），降低归档对线上业务的影响。
+     * 配置文件对应项：sky.order-archive.pause-millis
+     */
+    private long pauseMillis = 200;
+
+    /**
+     * 单次归档的最长运行时间（分钟），超过后停止，剩余的订单下一次归档时继续处理。
+     * 配置文件对应项：sky.order-archive.max-minutes
+     */
+    private long maxMinutes = 30;
+}
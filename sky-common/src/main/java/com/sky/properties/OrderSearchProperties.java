@@ -0,0 +1,40 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * OrderSearchProperties 类用于加载订单搜索索引相关的配置项。
+ * 配置项来自 Spring Boot 配置文件，以 "sky.order-search" 为前缀。
+ */
+@Component
+@ConfigurationProperties(prefix = "sky.order-search")
+@Data
+public class OrderSearchProperties {
+
+    /**
+     * 索引实现：embedded 为进程内的 n-gram 索引；其它值不启用内嵌索引，
+     * 由外部搜索引擎的适配器提供 OrderSearchIndex，没有适配器时按 like 条件查询。
+     * 配置文件对应项：sky.order-search.engine
+     */
+    private String engine = "embedded";
+
+    /**
+     * 候选订单超过该数量时认为条件区分度太低，不使用索引。
+     * 配置文件对应项：sky.order-search.max-candidates
+     */
+    private int maxCandidates = 2000;
+
+    /**
+     * 下单超过该时间（秒）的订单才进入索引，避免提交较晚的事务被跳过；更新的订单由数据库直接扫描。
+     * 配置文件对应项：sky.order-search.settle-seconds
+     */
+    private long settleSeconds = 10;
+
+    /**
+     * 增量同步时每次查询的订单数量。
+     * 配置文件对应项：sky.order-search.batch-size
+     */
+    private int batchSize = 1000;
+}
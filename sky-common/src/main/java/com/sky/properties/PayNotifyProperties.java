@@ -0,0 +1,40 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * PayNotifyProperties 类用于加载支付回调异步处理相关的配置项。
+ * 配置项来自 Spring Boot 配置文件，以 "sky.pay-notify" 为前缀。
+ */
+@Component
+@ConfigurationProperties(prefix = "sky.pay-notify")
+@Data
+public class PayNotifyProperties {
+
+    /**
+     * 支付回调落盘目录，应用重启后会继续处理目录中未完成的回调。
+     * 必须是重启后仍然保留的目录（不能放在系统临时目录下），生产环境建议配置为应用专用的数据盘目录。
+     * 配置文件对应项：sky.pay-notify.spool-dir
+     */
+    private String spoolDir = System.getProperty("user.home") + "/.sky-take-out/pay-notify";
+
+    /**
+     * 处理支付回调的线程数。
+     * 配置文件对应项：sky.pay-notify.workers
+     */
+    private int workers = 2;
+
+    /**
+     * 每个线程一次最多处理的回调数量。
+     * 配置文件对应项：sky.pay-notify.batch-size
+     */
+    private int batchSize = 50;
+
+    /**
+     * 单个回调的最大处理次数，超过后移入失败目录等待人工处理。
+     * 配置文件对应项：sky.pay-notify.max-attempts
+     */
+    private int maxAttempts = 10;
+}
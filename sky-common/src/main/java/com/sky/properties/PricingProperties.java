@@ -0,0 +1,28 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * PricingProperties 类用于加载下单计价相关的配置项。
+ * 配置项来自 Spring Boot 配置文件，以 "sky.pricing" 为前缀，金额单位均为分。
+ */
+@Component
+@ConfigurationProperties(prefix = "sky.pricing")
+@Data
+public class PricingProperties {
+
+    /**
+     * 每份菜品或套餐的打包费（分），必须是100的整数倍。
+     * 订单表的 pack_amount 按整元保存，不是整元时启动失败，避免分被截断。
+     * 配置文件对应项：sky.pricing.pack-fee-per-item
+     */
+    private long packFeePerItem = 100;
+
+    /**
+     * 每单配送费（分）。
+     * 配置文件对应项：sky.pricing.delivery-fee
+     */
+    private long deliveryFee = 600;
+}
@@ -0,0 +1,63 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * ReplicaDataSourceProperties 类用于加载从库（只读库）相关的配置项。
+ * 配置项来自 Spring Boot 配置文件，以 "sky.replica" 为前缀；驱动与主库相同。
+ */
+@Component
+@ConfigurationProperties(prefix = "sky.replica")
+@Data
+public class ReplicaDataSourceProperties {
+
+    /**
+     * 是否启用读写分离，未启用时所有查询都访问主库。
+     * 配置文件对应项：sky.replica.enabled
+     */
+    private boolean enabled = false;
+
+    /**
+     * 从库的 JDBC 连接地址。
+     * 配置文件对应项：sky.replica.url
+     */
+    private String url;
+
+    /**
+     * 从库的用户名，需要 REPLICATION CLIENT 权限用于查询复制延迟。
+     * 配置文件对应项：sky.replica.username
+     */
+    private String username;
+
+    /**
+     * 从库的密码。
+     * 配置文件对应项：sky.replica.password
+     */
+    private String password;
+
+    /**
+     * 允许的最大复制延迟（秒），超过后只读查询回到主库，直到延迟恢复。
+     * 配置文件对应项：sky.replica.max-lag-seconds
+     */
+    private long maxLagSeconds = 3;
+
+    /**
+     * 从连接池获取连接的最长等待时间（毫秒），从库不可用时只读查询尽快失败。
+     * 配置文件对应项：sky.replica.max-wait-millis
+     */
+    private long maxWaitMillis = 1000;
+
+    /**
+     * 建立连接的超时时间（毫秒）。
+     * 配置文件对应项：sky.replica.connect-timeout-millis
+     */
+    private int connectTimeoutMillis = 1000;
+
+    /**
+     * 读取结果的超时时间（毫秒），从库卡住时查询不会一直阻塞。
+     * 配置文件对应项：sky.replica.socket-timeout-millis
+     */
+    private int socketTimeoutMillis = 10000;
+}
@@ -68,4 +68,46 @@ public class WeChatProperties {
      */
     private String refundNotifyUrl;
 
+    /**
+     * 微信支付接口的根地址，测试时可以指向本地的模拟服务。
+     * 配置文件对应项：sky.wechat.base-url
+     */
+    private String baseUrl = "https://api.mch.weixin.qq.com";
+
+    /**
+     * 调用微信支付接口的连接池最大连接数。
+     * 配置文件对应项：sky.wechat.max-connections
+     */
+    private int maxConnections = 50;
+
+    /**
+     * 每个路由（即微信支付域名）的最大连接数。
+     * 配置文件对应项：sky.wechat.max-connections-per-route
+     */
+    private int maxConnectionsPerRoute = 20;
+
+    /**
+     * 建立连接的超时时间（毫秒）。
+     * 配置文件对应项：sky.wechat.connect-timeout
+     */
+    private int connectTimeout = 3000;
+
+    /**
+     * 从连接池获取连接的超时时间（毫秒）。
+     * 配置文件对应项：sky.wechat.connection-request-timeout
+     */
+    private int connectionRequestTimeout = 1000;
+
+    /**
+     * 读取响应的超时时间（毫秒）。
+     * 配置文件对应项：sky.wechat.socket-timeout
+     */
+    private int socketTimeout = 10000;
+
+    /**
+     * 空闲连接的保持时间（毫秒），超过后连接会被关闭。
+     * 配置文件对应项：sky.wechat.keep-alive
+     */
+    private long keepAlive = 30000;
+
 }
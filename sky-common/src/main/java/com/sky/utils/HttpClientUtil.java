@@ -1,6 +1,7 @@
 package com.sky.utils;
 
 import com.alibaba.fastjson.JSONObject;
+import com.sky.context.BaseContext;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
@@ -11,19 +12,29 @@ import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Http工具类，封装了常用的GET和POST请求操作。
  * 技术选型：
- * - 使用 Apache HttpClient 作为HTTP请求的客户端。
+ * - 使用 Apache HttpClient 作为HTTP请求的客户端，所有请求共用一个带连接池的客户端。
+ * - 提供返回 CompletableFuture 的异步方法，在独立的线程池中执行请求。
  * - 使用 FastJSON 库来处理JSON数据（如在doPost4Json方法中）。
  */
 public class HttpClientUtil {
@@ -31,6 +42,54 @@ public class HttpClientUtil {
     // 设置连接超时时间、请求超时时间和响应超时时间（单位：毫秒）
     static final int TIMEOUT_MSEC = 5 * 1000;
 
+    // 连接池最大连接数
+    static final int MAX_TOTAL = 200;
+
+    // 每个路由（目标主机）的最大连接数，登录等请求基本都发往同一个微信域名
+    static final int MAX_PER_ROUTE = 100;
+
+    // 空闲连接的最长保留时间（单位：秒）
+    static final int IDLE_TIMEOUT_SEC = 30;
+
+    // 所有请求共用的连接池和HttpClient，避免每次请求都重新建立TCP/TLS连接
+    private static final PoolingHttpClientConnectionManager CONNECTION_MANAGER;
+
+    private static final CloseableHttpClient HTTP_CLIENT;
+
+    // 异步请求使用的线程池，线程数和每个路由的最大连接数一致
+    private static final ExecutorService ASYNC_EXECUTOR;
+
+    static {
+        CONNECTION_MANAGER = new PoolingHttpClientConnectionManager();
+        CONNECTION_MANAGER.setMaxTotal(MAX_TOTAL);
+        CONNECTION_MANAGER.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+        // 空闲超过2秒的连接在使用前先检查是否已被对端关闭
+        CONNECTION_MANAGER.setValidateAfterInactivity(2000);
+
+        HTTP_CLIENT = HttpClients.custom()
+                .setConnectionManager(CONNECTION_MANAGER)
+                .setDefaultRequestConfig(builderRequestConfig())
+                .evictExpiredConnections()
+                .evictIdleConnections(IDLE_TIMEOUT_SEC, TimeUnit.SECONDS)
+                .build();
+
+        AtomicInteger counter = new AtomicInteger();
+        ASYNC_EXECUTOR = Executors.newFixedThreadPool(MAX_PER_ROUTE, r -> {
+            Thread thread = new Thread(r, "http-client-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 连接池状态：已借出、空闲、等待获取连接的数量
+     *
+     * @return 连接池状态
+     */
+    public static PoolStats getPoolStats() {
+        return CONNECTION_MANAGER.getTotalStats();
+    }
+
     /**
      * 发送GET方式请求
      *
@@ -39,9 +98,6 @@ public class HttpClientUtil {
      * @return 返回请求的响应内容（字符串形式）
      */
     public static String doGet(String url, Map<String, String> paramMap) {
-        // 创建HttpClient对象，用于执行HTTP请求
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-
         String result = "";
         CloseableHttpResponse response = null;
 
@@ -58,9 +114,10 @@ public class HttpClientUtil {
 
             // 创建GET请求对象
             HttpGet httpGet = new HttpGet(uri);
+            httpGet.setConfig(builderRequestConfig());
 
             // 执行请求并获取响应
-            response = httpClient.execute(httpGet);
+            response = HTTP_CLIENT.execute(httpGet);
 
             // 判断响应状态码，200表示请求成功
             if (response.getStatusLine().getStatusCode() == 200) {
@@ -70,13 +127,7 @@ public class HttpClientUtil {
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
-            try {
-                // 关闭响应和HttpClient，释放资源
-                response.close();
-                httpClient.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            close(response);
         }
 
         return result;
@@ -91,8 +142,6 @@ public class HttpClientUtil {
      * @throws IOException 如果请求过程发生IO异常
      */
     public static String doPost(String url, Map<String, String> paramMap) throws IOException {
-        // 创建HttpClient对象，用于执行HTTP请求
-        CloseableHttpClient httpClient = HttpClients.createDefault();
         CloseableHttpResponse response = null;
         String resultString = "";
 
@@ -107,8 +156,8 @@ public class HttpClientUtil {
                 for (Map.Entry<String, String> param : paramMap.entrySet()) {
                     paramList.add(new BasicNameValuePair(param.getKey(), param.getValue()));
                 }
-                // 将参数设置到POST请求的实体中
-                UrlEncodedFormEntity entity = new UrlEncodedFormEntity(paramList);
+                // 将参数设置到POST请求的实体中，默认的 ISO-8859-1 无法编码中文
+                UrlEncodedFormEntity entity = new UrlEncodedFormEntity(paramList, StandardCharsets.UTF_8);
                 httpPost.setEntity(entity);
             }
 
@@ -116,19 +165,14 @@ public class HttpClientUtil {
             httpPost.setConfig(builderRequestConfig());
 
             // 执行HTTP请求，获取响应
-            response = httpClient.execute(httpPost);
+            response = HTTP_CLIENT.execute(httpPost);
 
             // 获取响应内容
             resultString = EntityUtils.toString(response.getEntity(), "UTF-8");
         } catch (Exception e) {
             throw e;
         } finally {
-            try {
-                // 关闭响应对象，释放资源
-                response.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            close(response);
         }
 
         return resultString;
@@ -143,8 +187,6 @@ public class HttpClientUtil {
      * @throws IOException 如果请求过程发生IO异常
      */
     public static String doPost4Json(String url, Map<String, String> paramMap) throws IOException {
-        // 创建HttpClient对象，用于执行HTTP请求
-        CloseableHttpClient httpClient = HttpClients.createDefault();
         CloseableHttpResponse response = null;
         String resultString = "";
 
@@ -169,22 +211,78 @@ public class HttpClientUtil {
             httpPost.setConfig(builderRequestConfig());
 
             // 执行HTTP请求，获取响应
-            response = httpClient.execute(httpPost);
+            response = HTTP_CLIENT.execute(httpPost);
 
             // 获取响应内容
             resultString = EntityUtils.toString(response.getEntity(), "UTF-8");
         } catch (Exception e) {
             throw e;
         } finally {
+            close(response);
+        }
+
+        return resultString;
+    }
+
+    /**
+     * 异步发送GET方式请求
+     *
+     * @param url      请求的URL
+     * @param paramMap 请求的参数（如果有的话），键值对形式
+     * @return 响应内容的 CompletableFuture
+     */
+    public static CompletableFuture<String> doGetAsync(String url, Map<String, String> paramMap) {
+        return CompletableFuture.supplyAsync(BaseContext.wrapSupplier(() -> doGet(url, paramMap)), ASYNC_EXECUTOR);
+    }
+
+    /**
+     * 异步发送POST方式请求（表单提交）
+     *
+     * @param url      请求的URL
+     * @param paramMap 请求的参数，键值对形式
+     * @return 响应内容的 CompletableFuture，请求发生IO异常时以该异常结束
+     */
+    public static CompletableFuture<String> doPostAsync(String url, Map<String, String> paramMap) {
+        return CompletableFuture.supplyAsync(BaseContext.wrapSupplier(() -> {
             try {
-                // 关闭响应对象，释放资源
-                response.close();
+                return doPost(url, paramMap);
             } catch (IOException e) {
-                e.printStackTrace();
+                throw new CompletionException(e);
             }
-        }
+        }), ASYNC_EXECUTOR);
+    }
 
-        return resultString;
+    /**
+     * 异步发送POST方式请求（JSON数据提交）
+     *
+     * @param url      请求的URL
+     * @param paramMap 请求的参数，键值对形式
+     * @return 响应内容的 CompletableFuture，请求发生IO异常时以该异常结束
+     */
+    public static CompletableFuture<String> doPost4JsonAsync(String url, Map<String, String> paramMap) {
+        return CompletableFuture.supplyAsync(BaseContext.wrapSupplier(() -> {
+            try {
+                return doPost4Json(url, paramMap);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }), ASYNC_EXECUTOR);
+    }
+
+    /**
+     * 关闭响应，连接归还连接池，HttpClient 不关闭
+     *
+     * @param response 响应对象，请求失败时可能为 null
+     */
+    private static void close(CloseableHttpResponse response) {
+        if (response == null) {
+            return;
+        }
+        try {
+            response.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     /**
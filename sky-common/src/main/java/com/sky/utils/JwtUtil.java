@@ -4,6 +4,8 @@ import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.Map;
@@ -32,6 +34,8 @@ public class JwtUtil {
                 .setClaims(claims)
                 // 设置签名使用的签名算法和签名使用的秘钥
                 .signWith(signatureAlgorithm, secretKey.getBytes(StandardCharsets.UTF_8))
+                // 设置签发时间，用于判断令牌是否已被吊销
+                .setIssuedAt(new Date())
                 // 设置过期时间
                 .setExpiration(exp);
 
@@ -55,4 +59,27 @@ public class JwtUtil {
         return claims;
     }
 
+    /**
+     * Token解密，使用预先构建好的秘钥，避免每次解析都重新由字符串生成秘钥
+     *
+     * @param key   jwt秘钥，由 buildKey 生成
+     * @param token 加密后的token
+     * @return
+     */
+    public static Claims parseJWT(SecretKey key, String token) {
+        return Jwts.parser()
+                .setSigningKey(key)
+                .parseClaimsJws(token).getBody();
+    }
+
+    /**
+     * 由秘钥字符串构建 HS256 秘钥
+     *
+     * @param secretKey jwt秘钥
+     * @return
+     */
+    public static SecretKey buildKey(String secretKey) {
+        return new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), SignatureAlgorithm.HS256.getJcaName());
+    }
+
 }
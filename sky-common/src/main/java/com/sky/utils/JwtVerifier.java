@@ -0,0 +1,101 @@
+package com.sky.utils;
+
+import io.jsonwebtoken.Claims;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * jwt令牌校验，缓存校验通过的令牌
+ * 同一个令牌在过期之前只校验一次签名，之后的请求直接返回缓存的载荷；
+ * 缓存以令牌的签名部分为键，命中后再比较完整的令牌，防止伪造。
+ */
+public class JwtVerifier {
+
+    private final SecretKey key;
+
+    private final int maxSize;
+
+    // 令牌签名 -> 校验结果
+    private final Map<String, Verified> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @param secretKey jwt秘钥
+     * @param maxSize   最多缓存的令牌数量
+     */
+    public JwtVerifier(String secretKey, int maxSize) {
+        this.key = JwtUtil.buildKey(secretKey);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 校验令牌并返回载荷
+     *
+     * @param token 令牌
+     * @return 载荷
+     * @throws io.jsonwebtoken.JwtException 令牌无效或已过期
+     */
+    public Claims verify(String token) {
+        int index = token.lastIndexOf('.');
+        String signature = index < 0 ? token : token.substring(index + 1);
+        long now = System.currentTimeMillis();
+
+        Verified verified = cache.get(signature);
+        if (verified != null && verified.token.equals(token)) {
+            if (verified.expireTime > now) {
+                return verified.claims;
+            }
+            cache.remove(signature, verified);
+        }
+
+        // 未命中缓存，校验签名，令牌无效或过期时抛出异常
+        Claims claims = JwtUtil.parseJWT(key, token);
+        Date expiration = claims.getExpiration();
+        if (expiration != null) {
+            if (cache.size() >= maxSize) {
+                evictExpired(now);
+            }
+            if (cache.size() < maxSize) {
+                cache.put(signature, new Verified(token, claims, expiration.getTime()));
+            }
+        }
+        return claims;
+    }
+
+    /**
+     * 使令牌的缓存失效
+     *
+     * @param token 令牌
+     */
+    public void invalidate(String token) {
+        int index = token.lastIndexOf('.');
+        cache.remove(index < 0 ? token : token.substring(index + 1));
+    }
+
+    /**
+     * 当前缓存的令牌数量
+     *
+     * @return
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    private void evictExpired(long now) {
+        cache.values().removeIf(v -> v.expireTime <= now);
+    }
+
+    private static class Verified {
+        private final String token;
+        private final Claims claims;
+        private final long expireTime;
+
+        Verified(String token, Claims claims, long expireTime) {
+            this.token = token;
+            this.claims = claims;
+            this.expireTime = expireTime;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.sky.utils;
+
+import java.nio.charset.Charset;
+
+public class PinyinUtil {
+
+    private static final Charset GB2312 = Charset.forName("GB2312");
+
+    // GB2312 一级汉字按拼音排序，每个声母第一个汉字的区位码；最后一项是一级汉字的结束位置
+    private static final int[] INITIAL_BOUNDARIES = {1601, 1637, 1833, 2078, 2274, 2302, 2433, 2594, 2787, 3106, 3212,
+            3472, 3635, 3722, 3730, 3858, 4027, 4086, 4390, 4558, 4684, 4925, 5249, 5590};
+
+    private static final char[] INITIALS = "abcdefghjklmnopqrstwxyz".toCharArray();
+
+    /**
+     * 获取字符串的拼音首字母，如"宫保鸡丁"返回"gbjd"
+     * 只识别 GB2312 一级汉字（3755个常用字），其它汉字和符号跳过，字母和数字转成小写后保留
+     *
+     * @param text
+     * @return
+     */
+    public static String initials(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                if (Character.isLetterOrDigit(c)) {
+                    sb.append(Character.toLowerCase(c));
+                }
+                continue;
+            }
+            char initial = initial(c);
+            if (initial != 0) {
+                sb.append(initial);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 获取单个汉字的拼音首字母
+     *
+     * @param c
+     * @return 首字母，无法识别时返回0
+     */
+    private static char initial(char c) {
+        byte[] bytes = String.valueOf(c).getBytes(GB2312);
+        if (bytes.length != 2) {
+            return 0;
+        }
+        // 区位码 = 区号 * 100 + 位号，区号、位号分别是两个字节减去 0xA0
+        int code = ((bytes[0] & 0xFF) - 0xA0) * 100 + ((bytes[1] & 0xFF) - 0xA0);
+        for (int i = 0; i < INITIALS.length; i++) {
+            if (code >= INITIAL_BOUNDARIES[i] && code < INITIAL_BOUNDARIES[i + 1]) {
+                return INITIALS[i];
+            }
+        }
+        return 0;
+    }
+}
@@ -4,23 +4,31 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.sky.properties.WeChatProperties;
 import com.wechat.pay.contrib.apache.httpclient.WechatPayHttpClientBuilder;
+import com.wechat.pay.contrib.apache.httpclient.auth.CertificatesVerifier;
+import com.wechat.pay.contrib.apache.httpclient.auth.Verifier;
 import com.wechat.pay.contrib.apache.httpclient.util.PemUtil;
 import org.apache.commons.lang.RandomStringUtils;
 import org.apache.http.HttpHeaders;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.security.PrivateKey;
 import java.security.Signature;
 import java.security.cert.X509Certificate;
@@ -28,47 +36,218 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 微信支付工具类
+ * 调用微信支付接口的客户端在第一次使用时创建并复用，底层使用连接池和长连接，
+ * 商户私钥和平台证书只加载一次。
  */
 @Component
-public class WeChatPayUtil {
+public class WeChatPayUtil implements DisposableBean {
 
-    //微信支付下单接口地址
-    public static final String JSAPI = "https://api.mch.weixin.qq.com/v3/pay/transactions/jsapi";
+    //微信支付下单接口路径，根地址见 WeChatProperties.baseUrl
+    public static final String JSAPI = "/v3/pay/transactions/jsapi";
 
-    //申请退款接口地址
-    public static final String REFUNDS = "https://api.mch.weixin.qq.com/v3/refund/domestic/refunds";
+    //申请退款接口路径
+    public static final String REFUNDS = "/v3/refund/domestic/refunds";
 
     @Autowired
     private WeChatProperties weChatProperties;
 
+    // 回调通知的时间戳与当前时间相差超过该值（秒）时视为过期，防止重放
+    private static final long NOTIFY_EXPIRE_SECONDS = 300;
+
+    // 商户私钥，加载一次后复用，用于创建客户端和调起支付时的二次签名
+    private volatile PrivateKey merchantPrivateKey;
+
+    // 平台证书，加载一次后复用，用于验证响应和回调通知的签名
+    private volatile List<X509Certificate> platformCertificates;
+
+    private volatile Verifier verifier;
+
+    // 连接池，所有请求共用，连接在请求结束后归还而不是关闭
+    private volatile PoolingHttpClientConnectionManager connectionManager;
+
+    private volatile CloseableHttpClient httpClient;
+
+    // 请求总数、失败数以及请求累计耗时，和连接池状态一起用于观察连接池是否够用
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong requestMillis = new AtomicLong();
+
     /**
      * 获取调用微信接口的客户端工具对象
+     * 客户端和证书只在第一次调用时创建、加载，之后所有请求共用同一个带连接池的客户端
      *
      * @return
      */
-    private CloseableHttpClient getClient() {
-        PrivateKey merchantPrivateKey = null;
+    private CloseableHttpClient getClient() throws Exception {
+        CloseableHttpClient client = httpClient;
+        if (client == null) {
+            synchronized (this) {
+                client = httpClient;
+                if (client == null) {
+                    client = createClient();
+                    httpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private CloseableHttpClient createClient() throws Exception {
+        //wechatPayCertificates微信支付平台证书列表。你也可以使用后面章节提到的“定时更新平台证书功能”，而不需要关心平台证书的来龙去脉
+        List<X509Certificate> wechatPayCertificates = getPlatformCertificates();
+
+        PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager(
+                weChatProperties.getKeepAlive(), TimeUnit.MILLISECONDS);
+        manager.setMaxTotal(weChatProperties.getMaxConnections());
+        manager.setDefaultMaxPerRoute(weChatProperties.getMaxConnectionsPerRoute());
+        //长时间空闲的连接可能已被对端关闭，使用前先检查
+        manager.setValidateAfterInactivity(2000);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(weChatProperties.getConnectTimeout())
+                .setConnectionRequestTimeout(weChatProperties.getConnectionRequestTimeout())
+                .setSocketTimeout(weChatProperties.getSocketTimeout())
+                .build();
+
+        WechatPayHttpClientBuilder builder = WechatPayHttpClientBuilder.create()
+                .withMerchant(weChatProperties.getMchid(), weChatProperties.getMchSerialNo(), getMerchantPrivateKey())
+                .withWechatPay(wechatPayCertificates);
+        builder.setConnectionManager(manager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy((response, context) -> {
+                    //服务端没有声明保持时间时，按配置的时间保持连接
+                    long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return keepAlive > 0 ? keepAlive : weChatProperties.getKeepAlive();
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(weChatProperties.getKeepAlive(), TimeUnit.MILLISECONDS);
+
+        connectionManager = manager;
+        // 通过WechatPayHttpClientBuilder构造的HttpClient，会自动的处理签名和验签
+        return builder.build();
+    }
+
+    /**
+     * 获取微信支付平台证书列表
+     *
+     * @return
+     */
+    private List<X509Certificate> getPlatformCertificates() throws Exception {
+        List<X509Certificate> certificates = platformCertificates;
+        if (certificates == null) {
+            //加载平台证书文件
+            try (FileInputStream in = new FileInputStream(new File(weChatProperties.getWeChatPayCertFilePath()))) {
+                certificates = Arrays.asList(PemUtil.loadCertificate(in));
+            }
+            platformCertificates = certificates;
+        }
+        return certificates;
+    }
+
+    /**
+     * 验证微信支付回调通知的签名
+     * 签名是平台私钥对“时间戳\n随机串\n报文\n”的 SHA256withRSA 签名，时间戳超过5分钟的通知视为重放
+     *
+     * @param serial    Wechatpay-Serial，平台证书序列号
+     * @param timestamp Wechatpay-Timestamp
+     * @param nonce     Wechatpay-Nonce
+     * @param signature Wechatpay-Signature
+     * @param body      通知原文
+     * @return 签名正确且没有过期
+     */
+    public boolean verifyNotification(String serial, String timestamp, String nonce, String signature, String body)
+            throws Exception {
+        if (serial == null || timestamp == null || nonce == null || signature == null || body == null) {
+            return false;
+        }
+        long seconds;
+        try {
+            seconds = Long.parseLong(timestamp);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (Math.abs(System.currentTimeMillis() / 1000 - seconds) > NOTIFY_EXPIRE_SECONDS) {
+            return false;
+        }
+
+        Verifier current = verifier;
+        if (current == null) {
+            current = new CertificatesVerifier(getPlatformCertificates());
+            verifier = current;
+        }
+        String message = timestamp + "\n" + nonce + "\n" + body + "\n";
         try {
+            return current.verify(serial, message.getBytes(StandardCharsets.UTF_8), signature);
+        } catch (RuntimeException e) {
+            // 序列号不是十六进制、签名不是 Base64 等格式错误
+            return false;
+        }
+    }
+
+    /**
+     * 获取商户API私钥
+     *
+     * @return
+     */
+    private PrivateKey getMerchantPrivateKey() throws Exception {
+        PrivateKey privateKey = merchantPrivateKey;
+        if (privateKey == null) {
             //merchantPrivateKey商户API私钥，如何加载商户API私钥请看常见问题
-            merchantPrivateKey = PemUtil.loadPrivateKey(new FileInputStream(new File(weChatProperties.getPrivateKeyFilePath())));
-            //加载平台证书文件
-            X509Certificate x509Certificate = PemUtil.loadCertificate(new FileInputStream(new File(weChatProperties.getWeChatPayCertFilePath())));
-            //wechatPayCertificates微信支付平台证书列表。你也可以使用后面章节提到的“定时更新平台证书功能”，而不需要关心平台证书的来龙去脉
-            List<X509Certificate> wechatPayCertificates = Arrays.asList(x509Certificate);
-
-            WechatPayHttpClientBuilder builder = WechatPayHttpClientBuilder.create()
-                    .withMerchant(weChatProperties.getMchid(), weChatProperties.getMchSerialNo(), merchantPrivateKey)
-                    .withWechatPay(wechatPayCertificates);
-
-            // 通过WechatPayHttpClientBuilder构造的HttpClient，会自动的处理签名和验签
-            CloseableHttpClient httpClient = builder.build();
-            return httpClient;
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-            return null;
+            try (FileInputStream in = new FileInputStream(new File(weChatProperties.getPrivateKeyFilePath()))) {
+                privateKey = PemUtil.loadPrivateKey(in);
+            }
+            merchantPrivateKey = privateKey;
+        }
+        return privateKey;
+    }
+
+    /**
+     * 连接池状态：已借出、空闲、等待获取连接的数量
+     *
+     * @return 客户端尚未创建时返回 null
+     */
+    public PoolStats getPoolStats() {
+        PoolingHttpClientConnectionManager manager = connectionManager;
+        return manager == null ? null : manager.getTotalStats();
+    }
+
+    /**
+     * 请求总数
+     *
+     * @return
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * 失败的请求数
+     *
+     * @return
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * 平均每个请求的耗时（毫秒），包含从连接池获取连接的等待时间
+     *
+     * @return
+     */
+    public long getAverageRequestMillis() {
+        long count = requestCount.get();
+        return count == 0 ? 0 : requestMillis.get() / count;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (httpClient != null) {
+            httpClient.close();
         }
     }
 
@@ -80,22 +259,13 @@ public class WeChatPayUtil {
      * @return
      */
     private String post(String url, String body) throws Exception {
-        CloseableHttpClient httpClient = getClient();
-
         HttpPost httpPost = new HttpPost(url);
         httpPost.addHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.toString());
         httpPost.addHeader(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.toString());
         httpPost.addHeader("Wechatpay-Serial", weChatProperties.getMchSerialNo());
         httpPost.setEntity(new StringEntity(body, "UTF-8"));
 
-        CloseableHttpResponse response = httpClient.execute(httpPost);
-        try {
-            String bodyAsString = EntityUtils.toString(response.getEntity());
-            return bodyAsString;
-        } finally {
-            httpClient.close();
-            response.close();
-        }
+        return execute(httpPost);
     }
 
     /**
@@ -105,20 +275,33 @@ public class WeChatPayUtil {
      * @return
      */
     private String get(String url) throws Exception {
-        CloseableHttpClient httpClient = getClient();
-
         HttpGet httpGet = new HttpGet(url);
         httpGet.addHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.toString());
         httpGet.addHeader(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.toString());
         httpGet.addHeader("Wechatpay-Serial", weChatProperties.getMchSerialNo());
 
-        CloseableHttpResponse response = httpClient.execute(httpGet);
-        try {
-            String bodyAsString = EntityUtils.toString(response.getEntity());
-            return bodyAsString;
+        return execute(httpGet);
+    }
+
+    /**
+     * 执行请求并读取响应
+     * 只关闭响应（连接归还连接池），不关闭客户端
+     *
+     * @param request
+     * @return
+     */
+    private String execute(HttpUriRequest request) throws Exception {
+        CloseableHttpClient client = getClient();
+        long start = System.currentTimeMillis();
+        requestCount.incrementAndGet();
+        try (CloseableHttpResponse response = client.execute(request)) {
+            //读完响应体后连接才会被归还
+            return EntityUtils.toString(response.getEntity());
+        } catch (Exception e) {
+            failureCount.incrementAndGet();
+            throw e;
         } finally {
-            httpClient.close();
-            response.close();
+            requestMillis.addAndGet(System.currentTimeMillis() - start);
         }
     }
 
@@ -151,7 +334,7 @@ public class WeChatPayUtil {
         jsonObject.put("payer", payer);
 
         String body = jsonObject.toJSONString();
-        return post(JSAPI, body);
+        return post(weChatProperties.getBaseUrl() + JSAPI, body);
     }
 
     /**
@@ -190,7 +373,7 @@ public class WeChatPayUtil {
             byte[] message = signMessage.getBytes();
 
             Signature signature = Signature.getInstance("SHA256withRSA");
-            signature.initSign(PemUtil.loadPrivateKey(new FileInputStream(new File(weChatProperties.getPrivateKeyFilePath()))));
+            signature.initSign(getMerchantPrivateKey());
             signature.update(message);
             String packageSign = Base64.getEncoder().encodeToString(signature.sign());
 
@@ -232,6 +415,6 @@ public class WeChatPayUtil {
         String body = jsonObject.toJSONString();
 
         //调用申请退款接口
-        return post(REFUNDS, body);
+        return post(weChatProperties.getBaseUrl() + REFUNDS, body);
     }
 }
@@ -0,0 +1,192 @@
+package com.sky.utils;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Http工具类的测试，请求发往本地的 HttpServer
+ * 覆盖连接复用、并发请求数不超过每个路由的连接上限、请求参数的编码以及异步请求的异常
+ */
+public class HttpClientUtilTest {
+
+    private HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    // 收到的请求：方法 路径?查询参数 Content-Type 请求体
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    // 客户端连接（客户端端口）
+    private final Set<Integer> connections = ConcurrentHashMap.newKeySet();
+
+    // 正在处理的请求数及其最大值
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    private volatile long latencyMillis;
+
+    private volatile int status = 200;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int current = active.incrementAndGet();
+        maxActive.accumulateAndGet(current, Math::max);
+        try (InputStream in = exchange.getRequestBody()) {
+            connections.add(exchange.getRemoteAddress().getPort());
+            String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getRawPath()
+                    + (exchange.getRequestURI().getRawQuery() == null ? "" : "?" + exchange.getRequestURI().getRawQuery())
+                    + " " + exchange.getRequestHeaders().getFirst("Content-Type") + " " + body);
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            byte[] response = "{\"openid\":\"o6_bmjrPTlm6_2sgVt7hMZOPfL2M\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            active.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    /**
+     * 连续的请求复用同一个连接，请求结束后连接归还连接池
+     */
+    @Test
+    public void sequentialRequestsReuseOneConnection() {
+        for (int i = 0; i < 20; i++) {
+            assertTrue(HttpClientUtil.doGet(url("/sns/jscode2session"), Collections.singletonMap("js_code", "code-" + i))
+                    .contains("openid"));
+        }
+
+        assertEquals(20, requests.size());
+        assertEquals(1, connections.size());
+        assertEquals(0, HttpClientUtil.getPoolStats().getLeased());
+    }
+
+    /**
+     * 并发的异步请求共用连接池，同时处理的请求数不超过每个路由的连接上限
+     */
+    @Test
+    public void concurrentAsyncRequestsAreBoundedByPool() throws Exception {
+        latencyMillis = 100;
+        int count = HttpClientUtil.MAX_PER_ROUTE + 50;
+
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(HttpClientUtil.doGetAsync(url("/sns/jscode2session"), Collections.singletonMap("js_code", "code-" + i)));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        for (CompletableFuture<String> future : futures) {
+            assertTrue(future.get().contains("openid"));
+        }
+        assertEquals(count, requests.size());
+        assertTrue(maxActive.get() <= HttpClientUtil.MAX_PER_ROUTE, "同时处理的请求数：" + maxActive.get());
+        assertTrue(connections.size() <= HttpClientUtil.MAX_PER_ROUTE, "连接数：" + connections.size());
+        assertEquals(0, HttpClientUtil.getPoolStats().getLeased());
+    }
+
+    /**
+     * GET 请求的参数编码到查询字符串，响应不是200时返回空字符串并归还连接
+     */
+    @Test
+    public void getEncodesParametersAndIgnoresErrorResponse() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("appid", "wx0000000000000000");
+        params.put("js_code", "a b&c");
+        assertTrue(HttpClientUtil.doGet(url("/sns/jscode2session"), params).contains("openid"));
+        assertEquals("GET /sns/jscode2session?appid=wx0000000000000000&js_code=a+b%26c null ", requests.get(0));
+
+        status = 500;
+        assertEquals("", HttpClientUtil.doGet(url("/sns/jscode2session"), params));
+        assertEquals(0, HttpClientUtil.getPoolStats().getLeased());
+    }
+
+    /**
+     * 表单和JSON两种 POST 请求的请求体，中文按 UTF-8 编码
+     */
+    @Test
+    public void postSendsFormAndJsonBodies() throws Exception {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("name", "宫保鸡丁");
+        params.put("remark", "少辣&不要葱");
+
+        assertTrue(HttpClientUtil.doPost(url("/form"), params).contains("openid"));
+        assertEquals("POST /form application/x-www-form-urlencoded; charset=UTF-8 "
+                + "name=%E5%AE%AB%E4%BF%9D%E9%B8%A1%E4%B8%81&remark=%E5%B0%91%E8%BE%A3%26%E4%B8%8D%E8%A6%81%E8%91%B1",
+                requests.get(0));
+
+        assertTrue(HttpClientUtil.doPost4Json(url("/json"), params).contains("openid"));
+        String request = requests.get(1);
+        assertTrue(request.startsWith("POST /json application/json "), request);
+        JSONObject body = JSON.parseObject(request.substring("POST /json application/json ".length()));
+        assertEquals(params, body.getInnerMap());
+    }
+
+    /**
+     * 异步 POST 请求在连接失败时以 IOException 结束，不会一直等待
+     */
+    @Test
+    public void asyncPostFailsWithIOException() throws Exception {
+        String url = url("/json");
+        server.stop(0);
+
+        CompletableFuture<String> future = HttpClientUtil.doPost4JsonAsync(url, Collections.singletonMap("code", "1"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IOException, String.valueOf(e.getCause()));
+        assertEquals(0, HttpClientUtil.getPoolStats().getLeased());
+    }
+}
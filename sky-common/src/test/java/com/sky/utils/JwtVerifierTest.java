@@ -0,0 +1,170 @@
+package com.sky.utils;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.SignatureException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * jwt令牌校验缓存的测试：命中缓存、伪造令牌、过期、失效以及缓存数量上限
+ */
+public class JwtVerifierTest {
+
+    private static final String SECRET = "itcast-test-secret";
+
+    private static String token(long empId, long ttlMillis) {
+        return token(SECRET, empId, ttlMillis);
+    }
+
+    private static String token(String secret, long empId, long ttlMillis) {
+        // jjwt 会在 claims 中写入签发时间和过期时间，不能使用不可变的 Map
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("empId", empId);
+        return JwtUtil.createJWT(secret, ttlMillis, claims);
+    }
+
+    /**
+     * 同一个令牌只校验一次签名，之后返回缓存的载荷
+     */
+    @Test
+    public void verifiedTokenIsCached() {
+        JwtVerifier verifier = new JwtVerifier(SECRET, 100);
+        String token = token(1L, 60000);
+
+        Claims first = verifier.verify(token);
+        assertEquals(1, first.get("empId", Integer.class).intValue());
+        assertSame(first, verifier.verify(token));
+        assertEquals(1, verifier.size());
+    }
+
+    /**
+     * 签名部分相同、载荷被修改的令牌不能命中缓存，重新校验时签名不匹配
+     */
+    @Test
+    public void forgedPayloadWithCachedSignatureIsRejected() {
+        JwtVerifier verifier = new JwtVerifier(SECRET, 100);
+        String token = token(1L, 60000);
+        verifier.verify(token);
+
+        String[] parts = token.split("\\.");
+        String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8)
+                .replace("\"empId\":1", "\"empId\":2");
+        String forged = parts[0] + "." + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + "." + parts[2];
+
+        assertThrows(SignatureException.class, () -> verifier.verify(forged));
+        assertEquals(1, verifier.verify(token).get("empId", Integer.class).intValue());
+    }
+
+    /**
+     * 用其它秘钥签发的令牌校验失败，也不会被缓存
+     */
+    @Test
+    public void tokenSignedWithOtherKeyIsRejected() {
+        JwtVerifier verifier = new JwtVerifier(SECRET, 100);
+        String token = token("other-secret", 1L, 60000);
+
+        assertThrows(SignatureException.class, () -> verifier.verify(token));
+        assertThrows(SignatureException.class, () -> verifier.verify(token));
+        assertEquals(0, verifier.size());
+    }
+
+    /**
+     * 令牌过期后不再从缓存返回，重新校验时抛出过期异常
+     */
+    @Test
+    public void expiredTokenIsNotServedFromCache() throws Exception {
+        JwtVerifier verifier = new JwtVerifier(SECRET, 100);
+        String token = token(1L, 1000);
+        verifier.verify(token);
+        assertEquals(1, verifier.size());
+
+        // jwt 的过期时间精确到秒
+        Thread.sleep(2100);
+        assertThrows(ExpiredJwtException.class, () -> verifier.verify(token));
+        assertEquals(0, verifier.size());
+    }
+
+    /**
+     * 使缓存失效后重新校验签名
+     */
+    @Test
+    public void invalidateForcesVerification() {
+        JwtVerifier verifier = new JwtVerifier(SECRET, 100);
+        String token = token(1L, 60000);
+        Claims first = verifier.verify(token);
+
+        verifier.invalidate(token);
+        assertEquals(0, verifier.size());
+        assertNotSame(first, verifier.verify(token));
+    }
+
+    /**
+     * 缓存已满时先清除过期的令牌，仍然没有空间时新令牌只校验不缓存
+     */
+    @Test
+    public void fullCacheEvictsExpiredTokensOnly() throws Exception {
+        JwtVerifier verifier = new JwtVerifier(SECRET, 2);
+        verifier.verify(token(1L, 1000));
+        verifier.verify(token(2L, 60000));
+        assertEquals(2, verifier.size());
+
+        // 缓存已满且都未过期，新令牌不缓存
+        String third = token(3L, 60000);
+        Claims claims = verifier.verify(third);
+        assertEquals(2, verifier.size());
+        assertNotSame(claims, verifier.verify(third));
+
+        // 第一个令牌过期后腾出空间
+        Thread.sleep(2100);
+        Claims cached = verifier.verify(third);
+        assertEquals(2, verifier.size());
+        assertSame(cached, verifier.verify(third));
+    }
+
+    /**
+     * 多个线程同时校验同一个令牌，结果一致
+     */
+    @Test
+    public void concurrentVerificationReturnsSameClaims() throws Exception {
+        JwtVerifier verifier = new JwtVerifier(SECRET, 100);
+        String token = token(7L, 60000);
+
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Claims>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return verifier.verify(token);
+                }));
+            }
+            start.countDown();
+            for (Future<Claims> future : futures) {
+                assertEquals(7, future.get(5, TimeUnit.SECONDS).get("empId", Integer.class).intValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, verifier.size());
+    }
+}
@@ -0,0 +1,33 @@
+package com.sky.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * 按天汇总的营业数据，订单和用户分别由一条分组查询得到
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class DailyBusinessDTO implements Serializable {
+    //日期
+    private LocalDate date;
+
+    //总订单数
+    private Integer totalOrderCount;
+
+    //有效订单数
+    private Integer validOrderCount;
+
+    //营业额
+    private Double turnover;
+
+    //新增用户数
+    private Integer newUsers;
+}
@@ -3,6 +3,7 @@ package com.sky.dto;
 import lombok.Data;
 
 import java.io.Serializable;
+import java.util.List;
 
 @Data
 public class DishPageQueryDTO implements Serializable {
@@ -20,6 +21,9 @@ public class DishPageQueryDTO implements Serializable {
     //状态 0表示禁用 1表示启用
     private Integer status;
 
+    //名称搜索索引给出的候选id，由服务端根据名称设置，不为空时代替名称的模糊查询
+    private List<Long> candidateIds;
+
 }
 
 
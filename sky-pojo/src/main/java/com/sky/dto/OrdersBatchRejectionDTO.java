@@ -0,0 +1,17 @@
+package com.sky.dto;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+public class OrdersBatchRejectionDTO implements Serializable {
+
+    //要拒绝的订单id
+    private List<Long> ids;
+
+    //订单拒绝原因
+    private String rejectionReason;
+
+}
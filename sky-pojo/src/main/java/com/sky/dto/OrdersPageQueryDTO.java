@@ -5,6 +5,7 @@ import org.springframework.format.annotation.DateTimeFormat;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 public class OrdersPageQueryDTO implements Serializable {
@@ -27,4 +28,13 @@ public class OrdersPageQueryDTO implements Serializable {
 
     private Long userId;
 
+    //是否同时查询归档表，由服务端根据查询条件设置
+    private boolean includeArchive;
+
+    //订单搜索索引给出的候选订单id，由服务端根据订单号、手机号设置
+    private List<Long> candidateIds;
+
+    //已进入订单搜索索引的最大订单id，更大的订单不在候选中，需要直接扫描
+    private Long indexedMaxId;
+
 }
@@ -35,6 +35,14 @@ public class Orders implements Serializable {
     public static final Integer PAID = 1;
     public static final Integer REFUND = 2;
 
+    /**
+     * 退款状态 0无退款 1退款中 2退款成功 3退款失败
+     */
+    public static final Integer NO_REFUND = 0;
+    public static final Integer REFUNDING = 1;
+    public static final Integer REFUND_SUCCESS = 2;
+    public static final Integer REFUND_FAILED = 3;
+
     private static final long serialVersionUID = 1L;
 
     private Long id;
@@ -63,6 +71,9 @@ public class Orders implements Serializable {
     //支付状态 0未支付 1已支付 2退款
     private Integer payStatus;
 
+    //退款状态 0无退款 1退款中 2退款成功 3退款失败
+    private Integer refundStatus;
+
     //实收金额
     private BigDecimal amount;
 
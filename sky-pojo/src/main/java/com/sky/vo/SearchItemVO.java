@@ -0,0 +1,40 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * 菜品、套餐搜索结果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchItemVO implements Serializable {
+
+    //类型 dish:菜品 setmeal:套餐
+    private String type;
+
+    //菜品或套餐id
+    private Long id;
+
+    //名称
+    private String name;
+
+    //分类id
+    private Long categoryId;
+
+    //价格
+    private BigDecimal price;
+
+    //图片
+    private String image;
+
+    //描述
+    private String description;
+}
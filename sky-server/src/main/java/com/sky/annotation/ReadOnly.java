@@ -0,0 +1,17 @@
+package com.sky.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 自定义注解，标识只读的业务方法
+ *
+ * 标注在方法或类上，方法执行期间的查询发往从库，减轻主库压力（如报表统计、菜单浏览、历史订单）。
+ * 没有配置从库、从库延迟过大或不可用、已经处于事务中时仍然访问主库。
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadOnly {
+}
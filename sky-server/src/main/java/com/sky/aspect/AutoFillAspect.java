@@ -12,9 +12,11 @@ import org.aspectj.lang.annotation.Pointcut; // 定义切入点
 import org.aspectj.lang.reflect.MethodSignature; // 方法签名，包含方法的详细信息
 import org.springframework.stereotype.Component;
 
-import java.lang.reflect.InvocationTargetException; // 反射异常
-import java.lang.reflect.Method; // Java反射中的方法对象
+import java.lang.invoke.MethodHandle; // 解析一次后重复调用的方法句柄
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.time.LocalDateTime; // 用于获取当前时间
+import java.util.Collection;
 
 /**
  * 自动填充切面类，用于处理标记了@AutoFill注解的方法
@@ -36,6 +38,16 @@ public class AutoFillAspect {
     } // 切入点方法，定义了需要拦截哪些方法
 
 
+    /**
+     * 每个实体类的公共字段setter，第一次使用时解析，之后直接复用
+     */
+    private static final ClassValue<Setters> SETTERS = new ClassValue<Setters>() {
+        @Override
+        protected Setters computeValue(Class<?> type) {
+            return new Setters(type);
+        }
+    };
+
     /**
      * 前置通知：在匹配的目标方法执行前执行
      *
@@ -43,8 +55,8 @@ public class AutoFillAspect {
      */
     @Before("autoFillPointCut()")
     // 在autoFillPointcut定义的切入点方法执行之前执行此方法
-    public void autoFill(JoinPoint joinPoint) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
-        log.info("开始进行公共字段自动填充"); // 记录日志
+    public void autoFill(JoinPoint joinPoint) {
+        log.debug("开始进行公共字段自动填充"); // 记录日志
 
         // 1. 获取被拦截方法的签名对象
         // 1. 获取当前被拦截的方法上的数据库操作类型
@@ -54,41 +66,80 @@ public class AutoFillAspect {
 
         // 2. 获取被拦截方法的参数列表——实体对象
         Object[] args = joinPoint.getArgs(); // 获取目标方法的所有参数
-        if (args.length == 0) {
+        if (args.length == 0 || args[0] == null) {
             // 如果没有参数，直接返回
             return;
         }
 
-        Object entity = args[0]; // 约定第一个参数是需要操作的实体对象
-
         // 3. 准备要赋值的数据
         LocalDateTime now = LocalDateTime.now(); // 获取当前时间
         Long currentId = BaseContext.getCurrentId(); // 获取当前用户ID（通过上下文保存）
 
-        // 4. 根据不同的数据库操作类型，为对应属性赋值
-        if (operationType == OperationType.INSERT) {
-            // 如果是INSERT操作，填充创建时间、创建人、更新时间、更新人
-            //这个其实就是反射中，如何获取成员方法的
-            //通过反射获取类对象，然后通过反射获取类对象的方法，最后通过反射调用方法
-            Method setUpdateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
-            Method setUpdateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER, Long.class);
-            Method setCreateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_CREATE_TIME, LocalDateTime.class);
-            Method setCreateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_CREATE_USER, Long.class);
-
-            // 使用反射调用方法，为字段赋值
-            setUpdateTime.invoke(entity, now); // 填充更新时间
-            setUpdateUser.invoke(entity, currentId); // 填充更新人
-            setCreateTime.invoke(entity, now); // 填充创建时间
-            setCreateUser.invoke(entity, currentId); // 填充创建人
-        } else if (operationType == OperationType.UPDATE) {
-            // 如果是UPDATE操作，仅填充更新时间和更新人
-            //这个其实就是反射中，如何获取成员方法的
-            //通过反射获取类对象，然后通过反射获取类对象的方法，最后通过反射调用方法
-            Method setUpdateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
-            Method setUpdateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER, Long.class);
-
-            setUpdateTime.invoke(entity, now); // 填充更新时间
-            setUpdateUser.invoke(entity, currentId); // 填充更新人
+        // 4. 约定第一个参数是需要操作的实体对象；批量插入、批量修改时是实体对象的集合
+        if (args[0] instanceof Collection) {
+            for (Object entity : (Collection<?>) args[0]) {
+                if (entity != null) {
+                    SETTERS.get(entity.getClass()).fill(entity, operationType, now, currentId);
+                }
+            }
+        } else {
+            SETTERS.get(args[0].getClass()).fill(args[0], operationType, now, currentId);
+        }
+    }
+
+    /**
+     * 实体类的公共字段setter
+     * 使用 MethodHandle 代替每次调用都 getDeclaredMethod + Method.invoke，
+     * 实体类没有某个setter时对应的 handle 为 null，跳过该字段
+     */
+    private static class Setters {
+
+        // 统一的调用类型：(实体, 值) -> void，可以使用 invokeExact 调用
+        private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+        private final MethodHandle setCreateTime;
+        private final MethodHandle setCreateUser;
+        private final MethodHandle setUpdateTime;
+        private final MethodHandle setUpdateUser;
+
+        Setters(Class<?> type) {
+            setCreateTime = find(type, AutoFillConstant.SET_CREATE_TIME, LocalDateTime.class);
+            setCreateUser = find(type, AutoFillConstant.SET_CREATE_USER, Long.class);
+            setUpdateTime = find(type, AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
+            setUpdateUser = find(type, AutoFillConstant.SET_UPDATE_USER, Long.class);
+        }
+
+        void fill(Object entity, OperationType operationType, LocalDateTime now, Long currentId) {
+            if (operationType == OperationType.INSERT) {
+                // 如果是INSERT操作，填充创建时间、创建人、更新时间、更新人
+                invoke(setCreateTime, entity, now); // 填充创建时间
+                invoke(setCreateUser, entity, currentId); // 填充创建人
+            }
+            // INSERT和UPDATE操作都填充更新时间和更新人
+            invoke(setUpdateTime, entity, now); // 填充更新时间
+            invoke(setUpdateUser, entity, currentId); // 填充更新人
+        }
+
+        private static MethodHandle find(Class<?> type, String name, Class<?> parameterType) {
+            try {
+                return MethodHandles.publicLookup()
+                        .findVirtual(type, name, MethodType.methodType(void.class, parameterType))
+                        .asType(SETTER_TYPE);
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                log.warn("实体类{}没有公共字段方法{}，不进行填充", type.getName(), name);
+                return null;
+            }
+        }
+
+        private static void invoke(MethodHandle setter, Object entity, Object value) {
+            if (setter == null) {
+                return;
+            }
+            try {
+                setter.invokeExact(entity, value);
+            } catch (Throwable e) {
+                throw new IllegalStateException("公共字段自动填充失败", e);
+            }
         }
     }
 }
@@ -0,0 +1,34 @@
+package com.sky.aspect;
+
+import com.sky.datasource.DataSourceRoute;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.springframework.stereotype.Component;
+
+/**
+ * 只读方法切面类，处理标记了@ReadOnly注解的方法或类
+ * 方法执行期间标记当前线程为只读，由 ReadWriteRoutingDataSource 把查询发往从库；方法结束后恢复原来的标记。
+ */
+@Aspect
+@Component
+public class ReadOnlyAspect {
+
+    /**
+     * 拦截标注了@ReadOnly的方法，以及标注了@ReadOnly的类中的方法
+     */
+    @Pointcut("@annotation(com.sky.annotation.ReadOnly) || @within(com.sky.annotation.ReadOnly)")
+    public void readOnlyPointCut() {
+    }
+
+    @Around("readOnlyPointCut()")
+    public Object readOnly(ProceedingJoinPoint joinPoint) throws Throwable {
+        Boolean previous = DataSourceRoute.setReadOnly(true);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            DataSourceRoute.restore(previous);
+        }
+    }
+}
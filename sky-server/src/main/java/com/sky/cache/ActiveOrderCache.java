@@ -0,0 +1,235 @@
+package com.sky.cache;
+
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 进行中订单的缓存
+ * 只缓存未完成、未取消的订单及其明细，商家端反复查看同一批进行中订单时不访问数据库，历史订单仍然查询数据库
+ * （订单表中查不到时查询归档表）。
+ * 订单的每次修改都要调用 evict：本节点立即移除缓存（下一次查询重新加载，保证读到自己的修改），
+ * 事务提交后把订单id写入 Redis 的变更记录，其它节点每秒拉取一次变更记录并移除对应的缓存。
+ * 缓存中的对象被多个线程共享，调用方不要修改。
+ */
+@Component
+@Slf4j
+public class ActiveOrderCache {
+
+    private static final String CHANGED_KEY = "order:changed";
+
+    // 缓存的订单数量上限
+    private static final int MAX_SIZE = 5000;
+
+    // 变更记录保留时间（毫秒），超过后清理
+    private static final long CHANGE_RETENTION_MILLIS = 60_000;
+
+    // 拉取变更记录时往前多取的时间（毫秒），容忍节点之间的时钟偏差
+    private static final long CLOCK_SKEW_MILLIS = 2_000;
+
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderDetailMapper orderDetailMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    // 订单id -> 缓存项，按访问顺序淘汰
+    private final Map<Long, Entry> cache = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    // 移除缓存的次数，从数据库加载期间发生过移除时不写入缓存，避免旧数据覆盖
+    private long evictions;
+
+    // 上一次拉取变更记录的时间
+    private long lastSync = System.currentTimeMillis();
+
+    /**
+     * 根据id查询订单，进行中的订单从缓存读取
+     * @param id
+     * @return 订单，不存在时返回 null
+     */
+    public Orders getOrder(Long id) {
+        Entry entry = get(id);
+        if (entry != null) {
+            return entry.orders;
+        }
+        long version = evictions();
+        Orders orders = orderMapper.getByOrderId(id);
+        if (orders == null) {
+            // 已归档的历史订单不缓存
+            return orderMapper.getArchivedById(id);
+        }
+        if (isActive(orders)) {
+            put(id, new Entry(orders, null), version);
+        }
+        return orders;
+    }
+
+    /**
+     * 根据订单id查询订单明细，进行中的订单从缓存读取
+     * @param id
+     * @return 只读的订单明细
+     */
+    public List<OrderDetail> getDetails(Long id) {
+        Entry entry = get(id);
+        if (entry != null && entry.details != null) {
+            return entry.details;
+        }
+        long version = evictions();
+        Orders orders = entry != null ? entry.orders : orderMapper.getByOrderId(id);
+        if (orders == null) {
+            // 订单表中没有，说明订单已归档，从归档表查询且不缓存
+            return Collections.unmodifiableList(orderDetailMapper.getArchivedByOrderId(id));
+        }
+        List<OrderDetail> details = Collections.unmodifiableList(orderDetailMapper.getByOrderID(id));
+        if (isActive(orders)) {
+            put(id, new Entry(orders, details), version);
+        }
+        return details;
+    }
+
+    /**
+     * 订单被修改后调用
+     * @param id
+     */
+    public void evict(Long id) {
+        evict(Collections.singletonList(id));
+    }
+
+    /**
+     * 订单被修改后调用，在事务中调用时事务提交后才通知其它节点
+     * @param ids
+     */
+    public void evict(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        remove(ids);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    // 提交前可能已经有线程按旧数据重新加载
+                    remove(ids);
+                    publish(ids);
+                }
+            });
+        } else {
+            publish(ids);
+        }
+    }
+
+    /**
+     * 拉取其它节点的变更记录，移除对应的缓存
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void sync() {
+        long now = System.currentTimeMillis();
+        try {
+            Set<String> changed = stringRedisTemplate.opsForZSet()
+                    .rangeByScore(CHANGED_KEY, lastSync - CLOCK_SKEW_MILLIS, Double.POSITIVE_INFINITY);
+            if (changed != null && !changed.isEmpty()) {
+                synchronized (cache) {
+                    changed.forEach(id -> cache.remove(Long.valueOf(id)));
+                    evictions++;
+                }
+            }
+            stringRedisTemplate.opsForZSet().removeRangeByScore(CHANGED_KEY, 0, now - CHANGE_RETENTION_MILLIS);
+            lastSync = now;
+        } catch (Exception e) {
+            // 拿不到变更记录时无法判断缓存是否过期，全部清空
+            synchronized (cache) {
+                cache.clear();
+                evictions++;
+            }
+            log.error("同步订单缓存失败，已清空缓存", e);
+        }
+    }
+
+    /**
+     * 缓存的订单数量
+     * @return
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private void publish(Collection<Long> ids) {
+        try {
+            double now = System.currentTimeMillis();
+            for (Long id : ids) {
+                stringRedisTemplate.opsForZSet().add(CHANGED_KEY, String.valueOf(id), now);
+            }
+        } catch (Exception e) {
+            log.error("记录订单变更失败：{}", ids, e);
+        }
+    }
+
+    private Entry get(Long id) {
+        synchronized (cache) {
+            return cache.get(id);
+        }
+    }
+
+    private long evictions() {
+        synchronized (cache) {
+            return evictions;
+        }
+    }
+
+    private void put(Long id, Entry entry, long version) {
+        synchronized (cache) {
+            if (evictions == version) {
+                cache.put(id, entry);
+            }
+        }
+    }
+
+    private void remove(Collection<Long> ids) {
+        synchronized (cache) {
+            ids.forEach(cache::remove);
+            evictions++;
+        }
+    }
+
+    private static boolean isActive(Orders orders) {
+        return orders != null
+                && !Orders.COMPLETED.equals(orders.getStatus())
+                && !Orders.CANCELLED.equals(orders.getStatus());
+    }
+
+    private static class Entry {
+
+        private final Orders orders;
+
+        // 第一次查询明细时加载
+        private final List<OrderDetail> details;
+
+        Entry(Orders orders, List<OrderDetail> details) {
+            this.orders = orders;
+            this.details = details;
+        }
+    }
+}
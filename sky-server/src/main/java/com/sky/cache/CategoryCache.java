@@ -0,0 +1,146 @@
+package com.sky.cache;
+
+import com.sky.entity.Category;
+import com.sky.mapper.CategoryMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 分类缓存
+ * 启用的分类按类型分组、排好序后保存为只读快照，查询分类列表时直接返回快照，不访问数据库；
+ * 分类修改后重新加载快照并递增 Redis 中的版本号，其它节点每秒检查一次版本号，变化时重新加载。
+ */
+@Component
+@Slf4j
+public class CategoryCache implements InitializingBean {
+
+    private static final String VERSION_KEY = "category:version";
+
+    @Autowired
+    private CategoryMapper categoryMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    // 已加载的版本号
+    private String version;
+
+    @Override
+    public void afterPropertiesSet() {
+        try {
+            sync();
+        } catch (Exception e) {
+            // 启动时加载失败不影响启动，第一次查询时再加载
+            log.error("加载分类缓存失败", e);
+        }
+    }
+
+    /**
+     * 根据类型查询启用的分类，顺序与 CategoryMapper.list 一致
+     * @param type 分类类型，为空时返回全部
+     * @return 只读列表
+     */
+    public List<Category> list(Integer type) {
+        Snapshot current = snapshot.get();
+        if (current == null) {
+            current = reload();
+        }
+        return current.list(type);
+    }
+
+    /**
+     * 分类修改后调用，在事务中调用时事务提交后才生效
+     */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish();
+                }
+            });
+        } else {
+            publish();
+        }
+    }
+
+    /**
+     * 版本号变化时重新加载快照
+     */
+    @Scheduled(fixedDelay = 1000)
+    public synchronized void sync() {
+        String current;
+        try {
+            current = stringRedisTemplate.opsForValue().get(VERSION_KEY);
+        } catch (Exception e) {
+            // Redis 不可用时继续使用本节点的快照
+            log.error("检查分类版本号失败", e);
+            return;
+        }
+        if (snapshot.get() != null && Objects.equals(current, version)) {
+            return;
+        }
+        reload();
+        version = current;
+    }
+
+    private void publish() {
+        // 本节点立即生效，其它节点在下一次同步时生效
+        reload();
+        try {
+            stringRedisTemplate.opsForValue().increment(VERSION_KEY);
+        } catch (Exception e) {
+            log.error("更新分类版本号失败", e);
+        }
+    }
+
+    private synchronized Snapshot reload() {
+        Snapshot loaded = new Snapshot(categoryMapper.list(null));
+        snapshot.set(loaded);
+        log.info("加载分类缓存，共{}个分类", loaded.all.size());
+        return loaded;
+    }
+
+    /**
+     * 分类快照，创建后不再修改
+     */
+    private static class Snapshot {
+
+        private final List<Category> all;
+
+        // 分类类型 -> 该类型的分类
+        private final Map<Integer, List<Category>> byType;
+
+        Snapshot(List<Category> categories) {
+            Map<Integer, List<Category>> groups = new HashMap<>();
+            for (Category category : categories) {
+                groups.computeIfAbsent(category.getType(), k -> new ArrayList<>()).add(category);
+            }
+            groups.replaceAll((type, list) -> Collections.unmodifiableList(list));
+            this.all = Collections.unmodifiableList(new ArrayList<>(categories));
+            this.byType = groups;
+        }
+
+        List<Category> list(Integer type) {
+            if (type == null) {
+                return all;
+            }
+            return byType.getOrDefault(type, Collections.emptyList());
+        }
+    }
+}
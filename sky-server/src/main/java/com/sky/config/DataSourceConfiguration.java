@@ -0,0 +1,71 @@
+package com.sky.config;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.sky.datasource.ReadWriteRoutingDataSource;
+import com.sky.properties.ReplicaDataSourceProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * 读写分离数据源的配置类。
+ * 启用 sky.replica.enabled 后，主库沿用 spring.datasource.druid 的配置，从库使用 sky.replica 的配置，
+ * MyBatis 和事务管理器使用二者之上的路由数据源；未启用时由 Druid 自动配置单一数据源。
+ */
+@Configuration
+@ConditionalOnProperty(name = "sky.replica.enabled", havingValue = "true")
+@Slf4j
+public class DataSourceConfiguration {
+
+    /**
+     * 主库
+     * @return
+     */
+    @Bean(initMethod = "init", destroyMethod = "close")
+    @ConfigurationProperties(prefix = "spring.datasource.druid")
+    public DruidDataSource primaryDataSource() {
+        return new DruidDataSource();
+    }
+
+    /**
+     * 从库
+     * @param primaryDataSource
+     * @param replicaDataSourceProperties
+     * @return
+     */
+    @Bean(initMethod = "init", destroyMethod = "close")
+    public DruidDataSource replicaDataSource(@Qualifier("primaryDataSource") DruidDataSource primaryDataSource,
+                                             ReplicaDataSourceProperties replicaDataSourceProperties) {
+        log.info("开始创建从库数据源：{}", replicaDataSourceProperties.getUrl());
+        DruidDataSource dataSource = new DruidDataSource();
+        dataSource.setDriverClassName(primaryDataSource.getDriverClassName());
+        dataSource.setUrl(replicaDataSourceProperties.getUrl());
+        dataSource.setUsername(replicaDataSourceProperties.getUsername());
+        dataSource.setPassword(replicaDataSourceProperties.getPassword());
+        // 从库不可用时获取连接、建立连接、读取结果都要有超时，避免只读查询和复制延迟检查一直阻塞
+        dataSource.setMaxWait(replicaDataSourceProperties.getMaxWaitMillis());
+        dataSource.setConnectionProperties("connectTimeout=" + replicaDataSourceProperties.getConnectTimeoutMillis()
+                + ";socketTimeout=" + replicaDataSourceProperties.getSocketTimeoutMillis());
+        return dataSource;
+    }
+
+    /**
+     * 路由数据源，供 MyBatis 和事务管理器使用
+     * @param primaryDataSource
+     * @param replicaDataSource
+     * @param replicaDataSourceProperties
+     * @return
+     */
+    @Bean
+    @Primary
+    public ReadWriteRoutingDataSource dataSource(@Qualifier("primaryDataSource") DruidDataSource primaryDataSource,
+                                                 @Qualifier("replicaDataSource") DruidDataSource replicaDataSource,
+                                                 ReplicaDataSourceProperties replicaDataSourceProperties) {
+        return new ReadWriteRoutingDataSource(primaryDataSource, replicaDataSource,
+                replicaDataSourceProperties.getMaxLagSeconds());
+    }
+}
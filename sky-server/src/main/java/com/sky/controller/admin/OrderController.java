@@ -1,6 +1,7 @@
 package com.sky.controller.admin;
 
 
+import com.sky.dto.OrdersBatchRejectionDTO;
 import com.sky.dto.OrdersCancelDTO;
 import com.sky.dto.OrdersConfirmDTO;
 import com.sky.dto.OrdersPageQueryDTO;
@@ -17,6 +18,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import java.util.List;
+
 @RestController("adminOrderCroller")
 @RequestMapping("/admin/order")
 @Slf4j
@@ -39,6 +45,29 @@ public class OrderController {
         return Result.success(pageResult);
     }
 
+    /**
+     * 按订单搜索的条件导出订单，CSV 直接写入响应流
+     * @param ordersPageQueryDTO
+     * @param gzip 是否gzip压缩
+     * @param response
+     * @throws IOException
+     */
+    @GetMapping("/export")
+    @ApiOperation("导出订单")
+    public void export(OrdersPageQueryDTO ordersPageQueryDTO,
+                       @RequestParam(defaultValue = "false") boolean gzip,
+                       HttpServletResponse response) throws IOException {
+        log.info("导出订单：{}，gzip：{}", ordersPageQueryDTO, gzip);
+        if (gzip) {
+            response.setContentType("application/gzip");
+            response.setHeader("Content-Disposition", "attachment;filename=orders.csv.gz");
+        } else {
+            response.setContentType("text/csv;charset=UTF-8");
+            response.setHeader("Content-Disposition", "attachment;filename=orders.csv");
+        }
+        orderService.exportOrders(ordersPageQueryDTO, gzip, response.getOutputStream());
+    }
+
     /**
      * 统计各个状态的订单数量
      * @return
@@ -87,6 +116,18 @@ public class OrderController {
         return Result.success();
     }
 
+    /**
+     * 批量拒单，退款在后台完成，接口不等待退款结果
+     * @param ordersBatchRejectionDTO
+     * @return 拒单成功的订单id
+     */
+    @PutMapping("/rejection/batch")
+    @ApiOperation("批量拒单")
+    public Result<List<Long>> rejectBatch(@RequestBody OrdersBatchRejectionDTO ordersBatchRejectionDTO) {
+        List<Long> ids = orderService.rejectionBatch(ordersBatchRejectionDTO);
+        return Result.success(ids);
+    }
+
 
     /**
      * 取消订单
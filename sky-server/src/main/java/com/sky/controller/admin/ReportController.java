@@ -10,11 +10,17 @@ import com.sky.vo.UserReportVO;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
 import java.time.LocalDate;
 
 @RestController
@@ -23,6 +29,7 @@ import java.time.LocalDate;
 @Slf4j
 public class ReportController {
 
+    @Autowired
     private ReportService reportService;
 
     /**
@@ -83,4 +90,32 @@ public class ReportController {
             @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate end) {
         return Result.success(reportService.getSalesTop10(begin, end));
     }
+
+    /**
+     * 导出运营数据报表，默认导出最近30天
+     *
+     * @param begin
+     * @param end
+     * @param response
+     * @throws IOException
+     */
+    @GetMapping("/export")
+    @ApiOperation("导出运营数据报表")
+    public void export(
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate end,
+            HttpServletResponse response) throws IOException {
+        if (end == null) {
+            end = LocalDate.now().minusDays(1);
+        }
+        if (begin == null) {
+            begin = end.minusDays(29);
+        }
+        log.info("导出运营数据报表：{} {}", begin, end);
+
+        String fileName = URLEncoder.encode("运营数据报表" + begin + "_" + end + ".xlsx", StandardCharsets.UTF_8.name());
+        response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        response.setHeader("Content-Disposition", "attachment;filename*=UTF-8''" + fileName);
+        reportService.exportBusinessData(begin, end, response.getOutputStream());
+    }
 }
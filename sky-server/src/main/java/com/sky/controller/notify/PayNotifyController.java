@@ -3,9 +3,9 @@ package com.sky.controller.notify;
 import com.alibaba.druid.support.json.JSONUtils;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
-import com.sky.properties.WeChatProperties;
-import com.sky.service.OrderService;
-import com.wechat.pay.contrib.apache.httpclient.util.AesUtil;
+import com.sky.pay.PayNotifyIdempotency;
+import com.sky.pay.PayNotifyQueue;
+import com.sky.utils.WeChatPayUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.entity.ContentType;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,7 +13,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 
@@ -24,13 +25,21 @@ import java.util.HashMap;
 @RequestMapping("/notify")
 @Slf4j
 public class PayNotifyController {
+
+    // 回调报文的长度上限，微信的支付通知只有1~2KB
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    @Autowired
+    private PayNotifyIdempotency payNotifyIdempotency;
     @Autowired
-    private OrderService orderService;
+    private PayNotifyQueue payNotifyQueue;
     @Autowired
-    private WeChatProperties weChatProperties;
+    private WeChatPayUtil weChatPayUtil;
 
     /**
      * 支付成功回调
+     * 只做校验和落盘，解密、修改订单状态、来单提醒由 PayNotifyQueue 的后台线程完成；
+     * 验签通过之前不抢占通知id、不落盘，伪造的请求返回401
      *
      * @param request
      */
@@ -38,21 +47,45 @@ public class PayNotifyController {
     public void paySuccessNotify(HttpServletRequest request, HttpServletResponse response) throws Exception {
         //读取数据
         String body = readData(request);
+        if (body == null) {
+            responseToWeixin(response, 413, "FAIL", "报文过大");
+            return;
+        }
         log.info("支付成功回调：{}", body);
 
-        //数据解密
-        String plainText = decryptData(body);
-        log.info("解密后的文本：{}", plainText);
-
-        JSONObject jsonObject = JSON.parseObject(plainText);
-        String outTradeNo = jsonObject.getString("out_trade_no");//商户平台订单号
-        String transactionId = jsonObject.getString("transaction_id");//微信支付交易号
+        //验证微信支付的签名
+        if (!verifySignature(request, body)) {
+            log.warn("支付回调验签失败，来源：{}", request.getRemoteAddr());
+            responseToWeixin(response, 401, "FAIL", "签名错误");
+            return;
+        }
 
-        log.info("商户平台订单号：{}", outTradeNo);
-        log.info("微信支付交易号：{}", transactionId);
+        //校验数据
+        JSONObject notify;
+        try {
+            notify = JSON.parseObject(body);
+        } catch (Exception e) {
+            notify = null;
+        }
+        if (notify == null || notify.getJSONObject("resource") == null) {
+            responseToWeixin(response, 400, "FAIL", "报文格式错误");
+            return;
+        }
 
-        //业务处理，修改订单状态、来单提醒
-        orderService.paySuccess(outTradeNo);
+        //微信重发的通知id相同，重复通知在解密之前直接应答
+        String notifyId = notify.getString("id");
+        try {
+            if (payNotifyIdempotency.tryClaim(notifyId)) {
+                //落盘后即可应答，后续处理失败由队列负责重试
+                payNotifyQueue.enqueue(body);
+            }
+        } catch (Exception e) {
+            //去重或落盘失败，释放处理权并向微信返回错误，等待微信重发
+            log.error("支付回调处理失败", e);
+            payNotifyIdempotency.release(notifyId);
+            responseToWeixin(response, 500, "FAIL", "系统繁忙");
+            return;
+        }
 
         //给微信响应
         responseToWeixin(response);
@@ -62,43 +95,45 @@ public class PayNotifyController {
      * 读取数据
      *
      * @param request
-     * @return
+     * @return 报文超过 MAX_BODY_BYTES 时返回 null
      * @throws Exception
      */
     private String readData(HttpServletRequest request) throws Exception {
-        BufferedReader reader = request.getReader();
-        StringBuilder result = new StringBuilder();
-        String line = null;
-        while ((line = reader.readLine()) != null) {
-            if (result.length() > 0) {
-                result.append("\n");
+        if (request.getContentLengthLong() > MAX_BODY_BYTES) {
+            return null;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        InputStream in = request.getInputStream();
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            //没有声明长度（分块传输）时边读边检查
+            if (out.size() + n > MAX_BODY_BYTES) {
+                return null;
             }
-            result.append(line);
+            out.write(buffer, 0, n);
         }
-        return result.toString();
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
     }
 
     /**
-     * 数据解密
-     *
+     * 验证请求头中的微信支付签名
+     * @param request
      * @param body
      * @return
-     * @throws Exception
      */
-    private String decryptData(String body) throws Exception {
-        JSONObject resultObject = JSON.parseObject(body);
-        JSONObject resource = resultObject.getJSONObject("resource");
-        String ciphertext = resource.getString("ciphertext");
-        String nonce = resource.getString("nonce");
-        String associatedData = resource.getString("associated_data");
-
-        AesUtil aesUtil = new AesUtil(weChatProperties.getApiV3Key().getBytes(StandardCharsets.UTF_8));
-        //密文解密
-        String plainText = aesUtil.decryptToString(associatedData.getBytes(StandardCharsets.UTF_8),
-                nonce.getBytes(StandardCharsets.UTF_8),
-                ciphertext);
-
-        return plainText;
+    private boolean verifySignature(HttpServletRequest request, String body) {
+        try {
+            return weChatPayUtil.verifyNotification(
+                    request.getHeader("Wechatpay-Serial"),
+                    request.getHeader("Wechatpay-Timestamp"),
+                    request.getHeader("Wechatpay-Nonce"),
+                    request.getHeader("Wechatpay-Signature"),
+                    body);
+        } catch (Exception e) {
+            log.error("支付回调验签异常", e);
+            return false;
+        }
     }
 
     /**
@@ -106,10 +141,21 @@ public class PayNotifyController {
      * @param response
      */
     private void responseToWeixin(HttpServletResponse response) throws Exception{
-        response.setStatus(200);
+        responseToWeixin(response, 200, "SUCCESS", "SUCCESS");
+    }
+
+    /**
+     * 给微信响应，非200的状态码表示处理失败，微信会重发通知
+     * @param response
+     * @param status
+     * @param code
+     * @param message
+     */
+    private void responseToWeixin(HttpServletResponse response, int status, String code, String message) throws Exception{
+        response.setStatus(status);
         HashMap<Object, Object> map = new HashMap<>();
-        map.put("code", "SUCCESS");
-        map.put("message", "SUCCESS");
+        map.put("code", code);
+        map.put("message", message);
         response.setHeader("Content-type", ContentType.APPLICATION_JSON.toString());
         response.getOutputStream().write(JSONUtils.toJSONString(map).getBytes(StandardCharsets.UTF_8));
         response.flushBuffer();
@@ -0,0 +1,37 @@
+package com.sky.controller.user;
+
+import com.sky.result.Result;
+import com.sky.service.SearchService;
+import com.sky.vo.SearchItemVO;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController("userSearchController")
+@RequestMapping("/user/search")
+@Api(tags = "C端-菜品套餐搜索接口")
+@Slf4j
+public class SearchController {
+
+    @Autowired
+    private SearchService searchService;
+
+    /**
+     * 搜索菜品和套餐，支持名称、描述和名称的拼音首字母
+     *
+     * @param keyword
+     * @return
+     */
+    @GetMapping
+    @ApiOperation("搜索菜品和套餐")
+    public Result<List<SearchItemVO>> search(String keyword) {
+        log.info("搜索菜品和套餐：{}", keyword);
+        return Result.success(searchService.search(keyword));
+    }
+}
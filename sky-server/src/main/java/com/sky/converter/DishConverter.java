@@ -0,0 +1,35 @@
+package com.sky.converter;
+
+import com.sky.entity.Dish;
+import com.sky.vo.DishVO;
+
+import java.util.ArrayList;
+
+/**
+ * 菜品对象转换
+ * 手写的逐字段复制，代替 BeanUtils.copyProperties 的反射和内省
+ */
+public final class DishConverter {
+
+    private DishConverter() {
+    }
+
+    /**
+     * 菜品 -> 菜品VO，不包含分类名称和口味
+     * @param dish
+     * @return
+     */
+    public static DishVO toDishVO(Dish dish) {
+        return DishVO.builder()
+                .id(dish.getId())
+                .name(dish.getName())
+                .categoryId(dish.getCategoryId())
+                .price(dish.getPrice())
+                .image(dish.getImage())
+                .description(dish.getDescription())
+                .status(dish.getStatus())
+                .updateTime(dish.getUpdateTime())
+                .flavors(new ArrayList<>())
+                .build();
+    }
+}
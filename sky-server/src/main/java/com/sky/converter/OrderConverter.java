@@ -0,0 +1,50 @@
+package com.sky.converter;
+
+import com.sky.entity.Orders;
+import com.sky.vo.OrderVO;
+
+/**
+ * 订单对象转换
+ * 手写的逐字段复制，代替 BeanUtils.copyProperties 的反射和内省；
+ * Orders 新增字段时需要同步修改这里。
+ */
+public final class OrderConverter {
+
+    private OrderConverter() {
+    }
+
+    /**
+     * 订单 -> 订单VO，只复制订单的基本信息，不包含订单明细
+     * @param orders
+     * @return
+     */
+    public static OrderVO toOrderVO(Orders orders) {
+        OrderVO orderVO = new OrderVO();
+        orderVO.setId(orders.getId());
+        orderVO.setNumber(orders.getNumber());
+        orderVO.setStatus(orders.getStatus());
+        orderVO.setUserId(orders.getUserId());
+        orderVO.setAddressBookId(orders.getAddressBookId());
+        orderVO.setOrderTime(orders.getOrderTime());
+        orderVO.setCheckoutTime(orders.getCheckoutTime());
+        orderVO.setPayMethod(orders.getPayMethod());
+        orderVO.setPayStatus(orders.getPayStatus());
+        orderVO.setRefundStatus(orders.getRefundStatus());
+        orderVO.setAmount(orders.getAmount());
+        orderVO.setRemark(orders.getRemark());
+        orderVO.setUserName(orders.getUserName());
+        orderVO.setPhone(orders.getPhone());
+        orderVO.setAddress(orders.getAddress());
+        orderVO.setConsignee(orders.getConsignee());
+        orderVO.setCancelReason(orders.getCancelReason());
+        orderVO.setRejectionReason(orders.getRejectionReason());
+        orderVO.setCancelTime(orders.getCancelTime());
+        orderVO.setEstimatedDeliveryTime(orders.getEstimatedDeliveryTime());
+        orderVO.setDeliveryStatus(orders.getDeliveryStatus());
+        orderVO.setDeliveryTime(orders.getDeliveryTime());
+        orderVO.setPackAmount(orders.getPackAmount());
+        orderVO.setTablewareNumber(orders.getTablewareNumber());
+        orderVO.setTablewareStatus(orders.getTablewareStatus());
+        return orderVO;
+    }
+}
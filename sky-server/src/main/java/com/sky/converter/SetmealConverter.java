@@ -0,0 +1,35 @@
+package com.sky.converter;
+
+import com.sky.entity.Setmeal;
+import com.sky.vo.SetmealVO;
+
+import java.util.ArrayList;
+
+/**
+ * 套餐对象转换
+ * 手写的逐字段复制，代替 BeanUtils.copyProperties 的反射和内省
+ */
+public final class SetmealConverter {
+
+    private SetmealConverter() {
+    }
+
+    /**
+     * 套餐 -> 套餐VO，不包含分类名称和套餐菜品
+     * @param setmeal
+     * @return
+     */
+    public static SetmealVO toSetmealVO(Setmeal setmeal) {
+        return SetmealVO.builder()
+                .id(setmeal.getId())
+                .categoryId(setmeal.getCategoryId())
+                .name(setmeal.getName())
+                .price(setmeal.getPrice())
+                .status(setmeal.getStatus())
+                .description(setmeal.getDescription())
+                .image(setmeal.getImage())
+                .updateTime(setmeal.getUpdateTime())
+                .setmealDishes(new ArrayList<>())
+                .build();
+    }
+}
@@ -0,0 +1,62 @@
+package com.sky.converter;
+
+import com.sky.dto.ShoppingCartDTO;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.ShoppingCart;
+
+/**
+ * 购物车对象转换
+ * 手写的逐字段复制，代替 BeanUtils.copyProperties 的反射和内省
+ */
+public final class ShoppingCartConverter {
+
+    private ShoppingCartConverter() {
+    }
+
+    /**
+     * 购物车DTO -> 购物车，只包含菜品id、套餐id和口味
+     * @param shoppingCartDTO
+     * @return
+     */
+    public static ShoppingCart fromDTO(ShoppingCartDTO shoppingCartDTO) {
+        return ShoppingCart.builder()
+                .dishId(shoppingCartDTO.getDishId())
+                .setmealId(shoppingCartDTO.getSetmealId())
+                .dishFlavor(shoppingCartDTO.getDishFlavor())
+                .build();
+    }
+
+    /**
+     * 购物车 -> 订单明细，不包含订单明细id和订单id
+     * @param shoppingCart
+     * @return
+     */
+    public static OrderDetail toOrderDetail(ShoppingCart shoppingCart) {
+        return OrderDetail.builder()
+                .name(shoppingCart.getName())
+                .dishId(shoppingCart.getDishId())
+                .setmealId(shoppingCart.getSetmealId())
+                .dishFlavor(shoppingCart.getDishFlavor())
+                .number(shoppingCart.getNumber())
+                .amount(shoppingCart.getAmount())
+                .image(shoppingCart.getImage())
+                .build();
+    }
+
+    /**
+     * 订单明细 -> 购物车（再来一单），不包含购物车id、用户id和创建时间
+     * @param orderDetail
+     * @return
+     */
+    public static ShoppingCart fromOrderDetail(OrderDetail orderDetail) {
+        return ShoppingCart.builder()
+                .name(orderDetail.getName())
+                .dishId(orderDetail.getDishId())
+                .setmealId(orderDetail.getSetmealId())
+                .dishFlavor(orderDetail.getDishFlavor())
+                .number(orderDetail.getNumber())
+                .amount(orderDetail.getAmount())
+                .image(orderDetail.getImage())
+                .build();
+    }
+}
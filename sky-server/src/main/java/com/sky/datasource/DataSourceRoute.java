@@ -0,0 +1,32 @@
+package com.sky.datasource;
+
+/**
+ * 当前线程的数据源路由标记，由 ReadOnlyAspect 在 @ReadOnly 方法执行期间设置
+ */
+public class DataSourceRoute {
+
+    private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<>();
+
+    /**
+     * 标记当前线程是否执行只读方法
+     * @param readOnly
+     * @return 之前的标记，方法结束后通过 restore 恢复
+     */
+    public static Boolean setReadOnly(boolean readOnly) {
+        Boolean previous = READ_ONLY.get();
+        READ_ONLY.set(readOnly);
+        return previous;
+    }
+
+    public static boolean isReadOnly() {
+        return Boolean.TRUE.equals(READ_ONLY.get());
+    }
+
+    public static void restore(Boolean previous) {
+        if (previous == null) {
+            READ_ONLY.remove();
+        } else {
+            READ_ONLY.set(previous);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.sky.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读写分离数据源
+ * 只读方法（DataSourceRoute.isReadOnly）在事务之外的查询发往从库，其它查询发往主库；
+ * 后台线程每秒查询一次从库的复制延迟，延迟超过 maxLagSeconds、复制中断或从库不可用时只读查询也发往主库；
+ * 检查本身卡住时最近一次成功的检查会过期，同样回到主库。
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private static final String PRIMARY = "primary";
+
+    private static final String REPLICA = "replica";
+
+    // 复制延迟的检查间隔（毫秒）
+    private static final long CHECK_INTERVAL_MILLIS = 1000;
+
+    // 最近一次确认从库可用超过该时间（毫秒）后不再使用从库
+    private static final long STALE_MILLIS = 3000;
+
+    // 查询复制状态的超时时间（秒）
+    private static final int CHECK_TIMEOUT_SECONDS = 2;
+
+    private final DataSource replica;
+
+    private final long maxLagSeconds;
+
+    // 最近一次检查的结果，只用于记录状态变化
+    private volatile boolean replicaAvailable;
+
+    // 最近一次确认从库可用的时间，0 表示还没有确认过
+    private volatile long lastAvailableTime;
+
+    private ScheduledExecutorService checker;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, long maxLagSeconds) {
+        this.replica = replica;
+        this.maxLagSeconds = maxLagSeconds;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        targets.put(REPLICA, replica);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        // 在独立线程中检查，从库不可用时不阻塞启动；第一次检查成功之前只读查询发往主库
+        checker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "replica-lag-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checker.scheduleWithFixedDelay(this::checkReplica, 0, CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if (checker != null) {
+            checker.shutdownNow();
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (isReplicaAvailable()
+                && DataSourceRoute.isReadOnly()
+                && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            return REPLICA;
+        }
+        return PRIMARY;
+    }
+
+    /**
+     * 检查从库的复制延迟
+     */
+    void checkReplica() {
+        boolean available;
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(CHECK_TIMEOUT_SECONDS);
+            available = isLagAcceptable(statement);
+        } catch (Exception e) {
+            log.debug("查询从库复制状态失败", e);
+            available = false;
+        }
+
+        // 确认不可用时立即停止使用从库，而不是等上一次的结果过期
+        lastAvailableTime = available ? System.currentTimeMillis() : 0;
+        if (available != replicaAvailable) {
+            log.warn(available ? "从库恢复，只读查询发往从库" : "从库延迟过大或不可用，只读查询回到主库");
+            replicaAvailable = available;
+        }
+    }
+
+    private boolean isLagAcceptable(Statement statement) throws Exception {
+        try (ResultSet resultSet = statement.executeQuery("show slave status")) {
+            if (!resultSet.next()) {
+                // 没有复制关系（如开发环境主从是同一个库），数据一定是最新的
+                return true;
+            }
+            long lag = resultSet.getLong("Seconds_Behind_Master");
+            // 复制线程停止时延迟为 NULL
+            return !resultSet.wasNull() && lag <= maxLagSeconds;
+        }
+    }
+
+    /**
+     * 从库是否可以使用：最近一次确认可用的时间在 STALE_MILLIS 之内
+     * @return
+     */
+    public boolean isReplicaAvailable() {
+        long time = lastAvailableTime;
+        return time > 0 && System.currentTimeMillis() - time <= STALE_MILLIS;
+    }
+}
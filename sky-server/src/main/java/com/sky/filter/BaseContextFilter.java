@@ -0,0 +1,58 @@
+package com.sky.filter;
+
+import com.sky.context.BaseContext;
+import com.sky.context.RequestContext;
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 请求上下文过滤器
+ * 每个请求开始时创建 RequestContext（请求id、开始时间），由 JWT 拦截器填入当前登录者，
+ * 请求结束时无论是否异常都清理上下文，避免 Tomcat 线程池中的线程把上一个请求的用户带到下一个请求。
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class BaseContextFilter extends OncePerRequestFilter {
+
+    /**
+     * 请求id的请求头和响应头名称，调用方传入时沿用，便于跨服务串联日志
+     */
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+
+    /**
+     * 日志上下文（MDC）中请求id的键名
+     */
+    public static final String REQUEST_ID_MDC_KEY = "requestId";
+
+    // 调用方传入的请求id最大长度，超过或包含非法字符时重新生成
+    private static final int MAX_REQUEST_ID_LENGTH = 64;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String requestId = request.getHeader(REQUEST_ID_HEADER);
+        if (requestId == null || requestId.isEmpty() || requestId.length() > MAX_REQUEST_ID_LENGTH
+                || !requestId.matches("[\\w.-]+")) {
+            requestId = BaseContext.nextRequestId();
+        }
+
+        BaseContext.set(new RequestContext(requestId));
+        MDC.put(REQUEST_ID_MDC_KEY, requestId);
+        response.setHeader(REQUEST_ID_HEADER, requestId);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            MDC.remove(REQUEST_ID_MDC_KEY);
+            BaseContext.removeCurrentId();
+        }
+    }
+}
@@ -2,10 +2,13 @@ package com.sky.interceptor;
 
 import com.sky.constant.JwtClaimsConstant;
 import com.sky.context.BaseContext;
+import com.sky.context.RequestContext;
 import com.sky.properties.JwtProperties;
-import com.sky.utils.JwtUtil;
+import com.sky.token.TokenRevocationStore;
+import com.sky.utils.JwtVerifier;
 import io.jsonwebtoken.Claims;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.method.HandlerMethod;
@@ -13,6 +16,7 @@ import org.springframework.web.servlet.HandlerInterceptor;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.Date;
 
 /**
  * JWT令牌校验的拦截器。
@@ -23,11 +27,24 @@ import javax.servlet.http.HttpServletResponse;
  */
 @Component
 @Slf4j // 使用Lombok提供的日志工具，简化日志记录
-public class JwtTokenAdminInterceptor implements HandlerInterceptor {
+public class JwtTokenAdminInterceptor implements HandlerInterceptor, InitializingBean {
 
     @Autowired
     private JwtProperties jwtProperties; // 自动注入JWT相关配置，包括令牌名和签名密钥
 
+    // 最多缓存的令牌数量
+    private static final int TOKEN_CACHE_SIZE = 10000;
+
+    private JwtVerifier jwtVerifier;
+
+    @Autowired
+    private TokenRevocationStore tokenRevocationStore;
+
+    @Override
+    public void afterPropertiesSet() {
+        jwtVerifier = new JwtVerifier(jwtProperties.getAdminSecretKey(), TOKEN_CACHE_SIZE);
+    }
+
     /**
      * 拦截请求并验证JWT令牌。
      * 该方法在请求到达Controller之前执行，用于拦截和处理身份认证。
@@ -47,16 +64,20 @@ public class JwtTokenAdminInterceptor implements HandlerInterceptor {
         // 从请求头中获取JWT令牌，键名由配置文件指定
         String token = request.getHeader(jwtProperties.getAdminTokenName());
         try {
-            // 打印日志记录获取到的令牌，便于调试
-            log.info("JWT校验开始，令牌内容: {}", token);
-            // 校验令牌是否有效，并解析其载荷内容
-            Claims claims = JwtUtil.parseJWT(jwtProperties.getAdminSecretKey(), token);
+            // 校验令牌是否有效，并解析其载荷内容；令牌内容属于凭证，不打印到日志
+            Claims claims = jwtVerifier.verify(token);
             // 从解析后的载荷中提取员工ID（假设JWT中存储了EMP_ID字段）
             Long empId = Long.valueOf(claims.get(JwtClaimsConstant.EMP_ID).toString());
+            // 员工被禁用后，之前签发的令牌立即失效
+            if (tokenRevocationStore.isRevoked(TokenRevocationStore.EMPLOYEE + empId, issuedAt(claims))) {
+                log.warn("令牌已被吊销，员工ID: {}", empId);
+                response.setStatus(401);
+                return false;
+            }
             // 打印员工ID，便于追踪请求来源
-            log.info("当前员工ID: {}", empId);
+            log.debug("当前员工ID: {}", empId);
             // 将员工ID存储到线程上下文中，供后续业务逻辑使用（通过ThreadLocal隔离）
-            BaseContext.setCurrentId(empId);
+            BaseContext.setCurrent(empId, RequestContext.ROLE_EMPLOYEE);
             // 校验通过，放行请求
             return true;
         } catch (Exception ex) {
@@ -68,4 +89,14 @@ public class JwtTokenAdminInterceptor implements HandlerInterceptor {
             return false;
         }
     }
+
+    /**
+     * 令牌签发时间（毫秒），之前签发的令牌没有签发时间，按0处理
+     * @param claims
+     * @return
+     */
+    private long issuedAt(Claims claims) {
+        Date issuedAt = claims.getIssuedAt();
+        return issuedAt == null ? 0 : issuedAt.getTime();
+    }
 }
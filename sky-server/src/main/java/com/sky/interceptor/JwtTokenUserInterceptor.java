@@ -2,10 +2,13 @@ package com.sky.interceptor;
 
 import com.sky.constant.JwtClaimsConstant;
 import com.sky.context.BaseContext;
+import com.sky.context.RequestContext;
 import com.sky.properties.JwtProperties;
-import com.sky.utils.JwtUtil;
+import com.sky.token.TokenRevocationStore;
+import com.sky.utils.JwtVerifier;
 import io.jsonwebtoken.Claims;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.method.HandlerMethod;
@@ -13,17 +16,31 @@ import org.springframework.web.servlet.HandlerInterceptor;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.Date;
 
 /**
  * jwt令牌校验的拦截器
  */
 @Component
 @Slf4j
-public class JwtTokenUserInterceptor implements HandlerInterceptor {
+public class JwtTokenUserInterceptor implements HandlerInterceptor, InitializingBean {
 
     @Autowired
     private JwtProperties jwtProperties;
 
+    // 最多缓存的令牌数量
+    private static final int TOKEN_CACHE_SIZE = 10000;
+
+    private JwtVerifier jwtVerifier;
+
+    @Autowired
+    private TokenRevocationStore tokenRevocationStore;
+
+    @Override
+    public void afterPropertiesSet() {
+        jwtVerifier = new JwtVerifier(jwtProperties.getUserSecretKey(), TOKEN_CACHE_SIZE);
+    }
+
     /**
      * 校验jwt
      *
@@ -47,25 +64,28 @@ public class JwtTokenUserInterceptor implements HandlerInterceptor {
 
         // 2. 校验令牌的合法性
         try {
-            // 打印日志记录收到的令牌
-            log.info("jwt校验:{}", token);
-
-            // 使用工具类 `JwtUtil` 对令牌进行解析，验证其合法性
+            // 使用 `JwtVerifier` 对令牌进行解析，验证其合法性；令牌内容属于凭证，不打印到日志
             /*
-            使用工具类 JwtUtil 验证令牌，传入密钥 jwtProperties.getUserSecretKey() 和令牌。
-            如果令牌有效，会返回解析后的 Claims，其中包含了用户的相关信息（如用户ID）。
+            同一个令牌在过期之前只校验一次签名，之后直接使用缓存的 Claims，
+            其中包含了用户的相关信息（如用户ID）。
              */
-            Claims claims = JwtUtil.parseJWT(jwtProperties.getUserSecretKey(), token);
+            Claims claims = jwtVerifier.verify(token);
 
             // 从解析后的 `Claims` 中获取用户ID
             Long userId = Long.valueOf(claims.get(JwtClaimsConstant.USER_ID).toString());
 
+            // 检查令牌是否已被吊销
+            if (tokenRevocationStore.isRevoked(TokenRevocationStore.USER + userId, issuedAt(claims))) {
+                response.setStatus(401);
+                return false;
+            }
+
             // 将当前登录用户的ID存储到线程上下文中
             // 线程上下文可以在后续业务逻辑中随时获取用户ID，避免频繁解析令牌
-            BaseContext.setCurrentId(userId);
+            BaseContext.setCurrent(userId, RequestContext.ROLE_USER);
 
             // 打印日志记录当前用户ID
-            log.info("当前用户id：{}", userId);
+            log.debug("当前用户id：{}", userId);
 
             // 3. 校验通过，放行
             return true;
@@ -80,4 +100,13 @@ public class JwtTokenUserInterceptor implements HandlerInterceptor {
         }
     }
 
+    /**
+     * 令牌签发时间（毫秒），之前签发的令牌没有签发时间，按0处理
+     * @param claims
+     * @return
+     */
+    private long issuedAt(Claims claims) {
+        Date issuedAt = claims.getIssuedAt();
+        return issuedAt == null ? 0 : issuedAt.getTime();
+    }
 }
@@ -0,0 +1,51 @@
+package com.sky.lock;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于内存的任务锁，用于单节点部署和测试（sky.job-lock.type=memory）
+ */
+@Component
+@ConditionalOnProperty(name = "sky.job-lock.type", havingValue = "memory")
+public class InMemoryJobLock implements JobLock {
+
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    private final Map<String, String> holders = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean tryAcquire(String job, String owner, long leaseMillis) {
+        long now = System.currentTimeMillis();
+        Lease lease = new Lease(owner, now + leaseMillis);
+        // 没有租约或租约已过期时才能获取
+        return leases.compute(job, (key, current) ->
+                current == null || current.expireAt <= now ? lease : current) == lease;
+    }
+
+    @Override
+    public boolean renew(String job, String owner, long leaseMillis) {
+        long now = System.currentTimeMillis();
+        Lease lease = new Lease(owner, now + leaseMillis);
+        return leases.computeIfPresent(job, (key, current) ->
+                current.owner.equals(owner) && current.expireAt > now ? lease : current) == lease;
+    }
+
+    @Override
+    public String recordHolder(String job, String owner) {
+        return holders.put(job, owner);
+    }
+
+    private static class Lease {
+        private final String owner;
+        private final long expireAt;
+
+        private Lease(String owner, long expireAt) {
+            this.owner = owner;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.sky.lock;
+
+import com.sky.context.BaseContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时任务选主
+ * 每次定时任务触发时先抢占任务锁，抢到的节点执行任务并在执行期间定时续约，其它节点直接跳过。
+ * 任务结束后不主动释放锁，而是等租约自然到期，避免各节点时钟略有偏差时同一次触发被执行两次，
+ * 因此租约时长应远小于任务的触发间隔。
+ */
+@Component
+@Slf4j
+public class JobLeader implements DisposableBean {
+
+    /**
+     * 默认租约时长（毫秒）
+     */
+    public static final long DEFAULT_LEASE_MILLIS = 30 * 1000;
+
+    @Autowired
+    private JobLock jobLock;
+
+    // 当前节点标识：pid@主机名 + 随机后缀，保证重启后也不相同
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName()
+            + ":" + UUID.randomUUID().toString().substring(0, 8);
+
+    private final Map<String, JobLockMetrics> metrics = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService renewExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "job-lock-renew");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 使用默认租约，在获取到任务锁时执行任务
+     * @param job  任务名称
+     * @param task 任务
+     * @return 本节点是否执行了任务
+     */
+    public boolean runIfLeader(String job, Runnable task) {
+        return runIfLeader(job, DEFAULT_LEASE_MILLIS, task);
+    }
+
+    /**
+     * 在获取到任务锁时执行任务，执行期间每 1/3 租约时长续约一次
+     * @param job         任务名称
+     * @param leaseMillis 租约时长（毫秒）
+     * @param task        任务
+     * @return 本节点是否执行了任务
+     */
+    public boolean runIfLeader(String job, long leaseMillis, Runnable task) {
+        JobLockMetrics jobMetrics = metrics.computeIfAbsent(job, key -> new JobLockMetrics());
+
+        if (!jobLock.tryAcquire(job, nodeId, leaseMillis)) {
+            jobMetrics.onSkipped();
+            log.debug("任务{}已由其它节点执行，跳过", job);
+            return false;
+        }
+        jobMetrics.onAcquired();
+
+        String previous = jobLock.recordHolder(job, nodeId);
+        if (previous != null && !previous.equals(nodeId)) {
+            jobMetrics.onTakeover();
+            log.info("任务{}由节点{}接管，上一次执行节点：{}", job, nodeId, previous);
+        }
+
+        long period = Math.max(leaseMillis / 3, 1);
+        ScheduledFuture<?> renewal = renewExecutor.scheduleAtFixedRate(() -> {
+            try {
+                if (jobLock.renew(job, nodeId, leaseMillis)) {
+                    jobMetrics.onRenewed();
+                } else {
+                    jobMetrics.onRenewFailed();
+                    log.warn("任务{}续约失败，租约可能已被其它节点接管", job);
+                }
+            } catch (Exception e) {
+                jobMetrics.onRenewFailed();
+                log.error("任务{}续约异常", job, e);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+
+        try {
+            //定时任务没有请求，在独立的后台任务上下文中执行
+            BaseContext.runAsSystem(task);
+        } finally {
+            renewal.cancel(false);
+        }
+        return true;
+    }
+
+    /**
+     * 各个任务的锁统计数据
+     * @return
+     */
+    public Map<String, JobLockMetrics> getMetrics() {
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void destroy() {
+        renewExecutor.shutdownNow();
+    }
+}
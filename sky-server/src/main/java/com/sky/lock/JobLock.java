@@ -0,0 +1,35 @@
+package com.sky.lock;
+
+/**
+ * 定时任务锁
+ * 多个 sky-server 节点部署时，同一个定时任务每次触发只允许一个节点执行。
+ * 锁以租约的形式存在，持有者需要在租约到期前续约，节点宕机后租约到期，其它节点可以接管。
+ */
+public interface JobLock {
+
+    /**
+     * 尝试获取任务锁
+     * @param job         任务名称
+     * @param owner       当前节点标识
+     * @param leaseMillis 租约时长（毫秒）
+     * @return 是否获取成功
+     */
+    boolean tryAcquire(String job, String owner, long leaseMillis);
+
+    /**
+     * 续约，只有当前持有者可以续约
+     * @param job
+     * @param owner
+     * @param leaseMillis
+     * @return 是否续约成功
+     */
+    boolean renew(String job, String owner, long leaseMillis);
+
+    /**
+     * 记录本次执行任务的节点
+     * @param job
+     * @param owner
+     * @return 上一次执行该任务的节点，没有则返回 null
+     */
+    String recordHolder(String job, String owner);
+}
@@ -0,0 +1,64 @@
+package com.sky.lock;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个定时任务的锁统计数据
+ */
+public class JobLockMetrics {
+
+    // 本节点获取到锁并执行的次数
+    private final AtomicLong acquired = new AtomicLong();
+
+    // 其它节点持有锁、本节点跳过的次数
+    private final AtomicLong skipped = new AtomicLong();
+
+    // 续约成功次数
+    private final AtomicLong renewed = new AtomicLong();
+
+    // 续约失败次数（租约已被其它节点接管）
+    private final AtomicLong renewFailed = new AtomicLong();
+
+    // 本节点从其它节点接管任务的次数
+    private final AtomicLong takeovers = new AtomicLong();
+
+    void onAcquired() {
+        acquired.incrementAndGet();
+    }
+
+    void onSkipped() {
+        skipped.incrementAndGet();
+    }
+
+    void onRenewed() {
+        renewed.incrementAndGet();
+    }
+
+    void onRenewFailed() {
+        renewFailed.incrementAndGet();
+    }
+
+    void onTakeover() {
+        takeovers.incrementAndGet();
+    }
+
+    public long getAcquired() {
+        return acquired.get();
+    }
+
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    public long getRenewed() {
+        return renewed.get();
+    }
+
+    public long getRenewFailed() {
+        return renewFailed.get();
+    }
+
+    public long getTakeovers() {
+        return takeovers.get();
+    }
+}
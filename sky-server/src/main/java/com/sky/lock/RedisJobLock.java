@@ -0,0 +1,51 @@
+package com.sky.lock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 Redis 的任务锁：SET key owner NX PX lease 加锁，Lua 脚本校验持有者后续约
+ */
+@Component
+@ConditionalOnProperty(name = "sky.job-lock.type", havingValue = "redis", matchIfMissing = true)
+public class RedisJobLock implements JobLock {
+
+    private static final String LOCK_KEY = "job:lock:";
+
+    private static final String HOLDER_KEY = "job:holder:";
+
+    // 只有持有者才能延长租约
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+                    "return redis.call('pexpire', KEYS[1], ARGV[2]) " +
+                    "else return 0 end", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Override
+    public boolean tryAcquire(String job, String owner, long leaseMillis) {
+        Boolean success = stringRedisTemplate.opsForValue()
+                .setIfAbsent(LOCK_KEY + job, owner, leaseMillis, TimeUnit.MILLISECONDS);
+        return Boolean.TRUE.equals(success);
+    }
+
+    @Override
+    public boolean renew(String job, String owner, long leaseMillis) {
+        Long result = stringRedisTemplate.execute(RENEW_SCRIPT,
+                Collections.singletonList(LOCK_KEY + job), owner, String.valueOf(leaseMillis));
+        return result != null && result == 1L;
+    }
+
+    @Override
+    public String recordHolder(String job, String owner) {
+        return stringRedisTemplate.opsForValue().getAndSet(HOLDER_KEY + job, owner);
+    }
+}
@@ -8,6 +8,7 @@ import com.sky.entity.Category; // 分类实体类
 import org.apache.ibatis.annotations.Delete; // MyBatis的删除注解
 import org.apache.ibatis.annotations.Insert; // MyBatis的插入注解
 import org.apache.ibatis.annotations.Mapper; // 标记这个接口是MyBatis的Mapper
+import org.apache.ibatis.annotations.Select; // MyBatis的查询注解
 import java.util.List; // 列表类
 
 @Mapper // 标记这是MyBatis的Mapper接口
@@ -54,5 +55,15 @@ public interface CategoryMapper {
      * @return 分类列表，包含所有匹配的分类数据
      */
     List<Category> list(Integer type);
+
+    /**
+     * 查询分类被哪些表关联，一次查询同时检查菜品和套餐
+     * @param id 分类的ID
+     * @return 关联了该分类的表名（dish、setmeal），没有关联时为空列表
+     */
+    @Select("(select 'dish' from dish where category_id = #{id} limit 1)" +
+            " union all" +
+            " (select 'setmeal' from setmeal where category_id = #{id} limit 1)")
+    List<String> getRelatedTables(Long id);
     // 通过查询条件（类型）来获取对应的分类数据
 }
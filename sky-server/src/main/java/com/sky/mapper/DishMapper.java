@@ -10,6 +10,7 @@ import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -45,6 +46,23 @@ public interface DishMapper {
     @Select("select * from dish where id = #{id}")
     Dish getById(Long id);
 
+    /**
+     * 统计菜品ID集合中指定状态的菜品数量
+     *
+     * @param ids
+     * @param status
+     * @return
+     */
+    Integer countByIdsAndStatus(List<Long> ids, Integer status);
+
+    /**
+     * 根据菜品ID集合查询菜品
+     *
+     * @param ids
+     * @return
+     */
+    List<Dish> getByIds(Collection<Long> ids);
+
     @Delete("delete from dish where id = #{id}")
     void deleteById(Long id);
 
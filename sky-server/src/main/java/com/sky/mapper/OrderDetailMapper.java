@@ -10,6 +10,31 @@ import java.util.List;
 public interface OrderDetailMapper {
     void insertBatch(List<OrderDetail> orderDetailList);
 
+    /**
+     * 根据订单id查询订单明细，只查询订单明细表，已归档的订单使用 getArchivedByOrderId
+     * @param orderId
+     * @return
+     */
     @Select("select * from order_detail where order_id = #{orderId}")
     List<OrderDetail> getByOrderID(Long orderId);
+
+    /**
+     * 根据订单id在归档表中查询订单明细
+     * @param orderId
+     * @return
+     */
+    @Select("select * from order_detail_archive where order_id = #{orderId}")
+    List<OrderDetail> getArchivedByOrderId(Long orderId);
+
+    /**
+     * 把订单明细复制到归档表
+     * @param orderIds
+     */
+    void archiveByOrderIds(List<Long> orderIds);
+
+    /**
+     * 根据订单id批量删除订单明细
+     * @param orderIds
+     */
+    void deleteByOrderIds(List<Long> orderIds);
 }
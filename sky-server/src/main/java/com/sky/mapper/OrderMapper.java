@@ -1,14 +1,19 @@
 package com.sky.mapper;
 
+import com.sky.dto.DailyBusinessDTO;
 import com.sky.dto.GoodsSalesDTO;
 import com.sky.dto.OrdersPageQueryDTO;
 import com.sky.entity.Orders;
+import com.sky.vo.OrderVO;
 import java.util.List;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.cursor.Cursor;
 import org.springframework.data.domain.Page;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.Map;
 
 @Mapper
@@ -23,12 +28,27 @@ public interface OrderMapper {
     @Select("select * from orders where number = #{orderNumber}")
     Orders getByNumber(String orderNumber);
 
+    /**
+     * 根据订单号批量查询订单
+     * @param numbers
+     * @return
+     */
+    List<Orders> getByNumbers(Collection<String> numbers);
+
     /**
      * 修改订单信息
      * @param orders
      */
     void update(Orders orders);
 
+    /**
+     * 根据id和订单状态修改订单信息，订单不处于 statuses 中的状态时不做修改
+     * @param orders
+     * @param statuses 允许的原状态
+     * @return 修改的行数，0表示订单不存在或状态已被修改
+     */
+    int updateByIdAndStatus(Orders orders, Collection<Integer> statuses);
+
 
     /**
      * 历史订单分页查询
@@ -52,10 +72,63 @@ public interface OrderMapper {
     @Select("select * from orders where status = #{status} and order_time < #{ordertime}")
     List<Orders> getByStatusAndOrderTimeLT(Integer status, LocalDateTime ordertime);
 
-    void batchUpdateOrders(List<Orders> updateList);
+    /**
+     * 按主键顺序查询指定状态、下单时间早于 orderTime 的订单id
+     * @param status
+     * @param orderTime
+     * @param limit 最多返回的数量
+     * @return
+     */
+    @Select("select id from orders where status = #{status} and order_time < #{orderTime} order by id limit #{limit}")
+    List<Long> getIdsByStatusAndOrderTimeLT(Integer status, LocalDateTime orderTime, int limit);
+
+    /**
+     * 批量修改订单状态，只修改仍处于 status 状态的订单
+     * @param ids
+     * @param status 修改前的订单状态
+     * @param orders 要修改的字段
+     * @return 实际修改的订单数量
+     */
+    int updateStatusByIds(List<Long> ids, Integer status, Orders orders);
+
+    /**
+     * 查询 ids 中处于指定状态的订单id
+     * @param ids
+     * @param status
+     * @return
+     */
+    List<Long> getIdsByIdsAndStatus(List<Long> ids, Integer status);
+
+    /**
+     * 已取消但尚未支付的订单收到支付成功通知：记为已支付、退款中，之后由退款队列原路退款
+     * 只修改状态为已取消（6）且支付状态为未支付（0）的订单
+     * @param id
+     * @param checkoutTime
+     * @return 实际修改的订单数量
+     */
+    @Update("update orders set pay_status = 1, refund_status = 1, checkout_time = #{checkoutTime} " +
+            "where id = #{id} and status = 6 and pay_status = 0")
+    int updatePaidForCancelled(Long id, LocalDateTime checkoutTime);
+
+    /**
+     * 查询指定退款状态的订单
+     * @param refundStatus
+     * @return
+     */
+    @Select("select * from orders where refund_status = #{refundStatus}")
+    List<Orders> getByRefundStatus(Integer refundStatus);
 
-    @Select("select * from orders where status = #{status} and order_time < #{time}")
-    List<Orders> getByStatusAndOrdertimeLT(Integer status, LocalDateTime time);
+    /**
+     * 修改退款状态，只修改仍处于 from 退款状态的订单
+     * @param id
+     * @param from      修改前的退款状态
+     * @param to        修改后的退款状态
+     * @param payStatus 支付状态，为空时不修改
+     * @return 实际修改的订单数量
+     */
+    @Update("update orders set refund_status = #{to}, pay_status = ifnull(#{payStatus}, pay_status) " +
+            "where id = #{id} and refund_status = #{from}")
+    int updateRefundStatus(Long id, Integer from, Integer to, Integer payStatus);
 
     /**
      * 根据id查询订单
@@ -64,14 +137,102 @@ public interface OrderMapper {
     @Select("select * from orders where id=#{id}")
     Orders getById(Long id);
 
+    /**
+     * 根据id查询归档的订单
+     * @param id
+     */
+    @Select("select * from orders_archive where id = #{id}")
+    Orders getArchivedById(Long id);
+
+    /**
+     * 查询可以归档的订单id：已完成或已取消、退款已结束（没有正在退款或退款失败待处理）、下单时间早于 orderTime
+     * @param orderTime 下单时间上限
+     * @param limit     最多返回的数量
+     * @return
+     */
+    @Select("select id from orders where status in (5, 6) and (refund_status is null or refund_status not in (1, 3)) " +
+            "and order_time < #{orderTime} order by id limit #{limit}")
+    List<Long> getArchivableIds(LocalDateTime orderTime, int limit);
+
+    /**
+     * 把订单复制到归档表
+     * @param ids
+     */
+    void archiveByIds(List<Long> ids);
+
+    /**
+     * 根据id批量删除订单
+     * @param ids
+     */
+    void deleteByIds(List<Long> ids);
+
     /**
      * 根据动态条件统计营业额数据
+     * map 中 archive 为 true 时同时统计归档表
      * @param map
      * @return
      */
     Double sumByMap(Map map);
 
-    List<GoodsSalesDTO> getSalesTop10(LocalDateTime beginTime, LocalDateTime endTime);
+    /**
+     * 统计销量排名前10的商品
+     * @param beginTime
+     * @param endTime
+     * @param includeArchive 是否同时统计归档表
+     * @return
+     */
+    List<GoodsSalesDTO> getSalesTop10(LocalDateTime beginTime, LocalDateTime endTime, boolean includeArchive);
 
+    /**
+     * 根据动态条件统计订单数量
+     * map 中 archive 为 true 时同时统计归档表
+     * @param map
+     * @return
+     */
     Integer countByMap(Map<String, Object> map);
+
+    /**
+     * 按天统计指定时间段内的总订单数、有效订单数和营业额，一条分组查询得到整个时间段的数据
+     * @param beginTime
+     * @param endTime
+     * @param includeArchive 是否同时统计归档表
+     * @return
+     */
+    List<DailyBusinessDTO> getDailyBusinessData(LocalDateTime beginTime, LocalDateTime endTime, boolean includeArchive);
+
+    /**
+     * 流式查询订单及订单明细，用于导出
+     * 每个元素是一个订单，订单明细在 orderDetailList 中；遍历期间需要持有同一个 SqlSession
+     * @param ordersPageQueryDTO
+     * @return
+     */
+    Cursor<OrderVO> exportCursor(OrdersPageQueryDTO ordersPageQueryDTO);
+
+    /**
+     * 流式查询已归档的订单及订单明细，用于导出
+     * @param ordersPageQueryDTO
+     * @return
+     */
+    Cursor<OrderVO> exportArchivedCursor(OrdersPageQueryDTO ordersPageQueryDTO);
+
+    /**
+     * 按订单id顺序流式查询订单号和手机号，用于加载订单搜索索引
+     * @return
+     */
+    Cursor<Orders> searchIndexCursor();
+
+    /**
+     * 流式查询已归档订单的订单号和手机号，用于加载订单搜索索引
+     * @return
+     */
+    Cursor<Orders> searchIndexArchivedCursor();
+
+    /**
+     * 查询id大于afterId的订单号和手机号，用于增量同步订单搜索索引
+     * @param afterId
+     * @param limit
+     * @return
+     */
+    @Select("select id, number, phone, order_time from orders where id > #{afterId} order by id limit #{limit}")
+    List<Orders> getSearchIndexBatch(long afterId, int limit);
 }
@@ -43,6 +43,13 @@ public interface SetmealDishMapper {
     @Delete("delete from setmeal_dish where setmeal_id = #{setmealId}")
     void deleteBySetmealId(Long setmealId);
 
+    /**
+     * 根据套餐id集合批量删除套餐和菜品的关联关系
+     *
+     * @param setmealIds
+     */
+    void deleteBySetmealIds(List<Long> setmealIds);
+
     /**
      * 根据套餐id查询套餐和菜品的关联关系
      *
@@ -12,6 +12,7 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -65,6 +66,27 @@ public interface SetmealMapper {
     @Delete("delete from setmeal where id = #{id}")
     void deleteById(Long setmealId);
 
+    /**
+     * 根据id集合批量删除套餐
+     * @param ids
+     */
+    void deleteByIds(List<Long> ids);
+
+    /**
+     * 统计id集合中指定状态的套餐数量
+     * @param ids
+     * @param status
+     * @return
+     */
+    Integer countByIdsAndStatus(List<Long> ids, Integer status);
+
+    /**
+     * 根据id集合查询套餐
+     * @param ids
+     * @return
+     */
+    List<Setmeal> getByIds(Collection<Long> ids);
+
 
 
     /**
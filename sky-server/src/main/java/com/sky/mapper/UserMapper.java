@@ -1,9 +1,12 @@
 package com.sky.mapper;
 
+import com.sky.dto.DailyBusinessDTO;
 import com.sky.entity.User;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 @Mapper
@@ -15,8 +18,23 @@ public interface UserMapper {
 
     void insert(User user);
 
+    /**
+     * 插入用户，openid 已存在时不插入（依赖 openid 上的唯一索引）
+     * @param user
+     * @return 插入成功返回1，openid 已存在返回0
+     */
+    int insertIgnoreDuplicate(User user);
+
     @Select("select * from user where id = #{id}")
     User getById(Long userId);
 
     Integer countByMap(Map<String, Object> map);
+
+    /**
+     * 按天统计指定时间段内的新增用户数，结果只填充 date 和 newUsers
+     * @param beginTime
+     * @param endTime
+     * @return
+     */
+    List<DailyBusinessDTO> countNewUsersByDay(LocalDateTime beginTime, LocalDateTime endTime);
 }
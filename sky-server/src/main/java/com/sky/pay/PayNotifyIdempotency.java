@@ -0,0 +1,93 @@
+package com.sky.pay;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支付回调幂等处理
+ * 微信支付在没有收到成功应答时会在约24小时内多次重发同一个通知，
+ * 每个通知（通知id / 微信支付交易号）只允许被处理一次，重复的通知直接应答成功。
+ * 本地使用有界的最近处理记录挡住同一节点上的重复通知，Redis 记录保证多节点之间也只处理一次。
+ */
+@Component
+@Slf4j
+public class PayNotifyIdempotency {
+
+    private static final String KEY = "pay:notify:";
+
+    // 本地最多保留的记录数
+    private static final int LOCAL_CAPACITY = 10000;
+
+    // Redis 记录保留时间，覆盖微信支付的重发周期
+    private static final long TTL_HOURS = 48;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    // 最近处理过的通知，超过容量时淘汰最早的记录
+    private final Map<String, Boolean> local = Collections.synchronizedMap(
+            new LinkedHashMap<String, Boolean>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > LOCAL_CAPACITY;
+                }
+            });
+
+    /**
+     * 抢占通知的处理权
+     * @param key 通知id或微信支付交易号
+     * @return true表示第一次处理；false表示重复通知，应直接应答成功
+     */
+    public boolean tryClaim(String key) {
+        if (key == null) {
+            // 没有唯一标识的通知无法去重，照常处理
+            return true;
+        }
+        if (local.putIfAbsent(key, Boolean.TRUE) != null) {
+            log.info("重复的支付通知：{}", key);
+            return false;
+        }
+        Boolean first;
+        try {
+            first = stringRedisTemplate.opsForValue().setIfAbsent(KEY + key, "1", TTL_HOURS, TimeUnit.HOURS);
+        } catch (RuntimeException e) {
+            // Redis 不可用时撤销本地记录，否则微信的重发会被当作重复通知而丢失
+            local.remove(key);
+            throw e;
+        }
+        if (first == null) {
+            // 在管道或事务中执行时没有结果，无法判断是否抢占成功
+            local.remove(key);
+            throw new IllegalStateException("支付通知去重失败：" + key);
+        }
+        if (!first) {
+            log.info("支付通知已由其它节点处理：{}", key);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 处理失败时释放处理权，让微信支付的下一次重发可以重新处理
+     * @param key
+     */
+    public void release(String key) {
+        if (key == null) {
+            return;
+        }
+        local.remove(key);
+        try {
+            stringRedisTemplate.delete(KEY + key);
+        } catch (RuntimeException e) {
+            // 删除失败时 Redis 记录到期后才能重新处理
+            log.error("释放支付通知处理权失败：{}", key, e);
+        }
+    }
+}
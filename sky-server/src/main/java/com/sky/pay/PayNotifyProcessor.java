@@ -0,0 +1,106 @@
+package com.sky.pay;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.properties.WeChatProperties;
+import com.sky.service.OrderService;
+import com.wechat.pay.contrib.apache.httpclient.util.AesUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 支付成功回调的业务处理：解密、按微信支付交易号去重、批量修改订单状态
+ */
+@Component
+@Slf4j
+public class PayNotifyProcessor {
+
+    @Autowired
+    private WeChatProperties weChatProperties;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private PayNotifyIdempotency payNotifyIdempotency;
+
+    /**
+     * 批量处理支付成功回调
+     * @param notifications 回调标识 -> 回调原文
+     * @return 处理失败、需要重试的回调标识
+     */
+    public <K> Set<K> process(Map<K, String> notifications) {
+        Set<K> failed = new HashSet<>();
+        Map<K, String> outTradeNos = new LinkedHashMap<>();
+        Map<K, String> transactionIds = new LinkedHashMap<>();
+
+        for (Map.Entry<K, String> entry : notifications.entrySet()) {
+            String outTradeNo;
+            String transactionId;
+            try {
+                //数据解密
+                JSONObject jsonObject = JSON.parseObject(decryptData(entry.getValue()));
+                outTradeNo = jsonObject.getString("out_trade_no");//商户平台订单号
+                transactionId = jsonObject.getString("transaction_id");//微信支付交易号
+                log.info("商户平台订单号：{}，微信支付交易号：{}", outTradeNo, transactionId);
+            } catch (Exception e) {
+                log.error("支付回调解密失败：{}", entry.getKey(), e);
+                failed.add(entry.getKey());
+                continue;
+            }
+
+            try {
+                //解密成功后再抢占，同一笔交易只修改一次订单、推送一次来单提醒
+                if (payNotifyIdempotency.tryClaim(transactionId)) {
+                    outTradeNos.put(entry.getKey(), outTradeNo);
+                    transactionIds.put(entry.getKey(), transactionId);
+                }
+            } catch (Exception e) {
+                log.error("支付回调去重失败：{}", entry.getKey(), e);
+                payNotifyIdempotency.release(transactionId);
+                failed.add(entry.getKey());
+            }
+        }
+
+        if (!outTradeNos.isEmpty()) {
+            try {
+                //业务处理，修改订单状态、来单提醒
+                orderService.paySuccessBatch(new ArrayList<>(outTradeNos.values()));
+            } catch (Exception e) {
+                log.error("支付回调处理失败：{}", outTradeNos.values(), e);
+                transactionIds.values().forEach(payNotifyIdempotency::release);
+                failed.addAll(outTradeNos.keySet());
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * 数据解密
+     *
+     * @param body
+     * @return
+     * @throws Exception
+     */
+    private String decryptData(String body) throws Exception {
+        JSONObject resultObject = JSON.parseObject(body);
+        JSONObject resource = resultObject.getJSONObject("resource");
+        String ciphertext = resource.getString("ciphertext");
+        String nonce = resource.getString("nonce");
+        String associatedData = resource.getString("associated_data");
+
+        AesUtil aesUtil = new AesUtil(weChatProperties.getApiV3Key().getBytes(StandardCharsets.UTF_8));
+        //密文解密
+        String plainText = aesUtil.decryptToString(associatedData.getBytes(StandardCharsets.UTF_8),
+                nonce.getBytes(StandardCharsets.UTF_8),
+                ciphertext);
+
+        return plainText;
+    }
+}
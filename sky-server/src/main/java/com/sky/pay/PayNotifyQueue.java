@@ -0,0 +1,236 @@
+package com.sky.pay;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.context.BaseContext;
+import com.sky.properties.PayNotifyProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 支付回调队列
+ * 回调原文先落盘到 spool 目录再应答微信，由后台线程批量解密并修改订单状态，
+ * 接口耗时不受解密、数据库和 WebSocket 推送的影响；处理成功后删除文件，
+ * 应用重启时会重新加载目录中尚未处理的回调。
+ * 超过最大次数的回调移入失败目录，同时释放通知id的处理权，让微信的重发可以重新处理。
+ */
+@Component
+@Slf4j
+public class PayNotifyQueue implements InitializingBean, DisposableBean {
+
+    private static final String SUFFIX = ".json";
+
+    // 重试间隔上限（秒）
+    private static final long MAX_BACKOFF_SECONDS = 300;
+
+    @Autowired
+    private PayNotifyProperties payNotifyProperties;
+    @Autowired
+    private PayNotifyProcessor payNotifyProcessor;
+    @Autowired
+    private PayNotifyIdempotency payNotifyIdempotency;
+
+    private final BlockingQueue<Path> queue = new LinkedBlockingQueue<>();
+
+    // 回调文件 -> 已失败次数
+    private final Map<Path, Integer> attempts = new ConcurrentHashMap<>();
+
+    // 移入失败目录的回调数量，大于0时需要人工核对订单的支付状态
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private Path spoolDir;
+
+    private Path failedDir;
+
+    private ExecutorService workers;
+
+    private ScheduledExecutorService retryExecutor;
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        spoolDir = Paths.get(payNotifyProperties.getSpoolDir());
+        failedDir = spoolDir.resolve("failed");
+        Files.createDirectories(failedDir);
+
+        //加载上次未处理完的回调
+        List<Path> pending = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(spoolDir, "*" + SUFFIX)) {
+            stream.forEach(pending::add);
+        }
+        pending.sort(null);
+        queue.addAll(pending);
+        if (!pending.isEmpty()) {
+            log.info("加载未处理的支付回调{}个", pending.size());
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(payNotifyProperties.getWorkers(), r -> {
+            Thread thread = new Thread(r, "pay-notify-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < payNotifyProperties.getWorkers(); i++) {
+            workers.execute(this::work);
+        }
+        retryExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "pay-notify-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void destroy() {
+        workers.shutdownNow();
+        retryExecutor.shutdownNow();
+    }
+
+    /**
+     * 回调原文落盘并加入处理队列，方法返回后即可应答微信
+     * @param body 回调原文
+     * @throws IOException 落盘失败
+     */
+    public void enqueue(String body) throws IOException {
+        String name = System.currentTimeMillis() + "-" + UUID.randomUUID();
+        Path tmp = spoolDir.resolve(name + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8)));
+            channel.force(true);
+        }
+        //写完之后再改名，重启加载时不会读到写了一半的文件
+        Path file = Files.move(tmp, spoolDir.resolve(name + SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+        queue.offer(file);
+    }
+
+    /**
+     * 队列中等待处理的回调数量
+     * @return
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * 启动以来移入失败目录的回调数量
+     * @return
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    private void work() {
+        int batchSize = payNotifyProperties.getBatchSize();
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Path> batch = new ArrayList<>(batchSize);
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+
+            try {
+                BaseContext.runAsSystem(() -> process(batch));
+            } catch (Exception e) {
+                log.error("支付回调批量处理异常", e);
+                batch.forEach(this::retry);
+            }
+        }
+    }
+
+    private void process(List<Path> batch) {
+        Map<Path, String> notifications = new LinkedHashMap<>();
+        for (Path file : batch) {
+            try {
+                notifications.put(file, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                log.error("读取支付回调失败：{}", file, e);
+                retry(file);
+            }
+        }
+
+        Set<Path> failed = payNotifyProcessor.process(notifications);
+        for (Path file : notifications.keySet()) {
+            if (failed.contains(file)) {
+                retry(file);
+            } else {
+                attempts.remove(file);
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("删除支付回调文件失败：{}", file, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 读取回调文件中的通知id
+     * @param file
+     * @return 读取或解析失败时返回 null
+     */
+    private String readNotifyId(Path file) {
+        try {
+            JSONObject notify = JSON.parseObject(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            return notify == null ? null : notify.getString("id");
+        } catch (Exception e) {
+            log.warn("读取支付回调通知id失败：{}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * 按指数退避重新加入队列，超过最大次数后移入失败目录
+     * @param file
+     */
+    private void retry(Path file) {
+        int count = attempts.merge(file, 1, Integer::sum);
+        if (count >= payNotifyProperties.getMaxAttempts()) {
+            attempts.remove(file);
+            String notifyId = readNotifyId(file);
+            try {
+                Files.move(file, failedDir.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                log.error("移动支付回调文件失败：{}", file, e);
+            }
+            //控制器应答微信时已经抢占了通知id，释放后微信的重发不会被当作重复通知丢弃
+            payNotifyIdempotency.release(notifyId);
+            failedCount.incrementAndGet();
+            log.error("【告警】支付回调处理{}次仍然失败，已移入失败目录，请人工核对订单支付状态：{}，通知id：{}",
+                    count, file, notifyId);
+            return;
+        }
+        long delay = Math.min(1L << Math.min(count, 16), MAX_BACKOFF_SECONDS);
+        retryExecutor.schedule(() -> queue.offer(file), delay, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,178 @@
+package com.sky.pay;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.context.BaseContext;
+import com.sky.entity.Orders;
+import com.sky.lock.JobLeader;
+import com.sky.mapper.OrderMapper;
+import com.sky.utils.WeChatPayUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 退款队列
+ * 取消、拒单时先把订单的退款状态改为“退款中”，再把退款任务交给后台线程调用微信退款接口，
+ * 接口不再同步等待微信的响应；失败按指数退避重试，超过最大次数后标记为“退款失败”。
+ * 退款状态保存在订单上，应用重启或队列已满时由定时任务重新加入队列。
+ */
+@Component
+@Slf4j
+public class RefundQueue implements InitializingBean, DisposableBean {
+
+    // 调用退款接口的线程数
+    private static final int WORKERS = 4;
+
+    // 等待处理的退款任务上限，超过后由定时任务补偿
+    private static final int QUEUE_CAPACITY = 1000;
+
+    // 最大尝试次数
+    private static final int MAX_ATTEMPTS = 8;
+
+    // 重试间隔上限（秒）
+    private static final long MAX_BACKOFF_SECONDS = 300;
+
+    // 退款金额，与支付时一致
+    private static final BigDecimal REFUND_AMOUNT = new BigDecimal("0.01");
+
+    @Autowired
+    private WeChatPayUtil weChatPayUtil;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private JobLeader jobLeader;
+
+    // 本节点正在处理（排队、执行或等待重试）的订单id，避免定时补偿时重复加入
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    private ThreadPoolExecutor workers;
+
+    private ScheduledExecutorService retryExecutor;
+
+    @Override
+    public void afterPropertiesSet() {
+        AtomicInteger counter = new AtomicInteger();
+        workers = new ThreadPoolExecutor(WORKERS, WORKERS, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+            Thread thread = new Thread(r, "refund-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        retryExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "refund-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void destroy() {
+        workers.shutdownNow();
+        retryExecutor.shutdownNow();
+    }
+
+    /**
+     * 加入退款队列，订单的退款状态需要已经修改为“退款中”
+     * 在事务中调用时，事务提交后才加入队列，事务回滚则不退款
+     *
+     * @param orders 需要退款的订单，至少包含id和订单号
+     */
+    public void enqueue(Orders orders) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(orders);
+                }
+            });
+        } else {
+            submit(orders);
+        }
+    }
+
+    /**
+     * 队列中等待处理的退款数量
+     * @return
+     */
+    public int size() {
+        return workers.getQueue().size();
+    }
+
+    /**
+     * 定时把“退款中”但不在本节点队列中的订单重新加入队列（应用重启、队列已满等情况）
+     * 退款单号与订单号一致，微信按退款单号去重，其它节点正在处理的订单被重复提交也不会重复退款
+     */
+    @Scheduled(cron = "0 0/5 * * * ?")
+    public void recover() {
+        jobLeader.runIfLeader("recoverRefunds", () -> {
+            for (Orders orders : orderMapper.getByRefundStatus(Orders.REFUNDING)) {
+                submit(orders);
+            }
+        });
+    }
+
+    private void submit(Orders orders) {
+        if (!inFlight.add(orders.getId())) {
+            return;
+        }
+        execute(orders, 0);
+    }
+
+    private void execute(Orders orders, int attempt) {
+        try {
+            workers.execute(BaseContext.wrap(() -> refund(orders, attempt)));
+        } catch (RejectedExecutionException e) {
+            // 订单仍处于“退款中”，由定时任务重新加入
+            inFlight.remove(orders.getId());
+            log.warn("退款队列已满，订单{}等待重新加入", orders.getNumber());
+        }
+    }
+
+    private void refund(Orders orders, int attempt) {
+        try {
+            //调用微信支付的退款接口，退款单号与订单号一致
+            String result = weChatPayUtil.refund(
+                    orders.getNumber(),
+                    orders.getNumber(),
+                    REFUND_AMOUNT,
+                    REFUND_AMOUNT
+            );
+            JSONObject jsonObject = JSON.parseObject(result);
+            if (jsonObject == null || jsonObject.getString("refund_id") == null) {
+                throw new IllegalStateException("退款接口返回错误：" + result);
+            }
+
+            orderMapper.updateRefundStatus(orders.getId(), Orders.REFUNDING, Orders.REFUND_SUCCESS, Orders.REFUND);
+            inFlight.remove(orders.getId());
+            log.info("订单{}申请退款成功：{}", orders.getNumber(), result);
+        } catch (Exception e) {
+            int next = attempt + 1;
+            if (next >= MAX_ATTEMPTS) {
+                inFlight.remove(orders.getId());
+                orderMapper.updateRefundStatus(orders.getId(), Orders.REFUNDING, Orders.REFUND_FAILED, null);
+                log.error("订单{}退款{}次仍然失败，已标记为退款失败", orders.getNumber(), next, e);
+                return;
+            }
+            long delay = Math.min(1L << next, MAX_BACKOFF_SECONDS);
+            log.warn("订单{}第{}次退款失败，{}秒后重试", orders.getNumber(), next, delay, e);
+            retryExecutor.schedule(BaseContext.wrap(() -> execute(orders, next)), delay, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.sky.pricing;
+
+import com.sky.constant.MessageConstant;
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.ShoppingCartBusinessException;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.properties.PricingProperties;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 下单计价
+ * 按菜品、套餐的当前售价重新计算订单金额，不信任客户端提交的金额和购物车中保存的价格；
+ * 售价从数据库批量查询（菜品、套餐各一次），之后一次遍历购物车完成计算，金额统一使用 long 类型的分。
+ */
+@Component
+public class PricingEngine implements InitializingBean {
+
+    // 餐具数量状态：按餐量提供
+    private static final int TABLEWARE_BY_ITEMS = 1;
+
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+    @Autowired
+    private PricingProperties pricingProperties;
+
+    /**
+     * 订单表的打包费（pack_amount）以元为单位保存整数，打包费不是整元时无法准确记录，启动时拒绝
+     */
+    @Override
+    public void afterPropertiesSet() {
+        long packFeePerItem = pricingProperties.getPackFeePerItem();
+        if (packFeePerItem < 0 || packFeePerItem % 100 != 0) {
+            throw new IllegalStateException("sky.pricing.pack-fee-per-item 必须是整元（100分的整数倍）：" + packFeePerItem);
+        }
+    }
+
+    /**
+     * 计算购物车的订单金额
+     * @param shoppingCartList 购物车
+     * @param tablewareStatus  餐具数量状态  1按餐量提供  0选择具体数量
+     * @param tablewareNumber  选择的餐具数量
+     * @return 计价结果
+     * @throws ShoppingCartBusinessException 购物车中有已删除或停售的商品
+     */
+    public PricingResult price(List<ShoppingCart> shoppingCartList, Integer tablewareStatus, Integer tablewareNumber) {
+        Map<Long, Long> dishPrices = new HashMap<>();
+        Map<Long, Long> setmealPrices = new HashMap<>();
+        loadPrices(shoppingCartList, dishPrices, setmealPrices);
+
+        List<PricingResult.Line> lines = new ArrayList<>(shoppingCartList.size());
+        long subtotal = 0;
+        int itemCount = 0;
+        for (ShoppingCart shoppingCart : shoppingCartList) {
+            Long unitPrice = shoppingCart.getDishId() != null
+                    ? dishPrices.get(shoppingCart.getDishId())
+                    : setmealPrices.get(shoppingCart.getSetmealId());
+            if (unitPrice == null) {
+                throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_ITEM_UNAVAILABLE);
+            }
+            int number = shoppingCart.getNumber();
+            PricingResult.Line line = new PricingResult.Line(shoppingCart, unitPrice, number);
+            lines.add(line);
+            subtotal += line.getAmount();
+            itemCount += number;
+        }
+
+        long packFee = pricingProperties.getPackFeePerItem() * itemCount;
+        int tableware = tablewareStatus != null && tablewareStatus == TABLEWARE_BY_ITEMS
+                ? itemCount
+                : (tablewareNumber == null ? 0 : tablewareNumber);
+        return new PricingResult(lines, subtotal, packFee, pricingProperties.getDeliveryFee(), itemCount, tableware);
+    }
+
+    /**
+     * 批量查询购物车中起售的菜品和套餐的售价（分）
+     */
+    private void loadPrices(List<ShoppingCart> shoppingCartList, Map<Long, Long> dishPrices, Map<Long, Long> setmealPrices) {
+        Set<Long> dishIds = new HashSet<>();
+        Set<Long> setmealIds = new HashSet<>();
+        for (ShoppingCart shoppingCart : shoppingCartList) {
+            if (shoppingCart.getDishId() != null) {
+                dishIds.add(shoppingCart.getDishId());
+            } else if (shoppingCart.getSetmealId() != null) {
+                setmealIds.add(shoppingCart.getSetmealId());
+            }
+        }
+
+        if (!dishIds.isEmpty()) {
+            for (Dish dish : dishMapper.getByIds(dishIds)) {
+                if (StatusConstant.ENABLE.equals(dish.getStatus())) {
+                    dishPrices.put(dish.getId(), toCents(dish.getPrice()));
+                }
+            }
+        }
+        if (!setmealIds.isEmpty()) {
+            for (Setmeal setmeal : setmealMapper.getByIds(setmealIds)) {
+                if (StatusConstant.ENABLE.equals(setmeal.getStatus())) {
+                    setmealPrices.put(setmeal.getId(), toCents(setmeal.getPrice()));
+                }
+            }
+        }
+    }
+
+    private static long toCents(BigDecimal yuan) {
+        return yuan.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
@@ -0,0 +1,82 @@
+package com.sky.pricing;
+
+import com.sky.entity.ShoppingCart;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * 计价结果，金额单位为分；需要写入订单时再通过 toYuan 转换为元
+ */
+@Getter
+public class PricingResult {
+
+    // 每一行购物车的计价明细，顺序与购物车一致
+    private final List<Line> lines;
+
+    // 商品金额合计
+    private final long subtotal;
+
+    // 打包费
+    private final long packFee;
+
+    // 配送费
+    private final long deliveryFee;
+
+    // 商品份数合计
+    private final int itemCount;
+
+    // 餐具数量
+    private final int tablewareNumber;
+
+    PricingResult(List<Line> lines, long subtotal, long packFee, long deliveryFee, int itemCount, int tablewareNumber) {
+        this.lines = lines;
+        this.subtotal = subtotal;
+        this.packFee = packFee;
+        this.deliveryFee = deliveryFee;
+        this.itemCount = itemCount;
+        this.tablewareNumber = tablewareNumber;
+    }
+
+    /**
+     * 订单总金额 = 商品金额 + 打包费 + 配送费
+     * @return
+     */
+    public long getTotal() {
+        return subtotal + packFee + deliveryFee;
+    }
+
+    /**
+     * 分转换为元
+     * @param cents
+     * @return
+     */
+    public static BigDecimal toYuan(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * 一行购物车的计价明细
+     */
+    @Getter
+    public static class Line {
+
+        private final ShoppingCart shoppingCart;
+
+        // 当前售价（分）
+        private final long unitPrice;
+
+        private final int number;
+
+        // 小计 = 售价 * 份数
+        private final long amount;
+
+        Line(ShoppingCart shoppingCart, long unitPrice, int number) {
+            this.shoppingCart = shoppingCart;
+            this.unitPrice = unitPrice;
+            this.number = number;
+            this.amount = unitPrice * number;
+        }
+    }
+}
@@ -0,0 +1,523 @@
+package com.sky.search;
+
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.utils.PinyinUtil;
+import com.sky.vo.SearchItemVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * 菜品、套餐的名称搜索索引
+ * 名称和描述按单字、相邻两字切分，名称另外按拼音首字母切分（"宫保鸡丁"可以用"gbjd"、"bj"搜到），
+ * 每个片段对应一个文档编号递增的倒排列表，查询时对条件的所有片段求交集。
+ * 菜品、套餐被修改后调用 dishChanged / setmealChanged：本节点立即从数据库重新加载这些条目，
+ * 事务提交后把变更写入 Redis 的变更记录，各节点每秒拉取一次变更记录并重新加载对应的条目。
+ */
+@Component
+@Slf4j
+public class CatalogSearchIndex implements InitializingBean {
+
+    public static final String DISH = "dish";
+
+    public static final String SETMEAL = "setmeal";
+
+    private static final String CHANGED_KEY = "catalog:changed";
+
+    // 变更记录保留时间（毫秒），超过后清理
+    private static final long CHANGE_RETENTION_MILLIS = 60_000;
+
+    // 拉取变更记录时往前多取的时间（毫秒），容忍节点之间的时钟偏差
+    private static final long CLOCK_SKEW_MILLIS = 2_000;
+
+    // 片段前缀：名称、描述、拼音首字母的片段互不混用
+    private static final String NAME = "n:";
+    private static final String DESCRIPTION = "d:";
+    private static final String PINYIN = "p:";
+
+    // 后台分页查询使用索引时候选id的上限，超过时按名称模糊查询
+    private static final int MAX_CANDIDATES = 1000;
+
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 文档编号 -> 条目，条目被修改或删除后原编号置为 null，重新加入时分配新编号
+    private Doc[] docs = new Doc[1024];
+
+    private int docCount;
+
+    // 已置为 null 的编号数量，超过一半时压缩
+    private int removedCount;
+
+    // 条目（类型:id）-> 当前的文档编号
+    private Map<String, Integer> numbers = new HashMap<>();
+
+    // 片段 -> 倒排列表
+    private Map<String, IntList> postings = new HashMap<>();
+
+    private volatile boolean ready;
+
+    // 拉取变更记录失败后可能漏掉变更，下一次同步时全量重建
+    private volatile boolean reloadRequired;
+
+    // 上一次拉取变更记录的时间
+    private long lastSync = System.currentTimeMillis();
+
+    @Override
+    public void afterPropertiesSet() {
+        try {
+            reload();
+        } catch (Exception e) {
+            reloadRequired = true;
+            log.error("菜品套餐搜索索引加载失败，稍后重试", e);
+        }
+    }
+
+    /**
+     * C端搜索起售中的菜品和套餐，匹配名称、描述或名称的拼音首字母
+     * @param keyword
+     * @param limit 最多返回的条数
+     * @return 按匹配程度排序的结果
+     */
+    public List<SearchItemVO> search(String keyword, int limit) {
+        String query = normalize(keyword);
+        if (!ready || query.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Doc> matched = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int number : match(query, true)) {
+                Doc doc = docs[number];
+                if (doc != null && StatusConstant.ENABLE.equals(doc.status)) {
+                    matched.add(doc);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        //名称包含搜索词的排在最前，其次是名称或拼音首字母匹配，最后是只有描述匹配；同等匹配时名称短的在前
+        return matched.stream()
+                .sorted(Comparator.comparingInt((Doc doc) -> -score(doc, query))
+                        .thenComparingInt(doc -> doc.name.length()))
+                .limit(limit)
+                .map(Doc::toVO)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 后台分页查询按名称搜索，只匹配名称和名称的拼音首字母，不区分起售停售
+     * 片段求交集可能匹配到片段不相邻的名称，这里再按名称或拼音首字母包含搜索词过滤，结果与模糊查询一致
+     * @param type DISH 或 SETMEAL
+     * @param keyword
+     * @return 候选id；索引未就绪或候选太多时返回 null，调用方按名称模糊查询
+     */
+    public List<Long> searchIds(String type, String keyword) {
+        String query = normalize(keyword);
+        if (!ready || query.isEmpty()) {
+            return null;
+        }
+        List<Long> ids = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int number : match(query, false)) {
+                Doc doc = docs[number];
+                if (doc != null && doc.type.equals(type)
+                        && (normalize(doc.name).contains(query) || doc.initials.contains(query))) {
+                    ids.add(doc.id);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return ids.size() > MAX_CANDIDATES ? null : ids;
+    }
+
+    /**
+     * 菜品被新增、修改或删除后调用
+     * @param ids
+     */
+    public void dishChanged(Collection<Long> ids) {
+        changed(DISH, ids);
+    }
+
+    /**
+     * 套餐被新增、修改或删除后调用
+     * @param ids
+     */
+    public void setmealChanged(Collection<Long> ids) {
+        changed(SETMEAL, ids);
+    }
+
+    /**
+     * 拉取所有节点（包括本节点）的变更记录，重新加载对应的条目
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void sync() {
+        long now = System.currentTimeMillis();
+        try {
+            if (reloadRequired) {
+                reload();
+                reloadRequired = false;
+            } else {
+                Set<String> changed = stringRedisTemplate.opsForZSet()
+                        .rangeByScore(CHANGED_KEY, lastSync - CLOCK_SKEW_MILLIS, Double.POSITIVE_INFINITY);
+                if (changed != null && !changed.isEmpty()) {
+                    Map<String, List<Long>> idsByType = changed.stream().collect(Collectors.groupingBy(
+                            key -> key.substring(0, key.indexOf(':')),
+                            Collectors.mapping(key -> Long.valueOf(key.substring(key.indexOf(':') + 1)),
+                                    Collectors.toList())));
+                    idsByType.forEach(this::refresh);
+                }
+                stringRedisTemplate.opsForZSet().removeRangeByScore(CHANGED_KEY, 0, now - CHANGE_RETENTION_MILLIS);
+            }
+            lastSync = now;
+        } catch (Exception e) {
+            reloadRequired = true;
+            log.error("同步菜品套餐搜索索引失败，恢复后全量重建", e);
+        }
+    }
+
+    private void changed(String type, Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refreshAndPublish(type, ids);
+                }
+            });
+        } else {
+            refreshAndPublish(type, ids);
+        }
+    }
+
+    private void refreshAndPublish(String type, Collection<Long> ids) {
+        try {
+            refresh(type, ids);
+        } catch (Exception e) {
+            // 本节点稍后通过变更记录重新加载
+            log.error("刷新菜品套餐搜索索引失败：{} {}", type, ids, e);
+        }
+        try {
+            double now = System.currentTimeMillis();
+            for (Long id : ids) {
+                stringRedisTemplate.opsForZSet().add(CHANGED_KEY, type + ":" + id, now);
+            }
+        } catch (Exception e) {
+            log.error("记录菜品套餐变更失败：{} {}", type, ids, e);
+        }
+    }
+
+    /**
+     * 从数据库重新加载指定的条目，数据库中已删除的条目从索引中移除
+     * @param type
+     * @param ids
+     */
+    private void refresh(String type, Collection<Long> ids) {
+        List<Doc> loaded = DISH.equals(type)
+                ? dishMapper.getByIds(ids).stream().map(Doc::of).collect(Collectors.toList())
+                : setmealMapper.getByIds(ids).stream().map(Doc::of).collect(Collectors.toList());
+
+        lock.writeLock().lock();
+        try {
+            for (Long id : ids) {
+                remove(type + ":" + id);
+            }
+            loaded.forEach(this::add);
+            if (removedCount > 1024 && removedCount > docCount / 2) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 从数据库全量重建索引
+     */
+    private void reload() {
+        List<Doc> loaded = new ArrayList<>();
+        dishMapper.list(new Dish()).forEach(dish -> loaded.add(Doc.of(dish)));
+        setmealMapper.list(new Setmeal()).forEach(setmeal -> loaded.add(Doc.of(setmeal)));
+
+        lock.writeLock().lock();
+        try {
+            rebuild(loaded);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ready = true;
+        log.info("菜品套餐搜索索引加载完成：{} 条", loaded.size());
+    }
+
+    /**
+     * 去掉已置为 null 的编号，用现有条目重建倒排列表
+     */
+    private void compact() {
+        List<Doc> live = new ArrayList<>(docCount - removedCount);
+        for (int i = 0; i < docCount; i++) {
+            if (docs[i] != null) {
+                live.add(docs[i]);
+            }
+        }
+        rebuild(live);
+    }
+
+    private void rebuild(List<Doc> list) {
+        docs = new Doc[Math.max(1024, list.size() + (list.size() >> 1))];
+        docCount = 0;
+        removedCount = 0;
+        numbers = new HashMap<>();
+        postings = new HashMap<>();
+        list.forEach(this::add);
+    }
+
+    private void add(Doc doc) {
+        if (docCount == docs.length) {
+            docs = Arrays.copyOf(docs, docs.length + (docs.length >> 1));
+        }
+        int number = docCount++;
+        docs[number] = doc;
+        numbers.put(doc.key(), number);
+
+        Set<String> tokens = new LinkedHashSet<>();
+        addTokens(tokens, NAME, normalize(doc.name), false);
+        addTokens(tokens, DESCRIPTION, normalize(doc.description), false);
+        addTokens(tokens, PINYIN, doc.initials, false);
+        for (String token : tokens) {
+            postings.computeIfAbsent(token, k -> new IntList()).add(number);
+        }
+    }
+
+    private void remove(String key) {
+        Integer number = numbers.remove(key);
+        if (number != null) {
+            docs[number] = null;
+            removedCount++;
+        }
+    }
+
+    /**
+     * 查找匹配的文档编号，调用方持有读锁
+     * @param query 规范化后的搜索词
+     * @param withDescription 是否匹配描述
+     * @return
+     */
+    private Set<Integer> match(String query, boolean withDescription) {
+        Set<Integer> result = new LinkedHashSet<>();
+        addAll(result, intersect(NAME, query));
+        if (withDescription) {
+            addAll(result, intersect(DESCRIPTION, query));
+        }
+        //只包含字母时同时按拼音首字母匹配
+        if (query.chars().allMatch(c -> c >= 'a' && c <= 'z')) {
+            addAll(result, intersect(PINYIN, query));
+        }
+        return result;
+    }
+
+    private int[] intersect(String prefix, String query) {
+        Set<String> tokens = new LinkedHashSet<>();
+        addTokens(tokens, prefix, query, true);
+        if (tokens.isEmpty()) {
+            return new int[0];
+        }
+        List<IntList> lists = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            IntList list = postings.get(token);
+            if (list == null) {
+                return new int[0];
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+
+        int[] result = Arrays.copyOf(lists.get(0).data, lists.get(0).size);
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = lists.get(i).retain(result);
+        }
+        return result;
+    }
+
+    private static void addAll(Set<Integer> result, int[] numbers) {
+        for (int number : numbers) {
+            result.add(number);
+        }
+    }
+
+    /**
+     * 切分片段：连续的汉字、字母、数字为一段，索引时取每段的单字和相邻两字；
+     * 查询时长度为1的段取单字，其它段取相邻两字
+     * @param tokens
+     * @param prefix
+     * @param text 规范化后的文本
+     * @param query 是否为查询条件
+     */
+    private static void addTokens(Set<String> tokens, String prefix, String text, boolean query) {
+        int start = 0;
+        while (start < text.length()) {
+            while (start < text.length() && !Character.isLetterOrDigit(text.charAt(start))) {
+                start++;
+            }
+            int end = start;
+            while (end < text.length() && Character.isLetterOrDigit(text.charAt(end))) {
+                end++;
+            }
+            for (int i = start; i < end; i++) {
+                if (!query || end - start == 1) {
+                    tokens.add(prefix + text.charAt(i));
+                }
+                if (i + 1 < end) {
+                    tokens.add(prefix + text.substring(i, i + 2));
+                }
+            }
+            start = end;
+        }
+    }
+
+    private static String normalize(String text) {
+        return StringUtils.hasText(text) ? text.trim().toLowerCase() : "";
+    }
+
+    private static int score(Doc doc, String query) {
+        if (normalize(doc.name).contains(query)) {
+            return 3;
+        }
+        if (doc.initials.contains(query)) {
+            return 2;
+        }
+        return 1;
+    }
+
+    /**
+     * 索引中的菜品或套餐，只保存搜索结果需要的字段
+     */
+    private static class Doc {
+
+        private String type;
+        private Long id;
+        private String name;
+        private String description;
+        private Long categoryId;
+        private BigDecimal price;
+        private String image;
+        private Integer status;
+        // 名称的拼音首字母
+        private String initials;
+
+        static Doc of(Dish dish) {
+            return of(DISH, dish.getId(), dish.getName(), dish.getDescription(), dish.getCategoryId(),
+                    dish.getPrice(), dish.getImage(), dish.getStatus());
+        }
+
+        static Doc of(Setmeal setmeal) {
+            return of(SETMEAL, setmeal.getId(), setmeal.getName(), setmeal.getDescription(), setmeal.getCategoryId(),
+                    setmeal.getPrice(), setmeal.getImage(), setmeal.getStatus());
+        }
+
+        private static Doc of(String type, Long id, String name, String description, Long categoryId,
+                              BigDecimal price, String image, Integer status) {
+            Doc doc = new Doc();
+            doc.type = type;
+            doc.id = id;
+            doc.name = name == null ? "" : name;
+            doc.description = description;
+            doc.categoryId = categoryId;
+            doc.price = price;
+            doc.image = image;
+            doc.status = status;
+            doc.initials = PinyinUtil.initials(doc.name);
+            return doc;
+        }
+
+        String key() {
+            return type + ":" + id;
+        }
+
+        SearchItemVO toVO() {
+            return SearchItemVO.builder()
+                    .type(type)
+                    .id(id)
+                    .name(name)
+                    .categoryId(categoryId)
+                    .price(price)
+                    .image(image)
+                    .description(description)
+                    .build();
+        }
+    }
+
+    /**
+     * 倒排列表：递增的文档编号
+     */
+    private static class IntList {
+
+        private int[] data = new int[4];
+
+        private int size;
+
+        void add(int number) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, data.length + (data.length >> 1) + 1);
+            }
+            data[size++] = number;
+        }
+
+        /**
+         * 保留 numbers 中同时出现在本列表中的编号
+         * @param numbers 递增的文档编号
+         * @return
+         */
+        int[] retain(int[] numbers) {
+            int[] result = new int[Math.min(numbers.length, size)];
+            int count = 0;
+            int i = 0;
+            for (int number : numbers) {
+                while (i < size && data[i] < number) {
+                    i++;
+                }
+                if (i == size) {
+                    break;
+                }
+                if (data[i] == number) {
+                    result[count++] = number;
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+    }
+}
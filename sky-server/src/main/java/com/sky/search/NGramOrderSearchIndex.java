@@ -0,0 +1,343 @@
+package com.sky.search;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderSearchProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 进程内的订单号、手机号 n-gram 索引
+ * 订单号和手机号分别按3个字符切分，每个片段对应一个按文档编号递增的倒排列表，列表用变长整数差值编码压缩；
+ * 查询时取条件中所有片段的倒排列表求交集，得到候选订单。
+ * 启动时在后台线程流式加载订单表和归档表，之后每秒按订单id增量同步新订单；订单号和手机号下单后不会修改，
+ * 被归档的订单id不变，仍然可以通过索引查到。
+ */
+@Component
+@ConditionalOnProperty(name = "sky.order-search.engine", havingValue = "embedded", matchIfMissing = true)
+@Slf4j
+public class NGramOrderSearchIndex implements OrderSearchIndex, InitializingBean, DisposableBean {
+
+    // 片段长度，短于该长度的条件无法使用索引
+    private static final int GRAM = 3;
+
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+    @Autowired
+    private OrderSearchProperties orderSearchProperties;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 文档编号 -> 订单id
+    private long[] orderIds = new long[1024];
+
+    private int docCount;
+
+    // 订单号片段 -> 倒排列表
+    private final Map<String, Postings> numberGrams = new HashMap<>();
+
+    // 手机号片段 -> 倒排列表
+    private final Map<String, Postings> phoneGrams = new HashMap<>();
+
+    // 订单表中已进入索引的最大订单id，由加载线程和 sync 在写锁内修改
+    private long indexedMaxId;
+
+    // 启动加载完成后才使用索引
+    private volatile boolean ready;
+
+    private ExecutorService loader;
+
+    @Override
+    public void afterPropertiesSet() {
+        loader = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "order-search-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        loader.execute(this::load);
+    }
+
+    @Override
+    public void destroy() {
+        loader.shutdownNow();
+    }
+
+    /**
+     * 查找候选订单
+     * @param number
+     * @param phone
+     * @return
+     */
+    @Override
+    public OrderSearchCandidates search(String number, String phone) {
+        if (!ready) {
+            return null;
+        }
+        boolean byNumber = StringUtils.hasLength(number) && number.length() >= GRAM;
+        boolean byPhone = StringUtils.hasLength(phone) && phone.length() >= GRAM;
+        if (!byNumber && !byPhone) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            int[] docs = null;
+            if (byNumber) {
+                docs = match(numberGrams, number, null);
+            }
+            if (byPhone) {
+                docs = match(phoneGrams, phone, docs);
+            }
+            if (docs.length > orderSearchProperties.getMaxCandidates()) {
+                return null;
+            }
+
+            //加载期间被归档的订单可能在订单表和归档表中各索引一次，这里去重
+            Set<Long> ids = new LinkedHashSet<>();
+            for (int doc : docs) {
+                ids.add(orderIds[doc]);
+            }
+            return new OrderSearchCandidates(new ArrayList<>(ids), indexedMaxId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 增量同步新订单，只同步下单超过 settleSeconds 的订单；遇到更新的订单就停止，下次再从这里继续
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void sync() {
+        if (!ready) {
+            return;
+        }
+        LocalDateTime settled = LocalDateTime.now().minusSeconds(orderSearchProperties.getSettleSeconds());
+        int batchSize = orderSearchProperties.getBatchSize();
+        try {
+            while (true) {
+                List<Orders> ordersList = orderMapper.getSearchIndexBatch(indexedMaxId, batchSize);
+                boolean reachedUnsettled = false;
+                lock.writeLock().lock();
+                try {
+                    for (Orders orders : ordersList) {
+                        if (orders.getOrderTime() != null && orders.getOrderTime().isAfter(settled)) {
+                            reachedUnsettled = true;
+                            break;
+                        }
+                        add(orders);
+                        indexedMaxId = orders.getId();
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                if (reachedUnsettled || ordersList.size() < batchSize) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("订单搜索索引同步失败", e);
+        }
+    }
+
+    /**
+     * 启动时加载全部订单
+     * 先加载订单表再加载归档表：加载期间被归档的订单至少出现在其中一次扫描中
+     */
+    private void load() {
+        long start = System.currentTimeMillis();
+        LocalDateTime settled = LocalDateTime.now().minusSeconds(orderSearchProperties.getSettleSeconds());
+        try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+            OrderMapper mapper = sqlSession.getMapper(OrderMapper.class);
+            try (Cursor<Orders> cursor = mapper.searchIndexCursor()) {
+                for (Orders orders : cursor) {
+                    if (orders.getOrderTime() != null && orders.getOrderTime().isAfter(settled)) {
+                        //之后的订单由 sync 增量加入
+                        break;
+                    }
+                    addLocked(orders);
+                    indexedMaxId = orders.getId();
+                }
+            }
+            try (Cursor<Orders> cursor = mapper.searchIndexArchivedCursor()) {
+                for (Orders orders : cursor) {
+                    addLocked(orders);
+                }
+            }
+        } catch (Exception e) {
+            log.error("订单搜索索引加载失败，订单搜索按 like 条件查询", e);
+            return;
+        }
+        ready = true;
+        log.info("订单搜索索引加载完成：{} 个订单，耗时 {} ms", docCount, System.currentTimeMillis() - start);
+    }
+
+    private void addLocked(Orders orders) {
+        lock.writeLock().lock();
+        try {
+            add(orders);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 把订单加入索引，调用方持有写锁
+     * @param orders
+     */
+    private void add(Orders orders) {
+        if (docCount == orderIds.length) {
+            orderIds = Arrays.copyOf(orderIds, orderIds.length + (orderIds.length >> 1));
+        }
+        int doc = docCount++;
+        orderIds[doc] = orders.getId();
+        addGrams(numberGrams, orders.getNumber(), doc);
+        addGrams(phoneGrams, orders.getPhone(), doc);
+    }
+
+    private void addGrams(Map<String, Postings> grams, String value, int doc) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            grams.computeIfAbsent(value.substring(i, i + GRAM), k -> new Postings()).add(doc);
+        }
+    }
+
+    /**
+     * 查找包含 value 所有片段的文档，从最短的倒排列表开始求交集
+     * @param grams
+     * @param value
+     * @param docs 上一个条件的结果，为 null 时不限制
+     * @return 递增的文档编号
+     */
+    private int[] match(Map<String, Postings> grams, String value, int[] docs) {
+        List<Postings> postingsList = new ArrayList<>();
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            Postings postings = grams.get(value.substring(i, i + GRAM));
+            if (postings == null) {
+                return new int[0];
+            }
+            if (!postingsList.contains(postings)) {
+                postingsList.add(postings);
+            }
+        }
+        postingsList.sort(Comparator.comparingInt(postings -> postings.count));
+
+        for (Postings postings : postingsList) {
+            docs = docs == null ? postings.toArray() : postings.retain(docs);
+            if (docs.length == 0) {
+                break;
+            }
+        }
+        return docs;
+    }
+
+    /**
+     * 倒排列表：递增的文档编号，按与前一个编号的差值写成变长整数
+     */
+    static class Postings {
+
+        private byte[] data = new byte[8];
+
+        private int length;
+
+        private int count;
+
+        private int lastDoc = -1;
+
+        void add(int doc) {
+            //同一个订单号中重复出现的片段只记录一次
+            if (doc == lastDoc) {
+                return;
+            }
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, data.length + (data.length >> 1) + 5);
+            }
+            int delta = doc - lastDoc;
+            while ((delta & ~0x7F) != 0) {
+                data[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            data[length++] = (byte) delta;
+            lastDoc = doc;
+            count++;
+        }
+
+        int[] toArray() {
+            int[] docs = new int[count];
+            int doc = -1;
+            int pos = 0;
+            for (int i = 0; i < count; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[pos++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                doc += delta;
+                docs[i] = doc;
+            }
+            return docs;
+        }
+
+        /**
+         * 保留 docs 中同时出现在本列表中的文档
+         * @param docs 递增的文档编号
+         * @return
+         */
+        int[] retain(int[] docs) {
+            int[] result = new int[Math.min(docs.length, count)];
+            int size = 0;
+            int doc = -1;
+            int pos = 0;
+            int decoded = 0;
+            for (int target : docs) {
+                while (doc < target && decoded < count) {
+                    int delta = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = data[pos++];
+                        delta |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    doc += delta;
+                    decoded++;
+                }
+                if (doc == target) {
+                    result[size++] = target;
+                } else if (doc < target) {
+                    //本列表已读完
+                    break;
+                }
+            }
+            return Arrays.copyOf(result, size);
+        }
+    }
+}
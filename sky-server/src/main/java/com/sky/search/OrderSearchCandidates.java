@@ -0,0 +1,20 @@
+package com.sky.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 订单搜索索引返回的候选订单
+ */
+@Getter
+@AllArgsConstructor
+public class OrderSearchCandidates {
+
+    // 候选订单id
+    private final List<Long> ids;
+
+    // 已进入索引的最大订单id，id 更大的订单还没有进入索引，查询时需要一并扫描
+    private final long indexedMaxId;
+}
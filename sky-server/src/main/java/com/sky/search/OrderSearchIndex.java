@@ -0,0 +1,17 @@
+package com.sky.search;
+
+/**
+ * 订单号、手机号的子串搜索索引
+ * 索引只负责缩小候选范围，最终结果仍由数据库的 like 条件校验，候选中多出不匹配或已删除的订单不影响结果。
+ * 默认实现为进程内的 NGramOrderSearchIndex，接入外部搜索引擎时提供该接口的实现即可。
+ */
+public interface OrderSearchIndex {
+
+    /**
+     * 查找订单号包含 number 且手机号包含 phone 的候选订单
+     * @param number 订单号子串，可以为空
+     * @param phone 手机号子串，可以为空
+     * @return 候选订单；索引未就绪、条件太短或候选太多时返回 null，调用方按 like 条件查询
+     */
+    OrderSearchCandidates search(String number, String phone);
+}
@@ -7,6 +7,10 @@ import com.sky.vo.OrderStatisticsVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
 
 public interface OrderService {
 
@@ -30,6 +34,12 @@ public interface OrderService {
      */
     void paySuccess(String outTradeNo);
 
+    /**
+     * 批量支付成功，修改订单状态，只处理仍处于待付款状态的订单
+     * @param outTradeNos
+     */
+    void paySuccessBatch(List<String> outTradeNos);
+
     PageResult pageQueryUser(int page, int pageSize, Integer status);
 
     OrderVO details(Long id);
@@ -46,6 +56,13 @@ public interface OrderService {
 
     void rejection(OrdersRejectionDTO ordersRejectionDTO) throws Exception;
 
+    /**
+     * 批量拒单，退款异步完成
+     * @param ordersBatchRejectionDTO
+     * @return 拒单成功的订单id
+     */
+    List<Long> rejectionBatch(OrdersBatchRejectionDTO ordersBatchRejectionDTO);
+
     void cancel(OrdersCancelDTO ordersCancelDTO) throws Exception;
 
     void delivery(Long id);
@@ -53,4 +70,13 @@ public interface OrderService {
     void complete(Long id);
 
     void reminder(Long id);
+
+    /**
+     * 按条件导出订单及订单明细为CSV
+     * @param ordersPageQueryDTO 查询条件，忽略分页参数
+     * @param gzip 是否gzip压缩
+     * @param out
+     * @throws IOException
+     */
+    void exportOrders(OrdersPageQueryDTO ordersPageQueryDTO, boolean gzip, OutputStream out) throws IOException;
 }
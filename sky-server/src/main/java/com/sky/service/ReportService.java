@@ -5,6 +5,8 @@ import com.sky.vo.SalesTop10ReportVO;
 import com.sky.vo.TurnoverReportVO;
 import com.sky.vo.UserReportVO;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 
 public interface ReportService {
@@ -44,4 +46,14 @@ public interface ReportService {
      * @return
      */
     SalesTop10ReportVO getSalesTop10(LocalDate begin, LocalDate end);
+
+    /**
+     * 导出指定区间内的运营数据报表
+     *
+     * @param begin
+     * @param end
+     * @param out 报表写入的输出流
+     * @throws IOException
+     */
+    void exportBusinessData(LocalDate begin, LocalDate end, OutputStream out) throws IOException;
 }
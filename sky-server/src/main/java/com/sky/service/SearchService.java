@@ -0,0 +1,15 @@
+package com.sky.service;
+
+import com.sky.vo.SearchItemVO;
+
+import java.util.List;
+
+public interface SearchService {
+
+    /**
+     * 按名称、描述或名称的拼音首字母搜索起售中的菜品和套餐
+     * @param keyword
+     * @return
+     */
+    List<SearchItemVO> search(String keyword);
+}
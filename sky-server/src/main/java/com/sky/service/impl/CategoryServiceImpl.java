@@ -2,6 +2,7 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page; // PageHelper分页插件，处理分页数据
 import com.github.pagehelper.PageHelper; // 启用分页功能
+import com.sky.cache.CategoryCache; // 分类缓存
 import com.sky.constant.MessageConstant; // 消息常量类
 import com.sky.constant.StatusConstant; // 状态常量类
 import com.sky.context.BaseContext; // 获取上下文信息的工具类（比如当前用户ID）
@@ -10,8 +11,6 @@ import com.sky.dto.CategoryPageQueryDTO; // 用于封装分类分页查询的请
 import com.sky.entity.Category; // 分类实体类
 import com.sky.exception.DeletionNotAllowedException; // 自定义异常类，用于抛出业务错误
 import com.sky.mapper.CategoryMapper; // 分类的数据库操作接口
-import com.sky.mapper.DishMapper; // 菜品的数据库操作接口
-import com.sky.mapper.SetmealMapper; // 套餐的数据库操作接口
 import com.sky.result.PageResult; // 分页结果封装类
 import com.sky.service.CategoryService; // 分类服务接口
 import lombok.extern.slf4j.Slf4j; // 日志工具
@@ -33,9 +32,7 @@ public class CategoryServiceImpl implements CategoryService {
     @Autowired
     private CategoryMapper categoryMapper;
     @Autowired
-    private DishMapper dishMapper;
-    @Autowired
-    private SetmealMapper setmealMapper;
+    private CategoryCache categoryCache;
 
     /**
      * 新增分类
@@ -59,6 +56,7 @@ public class CategoryServiceImpl implements CategoryService {
 
         // 插入分类数据到数据库
         categoryMapper.insert(category);
+        categoryCache.invalidate();
     }
 
     /**
@@ -82,20 +80,18 @@ public class CategoryServiceImpl implements CategoryService {
      * @param id 分类ID
      */
     public void deleteById(Long id) {
-        // 检查分类是否关联了菜品，如果关联了抛出业务异常
-        Integer count = dishMapper.countByCategoryId(id);
-        if (count > 0) {
+        // 一次查询同时检查分类是否关联了菜品或套餐，如果关联了抛出业务异常
+        List<String> relatedTables = categoryMapper.getRelatedTables(id);
+        if (relatedTables.contains("dish")) {
             throw new DeletionNotAllowedException(MessageConstant.CATEGORY_BE_RELATED_BY_DISH);
         }
-
-        // 检查分类是否关联了套餐，如果关联了抛出业务异常
-        count = setmealMapper.countByCategoryId(id);
-        if (count > 0) {
+        if (relatedTables.contains("setmeal")) {
             throw new DeletionNotAllowedException(MessageConstant.CATEGORY_BE_RELATED_BY_SETMEAL);
         }
 
         // 如果没有关联菜品或套餐，则删除分类
         categoryMapper.deleteById(id);
+        categoryCache.invalidate();
     }
 
     /**
@@ -115,6 +111,7 @@ public class CategoryServiceImpl implements CategoryService {
 
         // 更新分类数据
         categoryMapper.update(category);
+        categoryCache.invalidate();
     }
 
     /**
@@ -133,16 +130,17 @@ public class CategoryServiceImpl implements CategoryService {
                 .build();
         // 更新分类状态
         categoryMapper.update(category);
+        categoryCache.invalidate();
     }
 
     /**
      * 根据类型查询分类
      *
      * @param type 分类类型
-     * @return 分类列表
+     * @return 分类列表（只读）
      */
     public List<Category> list(Integer type) {
-        // 调用Mapper层方法，根据分类类型查询分类列表
-        return categoryMapper.list(type);
+        // 从分类缓存的快照中查询，不访问数据库
+        return categoryCache.list(type);
     }
 }
@@ -2,8 +2,10 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.annotation.ReadOnly;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
+import com.sky.converter.DishConverter;
 import com.sky.dto.DishDTO;
 import com.sky.dto.DishPageQueryDTO;
 import com.sky.entity.Dish;
@@ -13,6 +15,7 @@ import com.sky.mapper.DishFlavorMapper;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
 import com.sky.result.PageResult;
+import com.sky.search.CatalogSearchIndex;
 import com.sky.service.DishService;
 import com.sky.vo.DishVO;
 import lombok.extern.slf4j.Slf4j;
@@ -23,6 +26,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -35,6 +39,8 @@ public class DishServiceImpl implements DishService {
     private DishFlavorMapper dishFlavorMapper;
     @Autowired
     private SetmealDishMapper setmealDishMapper;
+    @Autowired
+    private CatalogSearchIndex catalogSearchIndex;
 
     /**
      * 新增菜品并保存其对应的口味信息。
@@ -65,6 +71,9 @@ public class DishServiceImpl implements DishService {
             // 将口味列表批量插入到口味表中
             dishFlavorMapper.insertBatch(flavors);
         }
+
+        // 更新菜品搜索索引
+        catalogSearchIndex.dishChanged(Collections.singletonList(dishId));
     }
 
 
@@ -79,6 +88,11 @@ public class DishServiceImpl implements DishService {
         // 会自动生成带有 LIMIT 和 OFFSET 的 SQL，控制数据返回的范围,
         // 省去我们自己计算当前页码以及每页展示数据，而直接使用框架提供的分页功能。
         // 同时会自动拼接到SQL中，例如：SELECT * FROM dish LIMIT 5 OFFSET 10
+        // 按名称搜索时先通过搜索索引得到候选菜品（支持拼音首字母），
+        // 查询时候选id与名称模糊匹配取并集，索引刚好漏掉的刚修改的菜品不会被当作不存在
+        List<Long> candidateIds = catalogSearchIndex.searchIds(CatalogSearchIndex.DISH, dishPageQueryDTO.getName());
+        dishPageQueryDTO.setCandidateIds(candidateIds == null || candidateIds.isEmpty() ? null : candidateIds);
+
         PageHelper.startPage(dishPageQueryDTO.getPage(), dishPageQueryDTO.getPageSize());
 
         // 调用 Mapper 层方法，执行分页查询
@@ -104,18 +118,15 @@ public class DishServiceImpl implements DishService {
     @Transactional 注解在方法或类上应用，告诉 Spring 该方法或类的所有操作都应该在一个事务内执行。
      */
     public void deleteBatch(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+
         // 判断当前菜品是否能够删除——是否存在起售中的菜品？
-        for (Long id : ids) {
-            //遍历获得所有的菜品ID
-            // 通过菜品ID查询菜品信息
-            Dish dish = dishMapper.getById(id);
-
-            // 判断菜品的状态，
-            // 如果状态为 "正在销售" (StatusConstant.ENABLE)，则不能删除
-            if (dish.getStatus() == StatusConstant.ENABLE) {
-                // 如果菜品正在销售，抛出一个业务异常，提示无法删除正在销售的菜品
-                throw new DeletionNotAllowedException(MessageConstant.DISH_ON_SALE);
-            }
+        // 一条SQL统计所有起售中的菜品，不再逐个查询
+        if (dishMapper.countByIdsAndStatus(ids, StatusConstant.ENABLE) > 0) {
+            // 如果菜品正在销售，抛出一个业务异常，提示无法删除正在销售的菜品
+            throw new DeletionNotAllowedException(MessageConstant.DISH_ON_SALE);
         }
 
         // 判断菜品是否能被删除——是否存在与某个套餐有所关联？
@@ -146,6 +157,8 @@ public class DishServiceImpl implements DishService {
         dishMapper.deleteByIds(ids);
         //根据菜品ID集合批量删除口味数据
         dishFlavorMapper.deleteByDishIds(ids);
+        // 从菜品搜索索引中移除
+        catalogSearchIndex.dishChanged(ids);
 
     }
 
@@ -169,7 +182,7 @@ public class DishServiceImpl implements DishService {
 
         // 如果菜品存在，则将菜品信息复制到 dishVO 中
         if (dish != null) {
-            BeanUtils.copyProperties(dish, dishVO); // 将菜品基本信息复制到 dishVO
+            dishVO = DishConverter.toDishVO(dish); // 将菜品基本信息复制到 dishVO
 
             // 2. 再根据菜品ID查询口味信息
             // 查询菜品对应的口味数据
@@ -222,6 +235,9 @@ public class DishServiceImpl implements DishService {
             //   5. 批量插入新的口味数据到 dish_flavor 表
             dishFlavorMapper.insertBatch(flavors); // 插入口味数据
         }
+
+        // 更新菜品搜索索引
+        catalogSearchIndex.dishChanged(Collections.singletonList(dish.getId()));
     }
 
 
@@ -267,14 +283,14 @@ public class DishServiceImpl implements DishService {
      * @param dish
      * @return
      */
+    @ReadOnly
     public List<DishVO> listWithFlavor(Dish dish) {
         List<Dish> dishList = dishMapper.list(dish);
 
         List<DishVO> dishVOList = new ArrayList<>();
 
         for (Dish d : dishList) {
-            DishVO dishVO = new DishVO();
-            BeanUtils.copyProperties(d, dishVO);
+            DishVO dishVO = DishConverter.toDishVO(d);
 
             //根据菜品id查询对应的口味
             List<DishFlavor> flavors = dishFlavorMapper.getByDishId(d.getId());
@@ -17,6 +17,7 @@ import com.sky.exception.PasswordErrorException;
 import com.sky.mapper.EmployeeMapper;
 import com.sky.result.PageResult;
 import com.sky.service.EmployeeService;
+import com.sky.token.TokenRevocationStore;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -33,6 +34,8 @@ public class EmployeeServiceImpl implements EmployeeService {
     @Autowired
     private EmployeeMapper employeeMapper;
     @Autowired
+    private TokenRevocationStore tokenRevocationStore;
+    @Autowired
     private PageHelperAutoConfiguration pageHelperAutoConfiguration;
 
     /**
@@ -138,6 +141,11 @@ public class EmployeeServiceImpl implements EmployeeService {
         // 通过传入的 Employee 对象（包含 id 和 status），执行更新操作
         // 这里的 SQL 操作是：update employee set status = ? where id = ?
         employeeMapper.update(employee);
+
+        // 禁用员工时吊销其已签发的令牌，使禁用立即生效
+        if (StatusConstant.DISABLE.equals(status)) {
+            tokenRevocationStore.revoke(TokenRevocationStore.EMPLOYEE + id);
+        }
     }
 
     /**
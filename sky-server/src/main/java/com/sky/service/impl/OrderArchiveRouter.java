@@ -0,0 +1,43 @@
+package com.sky.service.impl;
+
+import com.sky.entity.Orders;
+import com.sky.properties.OrderArchiveProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * 订单查询路由
+ * 归档任务只移动下单时间早于 (当前时间 - 保留天数) 的已完成、已取消订单，
+ * 查询范围不会包含这些订单时只查订单表，否则同时查询归档表。
+ */
+@Component
+public class OrderArchiveRouter {
+
+    @Autowired
+    private OrderArchiveProperties orderArchiveProperties;
+
+    /**
+     * 下单时间从 begin 开始的查询是否需要包含归档表
+     * @param begin 下单时间下限，为空表示不限
+     * @return
+     */
+    public boolean includeArchive(LocalDateTime begin) {
+        return begin == null
+                || begin.isBefore(LocalDateTime.now().minusDays(orderArchiveProperties.getRetentionDays()));
+    }
+
+    /**
+     * 指定订单状态、下单时间从 begin 开始的查询是否需要包含归档表
+     * @param status 订单状态，为空表示不限；进行中的订单不会被归档
+     * @param begin  下单时间下限，为空表示不限
+     * @return
+     */
+    public boolean includeArchive(Integer status, LocalDateTime begin) {
+        if (status != null && !Orders.COMPLETED.equals(status) && !Orders.CANCELLED.equals(status)) {
+            return false;
+        }
+        return includeArchive(begin);
+    }
+}
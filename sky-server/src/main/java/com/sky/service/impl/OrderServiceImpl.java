@@ -3,17 +3,27 @@ package com.sky.service.impl;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.github.pagehelper.PageHelper;
+import com.sky.annotation.ReadOnly;
+import com.sky.cache.ActiveOrderCache;
 import com.sky.constant.MessageConstant;
 import com.sky.context.BaseContext;
+import com.sky.converter.OrderConverter;
+import com.sky.converter.ShoppingCartConverter;
 import com.sky.dto.*;
 import com.sky.entity.*;
 import com.sky.exception.AddressBookBusinessException;
 import com.sky.exception.OrderBusinessException;
 import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.*;
+import com.sky.pay.RefundQueue;
+import com.sky.pricing.PricingEngine;
+import com.sky.pricing.PricingResult;
 import com.sky.result.PageResult;
 import com.sky.result.Result;
+import com.sky.search.OrderSearchCandidates;
+import com.sky.search.OrderSearchIndex;
 import com.sky.service.OrderService;
+import com.sky.task.OrderTimeoutWheel;
 import com.sky.utils.WeChatPayUtil;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
@@ -21,6 +31,9 @@ import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
 import com.sky.websocket.WebSocketServer;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -28,18 +41,33 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 @Service
 @Slf4j
 public class OrderServiceImpl implements OrderService {
 
+    // 导出CSV的表头
+    private static final String[] EXPORT_HEADER = {"订单号", "订单状态", "用户id", "收货人", "手机号", "地址", "下单时间",
+            "结账时间", "支付方式", "支付状态", "订单金额", "打包费", "餐具数量", "备注", "订单菜品"};
+
+    // 导出时写缓冲区的大小
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+
     @Autowired
     private OrderMapper orderMapper;
 
@@ -55,6 +83,23 @@ public class OrderServiceImpl implements OrderService {
     private UserMapper userMapper;
     @Autowired
     private WebSocketServer webSocketServer;
+    @Autowired
+    private OrderTimeoutWheel orderTimeoutWheel;
+    @Autowired
+    private OrderStateMachine orderStateMachine;
+    @Autowired
+    private RefundQueue refundQueue;
+    @Autowired
+    private PricingEngine pricingEngine;
+    @Autowired
+    private ActiveOrderCache activeOrderCache;
+    @Autowired
+    private OrderArchiveRouter orderArchiveRouter;
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+    //sky.order-search.engine 不是 embedded 且没有外部适配器时为 null
+    @Autowired(required = false)
+    private OrderSearchIndex orderSearchIndex;
 
 
     /**
@@ -73,16 +118,27 @@ public class OrderServiceImpl implements OrderService {
         }
         //查询当前用户的购物车数据
         Long userId = BaseContext.getCurrentId();
-        List<ShoppingCart> shoppingCartList = shoppingCartMapper.list(ShoppingCart.builder().id(userId).build());
+        List<ShoppingCart> shoppingCartList = shoppingCartMapper.list(ShoppingCart.builder().userId(userId).build());
         if(shoppingCartList == null || shoppingCartList.size() == 0){
             throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
         }
         //其实前端都会进行校验。
 
+        //按当前售价重新计价，不使用客户端提交的金额
+        PricingResult pricing = pricingEngine.price(shoppingCartList,
+                ordersSubmitDTO.getTablewareStatus(), ordersSubmitDTO.getTablewareNumber());
+        BigDecimal amount = PricingResult.toYuan(pricing.getTotal());
+        if (ordersSubmitDTO.getAmount() != null && ordersSubmitDTO.getAmount().compareTo(amount) != 0) {
+            log.info("用户{}提交的订单金额{}与计价结果{}不一致，以计价结果为准", userId, ordersSubmitDTO.getAmount(), amount);
+        }
+
 
         // 2. 向订单表中插入1调数据
         Orders orders = new Orders();
         BeanUtils.copyProperties(ordersSubmitDTO, orders);
+        orders.setAmount(amount);
+        orders.setPackAmount(Math.toIntExact(pricing.getPackFee() / 100)); //打包费配置为整元，启动时已校验，这里不会截断
+        orders.setTablewareNumber(pricing.getTablewareNumber());
         orders.setOrderTime(LocalDateTime.now());
         orders.setPayStatus(Orders.UN_PAID);
         orders.setStatus(Orders.PENDING_PAYMENT);
@@ -95,10 +151,10 @@ public class OrderServiceImpl implements OrderService {
 
 
         // 3. 向订单明细表插入n条数据
-        List<OrderDetail> orderDetailList = new ArrayList<>();
-        for (ShoppingCart shoppingCart : shoppingCartList) {
-            OrderDetail orderDetail = new OrderDetail();
-            BeanUtils.copyProperties(shoppingCart,orderDetail);
+        List<OrderDetail> orderDetailList = new ArrayList<>(pricing.getLines().size());
+        for (PricingResult.Line line : pricing.getLines()) {
+            OrderDetail orderDetail = ShoppingCartConverter.toOrderDetail(line.getShoppingCart());
+            orderDetail.setAmount(PricingResult.toYuan(line.getUnitPrice())); //按当前售价记录
             orderDetail.setOrderId(orders.getId()); //设置当前订单明细表关联的订单表的id
             orderDetailList.add(orderDetail);
         }
@@ -110,7 +166,11 @@ public class OrderServiceImpl implements OrderService {
         shoppingCartMapper.deleteByUserId(userId);
 
 
-        // 5. 封装VO返回结果
+        // 5. 登记支付超时，到期未支付由时间轮自动取消
+        orderTimeoutWheel.schedule(orders.getId(), orders.getOrderTime());
+
+
+        // 6. 封装VO返回结果
         OrderSubmitVO orderSubmitVO = OrderSubmitVO.builder()
                 .id(orders.getId())
                 .orderTime(orders.getOrderTime())
@@ -156,29 +216,78 @@ public class OrderServiceImpl implements OrderService {
      * @param outTradeNo
      */
     public void paySuccess(String outTradeNo) {
+        paySuccessBatch(Collections.singletonList(outTradeNo));
+    }
+
+    /**
+     * 批量支付成功，修改订单状态
+     * 一条带状态条件的 update 修改一批订单，只有修改成功的订单才会移除超时任务并推送来单提醒；
+     * 已被取消的订单收到支付成功通知时原路退款
+     *
+     * @param outTradeNos
+     */
+    public void paySuccessBatch(List<String> outTradeNos) {
+        if (CollectionUtils.isEmpty(outTradeNos)) {
+            return;
+        }
 
-        // 根据订单号查询订单
-        Orders ordersDB = orderMapper.getByNumber(outTradeNo);
+        // 根据订单号查询订单，只有待付款的订单可以修改
+        List<Orders> ordersList = orderMapper.getByNumbers(outTradeNos);
+        List<Long> pendingIds = ordersList.stream()
+                .filter(o -> Orders.PENDING_PAYMENT.equals(o.getStatus()))
+                .map(Orders::getId)
+                .collect(Collectors.toList());
+        if (pendingIds.size() < outTradeNos.size()) {
+            // 重复的支付回调，或者订单已被超时取消
+            log.warn("部分订单不处于待付款状态，忽略支付成功通知：{}", outTradeNos);
+        }
 
-        // 根据订单id更新订单的状态、支付方式、支付状态、结账时间
+        // 根据订单id更新订单的状态、支付状态、结账时间
+        LocalDateTime checkoutTime = LocalDateTime.now();
         Orders orders = Orders.builder()
-                .id(ordersDB.getId())
                 .status(Orders.TO_BE_CONFIRMED)
                 .payStatus(Orders.PAID)
-                .checkoutTime(LocalDateTime.now())
+                .checkoutTime(checkoutTime)
                 .build();
+        List<Long> paidIds = orderStateMachine.transit(pendingIds, orders, Orders.PENDING_PAYMENT);
+
+        List<Orders> paidList = new ArrayList<>();
+        List<Orders> cancelledList = new ArrayList<>();
+        if (paidIds.size() < pendingIds.size()) {
+            // 查询之后有订单被并发修改（如超时取消），重新查询订单的最新状态
+            ordersList = orderMapper.getByNumbers(outTradeNos);
+        }
+        for (Orders o : ordersList) {
+            if (paidIds.contains(o.getId())) {
+                paidList.add(o);
+            } else if (Orders.CANCELLED.equals(o.getStatus()) && Orders.UN_PAID.equals(o.getPayStatus())) {
+                cancelledList.add(o);
+            }
+        }
+
+        for (Orders cancelled : cancelledList) {
+            // 订单已取消但用户已经付款，记为退款中后原路退款
+            if (orderMapper.updatePaidForCancelled(cancelled.getId(), checkoutTime) == 1) {
+                activeOrderCache.evict(cancelled.getId());
+                log.warn("订单已取消，支付成功后退款：{}", cancelled.getNumber());
+                refundQueue.enqueue(cancelled);
+            }
+        }
 
-        orderMapper.update(orders);
+        for (Orders paid : paidList) {
+            // 已支付，移除支付超时任务
+            orderTimeoutWheel.cancel(paid.getId());
 
-        //通过websocket向客户端浏览器推送消息 type orderid content
-        Map map  = new HashMap();
-        map.put("type", 1); // 1表示来单提醒，2表示客户催单
-        map.put("orderid", ordersDB.getId());
-        map.put("content", "" + outTradeNo);
+            //通过websocket向客户端浏览器推送消息 type orderid content
+            Map map  = new HashMap();
+            map.put("type", 1); // 1表示来单提醒，2表示客户催单
+            map.put("orderid", paid.getId());
+            map.put("content", "" + paid.getNumber());
 
-        String jsonString = JSON.toJSONString(map);
-        //通过websocket向商家端推送消息
-        webSocketServer.sendToAllClient(jsonString);
+            String jsonString = JSON.toJSONString(map);
+            //通过websocket向商家端推送消息
+            webSocketServer.sendToAllClient(jsonString);
+        }
     }
 
 
@@ -190,6 +299,7 @@ public class OrderServiceImpl implements OrderService {
      * @return
      */
     @Override
+    @ReadOnly
     public PageResult pageQueryUser(int page, int pageSize, Integer status) {
         //开始分页，指定页码和每页记录数
         PageHelper.startPage(page, pageSize);
@@ -198,6 +308,7 @@ public class OrderServiceImpl implements OrderService {
         OrdersPageQueryDTO ordersPageQueryDTO = new OrdersPageQueryDTO();
         ordersPageQueryDTO.setUserId(BaseContext.getCurrentId()); //查询当前用户的订单
         ordersPageQueryDTO.setStatus(status); //设置订单状态
+        ordersPageQueryDTO.setIncludeArchive(orderArchiveRouter.includeArchive(status, null)); //历史订单需要查询归档表
 
         //执行查询，返回一个 Page 对象，包含分页数据的总记录数还有一个列表List<Orders>，列表内元素是Orders（从orders表中查询到的）
         Page<Orders> page1 = orderMapper.pageQuery(ordersPageQueryDTO);
@@ -213,11 +324,14 @@ public class OrderServiceImpl implements OrderService {
 
                 //根据订单号，在订单明细表中查询订单明细数据
                 List<OrderDetail> orderDetails = orderDetailMapper.getByOrderID(orderId);
+                if (orderDetails.isEmpty() && ordersPageQueryDTO.isIncludeArchive()) {
+                    //订单明细表中没有，订单来自归档表
+                    orderDetails = orderDetailMapper.getArchivedByOrderId(orderId);
+                }
 
                 //创建VO对象，用于封装订单及其明细信息
-                OrderVO orderVO = new OrderVO();
                 //VO对象继承Orders对象，所有先将其全部信息拷贝过去
-                BeanUtils.copyProperties(orders, orderVO); //赋值订单的基本信息到orderVO对象中
+                OrderVO orderVO = OrderConverter.toOrderVO(orders); //赋值订单的基本信息到orderVO对象中
                 orderVO.setOrderDetailList(orderDetails); //再添加订单明细数据到VO对象中
                 list.add(orderVO);
             }
@@ -232,15 +346,14 @@ public class OrderServiceImpl implements OrderService {
      */
     @Override
     public OrderVO details(Long id) {
-        //根据id查询订单
-        Orders orders = orderMapper.getByOrderId(id);
+        //根据id查询订单，进行中的订单从缓存读取
+        Orders orders = activeOrderCache.getOrder(id);
 
         //查询订单明细表
-        List<OrderDetail> orderDetaiList = orderDetailMapper.getByOrderID(id);
+        List<OrderDetail> orderDetaiList = activeOrderCache.getDetails(id);
 
         //封装VO返回对象
-        OrderVO orderVO = new OrderVO();
-        BeanUtils.copyProperties(orders, orderVO);
+        OrderVO orderVO = OrderConverter.toOrderVO(orders);
         orderVO.setOrderDetailList(orderDetaiList);
 
         return orderVO;
@@ -255,7 +368,7 @@ public class OrderServiceImpl implements OrderService {
     @Override
     public void userCancelById(Long id) throws Exception {
         //根据订单查询订单信息
-        Orders ordersDB = orderMapper.getByOrderId(id);
+        Orders ordersDB = activeOrderCache.getOrder(id);
 
         //校验订单是否存在
         if(ordersDB == null){
@@ -277,17 +390,10 @@ public class OrderServiceImpl implements OrderService {
         orders.setId(ordersDB.getId());//设置订单ID
 
         //待接单状态需要退款
-        if(ordersDB.getStatus() == Orders.TO_BE_CONFIRMED){
-            //调用微信支付的退款接口完成退款
-            weChatPayUtil.refund(
-                    ordersDB.getNumber(), //商户订单号
-                    ordersDB.getNumber(), //商户退款单号，与订单号一致
-                    new BigDecimal(0.01), //退款金额
-                    new BigDecimal(0.01) //原订单金额
-            );
-
-            //将订单的支付状态更改为退款
-            orders.setPayStatus(Orders.REFUND);
+        boolean needRefund = ordersDB.getStatus().equals(Orders.TO_BE_CONFIRMED);
+        if(needRefund){
+            //退款成功后再将支付状态更改为退款
+            orders.setRefundStatus(Orders.REFUNDING);
         }
 
         //更新状态为已取消
@@ -298,23 +404,28 @@ public class OrderServiceImpl implements OrderService {
         orders.setCancelTime(LocalDateTime.now());
 
 
-        //更新到数据库
-        orderMapper.update(orders);
+        //更新到数据库，订单状态在此期间被修改（如支付成功、商家接单）时取消失败
+        orderStateMachine.transitOrThrow(orders, ordersDB.getStatus());
+
+        //状态修改成功后再退款，保证同一个订单只退款一次；退款由退款队列异步完成
+        if(needRefund){
+            refundQueue.enqueue(ordersDB);
+        }
+
+        //订单已取消，移除支付超时任务
+        orderTimeoutWheel.cancel(ordersDB.getId());
     }
 
     @Override
     public void repetition(Long id) {
-        //根据订单id查询该订单的详细信息（订单详情表）（包括菜品、数量、套餐）
-        List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderID(id);
+        //根据订单id查询该订单的详细信息（订单详情表）（包括菜品、数量、套餐），已归档的订单从归档表查询
+        List<OrderDetail> orderDetailList = activeOrderCache.getDetails(id);
 
         //使用stream流操作，将订单详情信息转换为购物车对象列表
         List<ShoppingCart> shoppingCartList = orderDetailList.stream().map(x -> {
-            ShoppingCart shoppingCart = new ShoppingCart();
-
-            // 复制订单详情中的属性到购物车对象
-            // 使用 BeanUtils.copyProperties 方法快速复制属性，但排除 "id" 字段
+            // 复制订单详情中的属性到购物车对象，不复制 "id" 字段
             // 因为购物车对象的 "id" 应由数据库自动生成
-            BeanUtils.copyProperties(x, shoppingCart, "id");
+            ShoppingCart shoppingCart = ShoppingCartConverter.fromOrderDetail(x);
 
             // 设置购物车所属用户ID
             shoppingCart.setUserId(BaseContext.getCurrentId());
@@ -335,7 +446,24 @@ public class OrderServiceImpl implements OrderService {
      * @return
      */
     @Override
+    @ReadOnly
     public PageResult conditionalSearch(OrdersPageQueryDTO ordersPageQueryDTO) {
+        //查询范围包含已归档的订单时同时查询归档表
+        ordersPageQueryDTO.setIncludeArchive(orderArchiveRouter.includeArchive(
+                ordersPageQueryDTO.getStatus(), ordersPageQueryDTO.getBeginTime()));
+
+        //按订单号、手机号搜索时先通过搜索索引得到候选订单，数据库只需校验候选订单和尚未进入索引的新订单
+        ordersPageQueryDTO.setCandidateIds(null);
+        ordersPageQueryDTO.setIndexedMaxId(null);
+        if (orderSearchIndex != null) {
+            OrderSearchCandidates candidates = orderSearchIndex.search(
+                    ordersPageQueryDTO.getNumber(), ordersPageQueryDTO.getPhone());
+            if (candidates != null) {
+                ordersPageQueryDTO.setCandidateIds(candidates.getIds());
+                ordersPageQueryDTO.setIndexedMaxId(candidates.getIndexedMaxId());
+            }
+        }
+
         //使用PageHelper插件分页查询
         PageHelper.startPage(ordersPageQueryDTO.getPage(), ordersPageQueryDTO.getPageSize());
         Page<Orders> pages = orderMapper.pageQuery(ordersPageQueryDTO);
@@ -346,6 +474,102 @@ public class OrderServiceImpl implements OrderService {
         return new PageResult(pages.getTotalElements(),orderVOList);
     }
 
+    /**
+     * 按条件导出订单及订单明细为CSV
+     * 订单和明细由一条左连接查询按订单id排序后流式读取，MyBatis 把相邻的明细行合并到订单中，
+     * 每读到一个订单就写出一行，内存占用与导出的订单数量无关，也不需要分页的 offset 扫描
+     * @param ordersPageQueryDTO
+     * @param gzip
+     * @param out
+     * @throws IOException
+     */
+    @Override
+    @ReadOnly
+    public void exportOrders(OrdersPageQueryDTO ordersPageQueryDTO, boolean gzip, OutputStream out) throws IOException {
+        boolean includeArchive = orderArchiveRouter.includeArchive(
+                ordersPageQueryDTO.getStatus(), ordersPageQueryDTO.getBeginTime());
+        //以下字段只由服务端设置，忽略请求中传入的值
+        ordersPageQueryDTO.setIncludeArchive(includeArchive);
+        ordersPageQueryDTO.setCandidateIds(null);
+        ordersPageQueryDTO.setIndexedMaxId(null);
+
+        GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, EXPORT_BUFFER_SIZE) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzip ? gzipOut : out, StandardCharsets.UTF_8),
+                EXPORT_BUFFER_SIZE);
+        // BOM，Excel 打开时按 UTF-8 识别中文
+        writer.write('\uFEFF');
+        writeCsvLine(writer, EXPORT_HEADER);
+
+        // 游标在遍历期间要一直持有连接，这里直接打开 SqlSession，不放在事务中（事务内的查询会发往主库）
+        try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+            OrderMapper mapper = sqlSession.getMapper(OrderMapper.class);
+            //MySQL 流式结果集读完之前同一连接不能执行其它查询，先导出归档表，关闭游标后再导出订单表
+            if (includeArchive) {
+                try (Cursor<OrderVO> cursor = mapper.exportArchivedCursor(ordersPageQueryDTO)) {
+                    writeOrders(writer, cursor);
+                }
+            }
+            try (Cursor<OrderVO> cursor = mapper.exportCursor(ordersPageQueryDTO)) {
+                writeOrders(writer, cursor);
+            }
+        }
+
+        writer.flush();
+        if (gzipOut != null) {
+            gzipOut.finish();
+        }
+    }
+
+    /**
+     * 把游标中的订单逐行写出
+     * @param writer
+     * @param cursor
+     * @throws IOException
+     */
+    private void writeOrders(Writer writer, Cursor<OrderVO> cursor) throws IOException {
+        for (OrderVO order : cursor) {
+            //菜品信息拼接成字符串（格式：宫保鸡丁*3;）
+            String orderDishes = order.getOrderDetailList() == null ? "" : order.getOrderDetailList().stream()
+                    .map(x -> x.getName() + "*" + x.getNumber())
+                    .collect(Collectors.joining(";"));
+
+            writeCsvLine(writer, order.getNumber(), order.getStatus(), order.getUserId(), order.getConsignee(),
+                    order.getPhone(), order.getAddress(), order.getOrderTime(), order.getCheckoutTime(),
+                    order.getPayMethod(), order.getPayStatus(), order.getAmount(), order.getPackAmount(),
+                    order.getTablewareNumber(), order.getRemark(), orderDishes);
+        }
+    }
+
+    /**
+     * 写出一行CSV，包含逗号、引号或换行的字段用双引号包裹，字段中的引号写成两个引号；
+     * 以 = + - @ 制表符 回车开头的字段前加单引号，防止 Excel 把用户填写的内容当作公式执行
+     * @param writer
+     * @param values
+     * @throws IOException
+     */
+    private void writeCsvLine(Writer writer, Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] == null) {
+                continue;
+            }
+            String value = values[i].toString();
+            if (!value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+                value = "'" + value;
+            }
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write("\r\n");
+    }
+
     /**
      * 各个状态的订单数量统计
      *
@@ -374,7 +598,8 @@ public class OrderServiceImpl implements OrderService {
                 .id(ordersConfirmDTO.getId())
                 .status(Orders.CONFIRMED)
                 .build();
-        orderMapper.update(orders);
+        //只有待接单的订单可以接单
+        orderStateMachine.transitOrThrow(orders, Orders.TO_BE_CONFIRMED);
     }
 
     /**
@@ -384,35 +609,71 @@ public class OrderServiceImpl implements OrderService {
     @Override
     public void rejection(OrdersRejectionDTO ordersRejectionDTO) throws Exception {
         //根据订单号查询订单
-        Orders ordersDB = orderMapper.getByOrderId(ordersRejectionDTO.getId());
+        Orders ordersDB = activeOrderCache.getOrder(ordersRejectionDTO.getId());
 
         //只有订单 存在且 处于“待接单”状态时可以执行拒单操作
         if(ordersDB == null || ordersDB.getStatus() != Orders.TO_BE_CONFIRMED){
             throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
         }
 
-        //获取订单的支付状态
-        Integer payStatus = ordersDB.getPayStatus();
-
-        //如果用户已经完成了支付，需要为用户退款
-        if(payStatus == Orders.PAID){
-            String refund = weChatPayUtil.refund(
-                    ordersDB.getNumber(),
-                    ordersDB.getNumber(),
-                    new BigDecimal(0.01),
-                    new BigDecimal(0.01)
-            );
-            log.info("申请退款：{}", refund);
-        }
-
         //创建Orders对象，根据订单id更新订单状态，拒单原因，拒单时间
         Orders orders = new Orders();
         orders.setId(ordersRejectionDTO.getId());
         orders.setStatus(Orders.CANCELLED);
         orders.setRejectionReason(ordersRejectionDTO.getRejectionReason());
         orders.setCancelTime(LocalDateTime.now());
-        orderMapper.update(orders);
 
+        //如果用户已经完成了支付，需要为用户退款；状态修改成功后再退款，避免重复退款
+        boolean needRefund = Orders.PAID.equals(ordersDB.getPayStatus());
+        if(needRefund){
+            orders.setRefundStatus(Orders.REFUNDING);
+        }
+        orderStateMachine.transitOrThrow(orders, Orders.TO_BE_CONFIRMED);
+
+        if(needRefund){
+            refundQueue.enqueue(ordersDB);
+        }
+
+    }
+
+    /**
+     * 批量拒单
+     * 逐个修改订单状态，退款交给退款队列异步完成，不等待微信退款接口
+     * @param ordersBatchRejectionDTO
+     * @return 拒单成功的订单id，不处于“待接单”状态的订单会被跳过
+     */
+    public List<Long> rejectionBatch(OrdersBatchRejectionDTO ordersBatchRejectionDTO) {
+        List<Long> rejected = new ArrayList<>();
+        if (CollectionUtils.isEmpty(ordersBatchRejectionDTO.getIds())) {
+            return rejected;
+        }
+
+        for (Long id : ordersBatchRejectionDTO.getIds()) {
+            Orders ordersDB = activeOrderCache.getOrder(id);
+            if (ordersDB == null || !Orders.TO_BE_CONFIRMED.equals(ordersDB.getStatus())) {
+                continue;
+            }
+
+            Orders orders = new Orders();
+            orders.setId(id);
+            orders.setStatus(Orders.CANCELLED);
+            orders.setRejectionReason(ordersBatchRejectionDTO.getRejectionReason());
+            orders.setCancelTime(LocalDateTime.now());
+            boolean needRefund = Orders.PAID.equals(ordersDB.getPayStatus());
+            if (needRefund) {
+                orders.setRefundStatus(Orders.REFUNDING);
+            }
+            if (!orderStateMachine.transit(orders, Orders.TO_BE_CONFIRMED)) {
+                continue;
+            }
+
+            if (needRefund) {
+                refundQueue.enqueue(ordersDB);
+            }
+            rejected.add(id);
+        }
+        log.info("批量拒单：请求{}个，成功{}个", ordersBatchRejectionDTO.getIds().size(), rejected.size());
+        return rejected;
     }
 
 
@@ -423,27 +684,29 @@ public class OrderServiceImpl implements OrderService {
     @Override
     public void cancel(OrdersCancelDTO ordersCancelDTO) throws Exception {
         //根据订单号查询出要取消的订单
-        Orders ordersDB = orderMapper.getByOrderId(ordersCancelDTO.getId());
-
-        //如果用户已经完成了支付，需要为用户退款
-        Integer payStatus = ordersDB.getPayStatus();
-        if(payStatus == Orders.PAID){
-            String refund = weChatPayUtil.refund(
-                    ordersDB.getNumber(),
-                    ordersDB.getNumber(),
-                    new BigDecimal(0.01),
-                    new BigDecimal(0.01)
-            );
-            log.info("申请退款：{}", refund);
+        Orders ordersDB = activeOrderCache.getOrder(ordersCancelDTO.getId());
+        if(ordersDB == null){
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
         }
 
         //创建一个Orders对象，根据订单id更新订单状态、取消原因、取消时间
+        //以查询到的状态作为条件，期间订单状态被修改（如刚完成支付）时取消失败
         Orders orders = new Orders();
         orders.setId(ordersCancelDTO.getId());
         orders.setStatus(Orders.CANCELLED);
         orders.setCancelReason(ordersCancelDTO.getCancelReason());
         orders.setCancelTime(LocalDateTime.now());
-        orderMapper.update(orders);
+
+        //如果用户已经完成了支付，需要为用户退款
+        boolean needRefund = Orders.PAID.equals(ordersDB.getPayStatus());
+        if(needRefund){
+            orders.setRefundStatus(Orders.REFUNDING);
+        }
+        orderStateMachine.transitOrThrow(orders, ordersDB.getStatus());
+
+        if(needRefund){
+            refundQueue.enqueue(ordersDB);
+        }
     }
 
     /**
@@ -452,20 +715,13 @@ public class OrderServiceImpl implements OrderService {
      * @param id
      */
     public void delivery(Long id) {
-        // 根据id查询订单
-        Orders ordersDB = orderMapper.getByOrderId(id);
-
-        // 校验订单是否存在，并且状态为3
-        if (ordersDB == null || !ordersDB.getStatus().equals(Orders.CONFIRMED)) {
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
-        }
-
         Orders orders = new Orders();
-        orders.setId(ordersDB.getId());
+        orders.setId(id);
         // 更新订单状态,状态转为派送中
         orders.setStatus(Orders.DELIVERY_IN_PROGRESS);
 
-        orderMapper.update(orders);
+        // 订单不存在或者状态不为3时修改失败
+        orderStateMachine.transitOrThrow(orders, Orders.CONFIRMED);
     }
 
     /**
@@ -474,21 +730,14 @@ public class OrderServiceImpl implements OrderService {
      * @param id
      */
     public void complete(Long id) {
-        // 根据id查询订单
-        Orders ordersDB = orderMapper.getByOrderId(id);
-
-        // 校验订单是否存在，并且状态为4
-        if (ordersDB == null || !ordersDB.getStatus().equals(Orders.DELIVERY_IN_PROGRESS)) {
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
-        }
-
         Orders orders = new Orders();
-        orders.setId(ordersDB.getId());
+        orders.setId(id);
         // 更新订单状态,状态转为完成
         orders.setStatus(Orders.COMPLETED);
         orders.setDeliveryTime(LocalDateTime.now());
 
-        orderMapper.update(orders);
+        // 订单不存在或者状态不为4时修改失败
+        orderStateMachine.transitOrThrow(orders, Orders.DELIVERY_IN_PROGRESS);
     }
 
     /**
@@ -498,7 +747,7 @@ public class OrderServiceImpl implements OrderService {
      */
     public void reminder(Long id) {
         // 查询订单是否存在
-        Orders orders = orderMapper.getById(id);
+        Orders orders = activeOrderCache.getOrder(id);
         if (orders == null) {
             throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
         }
@@ -517,8 +766,7 @@ public class OrderServiceImpl implements OrderService {
         List<Orders> ordersList = pages.getContent();
         if(!CollectionUtils.isEmpty(ordersList)){
             for (Orders orders : ordersList) {
-                OrderVO orderVO = new OrderVO();
-                BeanUtils.copyProperties(orders, orderVO);
+                OrderVO orderVO = OrderConverter.toOrderVO(orders);
 
                 //判断是否需要添加菜品详细信息
                 if(orders.getStatus() == Orders.TO_BE_CONFIRMED || orders.getStatus() == Orders.DELIVERY_IN_PROGRESS ||orders.getStatus()==Orders.CONFIRMED){
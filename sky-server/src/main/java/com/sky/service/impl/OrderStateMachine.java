@@ -0,0 +1,110 @@
+package com.sky.service.impl;
+
+import com.sky.cache.ActiveOrderCache;
+import com.sky.constant.MessageConstant;
+import com.sky.entity.Orders;
+import com.sky.exception.OrderBusinessException;
+import com.sky.mapper.OrderMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 订单状态机
+ * 所有订单状态的修改都通过带状态条件的 update（where id = ? and status in (...)）完成，
+ * 并发修改同一个订单时只有一个能成功，避免互相覆盖（如超时取消和支付成功同时到达）。
+ * 修改后移除进行中订单缓存中的订单。
+ */
+@Component
+public class OrderStateMachine {
+
+    /**
+     * 状态转移表：原状态 -> 允许转移到的状态
+     */
+    private static final Map<Integer, Set<Integer>> TRANSITIONS = new HashMap<>();
+
+    static {
+        TRANSITIONS.put(Orders.PENDING_PAYMENT, new HashSet<>(Arrays.asList(Orders.TO_BE_CONFIRMED, Orders.CANCELLED)));
+        TRANSITIONS.put(Orders.TO_BE_CONFIRMED, new HashSet<>(Arrays.asList(Orders.CONFIRMED, Orders.CANCELLED)));
+        TRANSITIONS.put(Orders.CONFIRMED, new HashSet<>(Arrays.asList(Orders.DELIVERY_IN_PROGRESS, Orders.CANCELLED)));
+        TRANSITIONS.put(Orders.DELIVERY_IN_PROGRESS, new HashSet<>(Arrays.asList(Orders.COMPLETED, Orders.CANCELLED)));
+    }
+
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private ActiveOrderCache activeOrderCache;
+
+    /**
+     * 判断状态转移是否合法
+     * @param from
+     * @param to
+     * @return
+     */
+    public static boolean canTransit(Integer from, Integer to) {
+        return TRANSITIONS.getOrDefault(from, Collections.emptySet()).contains(to);
+    }
+
+    /**
+     * 把订单从 from 状态修改为 orders.status，同时修改 orders 中其它非空字段
+     * @param orders 订单id、目标状态以及其它要修改的字段
+     * @param from   允许的原状态，订单当前不处于这些状态时不做修改
+     * @return 是否修改成功；返回 false 说明订单不存在或者状态已经被其它操作修改
+     */
+    public boolean transit(Orders orders, Integer... from) {
+        List<Integer> statuses = Arrays.asList(from);
+        for (Integer status : statuses) {
+            if (!canTransit(status, orders.getStatus())) {
+                throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+            }
+        }
+        boolean success = orderMapper.updateByIdAndStatus(orders, statuses) == 1;
+        // 修改失败说明缓存的状态可能已经过期，同样移除
+        activeOrderCache.evict(orders.getId());
+        return success;
+    }
+
+    /**
+     * 批量把订单从 from 状态修改为 orders.status，同时修改 orders 中其它非空字段
+     * @param ids    订单id
+     * @param orders 目标状态以及其它要修改的字段
+     * @param from   允许的原状态
+     * @return 修改成功的订单id；不处于 from 状态的订单不做修改
+     */
+    public List<Long> transit(List<Long> ids, Orders orders, Integer from) {
+        if (!canTransit(from, orders.getStatus())) {
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        }
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int count = orderMapper.updateStatusByIds(ids, from, orders);
+        activeOrderCache.evict(ids);
+        if (count == ids.size()) {
+            return ids;
+        }
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        // 部分订单已被其它操作修改，重新查询哪些订单是本次修改成功的
+        return orderMapper.getIdsByIdsAndStatus(ids, orders.getStatus());
+    }
+
+    /**
+     * 同 transit，修改失败时抛出订单状态错误异常
+     * @param orders
+     * @param from
+     */
+    public void transitOrThrow(Orders orders, Integer... from) {
+        if (!transit(orders, from)) {
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.sky.service.impl;
 
+import com.sky.annotation.ReadOnly;
+import com.sky.dto.DailyBusinessDTO;
 import com.sky.dto.GoodsSalesDTO;
 import com.sky.entity.Orders;
 import com.sky.mapper.OrderMapper;
@@ -11,9 +13,17 @@ import com.sky.vo.TurnoverReportVO;
 import com.sky.vo.UserReportVO;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.StringUtils;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormat;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -25,12 +35,18 @@ import java.util.stream.Collectors;
 
 @Service
 @Slf4j
+@ReadOnly //报表统计只读，启用读写分离时查询从库
 public class ReportServiceImpl implements ReportService {
 
+    // 导出报表时内存中保留的行数，超出的行由 SXSSF 刷到临时文件，内存占用与导出的天数无关
+    private static final int EXPORT_ROW_WINDOW = 100;
+
     @Autowired
     private OrderMapper orderMapper;
     @Autowired
     private UserMapper userMapper;
+    @Autowired
+    private OrderArchiveRouter orderArchiveRouter;
 
     /**
      * 统计指定区间内的营业额数据
@@ -62,6 +78,7 @@ public class ReportServiceImpl implements ReportService {
             map.put("begin",beginTime);
             map.put("end",endTime);
             map.put("status",Orders.COMPLETED);
+            map.put("archive", orderArchiveRouter.includeArchive(beginTime));
             Double turnover = orderMapper.sumByMap(map);
             turnover = turnover == null ? 0.0 : turnover;
             turnoverList.add(turnover);
@@ -182,7 +199,8 @@ public class ReportServiceImpl implements ReportService {
     public SalesTop10ReportVO getSalesTop10(LocalDate begin, LocalDate end) {
         LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
         LocalDateTime endTime = LocalDateTime.of(end, LocalTime.MAX);
-        List<GoodsSalesDTO> goodsSalesDTOList = orderMapper.getSalesTop10(beginTime, endTime);
+        List<GoodsSalesDTO> goodsSalesDTOList = orderMapper.getSalesTop10(beginTime, endTime,
+                orderArchiveRouter.includeArchive(beginTime));
 
         String nameList = StringUtils
                 .join(goodsSalesDTOList.stream().map(goodsSalesDTO -> goodsSalesDTO.getName()).collect(Collectors.toList()), ",");
@@ -195,6 +213,134 @@ public class ReportServiceImpl implements ReportService {
                 .build();
     }
 
+    /**
+     * 导出指定区间内的运营数据报表
+     * 订单和新增用户各用一条按天分组的查询统计，报表用 SXSSF 逐行写出，直接写入输出流
+     *
+     * @param begin
+     * @param end
+     * @param out
+     * @throws IOException
+     */
+    @Override
+    public void exportBusinessData(LocalDate begin, LocalDate end, OutputStream out) throws IOException {
+        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
+        LocalDateTime endTime = LocalDateTime.of(end.plusDays(1), LocalTime.MIN);
+
+        // 按日期合并订单数据和新增用户数据，没有数据的日期不在查询结果中
+        Map<LocalDate, DailyBusinessDTO> orderDataMap = new HashMap<>();
+        for (DailyBusinessDTO data : orderMapper.getDailyBusinessData(beginTime, endTime,
+                orderArchiveRouter.includeArchive(beginTime))) {
+            orderDataMap.put(data.getDate(), data);
+        }
+        Map<LocalDate, Integer> newUsersMap = new HashMap<>();
+        for (DailyBusinessDTO data : userMapper.countNewUsersByDay(beginTime, endTime)) {
+            newUsersMap.put(data.getDate(), data.getNewUsers());
+        }
+
+        // 概览数据：整个区间的合计
+        double turnover = 0;
+        int validOrderCount = 0;
+        int totalOrderCount = 0;
+        int newUsers = 0;
+        for (DailyBusinessDTO data : orderDataMap.values()) {
+            turnover += data.getTurnover() == null ? 0 : data.getTurnover();
+            validOrderCount += data.getValidOrderCount() == null ? 0 : data.getValidOrderCount();
+            totalOrderCount += data.getTotalOrderCount() == null ? 0 : data.getTotalOrderCount();
+        }
+        for (Integer count : newUsersMap.values()) {
+            newUsers += count;
+        }
+
+        SXSSFWorkbook workbook = new SXSSFWorkbook(EXPORT_ROW_WINDOW);
+        // 临时文件压缩存储，减少磁盘占用
+        workbook.setCompressTempFiles(true);
+        try {
+            Sheet sheet = workbook.createSheet("运营数据");
+            DataFormat dataFormat = workbook.createDataFormat();
+            CellStyle amountStyle = workbook.createCellStyle();
+            amountStyle.setDataFormat(dataFormat.getFormat("0.00"));
+            CellStyle rateStyle = workbook.createCellStyle();
+            rateStyle.setDataFormat(dataFormat.getFormat("0.00%"));
+
+            int rowIndex = 0;
+            sheet.createRow(rowIndex++).createCell(0).setCellValue("运营数据报表");
+            sheet.createRow(rowIndex++).createCell(0).setCellValue("时间：" + begin + "至" + end);
+
+            // 概览数据
+            writeHeader(sheet.createRow(rowIndex++), "", "营业额", "有效订单", "订单完成率", "平均客单价", "新增用户数");
+            writeBusinessRow(sheet.createRow(rowIndex++), "合计", turnover, validOrderCount, totalOrderCount, newUsers,
+                    amountStyle, rateStyle);
+            rowIndex++;
+
+            // 明细数据，每天一行
+            writeHeader(sheet.createRow(rowIndex++), "日期", "营业额", "有效订单", "订单完成率", "平均客单价", "新增用户数");
+            for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+                DailyBusinessDTO data = orderDataMap.get(date);
+                Integer dailyNewUsers = newUsersMap.get(date);
+                writeBusinessRow(sheet.createRow(rowIndex++), date.toString(),
+                        data == null || data.getTurnover() == null ? 0 : data.getTurnover(),
+                        data == null || data.getValidOrderCount() == null ? 0 : data.getValidOrderCount(),
+                        data == null || data.getTotalOrderCount() == null ? 0 : data.getTotalOrderCount(),
+                        dailyNewUsers == null ? 0 : dailyNewUsers,
+                        amountStyle, rateStyle);
+            }
+
+            workbook.write(out);
+        } finally {
+            // 删除 SXSSF 产生的临时文件
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /**
+     * 写入表头行
+     *
+     * @param row
+     * @param titles
+     */
+    private void writeHeader(Row row, String... titles) {
+        for (int i = 0; i < titles.length; i++) {
+            row.createCell(i).setCellValue(titles[i]);
+        }
+    }
+
+    /**
+     * 写入一行营业数据，订单完成率和平均客单价的计算方式与工作台一致
+     *
+     * @param row
+     * @param label
+     * @param turnover
+     * @param validOrderCount
+     * @param totalOrderCount
+     * @param newUsers
+     * @param amountStyle
+     * @param rateStyle
+     */
+    private void writeBusinessRow(Row row, String label, double turnover, int validOrderCount, int totalOrderCount,
+                                  int newUsers, CellStyle amountStyle, CellStyle rateStyle) {
+        double orderCompletionRate = 0.0;
+        double unitPrice = 0.0;
+        if (totalOrderCount != 0 && validOrderCount != 0) {
+            orderCompletionRate = (double) validOrderCount / totalOrderCount;
+            unitPrice = turnover / validOrderCount;
+        }
+
+        row.createCell(0).setCellValue(label);
+        Cell turnoverCell = row.createCell(1);
+        turnoverCell.setCellValue(turnover);
+        turnoverCell.setCellStyle(amountStyle);
+        row.createCell(2).setCellValue(validOrderCount);
+        Cell rateCell = row.createCell(3);
+        rateCell.setCellValue(orderCompletionRate);
+        rateCell.setCellStyle(rateStyle);
+        Cell unitPriceCell = row.createCell(4);
+        unitPriceCell.setCellValue(unitPrice);
+        unitPriceCell.setCellStyle(amountStyle);
+        row.createCell(5).setCellValue(newUsers);
+    }
+
     /**
      * 根据时间区间统计用户数量
      *
@@ -222,6 +368,7 @@ public class ReportServiceImpl implements ReportService {
         map.put("status", status);
         map.put("begin", beginTime);
         map.put("end", endTime);
+        map.put("archive", orderArchiveRouter.includeArchive(status, beginTime));
         return orderMapper.countByMap(map);
     }
 }
@@ -0,0 +1,29 @@
+package com.sky.service.impl;
+
+import com.sky.search.CatalogSearchIndex;
+import com.sky.service.SearchService;
+import com.sky.vo.SearchItemVO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+public class SearchServiceImpl implements SearchService {
+
+    // 搜索结果最多返回的条数
+    private static final int MAX_RESULTS = 50;
+
+    @Autowired
+    private CatalogSearchIndex catalogSearchIndex;
+
+    /**
+     * 按名称、描述或名称的拼音首字母搜索起售中的菜品和套餐
+     * @param keyword
+     * @return
+     */
+    @Override
+    public List<SearchItemVO> search(String keyword) {
+        return catalogSearchIndex.search(keyword, MAX_RESULTS);
+    }
+}
@@ -2,8 +2,10 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.annotation.ReadOnly;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
+import com.sky.converter.SetmealConverter;
 import com.sky.dto.SetmealDTO;
 import com.sky.dto.SetmealPageQueryDTO;
 import com.sky.entity.Dish;
@@ -15,6 +17,7 @@ import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.result.PageResult;
+import com.sky.search.CatalogSearchIndex;
 import com.sky.service.SetmealService;
 import com.sky.vo.DishItemVO;
 import com.sky.vo.SetmealVO;
@@ -24,6 +27,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -39,6 +43,8 @@ public class SetmealServiceImpl implements SetmealService {
     private SetmealDishMapper setmealDishMapper;
     @Autowired
     private DishMapper dishMapper;
+    @Autowired
+    private CatalogSearchIndex catalogSearchIndex;
 
     /**
      * 新增套餐，并同时保存套餐与菜品的关联关系。
@@ -76,6 +82,9 @@ public class SetmealServiceImpl implements SetmealService {
         // 记录日志，表示套餐和菜品的关联关系已成功保存
         log.info("套餐和菜品的关联关系保存成功");
 
+        // 更新套餐搜索索引
+        catalogSearchIndex.setmealChanged(Collections.singletonList(setmeal.getId()));
+
         // 记录日志，表示套餐保存成功
         log.info("套餐保存成功");
     }
@@ -97,6 +106,11 @@ public class SetmealServiceImpl implements SetmealService {
     @Override
     public PageResult pageQuery(SetmealPageQueryDTO setmealPageQueryDTO) {
         // 使用 PageHelper 插件设置分页信息，getPage() 获取当前页码，getPageSize() 获取每页显示的条数
+        // 按名称搜索时先通过搜索索引得到候选套餐（支持拼音首字母），
+        // 查询时候选id与名称模糊匹配取并集，索引刚好漏掉的刚修改的套餐不会被当作不存在
+        List<Long> candidateIds = catalogSearchIndex.searchIds(CatalogSearchIndex.SETMEAL, setmealPageQueryDTO.getName());
+        setmealPageQueryDTO.setCandidateIds(candidateIds == null || candidateIds.isEmpty() ? null : candidateIds);
+
         PageHelper.startPage(setmealPageQueryDTO.getPage(), setmealPageQueryDTO.getPageSize());
 
         // 调用 setmealMapper 的分页查询方法，返回分页查询结果
@@ -112,8 +126,8 @@ public class SetmealServiceImpl implements SetmealService {
     /**
      * 批量删除套餐。
      * <p>
-     * 该方法用于批量删除指定 ID 的套餐。在删除前，先检查每个套餐的状态，若某个套餐处于 "起售" 状态，则不允许删除。删除操作包括：
-     * 1. 检查套餐的状态，若套餐正在售卖中（`ENABLE` 状态），则抛出异常，禁止删除。
+     * 该方法用于批量删除指定 ID 的套餐。在删除前，先检查套餐的状态，若某个套餐处于 "起售" 状态，则不允许删除。删除操作包括：
+     * 1. 一条 SQL 统计其中起售（`ENABLE` 状态）的套餐，存在则抛出异常，禁止删除。
      * 2. 删除套餐表中的数据。
      * 3. 删除套餐与菜品的关联关系数据。
      *
@@ -121,27 +135,24 @@ public class SetmealServiceImpl implements SetmealService {
      */
     @Transactional
     public void deleteBatch(List<Long> ids) {
-        // 遍历套餐 ID 列表，检查每个套餐的状态
-        ids.forEach(id -> {
-            // 获取套餐对象，查找该套餐的详细信息
-            Setmeal setmeal = setmealMapper.getById(id);
-
-            // 如果套餐处于 "起售" 状态，抛出异常，禁止删除
-            if (StatusConstant.ENABLE == setmeal.getStatus()) {
-                throw new DeletionNotAllowedException(MessageConstant.SETMEAL_ON_SALE); // 抛出自定义异常，提示套餐正在售卖中
-            }
-        });
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
 
+        // 一条SQL统计起售中的套餐，存在则禁止删除
+        if (setmealMapper.countByIdsAndStatus(ids, StatusConstant.ENABLE) > 0) {
+            throw new DeletionNotAllowedException(MessageConstant.SETMEAL_ON_SALE); // 抛出自定义异常，提示套餐正在售卖中
+        }
 
-        // 这里可以优化，执行批量删除数据，根据ids 进行批量删除套餐表和套餐菜品关系表中的数据。
-        // 遍历套餐 ID 列表，执行删除操作
-        ids.forEach(setmealId -> {
-            // 删除套餐表中的数据
-            setmealMapper.deleteById(setmealId);
+        // 根据ids 批量删除套餐表和套餐菜品关系表中的数据
+        // sql: DELETE FROM setmeal WHERE id in (?, ?, ?)
+        setmealMapper.deleteByIds(ids);
 
-            // 删除套餐菜品关系表中的数据，确保套餐与菜品的关联被清除
-            setmealDishMapper.deleteBySetmealId(setmealId);
-        });
+        // 删除套餐菜品关系表中的数据，确保套餐与菜品的关联被清除
+        setmealDishMapper.deleteBySetmealIds(ids);
+
+        // 从套餐搜索索引中移除
+        catalogSearchIndex.setmealChanged(ids);
     }
 
 
@@ -189,6 +200,9 @@ public class SetmealServiceImpl implements SetmealService {
         // 3. 重新插入套餐与菜品的关联关系
         // 批量插入新的套餐与菜品的关联关系
         setmealDishMapper.insertBatch(setmealDishes);
+
+        // 更新套餐搜索索引
+        catalogSearchIndex.setmealChanged(Collections.singletonList(setmealId));
     }
 
 
@@ -225,6 +239,9 @@ public class SetmealServiceImpl implements SetmealService {
 
         // 调用数据访问层更新套餐状态
         setmealMapper.update(setmeal);
+
+        // C端搜索只返回起售中的套餐
+        catalogSearchIndex.setmealChanged(Collections.singletonList(id));
     }
 
 
@@ -234,6 +251,7 @@ public class SetmealServiceImpl implements SetmealService {
      * @param setmeal
      * @return
      */
+    @ReadOnly
     public List<Setmeal> list(Setmeal setmeal) {
         List<Setmeal> list = setmealMapper.list(setmeal);
         return list;
@@ -245,6 +263,7 @@ public class SetmealServiceImpl implements SetmealService {
      * @param id
      * @return
      */
+    @ReadOnly
     public List<DishItemVO> getDishItemById(Long id) {
         return setmealMapper.getDishItemBySetmealId(id);
     }
@@ -270,11 +289,8 @@ public class SetmealServiceImpl implements SetmealService {
         // 查询套餐与菜品的关联信息
         List<SetmealDish> setmealDishes = setmealDishMapper.getBySetmealId(id);
 
-        // 创建 SetmealVO 对象，用于封装查询结果
-        SetmealVO setmealVO = new SetmealVO();
-
-        // 将套餐基本信息复制到 SetmealVO 对象中
-        BeanUtils.copyProperties(setmeal, setmealVO);
+        // 创建 SetmealVO 对象，将套餐基本信息复制到 SetmealVO 对象中
+        SetmealVO setmealVO = SetmealConverter.toSetmealVO(setmeal);
 
         // 将菜品信息设置到 SetmealVO 对象中
         setmealVO.setSetmealDishes(setmealDishes);
@@ -1,6 +1,7 @@
 package com.sky.service.impl;
 
 import com.sky.context.BaseContext;
+import com.sky.converter.ShoppingCartConverter;
 import com.sky.dto.ShoppingCartDTO;
 import com.sky.entity.Dish;
 import com.sky.entity.Setmeal;
@@ -9,7 +10,6 @@ import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.mapper.ShoppingCartMapper;
 import com.sky.service.ShoppingCartService;
-import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -36,9 +36,8 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
     @Override
     public void addShoppingCart(ShoppingCartDTO shoppingCartDTO) {
         // 创建购物车对象，用于存储当前商品的信息
-        ShoppingCart shoppingCart = new ShoppingCart();
         // 将传入的DTO对象的属性复制到ShoppingCart对象中
-        BeanUtils.copyProperties(shoppingCartDTO, shoppingCart);
+        ShoppingCart shoppingCart = ShoppingCartConverter.fromDTO(shoppingCartDTO);
         // 获取当前用户的ID（假设是通过上下文工具类获取的）
         Long userId = BaseContext.getCurrentId();
         // 将用户ID设置到购物车对象中，确保与当前用户关联，查询当前用户的购物车，一用户一车。
@@ -120,8 +119,7 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
      */
     @Override
     public void subShoppingCart(ShoppingCartDTO shoppingCartDTO) {
-        ShoppingCart shop = new ShoppingCart();
-        BeanUtils.copyProperties(shoppingCartDTO, shop);
+        ShoppingCart shop = ShoppingCartConverter.fromDTO(shoppingCartDTO);
         List<ShoppingCart> list = shoppingCartMapper.list(shop);
         if (list != null && !list.isEmpty()) {
             ShoppingCart cart = list.get(0);
@@ -16,7 +16,12 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * UserServiceImpl 实现类，用于处理与用户相关的业务逻辑。
@@ -34,25 +39,81 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private UserMapper userMapper; // 数据访问对象，用于操作用户数据表
 
+    // 用户缓存的最大数量，超过后淘汰最久未使用的用户
+    private static final int USER_CACHE_SIZE = 10000;
+
+    // 用户缓存的有效时间（毫秒）
+    private static final long USER_CACHE_TTL_MILLIS = 30 * 60 * 1000;
+
+    // openid -> 用户，老用户登录时不再查询数据库；按访问顺序淘汰
+    private final Map<String, CachedUser> userCache = new LinkedHashMap<String, CachedUser>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+            return size() > USER_CACHE_SIZE;
+        }
+    };
+
+    // 授权码 -> 正在进行的登录
+    private final ConcurrentMap<String, CompletableFuture<User>> loginsInFlight = new ConcurrentHashMap<>();
+
     /**
      * 微信登录的核心逻辑。
      * 用户通过微信授权码登录，若是新用户则会自动注册，随后返回用户信息。
+     * 同一个授权码的并发请求（如重复点击）只调用一次微信接口，其余请求等待并共享结果。
      *
      * @param userLoginDTO 包含微信授权码的登录数据传输对象
      * @return User 返回登录的用户信息
      */
     @Override
     public User wxLogin(UserLoginDTO userLoginDTO) {
+        String code = userLoginDTO.getCode();
+        if (code == null) {
+            throw new LoginFailedException(MessageConstant.LOGIN_FAILED);
+        }
+
+        // 已有相同授权码的登录正在进行，等待其结果
+        CompletableFuture<User> future = new CompletableFuture<>();
+        CompletableFuture<User> running = loginsInFlight.putIfAbsent(code, future);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        try {
+            User user = login(code);
+            future.complete(user);
+            return user;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loginsInFlight.remove(code, future);
+        }
+    }
+
+    private User login(String code) {
         // 获取微信用户的 openid
-        String openid = getOpenid(userLoginDTO.getCode());
+        String openid = getOpenid(code);
 
         // 如果 openid 为 null，说明登录失败，抛出自定义异常
         if (openid == null) {
             throw new LoginFailedException(MessageConstant.LOGIN_FAILED); // 登录失败提示
         }
 
+        // 老用户直接从缓存中获取，不查询数据库
+        User user = getCachedUser(openid);
+        if (user != null) {
+            return user;
+        }
+
         // 根据 openid 查询数据库，判断用户是否已注册
-        User user = userMapper.getByOpenid(openid);
+        user = userMapper.getByOpenid(openid);
 
         // 如果用户不存在（新用户），需要完成注册
         if (user == null) {
@@ -62,22 +123,57 @@ public class UserServiceImpl implements UserService {
                     .createTime(LocalDateTime.now()) // 设置用户创建时间
                     .build();
 
-
-            // 保存新用户到本地数据库
-            userMapper.insert(user);
+            // 保存新用户到本地数据库，openid 已存在（其它请求同时注册了该用户）时不重复插入，重新查询已注册的用户
+            if (userMapper.insertIgnoreDuplicate(user) == 0) {
+                user = userMapper.getByOpenid(openid);
+            }
         }
 
+        cacheUser(user);
         // 返回用户对象（无论是新用户还是老用户）
         return user;
     }
 
+    private User getCachedUser(String openid) {
+        synchronized (userCache) {
+            CachedUser cached = userCache.get(openid);
+            if (cached == null) {
+                return null;
+            }
+            if (cached.expireTime < System.currentTimeMillis()) {
+                userCache.remove(openid);
+                return null;
+            }
+            return cached.user;
+        }
+    }
+
+    private void cacheUser(User user) {
+        synchronized (userCache) {
+            userCache.put(user.getOpenid(), new CachedUser(user, System.currentTimeMillis() + USER_CACHE_TTL_MILLIS));
+        }
+    }
+
+    /**
+     * 缓存的用户及其过期时间
+     */
+    private static class CachedUser {
+        private final User user;
+        private final long expireTime;
+
+        CachedUser(User user, long expireTime) {
+            this.user = user;
+            this.expireTime = expireTime;
+        }
+    }
+
     /**
      * 调用微信接口，根据授权码获取用户的 openid。
      *
      * @param code 微信授权码
      * @return String 返回获取到的 openid
      */
-    private String getOpenid(String code) {
+    String getOpenid(String code) {
         // 准备请求微信接口的参数
         Map<String, String> map = new HashMap<>();
         map.put("appid", weChatProperties.getAppid()); // 小程序的 appid
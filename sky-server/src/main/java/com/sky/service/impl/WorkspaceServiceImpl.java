@@ -1,5 +1,6 @@
 package com.sky.service.impl;
 
+import com.sky.annotation.ReadOnly;
 import com.sky.constant.StatusConstant;
 import com.sky.entity.Orders;
 import com.sky.mapper.DishMapper;
@@ -20,6 +21,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 @Service
+@ReadOnly //工作台统计只读，启用读写分离时查询从库
 public class WorkspaceServiceImpl implements WorkspaceService {
 
     @Autowired
@@ -30,6 +32,8 @@ public class WorkspaceServiceImpl implements WorkspaceService {
     private DishMapper dishMapper;
     @Autowired
     private SetmealMapper setmealMapper;
+    @Autowired
+    private OrderArchiveRouter orderArchiveRouter;
 
     /**
      * 根据时间段统计营业数据
@@ -50,6 +54,7 @@ public class WorkspaceServiceImpl implements WorkspaceService {
         Map<String, Object> map = new HashMap<>();
         map.put("begin", begin);
         map.put("end", end);
+        map.put("archive", orderArchiveRouter.includeArchive(begin));
 
         // 查询总订单数
         Integer totalOrderCount = orderMapper.countByMap(map);
@@ -0,0 +1,106 @@
+package com.sky.task;
+
+import com.sky.lock.JobLeader;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderArchiveProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单归档
+ * 把下单时间早于保留天数的已完成、已取消订单连同订单明细移入归档表（orders_archive、order_detail_archive），
+ * 订单表只保留近期和进行中的订单。每一批在一个事务中复制后删除，批次之间暂停一段时间，避免长时间占用数据库。
+ * 归档在独立的线程中执行，不占用定时任务线程；单次运行超过 maxMinutes 后停止，剩余订单下一次继续。
+ */
+@Component
+@Slf4j
+public class OrderArchiveTask implements InitializingBean, DisposableBean {
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private OrderDetailMapper orderDetailMapper;
+
+    @Autowired
+    private OrderArchiveProperties orderArchiveProperties;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JobLeader jobLeader;
+
+    private ExecutorService executor;
+
+    @Override
+    public void afterPropertiesSet() {
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "order-archive");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 每天凌晨归档一次
+     */
+    @Scheduled(cron = "0 30 3 * * ?")
+    public void archive() {
+        executor.execute(() -> jobLeader.runIfLeader("archiveOrders", this::archiveOrders));
+    }
+
+    private void archiveOrders() {
+        LocalDateTime time = LocalDateTime.now().minusDays(orderArchiveProperties.getRetentionDays());
+        int chunkSize = orderArchiveProperties.getChunkSize();
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(orderArchiveProperties.getMaxMinutes());
+        log.info("开始归档下单时间早于{}的订单", time);
+
+        int total = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            if (System.currentTimeMillis() >= deadline) {
+                log.info("归档运行时间超过{}分钟，剩余订单下一次继续归档", orderArchiveProperties.getMaxMinutes());
+                break;
+            }
+            List<Long> ids = orderMapper.getArchivableIds(time, chunkSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+
+            transactionTemplate.executeWithoutResult(status -> {
+                orderDetailMapper.archiveByOrderIds(ids);
+                orderMapper.archiveByIds(ids);
+                orderDetailMapper.deleteByOrderIds(ids);
+                orderMapper.deleteByIds(ids);
+            });
+            total += ids.size();
+
+            if (ids.size() < chunkSize) {
+                break;
+            }
+            try {
+                Thread.sleep(orderArchiveProperties.getPauseMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.info("共归档了{}个订单", total);
+    }
+}
@@ -1,9 +1,11 @@
 package com.sky.task;
 
 import com.sky.entity.Orders;
+import com.sky.lock.JobLeader;
 import com.sky.mapper.OrderMapper;
+import com.sky.service.impl.OrderStateMachine;
 
-import java.util.Date;
+import java.util.ArrayList;
 import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,86 +13,104 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
-import java.util.stream.Collectors;
 
 @Component
 @Slf4j
 
 public class OrderTask {
 
+    /**
+     * 超时取消原因
+     */
+    public static final String TIMEOUT_CANCEL_REASON = "订单超时，自动取消！";
+
+    // 每一批处理的订单数量，避免一条语句锁住过多的行
+    private static final int CHUNK_SIZE = 1000;
+
 
     @Autowired
     private OrderMapper orderMapper;
 
+    @Autowired
+    private JobLeader jobLeader;
+
+    @Autowired
+    private OrderStateMachine orderStateMachine;
+
     /**
      * 处理超时订单的方法
+     * 超时订单由 OrderTimeoutWheel 在到期时精确取消，这里只作为低频兜底，
+     * 处理应用重启后丢失的超时任务以及时间轮取消失败的订单。
      */
-    /*
-    @Scheduled(cron = "0 * * * * ? ")  //每分钟触发一次
+    @Scheduled(cron = "0 0/10 * * * ? ")  //每10分钟触发一次
     public void processTimeoutOrder(){
-        log.info("定时处理超时订单：{}", LocalDateTime.now());
-
-        LocalDateTime time = LocalDateTime.now().minusMinutes(15);
-
-        // select * from orders where status = ? and order_time < (当前时间 - 15分钟)
-        List<Orders> ordersList = orderMapper.getByStatusAndOrderTimeLT(Orders.PENDING_PAYMENT,time);
+        //多节点部署时只由抢到任务锁的节点执行
+        jobLeader.runIfLeader("processTimeoutOrder", this::cancelTimeoutOrders);
+    }
 
-        if(!ordersList.isEmpty()){
-            //采用stream流的方式，来创建一个新的updateList用于执行update操作。
-            List<Orders> updateList = ordersList.stream().map(x -> {
-                Orders orders = new Orders();
-                orders.setStatus(Orders.CANCELLED);
-                orders.setCancelReason("订单超时，自动取消！");
-                orders.setCancelTime(LocalDateTime.now());
-                orders.setId(x.getId());
-                return orders;
-            }).collect(Collectors.toList());
+    private void cancelTimeoutOrders(){
+        log.info("定时处理超时订单：{}", LocalDateTime.now());
 
-            //批量处理数据，效率更好
-            orderMapper.batchUpdateOrders(updateList);
-            log.info("共处理了{}个超时支付订单", updateList.size());
+        // update orders set status = 6 ... where status = 1 and order_time < (当前时间 - 15分钟)
+        LocalDateTime time = LocalDateTime.now().minusMinutes(OrderTimeoutWheel.TIMEOUT_MINUTES);
+        Orders orders = Orders.builder()
+                .status(Orders.CANCELLED)
+                .cancelReason(TIMEOUT_CANCEL_REASON)
+                .cancelTime(LocalDateTime.now())
+                .build();
 
-        }else{
-            log.info("没有超时订单需要处理");
-        }
+        List<Long> ids = transition(Orders.PENDING_PAYMENT, time, orders);
+        log.info("共处理了{}个超时支付订单", ids.size());
     }
 
-    */
-
 
     /**
      * 处理一直处于“派送中”状态的订单
      */
-
-    /*
     @Scheduled(cron = "0 0 1 * * ?")
     public void processDeliveryOrder(){
+        jobLeader.runIfLeader("processDeliveryOrder", this::completeDeliveryOrders);
+    }
+
+    private void completeDeliveryOrders(){
         log.info("处理派送中订单：{}", LocalDateTime.now());
-        // select * from orders where status = 4 and order_time < 当前时间-1小时
+
+        // update orders set status = 5 ... where status = 4 and order_time < 当前时间-1小时
         LocalDateTime time = LocalDateTime.now().minusMinutes(60);
-        List<Orders> ordersList = orderMapper.getByStatusAndOrdertimeLT(Orders.DELIVERY_IN_PROGRESS, time);
+        Orders orders = Orders.builder()
+                .status(Orders.COMPLETED)
+                .deliveryTime(LocalDateTime.now())
+                .build();
 
-        if(ordersList != null && ordersList.size() > 0){
-            ordersList.forEach(order -> {
-                order.setStatus(Orders.COMPLETED);
-                orderMapper.update(order);
-            });
-        }
+        List<Long> ids = transition(Orders.DELIVERY_IN_PROGRESS, time, orders);
+        log.info("共处理了{}个派送中订单", ids.size());
     }
 
-
+    /**
+     * 分批把指定状态、下单时间早于 orderTime 的订单修改为 orders 中的状态，直到没有满足条件的订单
+     * 每一批先按主键查出一批id，再用一条带状态条件的 update 语句修改，不再逐行更新；
+     * 查询之后被其它操作修改了状态的订单不会被修改，也不计入结果
+     *
+     * @param status    修改前的订单状态
+     * @param orderTime 下单时间上限
+     * @param orders    要修改的字段
+     * @return 本次实际修改的订单id，供后续通知使用
      */
-
-
-
-
-
-
-
-
-
-
-
-
+    private List<Long> transition(Integer status, LocalDateTime orderTime, Orders orders) {
+        List<Long> result = new ArrayList<>();
+        while (true) {
+            List<Long> ids = orderMapper.getIdsByStatusAndOrderTimeLT(status, orderTime, CHUNK_SIZE);
+            if (ids.isEmpty()) {
+                break;
+            }
+
+            result.addAll(orderStateMachine.transit(ids, orders, status));
+
+            if (ids.size() < CHUNK_SIZE) {
+                break;
+            }
+        }
+        return result;
+    }
 
 }
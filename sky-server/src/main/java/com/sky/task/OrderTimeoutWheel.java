@@ -0,0 +1,191 @@
+package com.sky.task;
+
+import com.sky.context.BaseContext;
+import com.sky.entity.Orders;
+import com.sky.service.impl.OrderStateMachine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单支付超时时间轮
+ * 下单时按订单的超时时间把订单id放入对应的槽位，支付成功时移除；
+ * 时间轮每秒推进一格，把到期的订单批量取消，取代每分钟一次的全表扫描。
+ * OrderTask 中的定时扫描保留为低频兜底（应用重启、多节点下单等情况）。
+ */
+@Component
+@Slf4j
+public class OrderTimeoutWheel implements InitializingBean, DisposableBean {
+
+    /**
+     * 订单支付超时时间（分钟）
+     */
+    public static final long TIMEOUT_MINUTES = 15;
+
+    // 每一格的时间跨度（毫秒）
+    private static final long TICK_MILLIS = 1000;
+
+    // 槽位数量，必须是2的幂；1024格 * 1秒 大于15分钟，正常情况下订单在第一圈内到期
+    private static final int WHEEL_SIZE = 1024;
+
+    // 每条取消语句最多包含的订单数
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private OrderStateMachine orderStateMachine;
+
+    // 每个槽位：订单id -> 到期的格数；放入和取出到期订单时对槽位加锁
+    private final List<Map<Long, Long>> slots = new ArrayList<>(WHEEL_SIZE);
+
+    // 订单id -> 所在槽位，用于支付成功时快速移除
+    private final Map<Long, Integer> index = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService executor;
+
+    private long startTime;
+
+    // 当前正在处理的格数，由时间轮线程推进
+    private volatile long currentTick;
+
+    public OrderTimeoutWheel() {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            slots.add(new ConcurrentHashMap<>());
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        startTime = System.currentTimeMillis();
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "order-timeout-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> BaseContext.runAsSystem(this::advance), TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 登记订单的支付超时
+     * @param orderId   订单id
+     * @param orderTime 下单时间
+     */
+    public void schedule(Long orderId, LocalDateTime orderTime) {
+        long deadline = orderTime.plusMinutes(TIMEOUT_MINUTES)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long deadlineTick = (deadline - startTime + TICK_MILLIS - 1) / TICK_MILLIS;
+        // 不能放进正在处理的槽位，否则要等下一圈才会被处理
+        long tick = Math.max(deadlineTick, currentTick + 1);
+        int slot = (int) (tick & (WHEEL_SIZE - 1));
+
+        boolean[] expired = new boolean[1];
+        // 在 index 的同一个键上移除旧任务、放入新任务，与 cancel 互斥
+        index.compute(orderId, (id, oldSlot) -> {
+            if (oldSlot != null) {
+                slots.get(oldSlot).remove(id);
+            }
+            Map<Long, Long> bucket = slots.get(slot);
+            synchronized (bucket) {
+                // 计算槽位之后时间轮可能已经推进到这一格并处理完这个槽位，此时直接取消
+                if (tick <= currentTick) {
+                    expired[0] = true;
+                    return null;
+                }
+                bucket.put(id, tick);
+            }
+            return slot;
+        });
+
+        if (expired[0]) {
+            executor.execute(() -> BaseContext.runAsSystem(() -> expire(Collections.singletonList(orderId))));
+        }
+    }
+
+    /**
+     * 取消订单的超时任务（支付成功、用户取消）
+     * @param orderId
+     */
+    public void cancel(Long orderId) {
+        index.computeIfPresent(orderId, (id, slot) -> {
+            slots.get(slot).remove(id);
+            return null;
+        });
+    }
+
+    /**
+     * 当前时间轮中等待超时的订单数量
+     * @return
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * 推进一格，取消当前槽位中已经到期的订单
+     */
+    private void advance() {
+        long tick = ++currentTick;
+        int slot = (int) (tick & (WHEEL_SIZE - 1));
+        Map<Long, Long> bucket = slots.get(slot);
+
+        List<Long> expired = new ArrayList<>();
+        synchronized (bucket) {
+            Iterator<Map.Entry<Long, Long>> iterator = bucket.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Long, Long> entry = iterator.next();
+                if (entry.getValue() <= tick) {
+                    iterator.remove();
+                    expired.add(entry.getKey());
+                }
+            }
+        }
+        if (expired.isEmpty()) {
+            return;
+        }
+        // 在槽位锁之外修改 index，避免与 schedule 的加锁顺序相反
+        for (Long id : expired) {
+            index.remove(id, slot);
+        }
+
+        for (int from = 0; from < expired.size(); from += BATCH_SIZE) {
+            expire(expired.subList(from, Math.min(from + BATCH_SIZE, expired.size())));
+        }
+    }
+
+    /**
+     * 取消到期的订单，只有仍处于待付款状态的订单才会被取消，已支付的订单不受影响
+     * @param ids
+     */
+    private void expire(List<Long> ids) {
+        try {
+            Orders orders = Orders.builder()
+                    .status(Orders.CANCELLED)
+                    .cancelReason(OrderTask.TIMEOUT_CANCEL_REASON)
+                    .cancelTime(LocalDateTime.now())
+                    .build();
+            List<Long> cancelled = orderStateMachine.transit(ids, orders, Orders.PENDING_PAYMENT);
+            log.info("时间轮取消超时订单：到期{}个，实际取消{}个", ids.size(), cancelled.size());
+        } catch (Exception e) {
+            // 失败的订单交给 OrderTask 的定时扫描兜底
+            log.error("时间轮取消超时订单失败：{}", ids, e);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.sky.token;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 布隆过滤器，判断结果为“不存在”时一定不存在
+ * 创建后只读，多线程查询不需要加锁；吊销列表变化时整体重建
+ */
+class BloomFilter {
+
+    // 每个元素占用的位数，约1%的误判率
+    private static final int BITS_PER_ELEMENT = 10;
+
+    private static final int HASH_COUNT = 7;
+
+    private final long[] bits;
+
+    private final int size;
+
+    BloomFilter(int expectedElements) {
+        int numBits = Math.max(64, expectedElements * BITS_PER_ELEMENT);
+        bits = new long[(numBits + 63) >>> 6];
+        size = bits.length << 6;
+    }
+
+    void put(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int index = ((h1 + i * h2) & Integer.MAX_VALUE) % size;
+            bits[index >>> 6] |= 1L << index;
+        }
+    }
+
+    boolean mightContain(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int index = ((h1 + i * h2) & Integer.MAX_VALUE) % size;
+            if ((bits[index >>> 6] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 64位 FNV-1a，高低32位作为两个独立的哈希值
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
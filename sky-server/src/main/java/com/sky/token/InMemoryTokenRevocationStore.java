@@ -0,0 +1,36 @@
+package com.sky.token;
+
+import com.sky.properties.JwtProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 基于内存的令牌吊销存储，只对当前节点生效，用于单节点部署和测试
+ */
+@Component
+@ConditionalOnProperty(name = "sky.token-revocation.type", havingValue = "memory")
+public class InMemoryTokenRevocationStore implements TokenRevocationStore {
+
+    @Autowired
+    private JwtProperties jwtProperties;
+
+    private volatile RevocationSnapshot snapshot = RevocationSnapshot.EMPTY;
+
+    @Override
+    public synchronized void revoke(String subject) {
+        long now = System.currentTimeMillis();
+        // 早于最长有效期的吊销记录已经没有意义，重建时丢弃
+        long maxTtl = Math.max(jwtProperties.getAdminTtl(), jwtProperties.getUserTtl());
+        Map<String, Long> entries = snapshot.entries(now - maxTtl);
+        entries.put(subject, now);
+        snapshot = new RevocationSnapshot(entries);
+    }
+
+    @Override
+    public boolean isRevoked(String subject, long issuedAt) {
+        return snapshot.isRevoked(subject, issuedAt);
+    }
+}
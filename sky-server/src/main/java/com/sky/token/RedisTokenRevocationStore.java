@@ -0,0 +1,101 @@
+package com.sky.token;
+
+import com.sky.properties.JwtProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 基于 Redis 的令牌吊销存储
+ * 吊销记录保存在 Redis 哈希表中（主体 -> 吊销时间），每次吊销递增版本号；
+ * 各节点每秒检查一次版本号，变化时重新加载吊销列表，拦截器只查询本地快照，不访问 Redis。
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "sky.token-revocation.type", havingValue = "redis", matchIfMissing = true)
+public class RedisTokenRevocationStore implements TokenRevocationStore, InitializingBean {
+
+    private static final String REVOKED_KEY = "jwt:revoked";
+
+    private static final String VERSION_KEY = "jwt:revoked:version";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private JwtProperties jwtProperties;
+
+    private volatile RevocationSnapshot snapshot = RevocationSnapshot.EMPTY;
+
+    // 已加载的版本号
+    private String version;
+
+    private boolean loaded;
+
+    @Override
+    public void afterPropertiesSet() {
+        sync();
+    }
+
+    @Override
+    public synchronized void revoke(String subject) {
+        long now = System.currentTimeMillis();
+        stringRedisTemplate.opsForHash().put(REVOKED_KEY, subject, String.valueOf(now));
+        stringRedisTemplate.opsForValue().increment(VERSION_KEY);
+
+        // 本节点立即生效，其它节点在下一次同步时生效
+        Map<String, Long> entries = snapshot.entries(0);
+        entries.put(subject, now);
+        snapshot = new RevocationSnapshot(entries);
+    }
+
+    @Override
+    public boolean isRevoked(String subject, long issuedAt) {
+        return snapshot.isRevoked(subject, issuedAt);
+    }
+
+    /**
+     * 版本号变化时重新加载吊销列表，同时清理已经没有意义的吊销记录
+     */
+    @Scheduled(fixedDelay = 1000)
+    public synchronized void sync() {
+        try {
+            String current = stringRedisTemplate.opsForValue().get(VERSION_KEY);
+            if (loaded && Objects.equals(current, version)) {
+                return;
+            }
+
+            // 早于最长有效期的吊销记录对应的令牌都已过期
+            long minTime = System.currentTimeMillis() - Math.max(jwtProperties.getAdminTtl(), jwtProperties.getUserTtl());
+            Map<String, Long> entries = new HashMap<>();
+            List<Object> expired = new ArrayList<>();
+            stringRedisTemplate.opsForHash().entries(REVOKED_KEY).forEach((subject, time) -> {
+                long revokedAt = Long.parseLong(time.toString());
+                if (revokedAt < minTime) {
+                    expired.add(subject);
+                } else {
+                    entries.put(subject.toString(), revokedAt);
+                }
+            });
+            if (!expired.isEmpty()) {
+                stringRedisTemplate.opsForHash().delete(REVOKED_KEY, expired.toArray());
+            }
+
+            snapshot = new RevocationSnapshot(entries);
+            version = current;
+            loaded = true;
+        } catch (Exception e) {
+            // Redis 不可用时继续使用上一次的快照
+            log.error("同步令牌吊销列表失败", e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.sky.token;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 吊销列表的只读快照：布隆过滤器在前，绝大多数未吊销的主体只需要计算一次哈希；
+ * 布隆过滤器命中后再查吊销时间
+ */
+class RevocationSnapshot {
+
+    static final RevocationSnapshot EMPTY = new RevocationSnapshot(Collections.emptyMap());
+
+    private final BloomFilter bloomFilter;
+
+    // 主体 -> 吊销时间（毫秒）
+    private final Map<String, Long> revokedAt;
+
+    RevocationSnapshot(Map<String, Long> revokedAt) {
+        this.revokedAt = new HashMap<>(revokedAt);
+        this.bloomFilter = new BloomFilter(revokedAt.size());
+        revokedAt.keySet().forEach(bloomFilter::put);
+    }
+
+    /**
+     * jwt 的签发时间（iat）只精确到秒，吊销时间是毫秒，按秒比较：
+     * 吊销那一秒之前签发的令牌失效，同一秒内重新登录签发的令牌有效
+     * @param subject  主体
+     * @param issuedAt 令牌签发时间（毫秒）
+     * @return
+     */
+    boolean isRevoked(String subject, long issuedAt) {
+        if (!bloomFilter.mightContain(subject)) {
+            return false;
+        }
+        Long time = revokedAt.get(subject);
+        return time != null && issuedAt / 1000 < time / 1000;
+    }
+
+    /**
+     * 吊销列表，不包含早于 minTime 的记录
+     * @param minTime 此前吊销的令牌都已自然过期
+     * @return
+     */
+    Map<String, Long> entries(long minTime) {
+        Map<String, Long> entries = new HashMap<>();
+        revokedAt.forEach((subject, time) -> {
+            if (time >= minTime) {
+                entries.put(subject, time);
+            }
+        });
+        return entries;
+    }
+}
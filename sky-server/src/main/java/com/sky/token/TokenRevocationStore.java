@@ -0,0 +1,33 @@
+package com.sky.token;
+
+/**
+ * 令牌吊销存储
+ * 按主体（员工、用户）吊销：吊销时间之前签发的令牌全部失效，之后重新登录签发的令牌不受影响。
+ */
+public interface TokenRevocationStore {
+
+    /**
+     * 员工主体前缀
+     */
+    String EMPLOYEE = "emp:";
+
+    /**
+     * 微信用户主体前缀
+     */
+    String USER = "user:";
+
+    /**
+     * 吊销主体在当前时间之前签发的所有令牌
+     * @param subject 主体，如 EMPLOYEE + 员工id
+     */
+    void revoke(String subject);
+
+    /**
+     * 判断令牌是否已被吊销，签发时间与吊销时间按秒比较（jwt 的 iat 只精确到秒），
+     * 吊销的同一秒内签发的令牌视为吊销之后签发
+     * @param subject  主体
+     * @param issuedAt 令牌签发时间（毫秒），没有签发时间的令牌传0
+     * @return
+     */
+    boolean isRevoked(String subject, long issuedAt);
+}
@@ -0,0 +1,178 @@
+package com.sky.aspect;
+
+import com.sky.annotation.AutoFill;
+import com.sky.context.BaseContext;
+import com.sky.entity.Dish;
+import com.sky.entity.Employee;
+import com.sky.enumeration.OperationType;
+import com.sky.mapper.EmployeeMapper;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 公共字段自动填充的测试，直接以模拟的连接点调用切面的前置通知
+ */
+public class AutoFillAspectTest {
+
+    private final AutoFillAspect autoFillAspect = new AutoFillAspect();
+
+    @BeforeEach
+    public void setUp() {
+        BaseContext.setCurrentId(7L);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        BaseContext.removeCurrentId();
+    }
+
+    /**
+     * 拦截 method 的连接点，参数为 args
+     */
+    private static JoinPoint joinPoint(Method method, Object... args) {
+        MethodSignature signature = (MethodSignature) Proxy.newProxyInstance(MethodSignature.class.getClassLoader(),
+                new Class<?>[]{MethodSignature.class}, (proxy, m, a) -> {
+                    if ("getMethod".equals(m.getName())) {
+                        return method;
+                    }
+                    throw new UnsupportedOperationException(m.getName());
+                });
+        return (JoinPoint) Proxy.newProxyInstance(JoinPoint.class.getClassLoader(), new Class<?>[]{JoinPoint.class},
+                (proxy, m, a) -> {
+                    switch (m.getName()) {
+                        case "getSignature":
+                            return signature;
+                        case "getArgs":
+                            return args;
+                        default:
+                            throw new UnsupportedOperationException(m.getName());
+                    }
+                });
+    }
+
+    /**
+     * 插入时填充创建时间、创建人、修改时间和修改人
+     */
+    @Test
+    public void insertFillsCreateAndUpdateFields() throws Exception {
+        Employee employee = Employee.builder().name("张三").build();
+        LocalDateTime before = LocalDateTime.now();
+
+        autoFillAspect.autoFill(joinPoint(EmployeeMapper.class.getMethod("insert", Employee.class), employee));
+
+        assertNotNull(employee.getCreateTime());
+        assertTrue(!employee.getCreateTime().isBefore(before));
+        assertEquals(employee.getCreateTime(), employee.getUpdateTime());
+        assertEquals(7L, employee.getCreateUser().longValue());
+        assertEquals(7L, employee.getUpdateUser().longValue());
+    }
+
+    /**
+     * 修改时只填充修改时间和修改人
+     */
+    @Test
+    public void updateFillsUpdateFieldsOnly() throws Exception {
+        Employee employee = Employee.builder().id(1L).build();
+
+        autoFillAspect.autoFill(joinPoint(EmployeeMapper.class.getMethod("update", Employee.class), employee));
+
+        assertNull(employee.getCreateTime());
+        assertNull(employee.getCreateUser());
+        assertNotNull(employee.getUpdateTime());
+        assertEquals(7L, employee.getUpdateUser().longValue());
+    }
+
+    /**
+     * 参数是实体集合时逐个填充，跳过 null 元素
+     */
+    @Test
+    public void collectionArgumentFillsEachEntity() throws Exception {
+        Dish first = Dish.builder().name("宫保鸡丁").build();
+        Dish second = Dish.builder().name("鱼香肉丝").build();
+
+        autoFillAspect.autoFill(joinPoint(BatchMapper.class.getMethod("insertBatch", List.class),
+                Arrays.asList(first, null, second)));
+
+        for (Dish dish : Arrays.asList(first, second)) {
+            assertNotNull(dish.getCreateTime());
+            assertEquals(7L, dish.getCreateUser().longValue());
+            assertEquals(7L, dish.getUpdateUser().longValue());
+        }
+    }
+
+    /**
+     * 实体类缺少部分公共字段时只填充存在的字段
+     */
+    @Test
+    public void missingSettersAreSkipped() throws Exception {
+        PartialEntity entity = new PartialEntity();
+
+        autoFillAspect.autoFill(joinPoint(BatchMapper.class.getMethod("insertPartial", PartialEntity.class), entity));
+
+        assertNotNull(entity.updateTime);
+    }
+
+    /**
+     * 参数为 null 或没有参数时不填充
+     */
+    @Test
+    public void nullOrMissingArgumentIsIgnored() throws Exception {
+        Method insert = EmployeeMapper.class.getMethod("insert", Employee.class);
+
+        autoFillAspect.autoFill(joinPoint(insert, (Object) null));
+        autoFillAspect.autoFill(joinPoint(insert));
+    }
+
+    /**
+     * 没有登录用户时（如定时任务）创建人和修改人为 null
+     */
+    @Test
+    public void noCurrentUserFillsNullUser() throws Exception {
+        BaseContext.removeCurrentId();
+        Employee employee = Employee.builder().name("张三").build();
+
+        autoFillAspect.autoFill(joinPoint(EmployeeMapper.class.getMethod("insert", Employee.class), employee));
+
+        assertNotNull(employee.getCreateTime());
+        assertNull(employee.getCreateUser());
+        assertNull(employee.getUpdateUser());
+    }
+
+    /**
+     * 批量操作的 mapper 方法，只用于构造连接点
+     */
+    public interface BatchMapper {
+
+        @AutoFill(OperationType.INSERT)
+        void insertBatch(List<Dish> dishes);
+
+        @AutoFill(OperationType.INSERT)
+        void insertPartial(PartialEntity entity);
+    }
+
+    /**
+     * 只有修改时间的实体类
+     */
+    public static class PartialEntity {
+
+        private LocalDateTime updateTime;
+
+        public void setUpdateTime(LocalDateTime updateTime) {
+            this.updateTime = updateTime;
+        }
+    }
+}
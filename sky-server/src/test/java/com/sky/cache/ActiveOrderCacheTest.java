@@ -0,0 +1,364 @@
+package com.sky.cache;
+
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.service.impl.OrderStateMachine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.BeanUtils;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 进行中订单缓存的测试：订单状态经过状态机修改后本节点立即读到新状态，其它节点同步后读到新状态；
+ * 已完成、已取消和已归档的订单不缓存，加载期间发生的修改不会被旧数据覆盖
+ */
+public class ActiveOrderCacheTest {
+
+    // 模拟的订单表、归档表和订单明细表
+    private final Map<Long, Orders> table = new ConcurrentHashMap<>();
+    private final Map<Long, Orders> archive = new ConcurrentHashMap<>();
+    private final Map<Long, List<OrderDetail>> details = new ConcurrentHashMap<>();
+
+    // 查询订单表的次数
+    private final AtomicInteger orderQueries = new AtomicInteger();
+
+    // 查询订单时等待，用来在加载期间修改订单
+    private volatile CountDownLatch loading = null;
+    private volatile CountDownLatch loaded = null;
+
+    // 模拟的 Redis 变更记录：成员 -> 分数
+    private final Map<String, Double> changedZSet = new ConcurrentHashMap<>();
+
+    private volatile boolean redisDown;
+
+    private OrderMapper orderMapper;
+
+    @BeforeEach
+    public void setUp() {
+        orderMapper = orderMapper();
+        for (long id = 1; id <= 5; id++) {
+            table.put(id, Orders.builder().id(id).number("N" + id).status(Orders.TO_BE_CONFIRMED).build());
+            details.put(id, Collections.singletonList(OrderDetail.builder().orderId(id).name("菜品" + id).build()));
+        }
+    }
+
+    private ActiveOrderCache newNode() {
+        ActiveOrderCache cache = new ActiveOrderCache();
+        ReflectionTestUtils.setField(cache, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(cache, "orderDetailMapper", orderDetailMapper());
+        ReflectionTestUtils.setField(cache, "stringRedisTemplate", redis());
+        return cache;
+    }
+
+    private OrderStateMachine stateMachine(ActiveOrderCache cache) {
+        OrderStateMachine orderStateMachine = new OrderStateMachine();
+        ReflectionTestUtils.setField(orderStateMachine, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(orderStateMachine, "activeOrderCache", cache);
+        return orderStateMachine;
+    }
+
+    private static Orders copy(Orders orders) {
+        if (orders == null) {
+            return null;
+        }
+        Orders copy = new Orders();
+        BeanUtils.copyProperties(orders, copy);
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private OrderMapper orderMapper() {
+        return (OrderMapper) Proxy.newProxyInstance(OrderMapper.class.getClassLoader(), new Class<?>[]{OrderMapper.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getByOrderId":
+                            orderQueries.incrementAndGet();
+                            Orders orders = copy(table.get((Long) args[0]));
+                            if (loading != null) {
+                                loading.countDown();
+                                loaded.await(5, TimeUnit.SECONDS);
+                            }
+                            return orders;
+                        case "getArchivedById":
+                            return copy(archive.get((Long) args[0]));
+                        case "updateByIdAndStatus": {
+                            Orders update = (Orders) args[0];
+                            Orders current = table.get(update.getId());
+                            if (current == null || !((Collection<Integer>) args[1]).contains(current.getStatus())) {
+                                return 0;
+                            }
+                            current.setStatus(update.getStatus());
+                            return 1;
+                        }
+                        case "updateStatusByIds": {
+                            int count = 0;
+                            for (Long id : (List<Long>) args[0]) {
+                                Orders current = table.get(id);
+                                if (current != null && current.getStatus().equals(args[1])) {
+                                    current.setStatus(((Orders) args[2]).getStatus());
+                                    count++;
+                                }
+                            }
+                            return count;
+                        }
+                        case "getIdsByIdsAndStatus":
+                            return ((List<Long>) args[0]).stream()
+                                    .filter(id -> table.containsKey(id) && table.get(id).getStatus().equals(args[1]))
+                                    .collect(Collectors.toList());
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private OrderDetailMapper orderDetailMapper() {
+        return (OrderDetailMapper) Proxy.newProxyInstance(OrderDetailMapper.class.getClassLoader(),
+                new Class<?>[]{OrderDetailMapper.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getByOrderID":
+                            return table.containsKey((Long) args[0])
+                                    ? details.get((Long) args[0]) : Collections.emptyList();
+                        case "getArchivedByOrderId":
+                            return archive.containsKey((Long) args[0])
+                                    ? details.get((Long) args[0]) : Collections.emptyList();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private StringRedisTemplate redis() {
+        ZSetOperations<String, String> zSetOperations = (ZSetOperations<String, String>) Proxy.newProxyInstance(
+                ZSetOperations.class.getClassLoader(), new Class<?>[]{ZSetOperations.class}, (proxy, method, args) -> {
+                    if (redisDown) {
+                        throw new IllegalStateException("redis down");
+                    }
+                    switch (method.getName()) {
+                        case "add":
+                            changedZSet.put((String) args[1], (Double) args[2]);
+                            return true;
+                        case "rangeByScore":
+                            return changedZSet.entrySet().stream()
+                                    .filter(e -> e.getValue() >= (Double) args[1] && e.getValue() <= (Double) args[2])
+                                    .map(Map.Entry::getKey).collect(Collectors.toSet());
+                        case "removeRangeByScore":
+                            changedZSet.values().removeIf(score -> score >= (Double) args[1] && score <= (Double) args[2]);
+                            return 0L;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return new StringRedisTemplate() {
+            @Override
+            public ZSetOperations<String, String> opsForZSet() {
+                return zSetOperations;
+            }
+        };
+    }
+
+    /**
+     * 进行中的订单第一次查询后从缓存读取
+     */
+    @Test
+    public void activeOrderIsCached() {
+        ActiveOrderCache cache = newNode();
+
+        Orders first = cache.getOrder(1L);
+        assertSame(first, cache.getOrder(1L));
+        assertEquals(1, orderQueries.get());
+        assertEquals(1, cache.size());
+
+        List<OrderDetail> orderDetails = cache.getDetails(1L);
+        assertSame(orderDetails, cache.getDetails(1L));
+        assertThrows(UnsupportedOperationException.class, () -> orderDetails.add(new OrderDetail()));
+    }
+
+    /**
+     * 经过状态机修改状态后本节点立即读到新状态；完成后不再缓存
+     */
+    @Test
+    public void transitionEvictsOnLocalNode() {
+        ActiveOrderCache cache = newNode();
+        OrderStateMachine orderStateMachine = stateMachine(cache);
+        cache.getOrder(1L);
+
+        orderStateMachine.transitOrThrow(Orders.builder().id(1L).status(Orders.CONFIRMED).build(), Orders.TO_BE_CONFIRMED);
+        assertEquals(Orders.CONFIRMED, cache.getOrder(1L).getStatus());
+
+        orderStateMachine.transitOrThrow(Orders.builder().id(1L).status(Orders.DELIVERY_IN_PROGRESS).build(), Orders.CONFIRMED);
+        orderStateMachine.transitOrThrow(Orders.builder().id(1L).status(Orders.COMPLETED).build(), Orders.DELIVERY_IN_PROGRESS);
+        assertEquals(Orders.COMPLETED, cache.getOrder(1L).getStatus());
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * 修改失败（状态已被其它操作修改）时同样移除缓存，下一次读到数据库中的状态
+     */
+    @Test
+    public void failedTransitionAlsoEvicts() {
+        ActiveOrderCache cache = newNode();
+        cache.getOrder(1L);
+        // 其它节点直接修改了数据库
+        table.get(1L).setStatus(Orders.CANCELLED);
+
+        boolean success = stateMachine(cache).transit(
+                Orders.builder().id(1L).status(Orders.CONFIRMED).build(), Orders.TO_BE_CONFIRMED);
+
+        assertFalse(success);
+        assertEquals(Orders.CANCELLED, cache.getOrder(1L).getStatus());
+    }
+
+    /**
+     * 批量修改移除所有相关订单的缓存，包括没有修改成功的订单
+     */
+    @Test
+    public void batchTransitionEvictsAllIds() {
+        ActiveOrderCache cache = newNode();
+        for (long id = 1; id <= 5; id++) {
+            cache.getOrder(id);
+        }
+        table.get(3L).setStatus(Orders.CANCELLED);
+
+        List<Long> changed = stateMachine(cache).transit(Arrays.asList(1L, 2L, 3L),
+                Orders.builder().status(Orders.CONFIRMED).build(), Orders.TO_BE_CONFIRMED);
+
+        assertEquals(Arrays.asList(1L, 2L), changed);
+        assertEquals(2, cache.size());
+        assertEquals(Orders.CONFIRMED, cache.getOrder(1L).getStatus());
+        assertEquals(Orders.CONFIRMED, cache.getOrder(2L).getStatus());
+        assertEquals(Orders.CANCELLED, cache.getOrder(3L).getStatus());
+        assertEquals(Orders.TO_BE_CONFIRMED, cache.getOrder(4L).getStatus());
+    }
+
+    /**
+     * 一个节点修改后，其它节点在下一次同步后读到新状态
+     */
+    @Test
+    public void transitionReachesOtherNodesOnSync() {
+        ActiveOrderCache node1 = newNode();
+        ActiveOrderCache node2 = newNode();
+        node2.getOrder(1L);
+
+        stateMachine(node1).transitOrThrow(Orders.builder().id(1L).status(Orders.CONFIRMED).build(), Orders.TO_BE_CONFIRMED);
+
+        assertEquals(Orders.TO_BE_CONFIRMED, node2.getOrder(1L).getStatus());
+        node2.sync();
+        assertEquals(Orders.CONFIRMED, node2.getOrder(1L).getStatus());
+    }
+
+    /**
+     * 在事务中修改时，提交前不通知其它节点；提交后再次移除本节点缓存（提交前可能按旧数据重新加载）并通知其它节点
+     */
+    @Test
+    public void evictionInTransactionPublishesAfterCommit() {
+        ActiveOrderCache node1 = newNode();
+        ActiveOrderCache node2 = newNode();
+        node2.getOrder(1L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            stateMachine(node1).transitOrThrow(
+                    Orders.builder().id(1L).status(Orders.CONFIRMED).build(), Orders.TO_BE_CONFIRMED);
+            assertTrue(changedZSet.isEmpty());
+            // 提交前本节点的其它线程读到并缓存了订单
+            node1.getOrder(1L);
+            assertEquals(1, node1.size());
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(0, node1.size());
+        assertEquals(Collections.singleton("1"), changedZSet.keySet());
+        node2.sync();
+        assertEquals(Orders.CONFIRMED, node2.getOrder(1L).getStatus());
+    }
+
+    /**
+     * 从数据库加载期间订单被修改时，加载到的旧数据不写入缓存
+     */
+    @Test
+    public void evictionDuringLoadIsNotOverwritten() throws Exception {
+        ActiveOrderCache cache = newNode();
+        loading = new CountDownLatch(1);
+        loaded = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Orders> reader = executor.submit(() -> cache.getOrder(1L));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            loading = null;
+
+            stateMachine(cache).transitOrThrow(
+                    Orders.builder().id(1L).status(Orders.CONFIRMED).build(), Orders.TO_BE_CONFIRMED);
+            loaded.countDown();
+
+            assertEquals(Orders.TO_BE_CONFIRMED, reader.get(5, TimeUnit.SECONDS).getStatus());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, cache.size());
+        assertEquals(Orders.CONFIRMED, cache.getOrder(1L).getStatus());
+    }
+
+    /**
+     * 已取消和已归档的订单不缓存
+     */
+    @Test
+    public void finishedAndArchivedOrdersAreNotCached() {
+        ActiveOrderCache cache = newNode();
+        table.get(1L).setStatus(Orders.CANCELLED);
+        archive.put(9L, Orders.builder().id(9L).status(Orders.COMPLETED).build());
+        details.put(9L, Collections.singletonList(OrderDetail.builder().orderId(9L).name("归档菜品").build()));
+
+        assertEquals(Orders.CANCELLED, cache.getOrder(1L).getStatus());
+        assertEquals(9L, cache.getOrder(9L).getId().longValue());
+        assertEquals("归档菜品", cache.getDetails(9L).get(0).getName());
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * 拉取变更记录失败时无法判断缓存是否过期，清空缓存
+     */
+    @Test
+    public void syncFailureClearsCache() {
+        ActiveOrderCache cache = newNode();
+        cache.getOrder(1L);
+        cache.getOrder(2L);
+
+        redisDown = true;
+        cache.sync();
+
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,267 @@
+package com.sky.controller.notify;
+
+import com.sky.pay.PayNotifyIdempotency;
+import com.sky.pay.PayNotifyProcessor;
+import com.sky.pay.PayNotifyQueue;
+import com.sky.properties.PayNotifyProperties;
+import com.sky.service.OrderService;
+import com.sky.utils.WeChatPayStub;
+import com.sky.utils.WeChatPayUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 支付回调去重的端到端测试：签名后的通知经过 PayNotifyController 落盘，
+ * 由 PayNotifyQueue 调用 PayNotifyProcessor 解密并修改订单状态。
+ * 同一个通知被微信重发多次（包括同时发到两个节点）时，订单只被修改一次。
+ * 两个节点共用内存中模拟的 Redis，订单服务只记录 paySuccessBatch 的调用。
+ */
+public class PayNotifyControllerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private WeChatPayStub stub;
+
+    private WeChatPayUtil weChatPayUtil;
+
+    // 模拟的 Redis 数据，两个节点共用
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+
+    // paySuccessBatch 每次调用的商户订单号
+    private final List<List<String>> paySuccessBatches = new CopyOnWriteArrayList<>();
+
+    private final List<PayNotifyQueue> queues = new ArrayList<>();
+
+    private PayNotifyController node1;
+
+    private PayNotifyController node2;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        stub = new WeChatPayStub();
+        weChatPayUtil = new WeChatPayUtil();
+        ReflectionTestUtils.setField(weChatPayUtil, "weChatProperties", stub.properties());
+
+        node1 = newNode(tempDir.resolve("node1"));
+        node2 = newNode(tempDir.resolve("node2"));
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        queues.forEach(PayNotifyQueue::destroy);
+        weChatPayUtil.destroy();
+        stub.close();
+    }
+
+    private PayNotifyController newNode(Path spoolDir) throws Exception {
+        PayNotifyIdempotency idempotency = new PayNotifyIdempotency();
+        ReflectionTestUtils.setField(idempotency, "stringRedisTemplate", new FakeRedisTemplate());
+
+        PayNotifyProcessor processor = new PayNotifyProcessor();
+        ReflectionTestUtils.setField(processor, "weChatProperties", stub.properties());
+        ReflectionTestUtils.setField(processor, "orderService", orderService());
+        ReflectionTestUtils.setField(processor, "payNotifyIdempotency", idempotency);
+
+        PayNotifyProperties properties = new PayNotifyProperties();
+        properties.setSpoolDir(spoolDir.toString());
+        PayNotifyQueue queue = new PayNotifyQueue();
+        ReflectionTestUtils.setField(queue, "payNotifyProperties", properties);
+        ReflectionTestUtils.setField(queue, "payNotifyProcessor", processor);
+        ReflectionTestUtils.setField(queue, "payNotifyIdempotency", idempotency);
+        queue.afterPropertiesSet();
+        queues.add(queue);
+
+        PayNotifyController controller = new PayNotifyController();
+        ReflectionTestUtils.setField(controller, "payNotifyIdempotency", idempotency);
+        ReflectionTestUtils.setField(controller, "payNotifyQueue", queue);
+        ReflectionTestUtils.setField(controller, "weChatPayUtil", weChatPayUtil);
+        return controller;
+    }
+
+    /**
+     * 只实现 paySuccessBatch，记录每次调用的商户订单号
+     */
+    private OrderService orderService() {
+        return (OrderService) Proxy.newProxyInstance(OrderService.class.getClassLoader(), new Class<?>[]{OrderService.class},
+                (proxy, method, args) -> {
+                    if ("paySuccessBatch".equals(method.getName())) {
+                        @SuppressWarnings("unchecked")
+                        List<String> outTradeNos = (List<String>) args[0];
+                        paySuccessBatches.add(new ArrayList<>(outTradeNos));
+                        return null;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * 模拟微信发送一次通知，每次发送都重新签名
+     */
+    private MockHttpServletResponse send(PayNotifyController controller, String body, boolean signed) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/notify/paySuccess");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        if (signed) {
+            WeChatPayStub.signedHeaders(body).forEach(request::addHeader);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.paySuccessNotify(request, response);
+        return response;
+    }
+
+    private void awaitQueuesDrained() throws Exception {
+        await(() -> {
+            for (Path dir : new Path[]{tempDir.resolve("node1"), tempDir.resolve("node2")}) {
+                try (Stream<Path> files = Files.list(dir)) {
+                    if (files.anyMatch(file -> file.getFileName().toString().endsWith(".json"))) {
+                        return false;
+                    }
+                } catch (Exception e) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 同一个通知重发多次，每次都应答成功，订单只修改一次
+     */
+    @Test
+    public void replayedNotificationIsProcessedOnce() throws Exception {
+        String body = WeChatPayStub.notification("EV-0001", "1729300000001", "4200001234202410190000000001");
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(200, send(node1, body, true).getStatus());
+        }
+
+        await(() -> !paySuccessBatches.isEmpty());
+        awaitQueuesDrained();
+        Thread.sleep(200);
+        assertEquals(Collections.singletonList(Collections.singletonList("1729300000001")), paySuccessBatches);
+    }
+
+    /**
+     * 同一个通知并发发到两个节点，只有一个节点落盘处理
+     */
+    @Test
+    public void concurrentReplaysAcrossNodesAreProcessedOnce() throws Exception {
+        String body = WeChatPayStub.notification("EV-0002", "1729300000002", "4200001234202410190000000002");
+
+        int replays = 40;
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < replays; i++) {
+                PayNotifyController node = i % 2 == 0 ? node1 : node2;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return send(node, body, true).getStatus();
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> future : futures) {
+                assertEquals(200, future.get(10, TimeUnit.SECONDS).intValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        await(() -> !paySuccessBatches.isEmpty());
+        awaitQueuesDrained();
+        Thread.sleep(200);
+        assertEquals(Collections.singletonList(Collections.singletonList("1729300000002")), paySuccessBatches);
+    }
+
+    /**
+     * 通知id不同但微信支付交易号相同的通知，按交易号去重
+     */
+    @Test
+    public void sameTransactionWithNewNotifyIdIsProcessedOnce() throws Exception {
+        String first = WeChatPayStub.notification("EV-0003", "1729300000003", "4200001234202410190000000003");
+        String second = WeChatPayStub.notification("EV-0004", "1729300000003", "4200001234202410190000000003");
+
+        assertEquals(200, send(node1, first, true).getStatus());
+        assertEquals(200, send(node2, second, true).getStatus());
+
+        await(() -> !paySuccessBatches.isEmpty());
+        awaitQueuesDrained();
+        Thread.sleep(200);
+        assertEquals(Collections.singletonList(Collections.singletonList("1729300000003")), paySuccessBatches);
+    }
+
+    /**
+     * 没有签名的请求返回401，不占用通知id，之后微信的正常通知照常处理
+     */
+    @Test
+    public void unsignedNotificationDoesNotBlockRealOne() throws Exception {
+        String body = WeChatPayStub.notification("EV-0005", "1729300000005", "4200001234202410190000000005");
+
+        assertEquals(401, send(node1, body, false).getStatus());
+        assertTrue(redis.isEmpty());
+        assertEquals(200, send(node1, body, true).getStatus());
+
+        await(() -> !paySuccessBatches.isEmpty());
+        assertEquals(Collections.singletonList(Collections.singletonList("1729300000005")), paySuccessBatches);
+    }
+
+    /**
+     * 两个节点共用的内存 Redis，只实现去重用到的 setIfAbsent 和 delete
+     */
+    private class FakeRedisTemplate extends StringRedisTemplate {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ValueOperations<String, String> opsForValue() {
+            return (ValueOperations<String, String>) Proxy.newProxyInstance(ValueOperations.class.getClassLoader(),
+                    new Class<?>[]{ValueOperations.class}, (proxy, method, args) -> {
+                        if ("setIfAbsent".equals(method.getName())) {
+                            return redis.putIfAbsent((String) args[0], (String) args[1]) == null;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        @Override
+        public Boolean delete(String key) {
+            return redis.remove(key) != null;
+        }
+    }
+}
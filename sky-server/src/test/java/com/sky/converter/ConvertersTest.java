@@ -0,0 +1,171 @@
+package com.sky.converter;
+
+import com.sky.dto.ShoppingCartDTO;
+import com.sky.entity.Dish;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.entity.Setmeal;
+import com.sky.entity.ShoppingCart;
+import com.sky.vo.DishVO;
+import com.sky.vo.OrderVO;
+import com.sky.vo.SetmealVO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.BeanUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 手写转换器的测试：源对象的每个字段都填上不同的值，转换结果与 BeanUtils.copyProperties 逐字段比较，
+ * 只允许转换器注释中说明的字段不同。实体类新增字段而转换器没有同步修改时这里会失败。
+ */
+public class ConvertersTest {
+
+    /**
+     * 给对象的所有字段（包括父类字段）填上互不相同的非空值，集合字段保持不变
+     */
+    private static <T> T fill(T object) throws Exception {
+        int seed = 1;
+        for (Field field : fields(object.getClass())) {
+            Object value = value(field.getType(), seed++);
+            if (value != null) {
+                field.set(object, value);
+            }
+        }
+        return object;
+    }
+
+    private static Object value(Class<?> type, int seed) {
+        if (type == Long.class) {
+            return (long) seed * 1000;
+        } else if (type == Integer.class) {
+            return seed;
+        } else if (type == String.class) {
+            return "value-" + seed;
+        } else if (type == BigDecimal.class) {
+            return new BigDecimal(seed + ".50");
+        } else if (type == LocalDateTime.class) {
+            return LocalDateTime.of(2024, 10, 19, 12, 0).plusMinutes(seed);
+        } else if (type == LocalDate.class) {
+            return LocalDate.of(2024, 10, 19).plusDays(seed);
+        } else if (type == Boolean.class) {
+            return seed % 2 == 0;
+        }
+        return null;
+    }
+
+    private static List<Field> fields(Class<?> type) {
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    field.setAccessible(true);
+                    fields.add(field);
+                }
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * 逐字段比较（包括父类字段），lombok 生成的 equals 不比较父类字段
+     */
+    private static void assertSameFields(Object expected, Object actual) throws Exception {
+        assertEquals(expected.getClass(), actual.getClass());
+        for (Field field : fields(expected.getClass())) {
+            assertEquals(field.get(expected), field.get(actual), field.getDeclaringClass().getSimpleName() + "." + field.getName());
+        }
+    }
+
+    private static <T> T copy(Object source, T target) {
+        BeanUtils.copyProperties(source, target);
+        return target;
+    }
+
+    /**
+     * 订单转换复制 Orders 的全部字段，订单明细保持为空
+     */
+    @Test
+    public void orderConverterCopiesEveryOrdersField() throws Exception {
+        Orders orders = fill(new Orders());
+
+        OrderVO orderVO = OrderConverter.toOrderVO(orders);
+
+        assertSameFields(copy(orders, new OrderVO()), orderVO);
+        for (Field field : fields(Orders.class)) {
+            if (value(field.getType(), 1) != null) {
+                assertTrue(field.get(orderVO) != null, "未复制的字段：" + field.getName());
+            }
+        }
+    }
+
+    /**
+     * 菜品转换与 BeanUtils 结果一致，口味为空列表
+     */
+    @Test
+    public void dishConverterMatchesCopyProperties() throws Exception {
+        Dish dish = fill(new Dish());
+
+        DishVO dishVO = DishConverter.toDishVO(dish);
+
+        assertSameFields(copy(dish, new DishVO()), dishVO);
+        assertTrue(dishVO.getFlavors().isEmpty());
+    }
+
+    /**
+     * 套餐转换与 BeanUtils 结果一致，套餐菜品为空列表
+     */
+    @Test
+    public void setmealConverterMatchesCopyProperties() throws Exception {
+        Setmeal setmeal = fill(new Setmeal());
+
+        SetmealVO setmealVO = SetmealConverter.toSetmealVO(setmeal);
+
+        assertSameFields(copy(setmeal, new SetmealVO()), setmealVO);
+        assertTrue(setmealVO.getSetmealDishes().isEmpty());
+    }
+
+    /**
+     * 购物车DTO转换与 BeanUtils 结果一致
+     */
+    @Test
+    public void shoppingCartFromDTOMatchesCopyProperties() throws Exception {
+        ShoppingCartDTO shoppingCartDTO = fill(new ShoppingCartDTO());
+
+        assertSameFields(copy(shoppingCartDTO, new ShoppingCart()), ShoppingCartConverter.fromDTO(shoppingCartDTO));
+    }
+
+    /**
+     * 购物车 -> 订单明细，不复制购物车id
+     */
+    @Test
+    public void shoppingCartToOrderDetailSkipsId() throws Exception {
+        ShoppingCart shoppingCart = fill(new ShoppingCart());
+
+        OrderDetail expected = copy(shoppingCart, new OrderDetail());
+        expected.setId(null);
+        assertSameFields(expected, ShoppingCartConverter.toOrderDetail(shoppingCart));
+    }
+
+    /**
+     * 订单明细 -> 购物车（再来一单），不复制id、用户id和创建时间
+     */
+    @Test
+    public void orderDetailToShoppingCartSkipsIdentity() throws Exception {
+        OrderDetail orderDetail = fill(new OrderDetail());
+
+        ShoppingCart expected = copy(orderDetail, new ShoppingCart());
+        expected.setId(null);
+        expected.setUserId(null);
+        expected.setCreateTime(null);
+        assertSameFields(expected, ShoppingCartConverter.fromOrderDetail(orderDetail));
+    }
+}
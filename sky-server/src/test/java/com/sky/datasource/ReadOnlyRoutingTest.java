@@ -0,0 +1,227 @@
+package com.sky.datasource;
+
+import com.sky.aspect.ReadOnlyAspect;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.SetmealDishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.service.SetmealService;
+import com.sky.service.impl.SetmealServiceImpl;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 读写分离的集成测试：主库和从库是两个 H2 内存库，套餐表中同一个id的名称不同，
+ * 通过查询结果判断查询发往了哪个库。
+ * 业务方法经过真实的 ReadOnlyAspect 代理，查询经过 MyBatis、ReadWriteRoutingDataSource 和事务管理器。
+ * H2 不支持 show slave status，从库的连接把这条语句替换为返回 Seconds_Behind_Master 的查询，用来模拟复制延迟。
+ */
+public class ReadOnlyRoutingTest {
+
+    private static final String PRIMARY_NAME = "主库套餐";
+
+    private static final String REPLICA_NAME = "从库套餐";
+
+    private static final String SLAVE_STATUS = "show slave status";
+
+    private DataSource primary;
+
+    private DataSource replica;
+
+    // 代替 show slave status 执行的查询
+    private volatile String slaveStatusQuery = "select 0 as Seconds_Behind_Master";
+
+    private ReadWriteRoutingDataSource routingDataSource;
+
+    private SetmealService setmealService;
+
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        String name = UUID.randomUUID().toString();
+        primary = new DriverManagerDataSource("jdbc:h2:mem:primary-" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        replica = new DriverManagerDataSource("jdbc:h2:mem:replica-" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        createTables(primary, PRIMARY_NAME);
+        createTables(replica, REPLICA_NAME);
+
+        routingDataSource = new ReadWriteRoutingDataSource(primary, withSlaveStatus(replica), 3);
+        routingDataSource.afterPropertiesSet();
+        await(routingDataSource::isReplicaAvailable);
+
+        Configuration configuration = new Configuration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        SqlSessionFactoryBean sqlSessionFactoryBean = new SqlSessionFactoryBean();
+        sqlSessionFactoryBean.setDataSource(routingDataSource);
+        sqlSessionFactoryBean.setConfiguration(configuration);
+        sqlSessionFactoryBean.setTypeAliasesPackage("com.sky.entity");
+        sqlSessionFactoryBean.setMapperLocations(new ClassPathResource("mapper/SetmealMapper.xml"),
+                new ClassPathResource("mapper/SetmealDishMapper.xml"));
+        SqlSessionTemplate sqlSessionTemplate = new SqlSessionTemplate(sqlSessionFactoryBean.getObject());
+
+        SetmealServiceImpl target = new SetmealServiceImpl();
+        ReflectionTestUtils.setField(target, "setmealMapper", sqlSessionTemplate.getMapper(SetmealMapper.class));
+        ReflectionTestUtils.setField(target, "setmealDishMapper", sqlSessionTemplate.getMapper(SetmealDishMapper.class));
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.addAspect(new ReadOnlyAspect());
+        setmealService = proxyFactory.getProxy();
+
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(routingDataSource));
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        routingDataSource.destroy();
+        for (DataSource dataSource : new DataSource[]{primary, replica}) {
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute("shutdown");
+            }
+        }
+    }
+
+    private static void createTables(DataSource dataSource, String setmealName) throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("create table setmeal (id bigint primary key, category_id bigint, name varchar(32),"
+                    + " price decimal(10, 2), status int, description varchar(255), image varchar(255),"
+                    + " create_time datetime, update_time datetime, create_user bigint, update_user bigint)");
+            statement.execute("create table setmeal_dish (id bigint auto_increment primary key, setmeal_id bigint,"
+                    + " dish_id bigint, name varchar(32), price decimal(10, 2), copies int)");
+            statement.execute("insert into setmeal (id, category_id, name, price, status)"
+                    + " values (1, 13, '" + setmealName + "', 88.00, 1)");
+        }
+    }
+
+    /**
+     * 从库的连接：执行 show slave status 时改为执行 slaveStatusQuery，其它调用原样转发
+     */
+    private DataSource withSlaveStatus(DataSource dataSource) {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(dataSource, method, args);
+                    if (!"getConnection".equals(method.getName())) {
+                        return result;
+                    }
+                    Connection connection = (Connection) result;
+                    return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                            (connectionProxy, connectionMethod, connectionArgs) -> {
+                                Object value = invoke(connection, connectionMethod, connectionArgs);
+                                if (!"createStatement".equals(connectionMethod.getName())) {
+                                    return value;
+                                }
+                                Statement statement = (Statement) value;
+                                return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{Statement.class},
+                                        (statementProxy, statementMethod, statementArgs) -> {
+                                            if ("executeQuery".equals(statementMethod.getName())
+                                                    && SLAVE_STATUS.equals(statementArgs[0])) {
+                                                return statement.executeQuery(slaveStatusQuery);
+                                            }
+                                            return invoke(statement, statementMethod, statementArgs);
+                                        });
+                            });
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private List<String> listNames() {
+        return setmealService.list(Setmeal.builder().status(1).build()).stream()
+                .map(Setmeal::getName)
+                .collect(Collectors.toList());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * @ReadOnly 的业务方法从从库查询，方法结束后恢复只读标记
+     */
+    @Test
+    public void readOnlyServiceCallReadsFromReplica() {
+        assertEquals(Collections.singletonList(REPLICA_NAME), listNames());
+        assertFalse(DataSourceRoute.isReadOnly());
+    }
+
+    /**
+     * 没有 @ReadOnly 的业务方法从主库查询
+     */
+    @Test
+    public void otherServiceCallReadsFromPrimary() {
+        assertEquals(PRIMARY_NAME, setmealService.getByIdWithDish(1L).getName());
+    }
+
+    /**
+     * 事务中调用 @ReadOnly 的业务方法仍然从主库查询，保证读到事务内的修改
+     */
+    @Test
+    public void readOnlyServiceCallInTransactionReadsFromPrimary() {
+        List<String> names = transactionTemplate.execute(status -> listNames());
+
+        assertEquals(Collections.singletonList(PRIMARY_NAME), names);
+        assertEquals(Collections.singletonList(REPLICA_NAME), listNames());
+    }
+
+    /**
+     * 从库延迟超过上限时回到主库，延迟恢复后重新使用从库
+     */
+    @Test
+    public void laggingReplicaFallsBackToPrimary() throws Exception {
+        slaveStatusQuery = "select 10 as Seconds_Behind_Master";
+        await(() -> !routingDataSource.isReplicaAvailable());
+
+        assertEquals(Collections.singletonList(PRIMARY_NAME), listNames());
+
+        slaveStatusQuery = "select 1 as Seconds_Behind_Master";
+        await(routingDataSource::isReplicaAvailable);
+
+        assertEquals(Collections.singletonList(REPLICA_NAME), listNames());
+    }
+
+    /**
+     * 复制中断（Seconds_Behind_Master 为 NULL）时回到主库
+     */
+    @Test
+    public void stoppedReplicationFallsBackToPrimary() throws Exception {
+        slaveStatusQuery = "select cast(null as bigint) as Seconds_Behind_Master";
+        await(() -> !routingDataSource.isReplicaAvailable());
+
+        assertEquals(Collections.singletonList(PRIMARY_NAME), listNames());
+    }
+}
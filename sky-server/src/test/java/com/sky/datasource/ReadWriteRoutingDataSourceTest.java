@@ -0,0 +1,168 @@
+package com.sky.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 读写分离路由的测试，主库和从库都是模拟的数据源
+ */
+public class ReadWriteRoutingDataSourceTest {
+
+    private DataSource primary;
+
+    private DataSource replica;
+
+    private ResultSet slaveStatus;
+
+    private ReadWriteRoutingDataSource dataSource;
+
+    private Boolean previousReadOnly;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        primary = mock(DataSource.class);
+        replica = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        slaveStatus = mock(ResultSet.class);
+        when(replica.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery("show slave status")).thenReturn(slaveStatus);
+
+        dataSource = new ReadWriteRoutingDataSource(primary, replica, 3);
+        previousReadOnly = DataSourceRoute.setReadOnly(false);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        DataSourceRoute.restore(previousReadOnly);
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        dataSource.destroy();
+    }
+
+    private void replicaLag(long seconds) throws SQLException {
+        when(slaveStatus.next()).thenReturn(true);
+        when(slaveStatus.getLong("Seconds_Behind_Master")).thenReturn(seconds);
+        when(slaveStatus.wasNull()).thenReturn(false);
+    }
+
+    @Test
+    public void readOnlyQueryGoesToAvailableReplica() throws Exception {
+        replicaLag(1);
+        dataSource.checkReplica();
+
+        DataSourceRoute.setReadOnly(true);
+        assertEquals("replica", dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    public void replicaWithoutReplicationIsAvailable() throws Exception {
+        when(slaveStatus.next()).thenReturn(false);
+        dataSource.checkReplica();
+
+        DataSourceRoute.setReadOnly(true);
+        assertEquals("replica", dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    public void writeQueryGoesToPrimary() throws Exception {
+        replicaLag(0);
+        dataSource.checkReplica();
+
+        assertEquals("primary", dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    public void readOnlyQueryInTransactionGoesToPrimary() throws Exception {
+        replicaLag(0);
+        dataSource.checkReplica();
+
+        DataSourceRoute.setReadOnly(true);
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        assertEquals("primary", dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    public void uncheckedReplicaIsNotUsed() {
+        DataSourceRoute.setReadOnly(true);
+        assertEquals("primary", dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    public void laggingReplicaIsNotUsed() throws Exception {
+        replicaLag(10);
+        dataSource.checkReplica();
+
+        DataSourceRoute.setReadOnly(true);
+        assertEquals("primary", dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    public void stoppedReplicationIsNotUsed() throws Exception {
+        replicaLag(0);
+        when(slaveStatus.wasNull()).thenReturn(true);
+        dataSource.checkReplica();
+
+        DataSourceRoute.setReadOnly(true);
+        assertEquals("primary", dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    public void unreachableReplicaIsNotUsed() throws Exception {
+        replicaLag(0);
+        dataSource.checkReplica();
+        when(replica.getConnection()).thenThrow(new SQLException("Communications link failure"));
+        dataSource.checkReplica();
+
+        DataSourceRoute.setReadOnly(true);
+        assertEquals("primary", dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    public void staleCheckIsNotTrusted() throws Exception {
+        replicaLag(0);
+        dataSource.checkReplica();
+        // 检查线程卡住，最近一次确认可用已是10秒前
+        ReflectionTestUtils.setField(dataSource, "lastAvailableTime", System.currentTimeMillis() - 10_000);
+
+        DataSourceRoute.setReadOnly(true);
+        assertEquals("primary", dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    public void hangingReplicaDoesNotBlockStartup() throws Exception {
+        CountDownLatch checking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(replica.getConnection()).thenAnswer(invocation -> {
+            checking.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            throw new SQLException("connect timed out");
+        });
+
+        try {
+            dataSource.afterPropertiesSet();
+            assertTrue(checking.await(5, TimeUnit.SECONDS));
+
+            DataSourceRoute.setReadOnly(true);
+            assertEquals("primary", dataSource.determineCurrentLookupKey());
+        } finally {
+            release.countDown();
+        }
+    }
+}
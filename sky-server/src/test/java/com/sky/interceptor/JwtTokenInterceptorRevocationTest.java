@@ -0,0 +1,174 @@
+package com.sky.interceptor;
+
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.context.BaseContext;
+import com.sky.properties.JwtProperties;
+import com.sky.token.InMemoryTokenRevocationStore;
+import com.sky.token.TokenRevocationStore;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.method.HandlerMethod;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 拦截器的令牌吊销测试：令牌已在校验缓存中时，吊销之后的下一个请求也返回401；
+ * 吊销之后重新登录签发的令牌可以正常使用
+ */
+public class JwtTokenInterceptorRevocationTest {
+
+    private static final String ADMIN_SECRET = "admin-secret";
+
+    private static final String USER_SECRET = "user-secret";
+
+    private final JwtProperties jwtProperties = new JwtProperties();
+
+    private final TokenRevocationStore tokenRevocationStore = new InMemoryTokenRevocationStore();
+
+    private JwtTokenAdminInterceptor adminInterceptor;
+
+    private JwtTokenUserInterceptor userInterceptor;
+
+    private HandlerMethod handler;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        jwtProperties.setAdminSecretKey(ADMIN_SECRET);
+        jwtProperties.setAdminTokenName("token");
+        jwtProperties.setAdminTtl(7200000);
+        jwtProperties.setUserSecretKey(USER_SECRET);
+        jwtProperties.setUserTokenName("authentication");
+        jwtProperties.setUserTtl(7200000);
+        ReflectionTestUtils.setField(tokenRevocationStore, "jwtProperties", jwtProperties);
+
+        adminInterceptor = new JwtTokenAdminInterceptor();
+        ReflectionTestUtils.setField(adminInterceptor, "jwtProperties", jwtProperties);
+        ReflectionTestUtils.setField(adminInterceptor, "tokenRevocationStore", tokenRevocationStore);
+        adminInterceptor.afterPropertiesSet();
+
+        userInterceptor = new JwtTokenUserInterceptor();
+        ReflectionTestUtils.setField(userInterceptor, "jwtProperties", jwtProperties);
+        ReflectionTestUtils.setField(userInterceptor, "tokenRevocationStore", tokenRevocationStore);
+        userInterceptor.afterPropertiesSet();
+
+        handler = new HandlerMethod(this, JwtTokenInterceptorRevocationTest.class.getMethod("setUp"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        BaseContext.removeCurrentId();
+    }
+
+    /**
+     * 签发时间在 secondsAgo 秒之前的令牌；JwtUtil 的签发时间总是当前时间，吊销按秒比较，这里直接构造
+     */
+    private static String token(String secret, String claim, long id, long secondsAgo) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(claim, id);
+        long now = System.currentTimeMillis();
+        return Jwts.builder()
+                .setClaims(claims)
+                .signWith(SignatureAlgorithm.HS256, secret.getBytes(StandardCharsets.UTF_8))
+                .setIssuedAt(new Date(now - secondsAgo * 1000))
+                .setExpiration(new Date(now + 3600000))
+                .compact();
+    }
+
+    private int adminRequest(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/admin/employee/page");
+        request.addHeader("token", token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        boolean passed = adminInterceptor.preHandle(request, response, handler);
+        assertEquals(passed, response.getStatus() == 200);
+        return response.getStatus();
+    }
+
+    private int userRequest(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/user/order/historyOrders");
+        request.addHeader("authentication", token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        boolean passed = userInterceptor.preHandle(request, response, handler);
+        assertEquals(passed, response.getStatus() == 200);
+        return response.getStatus();
+    }
+
+    /**
+     * 员工被禁用后，已缓存的令牌在下一个请求就返回401，其它员工不受影响
+     */
+    @Test
+    public void revokedEmployeeTokenIsRejectedDespiteCache() throws Exception {
+        String token = token(ADMIN_SECRET, JwtClaimsConstant.EMP_ID, 1L, 10);
+        String other = token(ADMIN_SECRET, JwtClaimsConstant.EMP_ID, 2L, 10);
+        assertEquals(200, adminRequest(token));
+        assertEquals(1L, BaseContext.getCurrentId().longValue());
+
+        tokenRevocationStore.revoke(TokenRevocationStore.EMPLOYEE + 1);
+
+        assertEquals(401, adminRequest(token));
+        assertEquals(200, adminRequest(other));
+    }
+
+    /**
+     * 吊销之后重新登录签发的令牌有效（包括吊销的同一秒内签发的令牌）
+     */
+    @Test
+    public void tokenIssuedAfterRevocationIsAccepted() throws Exception {
+        tokenRevocationStore.revoke(TokenRevocationStore.EMPLOYEE + 1);
+
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtClaimsConstant.EMP_ID, 1L);
+        String relogin = JwtUtil.createJWT(ADMIN_SECRET, 7200000, claims);
+
+        assertEquals(200, adminRequest(relogin));
+    }
+
+    /**
+     * 没有签发时间的旧令牌按0处理，主体被吊销后失效
+     */
+    @Test
+    public void legacyTokenWithoutIssuedAtIsRevoked() throws Exception {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtClaimsConstant.EMP_ID, 1L);
+        String legacy = Jwts.builder()
+                .setClaims(claims)
+                .signWith(SignatureAlgorithm.HS256, ADMIN_SECRET.getBytes(StandardCharsets.UTF_8))
+                .setExpiration(new Date(System.currentTimeMillis() + 3600000))
+                .compact();
+        assertEquals(200, adminRequest(legacy));
+
+        tokenRevocationStore.revoke(TokenRevocationStore.EMPLOYEE + 1);
+
+        assertEquals(401, adminRequest(legacy));
+    }
+
+    /**
+     * 用户端按 user: 主体吊销，与同id的员工互不影响
+     */
+    @Test
+    public void userSubjectIsSeparateFromEmployee() throws Exception {
+        String userToken = token(USER_SECRET, JwtClaimsConstant.USER_ID, 1L, 10);
+        String adminToken = token(ADMIN_SECRET, JwtClaimsConstant.EMP_ID, 1L, 10);
+        assertEquals(200, userRequest(userToken));
+
+        tokenRevocationStore.revoke(TokenRevocationStore.USER + 1);
+
+        assertEquals(401, userRequest(userToken));
+        assertEquals(200, adminRequest(adminToken));
+        assertFalse(tokenRevocationStore.isRevoked(TokenRevocationStore.EMPLOYEE + 1, 0));
+        assertTrue(tokenRevocationStore.isRevoked(TokenRevocationStore.USER + 1, 0));
+    }
+}
@@ -0,0 +1,122 @@
+package com.sky.lock;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 内存任务锁的测试：获取、续约、租约到期和并发获取
+ */
+public class InMemoryJobLockTest {
+
+    private InMemoryJobLock jobLock;
+
+    @BeforeEach
+    public void setUp() {
+        jobLock = new InMemoryJobLock();
+    }
+
+    /**
+     * 租约到期之前其它节点（包括持有者自己）都不能获取，到期后可以
+     */
+    @Test
+    public void acquireIsExclusiveUntilExpiry() throws Exception {
+        assertTrue(jobLock.tryAcquire("orderTimeout", "node-1", 100));
+        assertFalse(jobLock.tryAcquire("orderTimeout", "node-2", 100));
+        assertFalse(jobLock.tryAcquire("orderTimeout", "node-1", 100));
+        // 不同任务的锁互不影响
+        assertTrue(jobLock.tryAcquire("deliveryTimeout", "node-2", 100));
+
+        Thread.sleep(150);
+        assertTrue(jobLock.tryAcquire("orderTimeout", "node-2", 100));
+    }
+
+    /**
+     * 只有持有者可以续约，续约后租约从续约时刻重新计算
+     */
+    @Test
+    public void renewExtendsLeaseForHolderOnly() throws Exception {
+        assertTrue(jobLock.tryAcquire("orderTimeout", "node-1", 200));
+        assertFalse(jobLock.renew("orderTimeout", "node-2", 200));
+
+        Thread.sleep(120);
+        assertTrue(jobLock.renew("orderTimeout", "node-1", 200));
+
+        // 已超过最初的200毫秒，续约后仍然有效
+        Thread.sleep(120);
+        assertFalse(jobLock.tryAcquire("orderTimeout", "node-2", 200));
+
+        Thread.sleep(150);
+        assertTrue(jobLock.tryAcquire("orderTimeout", "node-2", 200));
+    }
+
+    /**
+     * 租约到期后不能再续约，没有租约的任务也不能续约
+     */
+    @Test
+    public void renewFailsAfterExpiry() throws Exception {
+        assertFalse(jobLock.renew("orderTimeout", "node-1", 100));
+
+        assertTrue(jobLock.tryAcquire("orderTimeout", "node-1", 50));
+        Thread.sleep(100);
+        assertFalse(jobLock.renew("orderTimeout", "node-1", 100));
+        assertTrue(jobLock.tryAcquire("orderTimeout", "node-2", 100));
+    }
+
+    /**
+     * 记录执行节点时返回上一次的执行节点
+     */
+    @Test
+    public void recordHolderReturnsPrevious() {
+        assertNull(jobLock.recordHolder("orderTimeout", "node-1"));
+        assertEquals("node-1", jobLock.recordHolder("orderTimeout", "node-1"));
+        assertEquals("node-1", jobLock.recordHolder("orderTimeout", "node-2"));
+        assertEquals("node-2", jobLock.recordHolder("orderTimeout", "node-1"));
+    }
+
+    /**
+     * 多个节点同时获取同一个任务锁，只有一个成功
+     */
+    @Test
+    public void concurrentAcquireHasSingleWinner() throws Exception {
+        int nodes = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(nodes);
+        try {
+            for (int round = 0; round < 50; round++) {
+                String job = "job-" + round;
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> futures = new ArrayList<>();
+                for (int i = 0; i < nodes; i++) {
+                    String owner = "node-" + i;
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        return jobLock.tryAcquire(job, owner, 10000);
+                    }));
+                }
+                start.countDown();
+
+                int winners = 0;
+                for (Future<Boolean> future : futures) {
+                    if (future.get(5, TimeUnit.SECONDS)) {
+                        winners++;
+                    }
+                }
+                assertEquals(1, winners, job);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
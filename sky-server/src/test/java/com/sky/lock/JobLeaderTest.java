@@ -0,0 +1,163 @@
+package com.sky.lock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 定时任务选主的测试：两个节点共用一个内存任务锁，模拟多节点同时触发同一个定时任务
+ */
+public class JobLeaderTest {
+
+    private InMemoryJobLock jobLock;
+
+    private JobLeader node1;
+
+    private JobLeader node2;
+
+    @BeforeEach
+    public void setUp() {
+        jobLock = new InMemoryJobLock();
+        node1 = newLeader();
+        node2 = newLeader();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        node1.destroy();
+        node2.destroy();
+    }
+
+    private JobLeader newLeader() {
+        JobLeader jobLeader = new JobLeader();
+        ReflectionTestUtils.setField(jobLeader, "jobLock", jobLock);
+        return jobLeader;
+    }
+
+    /**
+     * 两个节点同时触发，每次触发只有一个节点执行任务
+     */
+    @Test
+    public void racingContendersRunTaskOnce() throws Exception {
+        int rounds = 50;
+        AtomicInteger runs = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < rounds; round++) {
+                String job = "orderTimeout-" + round;
+                CountDownLatch start = new CountDownLatch(1);
+                Runnable task = () -> {
+                    runs.incrementAndGet();
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                };
+                Future<Boolean> first = executor.submit(() -> {
+                    start.await();
+                    return node1.runIfLeader(job, task);
+                });
+                Future<Boolean> second = executor.submit(() -> {
+                    start.await();
+                    return node2.runIfLeader(job, task);
+                });
+                start.countDown();
+
+                assertNotEquals(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS), job);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(rounds, runs.get());
+        long acquired = 0;
+        long skipped = 0;
+        for (JobLeader node : new JobLeader[]{node1, node2}) {
+            for (JobLockMetrics metrics : node.getMetrics().values()) {
+                acquired += metrics.getAcquired();
+                skipped += metrics.getSkipped();
+            }
+        }
+        assertEquals(rounds, acquired);
+        assertEquals(rounds, skipped);
+    }
+
+    /**
+     * 任务执行时间超过租约时持续续约，其它节点不能抢占
+     */
+    @Test
+    public void leaseIsRenewedWhileTaskRuns() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> leader = executor.submit(() -> node1.runIfLeader("orderTimeout", 150, () -> {
+                running.countDown();
+                try {
+                    finish.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+
+            // 超过两倍租约时长，没有续约时早已到期
+            Thread.sleep(400);
+            assertFalse(node2.runIfLeader("orderTimeout", 150, () -> { }));
+
+            finish.countDown();
+            assertTrue(leader.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        JobLockMetrics metrics = node1.getMetrics().get("orderTimeout");
+        assertTrue(metrics.getRenewed() >= 2, "续约次数：" + metrics.getRenewed());
+        assertEquals(0, metrics.getRenewFailed());
+        assertEquals(1, node2.getMetrics().get("orderTimeout").getSkipped());
+    }
+
+    /**
+     * 任务结束后锁不主动释放，租约到期后其它节点接管并计数
+     */
+    @Test
+    public void otherNodeTakesOverAfterLeaseExpires() throws Exception {
+        assertTrue(node1.runIfLeader("orderTimeout", 100, () -> { }));
+        assertFalse(node2.runIfLeader("orderTimeout", 100, () -> { }));
+
+        Thread.sleep(150);
+        assertTrue(node2.runIfLeader("orderTimeout", 100, () -> { }));
+
+        assertEquals(1, node2.getMetrics().get("orderTimeout").getTakeovers());
+        assertEquals(0, node1.getMetrics().get("orderTimeout").getTakeovers());
+    }
+
+    /**
+     * 任务抛出异常时停止续约，租约到期后其它节点可以执行
+     */
+    @Test
+    public void failedTaskStopsRenewal() throws Exception {
+        assertThrows(IllegalStateException.class, () -> node1.runIfLeader("orderTimeout", 100, () -> {
+            throw new IllegalStateException("任务失败");
+        }));
+
+        Thread.sleep(200);
+        assertTrue(node2.runIfLeader("orderTimeout", 100, () -> { }));
+        assertEquals(0, node1.getMetrics().get("orderTimeout").getRenewed());
+    }
+}
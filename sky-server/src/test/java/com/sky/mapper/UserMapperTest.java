@@ -0,0 +1,139 @@
+package com.sky.mapper;
+
+import com.sky.entity.User;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * insertIgnoreDuplicate 的测试：H2 内存库（MySQL 模式）中的用户表在 openid 上有唯一索引，
+ * 重复的 openid 不插入、影响行数为0，并发插入同一个 openid 时只有一个成功
+ */
+public class UserMapperTest {
+
+    private DataSource dataSource;
+
+    private UserMapper userMapper;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        // user 在 H2 中是关键字
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:user-" + UUID.randomUUID()
+                + ";MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("create table user (id bigint auto_increment primary key, openid varchar(45),"
+                    + " name varchar(32), phone varchar(11), sex varchar(2), id_number varchar(18),"
+                    + " avatar varchar(500), create_time datetime, constraint uk_user_openid unique (openid))");
+        }
+
+        Configuration configuration = new Configuration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        SqlSessionFactoryBean sqlSessionFactoryBean = new SqlSessionFactoryBean();
+        sqlSessionFactoryBean.setDataSource(dataSource);
+        sqlSessionFactoryBean.setConfiguration(configuration);
+        sqlSessionFactoryBean.setTypeAliasesPackage("com.sky.entity");
+        sqlSessionFactoryBean.setMapperLocations(new ClassPathResource("mapper/UserMapper.xml"));
+        userMapper = new SqlSessionTemplate(sqlSessionFactoryBean.getObject()).getMapper(UserMapper.class);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("shutdown");
+        }
+    }
+
+    private static User newUser(String openid) {
+        return User.builder().openid(openid).createTime(LocalDateTime.now()).build();
+    }
+
+    private int count() throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select count(*) from user")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    /**
+     * 新的 openid 插入成功并回填id
+     */
+    @Test
+    public void newOpenidIsInserted() throws Exception {
+        User user = newUser("openid-1");
+
+        assertEquals(1, userMapper.insertIgnoreDuplicate(user));
+        assertNotNull(user.getId());
+        assertEquals(user.getId(), userMapper.getByOpenid("openid-1").getId());
+        assertEquals(1, count());
+    }
+
+    /**
+     * openid 已存在时不插入也不报错，影响行数为0，不回填id
+     */
+    @Test
+    public void duplicateOpenidIsIgnored() throws Exception {
+        User first = newUser("openid-1");
+        userMapper.insertIgnoreDuplicate(first);
+
+        User second = newUser("openid-1");
+        assertEquals(0, userMapper.insertIgnoreDuplicate(second));
+        assertNull(second.getId());
+        assertEquals(first.getId(), userMapper.getByOpenid("openid-1").getId());
+        assertEquals(1, count());
+    }
+
+    /**
+     * 并发插入同一个 openid 只有一个成功，只有一行
+     */
+    @Test
+    public void concurrentInsertsCreateOneRow() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return userMapper.insertIgnoreDuplicate(newUser("openid-race"));
+                }));
+            }
+            start.countDown();
+            int inserted = 0;
+            for (Future<Integer> future : futures) {
+                inserted += future.get(5, TimeUnit.SECONDS);
+            }
+            assertEquals(1, inserted);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, count());
+    }
+}
@@ -0,0 +1,153 @@
+package com.sky.pay;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 支付回调幂等处理的测试，Redis 用内存中的 Map 模拟 setIfAbsent
+ */
+public class PayNotifyIdempotencyTest {
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private ValueOperations<String, String> valueOperations;
+
+    // 模拟的 Redis 数据
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .thenAnswer(invocation -> redis.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+        when(stringRedisTemplate.delete(anyString()))
+                .thenAnswer(invocation -> redis.remove(invocation.getArgument(0)) != null);
+    }
+
+    private PayNotifyIdempotency newNode() {
+        PayNotifyIdempotency idempotency = new PayNotifyIdempotency();
+        ReflectionTestUtils.setField(idempotency, "stringRedisTemplate", stringRedisTemplate);
+        return idempotency;
+    }
+
+    /**
+     * 同一个通知在两个节点上并发重放1000次，只有一次抢占成功
+     */
+    @Test
+    public void concurrentReplaysAreClaimedOnce() throws Exception {
+        List<PayNotifyIdempotency> nodes = new ArrayList<>();
+        nodes.add(newNode());
+        nodes.add(newNode());
+
+        int replays = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger claimed = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < replays; i++) {
+                PayNotifyIdempotency node = nodes.get(i % nodes.size());
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    if (node.tryClaim("4200001234202410190000000001")) {
+                        claimed.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, claimed.get());
+    }
+
+    /**
+     * Redis 抛出异常时不能留下本地记录，否则微信的重发会被当作重复通知
+     */
+    @Test
+    public void redisFailureDoesNotLeaveLocalClaim() {
+        PayNotifyIdempotency idempotency = newNode();
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .thenThrow(new RedisConnectionFailureException("connection refused"))
+                .thenAnswer(invocation -> redis.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+
+        assertThrows(RedisConnectionFailureException.class, () -> idempotency.tryClaim("notify-1"));
+        assertTrue(idempotency.tryClaim("notify-1"));
+        assertFalse(idempotency.tryClaim("notify-1"));
+    }
+
+    /**
+     * setIfAbsent 没有结果时无法判断是否抢占成功，抛出异常并撤销本地记录
+     */
+    @Test
+    public void missingRedisResultDoesNotLeaveLocalClaim() {
+        PayNotifyIdempotency idempotency = newNode();
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .thenReturn(null)
+                .thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> idempotency.tryClaim("notify-2"));
+        assertTrue(idempotency.tryClaim("notify-2"));
+    }
+
+    /**
+     * 释放后微信的重发可以重新处理
+     */
+    @Test
+    public void releaseAllowsRedelivery() {
+        PayNotifyIdempotency idempotency = newNode();
+
+        assertTrue(idempotency.tryClaim("notify-3"));
+        assertFalse(idempotency.tryClaim("notify-3"));
+        idempotency.release("notify-3");
+        assertTrue(idempotency.tryClaim("notify-3"));
+    }
+
+    /**
+     * 删除 Redis 记录失败时 release 不抛出异常，本地记录仍然被移除
+     */
+    @Test
+    public void releaseToleratesRedisFailure() {
+        PayNotifyIdempotency idempotency = newNode();
+        assertTrue(idempotency.tryClaim("notify-4"));
+
+        when(stringRedisTemplate.delete(anyString())).thenThrow(new RedisConnectionFailureException("connection refused"));
+        idempotency.release("notify-4");
+
+        // Redis 记录仍在，其它节点和本节点都不会重复处理，直到记录过期
+        assertFalse(idempotency.tryClaim("notify-4"));
+    }
+}
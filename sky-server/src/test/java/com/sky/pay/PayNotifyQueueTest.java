@@ -0,0 +1,271 @@
+package com.sky.pay;
+
+import com.sky.properties.PayNotifyProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 支付回调队列的测试：落盘目录使用临时目录，重启后加载未处理的回调、失败重试和移入失败目录
+ * 重试的定时器替换为立即执行并记录间隔的执行器，测试不需要真的等待退避时间
+ */
+public class PayNotifyQueueTest {
+
+    @TempDir
+    Path spoolDir;
+
+    private PayNotifyProperties payNotifyProperties;
+
+    private FakeProcessor processor;
+
+    private FakeIdempotency idempotency;
+
+    private PayNotifyQueue payNotifyQueue;
+
+    // 每次重试的间隔（秒）
+    private final List<Long> delays = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        payNotifyProperties = new PayNotifyProperties();
+        payNotifyProperties.setSpoolDir(spoolDir.toString());
+        payNotifyProperties.setWorkers(1);
+        payNotifyProperties.setMaxAttempts(3);
+        processor = new FakeProcessor();
+        idempotency = new FakeIdempotency();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (payNotifyQueue != null) {
+            payNotifyQueue.destroy();
+        }
+    }
+
+    private void start() throws Exception {
+        payNotifyQueue = new PayNotifyQueue();
+        ReflectionTestUtils.setField(payNotifyQueue, "payNotifyProperties", payNotifyProperties);
+        ReflectionTestUtils.setField(payNotifyQueue, "payNotifyProcessor", processor);
+        ReflectionTestUtils.setField(payNotifyQueue, "payNotifyIdempotency", idempotency);
+        payNotifyQueue.afterPropertiesSet();
+
+        ((ScheduledExecutorService) ReflectionTestUtils.getField(payNotifyQueue, "retryExecutor")).shutdownNow();
+        ReflectionTestUtils.setField(payNotifyQueue, "retryExecutor", new ImmediateRetryExecutor());
+    }
+
+    private static String notify(String id) {
+        return "{\"id\":\"" + id + "\",\"resource\":{\"ciphertext\":\"...\"}}";
+    }
+
+    private List<Path> files(Path dir, String suffix) throws Exception {
+        try (Stream<Path> stream = Files.list(dir)) {
+            return stream.filter(file -> file.getFileName().toString().endsWith(suffix)).collect(Collectors.toList());
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 重启后加载目录中未处理的回调，写了一半的 .tmp 文件不加载
+     */
+    @Test
+    public void recoversPendingNotificationsOnStartup() throws Exception {
+        Files.write(spoolDir.resolve("1000-a.json"), notify("notify-1").getBytes(StandardCharsets.UTF_8));
+        Files.write(spoolDir.resolve("1001-b.json"), notify("notify-2").getBytes(StandardCharsets.UTF_8));
+        Files.write(spoolDir.resolve("1002-c.tmp"), "{\"id\":".getBytes(StandardCharsets.UTF_8));
+
+        start();
+
+        await(() -> processor.bodies.size() == 2);
+        assertEquals(Arrays.asList(notify("notify-1"), notify("notify-2")), processor.bodies);
+        await(() -> {
+            try {
+                return files(spoolDir, ".json").isEmpty();
+            } catch (Exception e) {
+                return false;
+            }
+        });
+        assertEquals(1, files(spoolDir, ".tmp").size());
+        assertTrue(delays.isEmpty());
+    }
+
+    /**
+     * 入队的回调先落盘，处理成功后删除文件
+     */
+    @Test
+    public void enqueuedNotificationIsSpooledAndDeleted() throws Exception {
+        processor.blocked = true;
+        start();
+
+        payNotifyQueue.enqueue(notify("notify-3"));
+        List<Path> spooled = files(spoolDir, ".json");
+        assertEquals(1, spooled.size());
+        assertEquals(notify("notify-3"), new String(Files.readAllBytes(spooled.get(0)), StandardCharsets.UTF_8));
+
+        processor.blocked = false;
+        await(() -> processor.bodies.size() == 1);
+        await(() -> !Files.exists(spooled.get(0)));
+        assertEquals(0, payNotifyQueue.getFailedCount());
+    }
+
+    /**
+     * 处理失败的回调按指数退避重试，成功后删除文件
+     */
+    @Test
+    public void retriesFailedNotificationWithBackoff() throws Exception {
+        processor.failures = 2;
+        start();
+
+        payNotifyQueue.enqueue(notify("notify-4"));
+
+        await(() -> processor.bodies.size() == 3);
+        await(() -> {
+            try {
+                return files(spoolDir, ".json").isEmpty();
+            } catch (Exception e) {
+                return false;
+            }
+        });
+        assertEquals(Arrays.asList(2L, 4L), delays);
+        assertTrue(files(spoolDir.resolve("failed"), ".json").isEmpty());
+        assertTrue(idempotency.released.isEmpty());
+    }
+
+    /**
+     * 达到最大次数后移入失败目录，释放通知id并计数告警
+     */
+    @Test
+    public void exhaustedNotificationMovesToFailedAndReleasesClaim() throws Exception {
+        processor.failures = Integer.MAX_VALUE;
+        start();
+
+        payNotifyQueue.enqueue(notify("notify-5"));
+
+        await(() -> payNotifyQueue.getFailedCount() == 1);
+        assertEquals(3, processor.bodies.size());
+        assertEquals(Arrays.asList(2L, 4L), delays);
+        assertTrue(files(spoolDir, ".json").isEmpty());
+        List<Path> failed = files(spoolDir.resolve("failed"), ".json");
+        assertEquals(1, failed.size());
+        assertEquals(notify("notify-5"), new String(Files.readAllBytes(failed.get(0)), StandardCharsets.UTF_8));
+        assertEquals(Collections.singletonList("notify-5"), idempotency.released);
+    }
+
+    /**
+     * 失败目录中的回调重启后不再加载
+     */
+    @Test
+    public void failedDirectoryIsNotReloaded() throws Exception {
+        Files.createDirectories(spoolDir.resolve("failed"));
+        Files.write(spoolDir.resolve("failed").resolve("1000-a.json"), notify("notify-6").getBytes(StandardCharsets.UTF_8));
+
+        start();
+        payNotifyQueue.enqueue(notify("notify-7"));
+
+        await(() -> processor.bodies.size() == 1);
+        assertEquals(Collections.singletonList(notify("notify-7")), processor.bodies);
+        assertEquals(1, files(spoolDir.resolve("failed"), ".json").size());
+    }
+
+    /**
+     * 记录收到的回调原文，前 failures 次处理失败
+     */
+    private static class FakeProcessor extends PayNotifyProcessor {
+
+        private final List<String> bodies = new CopyOnWriteArrayList<>();
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private volatile int failures;
+
+        private volatile boolean blocked;
+
+        @Override
+        public <K> Set<K> process(Map<K, String> notifications) {
+            while (blocked) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return Collections.emptySet();
+                }
+            }
+            bodies.addAll(new ArrayList<>(notifications.values()));
+            return calls.incrementAndGet() <= failures ? new HashSet<>(notifications.keySet()) : Collections.emptySet();
+        }
+    }
+
+    /**
+     * 记录被释放的通知id
+     */
+    private static class FakeIdempotency extends PayNotifyIdempotency {
+
+        private final List<String> released = new CopyOnWriteArrayList<>();
+
+        @Override
+        public boolean tryClaim(String key) {
+            return true;
+        }
+
+        @Override
+        public void release(String key) {
+            released.add(key);
+        }
+    }
+
+    /**
+     * 立即执行重试并记录间隔
+     */
+    private class ImmediateRetryExecutor extends ScheduledThreadPoolExecutor {
+
+        ImmediateRetryExecutor() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            assertEquals(TimeUnit.SECONDS, unit);
+            delays.add(delay);
+            return super.schedule(command, 0, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+            assertEquals(TimeUnit.SECONDS, unit);
+            delays.add(delay);
+            return super.schedule(callable, 0, TimeUnit.SECONDS);
+        }
+    }
+}
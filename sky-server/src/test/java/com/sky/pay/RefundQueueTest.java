@@ -0,0 +1,241 @@
+package com.sky.pay;
+
+import com.sky.entity.Orders;
+import com.sky.lock.InMemoryJobLock;
+import com.sky.lock.JobLeader;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.WeChatProperties;
+import com.sky.utils.WeChatPayStub;
+import com.sky.utils.WeChatPayUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 退款队列的测试：退款请求经过真实的 WeChatPayUtil 发往本地模拟的微信支付接口，
+ * 由模拟接口制造错误响应和超时，覆盖重试间隔、最大尝试次数和定时补偿。
+ * 重试仍由定时器异步执行，只是把退避时间的单位从秒缩短为毫秒，测试不需要真的等待。
+ */
+public class RefundQueueTest {
+
+    private WeChatPayStub stub;
+
+    private WeChatPayUtil weChatPayUtil;
+
+    private InMemoryJobLock jobLock;
+
+    private JobLeader jobLeader;
+
+    private RefundQueue refundQueue;
+
+    // 订单表的退款状态修改：订单id:原状态->新状态
+    private final List<String> refundUpdates = new CopyOnWriteArrayList<>();
+
+    // “退款中”的订单
+    private volatile List<Orders> refundingOrders = Collections.emptyList();
+
+    // 每次重试的间隔（秒）
+    private final List<Long> delays = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        stub = new WeChatPayStub();
+        WeChatProperties properties = stub.properties();
+        properties.setSocketTimeout(200);
+        weChatPayUtil = new WeChatPayUtil();
+        ReflectionTestUtils.setField(weChatPayUtil, "weChatProperties", properties);
+
+        jobLock = new InMemoryJobLock();
+        jobLeader = new JobLeader();
+        ReflectionTestUtils.setField(jobLeader, "jobLock", jobLock);
+
+        refundQueue = new RefundQueue();
+        ReflectionTestUtils.setField(refundQueue, "weChatPayUtil", weChatPayUtil);
+        ReflectionTestUtils.setField(refundQueue, "orderMapper", orderMapper());
+        ReflectionTestUtils.setField(refundQueue, "jobLeader", jobLeader);
+        refundQueue.afterPropertiesSet();
+
+        ((ScheduledExecutorService) ReflectionTestUtils.getField(refundQueue, "retryExecutor")).shutdownNow();
+        ReflectionTestUtils.setField(refundQueue, "retryExecutor", new FastRetryExecutor());
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        refundQueue.destroy();
+        jobLeader.destroy();
+        weChatPayUtil.destroy();
+        stub.close();
+    }
+
+    /**
+     * 只实现退款用到的两个方法，记录退款状态的修改
+     */
+    private OrderMapper orderMapper() {
+        return (OrderMapper) Proxy.newProxyInstance(OrderMapper.class.getClassLoader(), new Class<?>[]{OrderMapper.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "updateRefundStatus":
+                            refundUpdates.add(args[0] + ":" + args[1] + "->" + args[2]);
+                            return 1;
+                        case "getByRefundStatus":
+                            return refundingOrders;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static Orders order(Long id) {
+        return Orders.builder().id(id).number("20241019" + id).build();
+    }
+
+    private static String succeeded(long id) {
+        return id + ":" + Orders.REFUNDING + "->" + Orders.REFUND_SUCCESS;
+    }
+
+    private static String failed(long id) {
+        return id + ":" + Orders.REFUNDING + "->" + Orders.REFUND_FAILED;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 错误响应和读取超时都会按指数退避重试，成功后标记为退款成功
+     */
+    @Test
+    public void retriesWithBackoffUntilSuccess() throws Exception {
+        stub.slowNext(1, 1000);
+        stub.failNext(2);
+
+        refundQueue.enqueue(order(1L));
+
+        await(() -> refundUpdates.contains(succeeded(1L)));
+        // 第一次超时，第二次返回错误，第三次成功
+        assertEquals(3, stub.getRequests().size());
+        assertTrue(stub.getRequests().get(0).contains("\"out_refund_no\":\"202410191\""));
+        assertEquals(Collections.singletonList(succeeded(1L)), refundUpdates);
+        assertEquals(Arrays.asList(2L, 4L), delays);
+        // 只有超时计入请求失败，错误响应由退款队列判断
+        assertEquals(1, weChatPayUtil.getFailureCount());
+    }
+
+    /**
+     * 达到最大尝试次数后不再重试，标记为退款失败
+     */
+    @Test
+    public void marksFailedAfterMaxAttempts() throws Exception {
+        stub.failNext(Integer.MAX_VALUE);
+
+        refundQueue.enqueue(order(2L));
+
+        await(() -> refundUpdates.contains(failed(2L)));
+        assertEquals(8, stub.getRequests().size());
+        assertEquals(Collections.singletonList(failed(2L)), refundUpdates);
+        assertEquals(Arrays.asList(2L, 4L, 8L, 16L, 32L, 64L, 128L), delays);
+    }
+
+    /**
+     * 接口较慢时多个退款并发执行，同一个订单只提交一次
+     */
+    @Test
+    public void slowRefundsRunConcurrently() throws Exception {
+        stub.setLatencyMillis(100);
+
+        for (long id = 10; id < 18; id++) {
+            refundQueue.enqueue(order(id));
+            refundQueue.enqueue(order(id));
+        }
+
+        await(() -> refundUpdates.size() == 8);
+        assertEquals(8, stub.getRequests().size());
+        assertTrue(stub.getMaxActive() > 1);
+        assertTrue(delays.isEmpty());
+    }
+
+    /**
+     * 定时补偿把“退款中”的订单重新加入队列
+     */
+    @Test
+    public void recoverResubmitsRefundingOrders() throws Exception {
+        refundingOrders = Arrays.asList(order(3L), order(4L));
+
+        refundQueue.recover();
+
+        await(() -> refundUpdates.size() == 2);
+        assertTrue(refundUpdates.contains(succeeded(3L)));
+        assertTrue(refundUpdates.contains(succeeded(4L)));
+        assertTrue(delays.isEmpty());
+    }
+
+    /**
+     * 本节点正在处理的订单不会被定时补偿重复加入
+     */
+    @Test
+    public void recoverSkipsInFlightOrders() throws Exception {
+        stub.setLatencyMillis(150);
+        refundingOrders = Collections.singletonList(order(5L));
+
+        refundQueue.enqueue(order(5L));
+        await(() -> stub.getRequests().size() == 1);
+        refundQueue.recover();
+
+        await(() -> refundUpdates.contains(succeeded(5L)));
+        Thread.sleep(300);
+        assertEquals(1, stub.getRequests().size());
+        assertEquals(Collections.singletonList(succeeded(5L)), refundUpdates);
+    }
+
+    /**
+     * 其它节点持有任务锁时本节点不补偿
+     */
+    @Test
+    public void recoverRunsOnlyOnLeader() throws Exception {
+        assertTrue(jobLock.tryAcquire("recoverRefunds", "other-node", 60000));
+        refundingOrders = Collections.singletonList(order(6L));
+
+        refundQueue.recover();
+
+        Thread.sleep(200);
+        assertTrue(stub.getRequests().isEmpty());
+        assertFalse(refundUpdates.contains(succeeded(6L)));
+    }
+
+    /**
+     * 记录重试间隔，按毫秒而不是秒执行重试
+     */
+    private class FastRetryExecutor extends ScheduledThreadPoolExecutor {
+
+        FastRetryExecutor() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            assertEquals(TimeUnit.SECONDS, unit);
+            delays.add(delay);
+            return super.schedule(command, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+}
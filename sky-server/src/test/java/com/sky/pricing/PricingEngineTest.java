@@ -0,0 +1,225 @@
+package com.sky.pricing;
+
+import com.sky.constant.MessageConstant;
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.ShoppingCartBusinessException;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.properties.PricingProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 下单计价的测试：按数据库中的当前售价计价、每类商品只查询一次、停售商品拒绝下单，
+ * 以及与 BigDecimal 逐行计算的结果比较
+ */
+public class PricingEngineTest {
+
+    private PricingEngine pricingEngine;
+
+    private final PricingProperties pricingProperties = new PricingProperties();
+
+    // 数据库中的菜品和套餐
+    private final Map<Long, Dish> dishes = new HashMap<>();
+    private final Map<Long, Setmeal> setmeals = new HashMap<>();
+
+    // 每次 getByIds 查询的id：菜品、套餐
+    private final List<Set<Long>> dishQueries = new ArrayList<>();
+    private final List<Set<Long>> setmealQueries = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        pricingEngine = new PricingEngine();
+        ReflectionTestUtils.setField(pricingEngine, "pricingProperties", pricingProperties);
+        ReflectionTestUtils.setField(pricingEngine, "dishMapper", mapper(DishMapper.class, dishes, dishQueries));
+        ReflectionTestUtils.setField(pricingEngine, "setmealMapper", mapper(SetmealMapper.class, setmeals, setmealQueries));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T mapper(Class<T> type, Map<Long, ?> rows, List<Set<Long>> queries) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (!"getByIds".equals(method.getName())) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            Collection<Long> ids = (Collection<Long>) args[0];
+            queries.add(new HashSet<>(ids));
+            return ids.stream().filter(rows::containsKey).map(rows::get).collect(Collectors.toList());
+        }));
+    }
+
+    private void dish(long id, String price, Integer status) {
+        dishes.put(id, Dish.builder().id(id).price(new BigDecimal(price)).status(status).build());
+    }
+
+    private void setmeal(long id, String price, Integer status) {
+        setmeals.put(id, Setmeal.builder().id(id).price(new BigDecimal(price)).status(status).build());
+    }
+
+    private static ShoppingCart dishItem(long dishId, int number, String cartAmount) {
+        return ShoppingCart.builder().dishId(dishId).number(number).amount(new BigDecimal(cartAmount)).build();
+    }
+
+    private static ShoppingCart setmealItem(long setmealId, int number, String cartAmount) {
+        return ShoppingCart.builder().setmealId(setmealId).number(number).amount(new BigDecimal(cartAmount)).build();
+    }
+
+    /**
+     * 按当前售价计价，忽略购物车中保存的价格；打包费按份数，配送费按单
+     */
+    @Test
+    public void pricesFromCurrentPriceNotCart() {
+        dish(1L, "12.80", StatusConstant.ENABLE);
+        setmeal(2L, "39.90", StatusConstant.ENABLE);
+
+        PricingResult result = pricingEngine.price(Arrays.asList(
+                dishItem(1L, 3, "0.01"),
+                setmealItem(2L, 1, "0.01")), 1, null);
+
+        assertEquals(1280, result.getLines().get(0).getUnitPrice());
+        assertEquals(3840, result.getLines().get(0).getAmount());
+        assertEquals(3990, result.getLines().get(1).getAmount());
+        assertEquals(7830, result.getSubtotal());
+        assertEquals(4, result.getItemCount());
+        assertEquals(400, result.getPackFee());
+        assertEquals(600, result.getDeliveryFee());
+        assertEquals(8830, result.getTotal());
+        assertEquals(new BigDecimal("88.30"), PricingResult.toYuan(result.getTotal()));
+    }
+
+    /**
+     * 菜品和套餐各只查询一次，重复的id只查询一个
+     */
+    @Test
+    public void loadsPricesWithOneQueryPerType() {
+        List<ShoppingCart> cart = new ArrayList<>();
+        for (long id = 1; id <= 50; id++) {
+            dish(id, "1.00", StatusConstant.ENABLE);
+            cart.add(dishItem(id, 1, "1.00"));
+            cart.add(dishItem(id, 2, "1.00"));
+        }
+        setmeal(100L, "20.00", StatusConstant.ENABLE);
+        cart.add(setmealItem(100L, 1, "20.00"));
+
+        PricingResult result = pricingEngine.price(cart, 0, 2);
+
+        assertEquals(1, dishQueries.size());
+        assertEquals(50, dishQueries.get(0).size());
+        assertEquals(1, setmealQueries.size());
+        assertEquals(cart.size(), result.getLines().size());
+        assertEquals(50 * 3 * 100 + 2000, result.getSubtotal());
+    }
+
+    /**
+     * 购物车中没有套餐时不查询套餐表
+     */
+    @Test
+    public void skipsQueryForAbsentType() {
+        dish(1L, "8.00", StatusConstant.ENABLE);
+
+        pricingEngine.price(Arrays.asList(dishItem(1L, 1, "8.00")), 1, null);
+
+        assertEquals(1, dishQueries.size());
+        assertTrue(setmealQueries.isEmpty());
+    }
+
+    /**
+     * 购物车中有停售或已删除的商品时拒绝计价
+     */
+    @Test
+    public void unavailableItemIsRejected() {
+        dish(1L, "8.00", StatusConstant.ENABLE);
+        dish(2L, "9.00", StatusConstant.DISABLE);
+        setmeal(3L, "30.00", StatusConstant.DISABLE);
+
+        for (ShoppingCart unavailable : Arrays.asList(dishItem(2L, 1, "9.00"), dishItem(99L, 1, "9.00"),
+                setmealItem(3L, 1, "30.00"))) {
+            ShoppingCartBusinessException e = assertThrows(ShoppingCartBusinessException.class,
+                    () -> pricingEngine.price(Arrays.asList(dishItem(1L, 1, "8.00"), unavailable), 1, null));
+            assertEquals(MessageConstant.SHOPPING_CART_ITEM_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    /**
+     * 餐具数量：按餐量提供时等于份数，否则为选择的数量
+     */
+    @Test
+    public void tablewareNumberFollowsStatus() {
+        dish(1L, "8.00", StatusConstant.ENABLE);
+        List<ShoppingCart> cart = Arrays.asList(dishItem(1L, 3, "8.00"));
+
+        assertEquals(3, pricingEngine.price(cart, 1, 10).getTablewareNumber());
+        assertEquals(10, pricingEngine.price(cart, 0, 10).getTablewareNumber());
+        assertEquals(0, pricingEngine.price(cart, 0, null).getTablewareNumber());
+        assertEquals(0, pricingEngine.price(cart, null, null).getTablewareNumber());
+    }
+
+    /**
+     * 随机购物车的计价结果与 BigDecimal 逐行相乘累加的结果一致，不丢失分
+     */
+    @Test
+    public void matchesBigDecimalReference() {
+        Random random = new Random(43);
+        for (long id = 1; id <= 20; id++) {
+            dish(id, BigDecimal.valueOf(random.nextInt(20000) + 1, 2).toPlainString(), StatusConstant.ENABLE);
+            setmeal(id, BigDecimal.valueOf(random.nextInt(50000) + 1, 2).toPlainString(), StatusConstant.ENABLE);
+        }
+
+        for (int round = 0; round < 200; round++) {
+            List<ShoppingCart> cart = new ArrayList<>();
+            BigDecimal expectedSubtotal = BigDecimal.ZERO;
+            int expectedItems = 0;
+            for (int i = random.nextInt(10) + 1; i > 0; i--) {
+                long id = random.nextInt(20) + 1;
+                int number = random.nextInt(5) + 1;
+                boolean isDish = random.nextBoolean();
+                BigDecimal price = isDish ? dishes.get(id).getPrice() : setmeals.get(id).getPrice();
+                cart.add(isDish ? dishItem(id, number, "0") : setmealItem(id, number, "0"));
+                expectedSubtotal = expectedSubtotal.add(price.multiply(BigDecimal.valueOf(number)));
+                expectedItems += number;
+            }
+
+            PricingResult result = pricingEngine.price(cart, 1, null);
+
+            BigDecimal expectedTotal = expectedSubtotal
+                    .add(new BigDecimal("1.00").multiply(BigDecimal.valueOf(expectedItems)))
+                    .add(new BigDecimal("6.00"));
+            assertEquals(0, expectedSubtotal.compareTo(PricingResult.toYuan(result.getSubtotal())));
+            assertEquals(0, expectedTotal.compareTo(PricingResult.toYuan(result.getTotal())));
+        }
+    }
+
+    /**
+     * 打包费不是整元时启动失败
+     */
+    @Test
+    public void packFeeMustBeWholeYuan() {
+        pricingProperties.setPackFeePerItem(200);
+        pricingEngine.afterPropertiesSet();
+
+        for (long packFee : new long[]{150, 1, -100}) {
+            pricingProperties.setPackFeePerItem(packFee);
+            assertThrows(IllegalStateException.class, () -> pricingEngine.afterPropertiesSet());
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.sky.search;
+
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.utils.PinyinUtil;
+import com.sky.vo.SearchItemVO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 菜品、套餐名称搜索索引的测试：单字、相邻两字和拼音首字母匹配，后台按名称搜索与模糊查询结果一致，
+ * 以及修改后本节点和其它节点重新加载
+ */
+public class CatalogSearchIndexTest {
+
+    // 数据库中的菜品和套餐
+    private final Map<Long, Dish> dishes = new TreeMap<>();
+    private final Map<Long, Setmeal> setmeals = new TreeMap<>();
+
+    // 模拟的 Redis 变更记录：成员 -> 分数
+    private final Map<String, Double> changedZSet = new ConcurrentHashMap<>();
+
+    private CatalogSearchIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        index = newNode();
+    }
+
+    private CatalogSearchIndex newNode() {
+        CatalogSearchIndex node = new CatalogSearchIndex();
+        ReflectionTestUtils.setField(node, "dishMapper", mapper(DishMapper.class, dishes));
+        ReflectionTestUtils.setField(node, "setmealMapper", mapper(SetmealMapper.class, setmeals));
+        ReflectionTestUtils.setField(node, "stringRedisTemplate", redis());
+        node.afterPropertiesSet();
+        return node;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T mapper(Class<T> type, Map<Long, ?> rows) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "list":
+                    return new ArrayList<>(rows.values());
+                case "getByIds":
+                    return ((Collection<Long>) args[0]).stream().filter(rows::containsKey).map(rows::get)
+                            .collect(Collectors.toList());
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }));
+    }
+
+    @SuppressWarnings("unchecked")
+    private StringRedisTemplate redis() {
+        ZSetOperations<String, String> zSetOperations = (ZSetOperations<String, String>) Proxy.newProxyInstance(
+                ZSetOperations.class.getClassLoader(), new Class<?>[]{ZSetOperations.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "add":
+                            changedZSet.put((String) args[1], (Double) args[2]);
+                            return true;
+                        case "rangeByScore":
+                            return changedZSet.entrySet().stream()
+                                    .filter(e -> e.getValue() >= (Double) args[1] && e.getValue() <= (Double) args[2])
+                                    .map(Map.Entry::getKey).collect(Collectors.toSet());
+                        case "removeRangeByScore":
+                            changedZSet.values().removeIf(score -> score >= (Double) args[1] && score <= (Double) args[2]);
+                            return 0L;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return new StringRedisTemplate() {
+            @Override
+            public ZSetOperations<String, String> opsForZSet() {
+                return zSetOperations;
+            }
+        };
+    }
+
+    private void dish(long id, String name, String description, Integer status) {
+        dishes.put(id, Dish.builder().id(id).name(name).description(description).status(status).categoryId(1L).build());
+    }
+
+    private void setmeal(long id, String name, Integer status) {
+        setmeals.put(id, Setmeal.builder().id(id).name(name).status(status).categoryId(2L).build());
+    }
+
+    private static List<String> names(List<SearchItemVO> items) {
+        return items.stream().map(SearchItemVO::getName).collect(Collectors.toList());
+    }
+
+    /**
+     * 单字、相邻两字匹配名称，名称匹配排在只有描述匹配之前，停售的不返回
+     */
+    @Test
+    public void searchMatchesCharactersAndBigrams() {
+        dish(1L, "宫保鸡丁", "鸡肉 花生", StatusConstant.ENABLE);
+        dish(2L, "辣子鸡", null, StatusConstant.ENABLE);
+        dish(3L, "花生米", "下酒菜", StatusConstant.ENABLE);
+        dish(4L, "鸡丁炒饭", null, StatusConstant.DISABLE);
+        setmeal(5L, "宫保鸡丁套餐", StatusConstant.ENABLE);
+        index = newNode();
+
+        assertEquals(Arrays.asList("宫保鸡丁", "宫保鸡丁套餐"), names(index.search("鸡丁", 10)));
+        assertEquals(Arrays.asList("辣子鸡", "宫保鸡丁", "宫保鸡丁套餐"), names(index.search("鸡", 10)));
+        assertEquals(Arrays.asList("宫保鸡丁", "宫保鸡丁套餐"), names(index.search("保鸡", 10)));
+        assertEquals(Arrays.asList("花生米", "宫保鸡丁"), names(index.search("花生", 10)));
+        assertEquals(Arrays.asList("辣子鸡"), names(index.search("鸡", 1)));
+        assertTrue(index.search("宫丁", 10).isEmpty());
+        assertTrue(index.search("  ", 10).isEmpty());
+    }
+
+    /**
+     * 名称可以按拼音首字母搜索，不区分大小写
+     */
+    @Test
+    public void searchMatchesPinyinInitials() {
+        dish(1L, "宫保鸡丁", null, StatusConstant.ENABLE);
+        dish(2L, "鱼香肉丝", null, StatusConstant.ENABLE);
+        index = newNode();
+
+        assertEquals("gbjd", PinyinUtil.initials("宫保鸡丁"));
+        assertEquals(Arrays.asList("宫保鸡丁"), names(index.search("gbjd", 10)));
+        assertEquals(Arrays.asList("宫保鸡丁"), names(index.search("BJ", 10)));
+        assertEquals(Arrays.asList("鱼香肉丝"), names(index.search("xr", 10)));
+        assertEquals(Arrays.asList(1L), index.searchIds(CatalogSearchIndex.DISH, "jd"));
+        assertTrue(index.search("gd", 10).isEmpty());
+    }
+
+    /**
+     * 后台按名称搜索的结果与名称包含搜索词、或只有字母的搜索词包含在拼音首字母中的结果一致，区分菜品和套餐
+     */
+    @Test
+    public void searchIdsMatchesContainsPredicate() {
+        Random random = new Random(50);
+        String alphabet = "宫保鸡丁鱼香肉丝麻婆豆腐红烧排骨AB12";
+        for (long id = 1; id <= 400; id++) {
+            StringBuilder name = new StringBuilder();
+            for (int i = random.nextInt(6) + 1; i > 0; i--) {
+                name.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            if (id % 4 == 0) {
+                setmeal(id, name.toString(), StatusConstant.ENABLE);
+            } else {
+                dish(id, name.toString(), "描述" + name, id % 3 == 0 ? StatusConstant.DISABLE : StatusConstant.ENABLE);
+            }
+        }
+        index = newNode();
+
+        for (int round = 0; round < 300; round++) {
+            String type = round % 2 == 0 ? CatalogSearchIndex.DISH : CatalogSearchIndex.SETMEAL;
+            String query;
+            if (round % 3 == 0) {
+                query = PinyinUtil.initials(randomName(random, alphabet));
+            } else {
+                query = randomName(random, alphabet);
+            }
+            String normalized = query.trim().toLowerCase();
+
+            List<Long> expected = new ArrayList<>();
+            for (Map.Entry<Long, ?> entry : (CatalogSearchIndex.DISH.equals(type) ? dishes : setmeals).entrySet()) {
+                String name = entry.getValue() instanceof Dish
+                        ? ((Dish) entry.getValue()).getName() : ((Setmeal) entry.getValue()).getName();
+                if (normalized.isEmpty()) {
+                    continue;
+                }
+                if (name.toLowerCase().contains(normalized)
+                        || normalized.matches("[a-z]+") && PinyinUtil.initials(name).contains(normalized)) {
+                    expected.add(entry.getKey());
+                }
+            }
+
+            List<Long> actual = index.searchIds(type, query);
+            if (normalized.isEmpty()) {
+                assertNull(actual);
+                continue;
+            }
+            Collections.sort(actual);
+            assertEquals(expected, actual, type + " " + query);
+        }
+    }
+
+    private static String randomName(Random random, String alphabet) {
+        StringBuilder name = new StringBuilder();
+        for (int i = random.nextInt(3) + 1; i > 0; i--) {
+            name.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return name.toString();
+    }
+
+    /**
+     * 修改、删除后本节点立即重新加载，其它节点在下一次同步时通过变更记录重新加载
+     */
+    @Test
+    public void changesAreVisibleOnAllNodes() {
+        dish(1L, "宫保鸡丁", null, StatusConstant.ENABLE);
+        dish(2L, "鱼香肉丝", null, StatusConstant.ENABLE);
+        index = newNode();
+        CatalogSearchIndex other = newNode();
+
+        dish(1L, "辣子鸡丁", null, StatusConstant.ENABLE);
+        dishes.remove(2L);
+        index.dishChanged(Arrays.asList(1L, 2L));
+
+        assertEquals(Arrays.asList("辣子鸡丁"), names(index.search("鸡丁", 10)));
+        assertTrue(index.search("宫保", 10).isEmpty());
+        assertTrue(index.search("肉丝", 10).isEmpty());
+        assertEquals(Arrays.asList("宫保鸡丁"), names(other.search("宫保", 10)));
+
+        other.sync();
+        assertEquals(Arrays.asList("辣子鸡丁"), names(other.search("鸡丁", 10)));
+        assertTrue(other.search("宫保", 10).isEmpty());
+        assertTrue(other.search("肉丝", 10).isEmpty());
+    }
+
+    /**
+     * 多次修改后压缩文档编号，搜索结果不变
+     */
+    @Test
+    public void compactionKeepsResults() {
+        for (long id = 1; id <= 100; id++) {
+            dish(id, "菜品" + id, null, StatusConstant.ENABLE);
+        }
+        index = newNode();
+
+        List<Long> ids = new ArrayList<>(dishes.keySet());
+        for (int round = 0; round < 30; round++) {
+            index.dishChanged(ids);
+        }
+        dish(7L, "招牌菜", null, StatusConstant.ENABLE);
+        index.dishChanged(Collections.singletonList(7L));
+
+        Set<Long> expected = dishes.keySet().stream().filter(id -> id != 7L).collect(Collectors.toSet());
+        assertEquals(expected, index.search("菜品", 1000).stream().map(SearchItemVO::getId).collect(Collectors.toSet()));
+        assertEquals(Arrays.asList(7L), index.searchIds(CatalogSearchIndex.DISH, "招牌"));
+        assertTrue((int) ReflectionTestUtils.getField(index, "docCount") < 100 * 31);
+    }
+}
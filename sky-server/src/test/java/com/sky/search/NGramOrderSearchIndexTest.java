@@ -0,0 +1,185 @@
+package com.sky.search;
+
+import com.sky.entity.Orders;
+import com.sky.properties.OrderSearchProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 订单号、手机号 n-gram 索引的测试：倒排列表的变长整数编码、求交集，以及查询结果与逐个比较的结果一致
+ */
+public class NGramOrderSearchIndexTest {
+
+    private NGramOrderSearchIndex index;
+
+    private final OrderSearchProperties orderSearchProperties = new OrderSearchProperties();
+
+    @BeforeEach
+    public void setUp() {
+        index = new NGramOrderSearchIndex();
+        ReflectionTestUtils.setField(index, "orderSearchProperties", orderSearchProperties);
+        ReflectionTestUtils.setField(index, "ready", true);
+    }
+
+    private void add(long id, String number, String phone) {
+        ReflectionTestUtils.invokeMethod(index, "add", Orders.builder().id(id).number(number).phone(phone).build());
+    }
+
+    private static NGramOrderSearchIndex.Postings postings(int... docs) {
+        NGramOrderSearchIndex.Postings postings = new NGramOrderSearchIndex.Postings();
+        for (int doc : docs) {
+            postings.add(doc);
+        }
+        return postings;
+    }
+
+    /**
+     * 差值跨过1到5个字节的边界时编码后能原样解码
+     */
+    @Test
+    public void varintRoundTripsAcrossByteBoundaries() {
+        int[] docs = {0, 1, 128, 129, 16512, 16513, 2113664, 2113665, 270549120, Integer.MAX_VALUE - 1, Integer.MAX_VALUE};
+
+        assertArrayEquals(docs, postings(docs).toArray());
+    }
+
+    /**
+     * 同一个文档连续加入多次只记录一次
+     */
+    @Test
+    public void repeatedDocIsRecordedOnce() {
+        assertArrayEquals(new int[]{3, 7}, postings(3, 3, 7, 7, 7).toArray());
+    }
+
+    /**
+     * 求交集的结果与集合求交集一致，包括目标超出列表末尾、列表为空的情况
+     */
+    @Test
+    public void retainMatchesSetIntersection() {
+        Random random = new Random(49);
+        for (int round = 0; round < 500; round++) {
+            TreeSet<Integer> listed = randomDocs(random);
+            TreeSet<Integer> targets = randomDocs(random);
+
+            int[] retained = postings(toArray(listed)).retain(toArray(targets));
+
+            TreeSet<Integer> expected = new TreeSet<>(listed);
+            expected.retainAll(targets);
+            assertArrayEquals(toArray(expected), retained, "round " + round);
+        }
+        assertArrayEquals(new int[0], postings().retain(new int[]{1, 2}));
+        assertArrayEquals(new int[0], postings(1, 2).retain(new int[0]));
+    }
+
+    private static TreeSet<Integer> randomDocs(Random random) {
+        // 间隔有时很大，覆盖多字节的差值
+        int bound = random.nextBoolean() ? 300 : 5000000;
+        TreeSet<Integer> docs = new TreeSet<>();
+        for (int i = random.nextInt(60); i > 0; i--) {
+            docs.add(random.nextInt(bound));
+        }
+        return docs;
+    }
+
+    private static int[] toArray(TreeSet<Integer> docs) {
+        return docs.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * 按订单号、手机号以及两者组合查询，候选订单与逐个比较片段的结果一致
+     */
+    @Test
+    public void searchMatchesBruteForce() {
+        Random random = new Random(490);
+        List<Orders> ordersList = new ArrayList<>();
+        for (long id = 1; id <= 3000; id++) {
+            String number = String.valueOf(1700000000000L + random.nextInt(1000000));
+            String phone = "13" + String.format("%09d", random.nextInt(1000));
+            ordersList.add(Orders.builder().id(id).number(number).phone(phone).build());
+            add(id, number, phone);
+        }
+        orderSearchProperties.setMaxCandidates(Integer.MAX_VALUE);
+
+        for (int round = 0; round < 200; round++) {
+            Orders sample = ordersList.get(random.nextInt(ordersList.size()));
+            String number = random.nextInt(3) == 0 ? null : substring(random, sample.getNumber());
+            String phone = number != null && random.nextBoolean() ? null : substring(random, sample.getPhone());
+
+            List<Long> expected = new ArrayList<>();
+            for (Orders orders : ordersList) {
+                if (containsGrams(orders.getNumber(), number) && containsGrams(orders.getPhone(), phone)) {
+                    expected.add(orders.getId());
+                }
+            }
+
+            OrderSearchCandidates candidates = index.search(number, phone);
+            assertEquals(expected, candidates.getIds(), number + " / " + phone);
+        }
+    }
+
+    private static String substring(Random random, String value) {
+        int length = 3 + random.nextInt(value.length() - 2);
+        int start = random.nextInt(value.length() - length + 1);
+        return value.substring(start, start + length);
+    }
+
+    /**
+     * value 包含 query 的每一个3字符片段；query 为 null 时不限制
+     */
+    private static boolean containsGrams(String value, String query) {
+        if (query == null) {
+            return true;
+        }
+        for (int i = 0; i + 3 <= query.length(); i++) {
+            if (!value.contains(query.substring(i, i + 3))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 同一个订单在订单表和归档表中各索引一次时只返回一次
+     */
+    @Test
+    public void archivedDuplicateIsReturnedOnce() {
+        add(1L, "1700000000001", "13800000001");
+        add(2L, "1700000000002", "13800000002");
+        add(1L, "1700000000001", "13800000001");
+
+        assertEquals(Arrays.asList(1L, 2L), index.search("170000000000", null).getIds());
+        assertEquals(Arrays.asList(1L), index.search(null, "0001").getIds());
+    }
+
+    /**
+     * 条件太短、候选过多或索引未加载完成时返回 null，由调用方按 like 条件查询
+     */
+    @Test
+    public void fallsBackWhenIndexCannotHelp() {
+        for (long id = 1; id <= 10; id++) {
+            add(id, "17000000000" + (10 + id), "138000000" + (10 + id));
+        }
+
+        assertNull(index.search("17", null));
+        assertNull(index.search(null, null));
+        assertEquals(0, index.search("999", null).getIds().size());
+
+        orderSearchProperties.setMaxCandidates(5);
+        assertNull(index.search("170", null));
+        assertEquals(1, index.search("1700000000015", null).getIds().size());
+
+        ReflectionTestUtils.setField(index, "ready", false);
+        assertNull(index.search("1700000000015", null));
+    }
+}
@@ -0,0 +1,133 @@
+package com.sky.service.impl;
+
+import com.sky.constant.MessageConstant;
+import com.sky.constant.StatusConstant;
+import com.sky.exception.DeletionNotAllowedException;
+import com.sky.mapper.DishFlavorMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealDishMapper;
+import com.sky.search.CatalogSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 批量删除菜品的测试：无论删除多少个菜品，检查和删除都只执行固定数量的语句
+ * mapper 用代理记录每次调用，查询结果由 results 指定
+ */
+public class DishServiceImplTest {
+
+    private DishServiceImpl dishService;
+
+    // 每次 mapper 调用：方法名和参数
+    private final List<String> calls = new ArrayList<>();
+
+    // 方法名 -> 返回值
+    private final Map<String, Object> results = new HashMap<>();
+
+    // 通知搜索索引的菜品id
+    private final List<Long> changedDishIds = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        results.put("countByIdsAndStatus", 0);
+        results.put("getSetmealIdsByDishIds", Collections.emptyList());
+
+        dishService = new DishServiceImpl();
+        ReflectionTestUtils.setField(dishService, "dishMapper", mapper(DishMapper.class));
+        ReflectionTestUtils.setField(dishService, "dishFlavorMapper", mapper(DishFlavorMapper.class));
+        ReflectionTestUtils.setField(dishService, "setmealDishMapper", mapper(SetmealDishMapper.class));
+        ReflectionTestUtils.setField(dishService, "catalogSearchIndex", new CatalogSearchIndex() {
+            @Override
+            public void dishChanged(Collection<Long> ids) {
+                changedDishIds.addAll(ids);
+            }
+        });
+    }
+
+    private <T> T mapper(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            calls.add(type.getSimpleName() + "." + method.getName() + Arrays.asList(args));
+            return results.get(method.getName());
+        }));
+    }
+
+    private static List<Long> ids(int count) {
+        return LongStream.rangeClosed(1, count).boxed().collect(Collectors.toList());
+    }
+
+    /**
+     * 删除500个菜品只执行4条语句：统计起售菜品、查询关联套餐、删除菜品、删除口味
+     */
+    @Test
+    public void deleteBatchUsesConstantNumberOfStatements() {
+        List<Long> ids = ids(500);
+
+        dishService.deleteBatch(ids);
+
+        assertEquals(Arrays.asList(
+                "DishMapper.countByIdsAndStatus" + Arrays.asList(ids, StatusConstant.ENABLE),
+                "SetmealDishMapper.getSetmealIdsByDishIds" + Collections.singletonList(ids),
+                "DishMapper.deleteByIds" + Collections.singletonList(ids),
+                "DishFlavorMapper.deleteByDishIds" + Collections.singletonList(ids)), calls);
+        assertEquals(ids, changedDishIds);
+    }
+
+    /**
+     * 存在起售中的菜品时不删除任何菜品
+     */
+    @Test
+    public void onSaleDishBlocksWholeBatch() {
+        results.put("countByIdsAndStatus", 1);
+
+        DeletionNotAllowedException e = assertThrows(DeletionNotAllowedException.class,
+                () -> dishService.deleteBatch(ids(3)));
+
+        assertEquals(MessageConstant.DISH_ON_SALE, e.getMessage());
+        assertEquals(1, calls.size());
+        assertTrue(changedDishIds.isEmpty());
+    }
+
+    /**
+     * 存在被套餐关联的菜品时不删除任何菜品
+     */
+    @Test
+    public void dishInSetmealBlocksWholeBatch() {
+        results.put("getSetmealIdsByDishIds", Collections.singletonList(10L));
+
+        DeletionNotAllowedException e = assertThrows(DeletionNotAllowedException.class,
+                () -> dishService.deleteBatch(ids(3)));
+
+        assertEquals(MessageConstant.DISH_BE_RELATED_BY_SETMEAL, e.getMessage());
+        assertEquals(2, calls.size());
+        assertTrue(calls.stream().noneMatch(call -> call.contains(".delete")));
+        assertTrue(changedDishIds.isEmpty());
+    }
+
+    /**
+     * 没有要删除的菜品时不执行任何语句（空的 in () 是非法的SQL）
+     */
+    @Test
+    public void emptyBatchExecutesNothing() {
+        dishService.deleteBatch(Collections.emptyList());
+        dishService.deleteBatch(null);
+
+        assertTrue(calls.isEmpty());
+        assertTrue(changedDishIds.isEmpty());
+    }
+}
@@ -0,0 +1,341 @@
+package com.sky.service.impl;
+
+import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderArchiveProperties;
+import com.sky.vo.OrderVO;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 导出订单CSV的测试：输出按 RFC 4180 解析后与订单字段一致，含逗号、引号、换行的字段正确转义，
+ * 以公式字符开头的用户输入被加上单引号，gzip 输出解压后与未压缩的输出相同
+ */
+public class OrderServiceImplTest {
+
+    private OrderServiceImpl orderService;
+
+    // 游标返回的订单：订单表、归档表
+    private final List<OrderVO> liveOrders = new ArrayList<>();
+    private final List<OrderVO> archivedOrders = new ArrayList<>();
+
+    // 传给游标查询的条件
+    private final List<OrdersPageQueryDTO> queries = new ArrayList<>();
+
+    private int openCursors;
+
+    @BeforeEach
+    public void setUp() {
+        OrderArchiveRouter orderArchiveRouter = new OrderArchiveRouter();
+        ReflectionTestUtils.setField(orderArchiveRouter, "orderArchiveProperties", new OrderArchiveProperties());
+
+        OrderMapper orderMapper = (OrderMapper) Proxy.newProxyInstance(OrderMapper.class.getClassLoader(),
+                new Class<?>[]{OrderMapper.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "exportCursor":
+                            queries.add((OrdersPageQueryDTO) args[0]);
+                            return cursor(liveOrders);
+                        case "exportArchivedCursor":
+                            queries.add((OrdersPageQueryDTO) args[0]);
+                            return cursor(archivedOrders);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        SqlSession sqlSession = (SqlSession) Proxy.newProxyInstance(SqlSession.class.getClassLoader(),
+                new Class<?>[]{SqlSession.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getMapper":
+                            return orderMapper;
+                        case "close":
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        SqlSessionFactory sqlSessionFactory = (SqlSessionFactory) Proxy.newProxyInstance(
+                SqlSessionFactory.class.getClassLoader(), new Class<?>[]{SqlSessionFactory.class},
+                (proxy, method, args) -> {
+                    if ("openSession".equals(method.getName()) && (args == null || args.length == 0)) {
+                        return sqlSession;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+
+        orderService = new OrderServiceImpl();
+        ReflectionTestUtils.setField(orderService, "orderArchiveRouter", orderArchiveRouter);
+        ReflectionTestUtils.setField(orderService, "sqlSessionFactory", sqlSessionFactory);
+    }
+
+    /**
+     * 同一时间只允许打开一个游标（MySQL 流式结果集读完之前同一连接不能执行其它查询）
+     */
+    @SuppressWarnings("unchecked")
+    private Cursor<OrderVO> cursor(List<OrderVO> orders) {
+        assertEquals(0, openCursors);
+        openCursors++;
+        return (Cursor<OrderVO>) Proxy.newProxyInstance(Cursor.class.getClassLoader(), new Class<?>[]{Cursor.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "iterator":
+                            return orders.iterator();
+                        case "close":
+                            openCursors--;
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static OrderVO order(long id, String consignee, String address, String remark, OrderDetail... details) {
+        OrderVO order = new OrderVO();
+        order.setId(id);
+        order.setNumber("17000000000" + id);
+        order.setStatus(Orders.COMPLETED);
+        order.setUserId(7L);
+        order.setConsignee(consignee);
+        order.setPhone("13800000000");
+        order.setAddress(address);
+        order.setOrderTime(LocalDateTime.of(2024, 10, 1, 12, 30));
+        order.setPayMethod(1);
+        order.setPayStatus(Orders.PAID);
+        order.setAmount(new BigDecimal("88.50"));
+        order.setPackAmount(2);
+        order.setTablewareNumber(2);
+        order.setRemark(remark);
+        order.setOrderDetailList(Arrays.asList(details));
+        return order;
+    }
+
+    private static OrderDetail detail(String name, int number) {
+        return OrderDetail.builder().name(name).number(number).build();
+    }
+
+    private byte[] export(OrdersPageQueryDTO query, boolean gzip) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        orderService.exportOrders(query, gzip, out);
+        return out.toByteArray();
+    }
+
+    private static OrdersPageQueryDTO recentQuery() {
+        OrdersPageQueryDTO query = new OrdersPageQueryDTO();
+        query.setBeginTime(LocalDateTime.now().minusDays(1));
+        return query;
+    }
+
+    /**
+     * 按 RFC 4180 解析CSV：双引号包裹的字段中可以有逗号、换行，两个双引号表示一个双引号
+     */
+    private static List<List<String>> parse(String csv) {
+        List<List<String>> rows = new ArrayList<>();
+        List<String> row = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < csv.length(); i++) {
+            char c = csv.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < csv.length() && csv.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                assertEquals(0, field.length(), "引号只能出现在字段开头");
+                quoted = true;
+            } else if (c == ',') {
+                row.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' && i + 1 < csv.length() && csv.charAt(i + 1) == '\n') {
+                row.add(field.toString());
+                field.setLength(0);
+                rows.add(row);
+                row = new ArrayList<>();
+                i++;
+            } else {
+                assertFalse(c == '\r' || c == '\n', "未转义的换行");
+                field.append(c);
+            }
+        }
+        assertFalse(quoted);
+        assertEquals(0, field.length() + row.size(), "最后一行没有以 CRLF 结尾");
+        return rows;
+    }
+
+    private static String text(byte[] bytes) {
+        String csv = new String(bytes, StandardCharsets.UTF_8);
+        assertEquals('﻿', csv.charAt(0));
+        return csv.substring(1);
+    }
+
+    /**
+     * 表头和每个订单一行，字段顺序与表头一致，订单菜品拼接为 名称*份数
+     */
+    @Test
+    public void writesHeaderAndOneRowPerOrder() throws Exception {
+        liveOrders.add(order(1L, "张三", "北京市海淀区", null, detail("宫保鸡丁", 2), detail("米饭", 3)));
+        liveOrders.add(order(2L, "李四", "上海市", "少辣"));
+
+        List<List<String>> rows = parse(text(export(recentQuery(), false)));
+
+        assertEquals(3, rows.size());
+        assertEquals(15, rows.get(0).size());
+        assertEquals("订单号", rows.get(0).get(0));
+        assertEquals("订单菜品", rows.get(0).get(14));
+        assertEquals(Arrays.asList("170000000001", "5", "7", "张三", "13800000000", "北京市海淀区",
+                "2024-10-01T12:30", "", "1", "1", "88.50", "2", "2", "", "宫保鸡丁*2;米饭*3"), rows.get(1));
+        assertEquals("少辣", rows.get(2).get(13));
+        assertEquals("", rows.get(2).get(14));
+    }
+
+    /**
+     * 含逗号、双引号、换行的字段解析后与原值相同
+     */
+    @Test
+    public void quotesSpecialCharacters() throws Exception {
+        liveOrders.add(order(1L, "张\"三\"", "北京市,海淀区", "多放葱\r\n不要香菜\n谢谢", detail("鸡,丁", 1)));
+
+        List<String> row = parse(text(export(recentQuery(), false))).get(1);
+
+        assertEquals("张\"三\"", row.get(3));
+        assertEquals("北京市,海淀区", row.get(5));
+        assertEquals("多放葱\r\n不要香菜\n谢谢", row.get(13));
+        assertEquals("鸡,丁*1", row.get(14));
+    }
+
+    /**
+     * 以 = + - @ 制表符 回车开头的字段前加单引号，Excel 不会当作公式执行；其它位置的这些字符不处理
+     */
+    @Test
+    public void neutralisesFormulaPrefixes() throws Exception {
+        liveOrders.add(order(1L, "=HYPERLINK(\"http://evil\",\"点击\")", "+1+1", "-2+3", detail("@SUM(A1)", 1)));
+        liveOrders.add(order(2L, "\t=1+1", "\r=1+1", "a=1+1"));
+
+        List<List<String>> rows = parse(text(export(recentQuery(), false)));
+
+        assertEquals("'=HYPERLINK(\"http://evil\",\"点击\")", rows.get(1).get(3));
+        assertEquals("'+1+1", rows.get(1).get(5));
+        assertEquals("'-2+3", rows.get(1).get(13));
+        assertEquals("'@SUM(A1)*1", rows.get(1).get(14));
+        assertEquals("'\t=1+1", rows.get(2).get(3));
+        assertEquals("'\r=1+1", rows.get(2).get(5));
+        assertEquals("a=1+1", rows.get(2).get(13));
+    }
+
+    /**
+     * 随机的用户输入：解析后等于原值，以公式字符开头时多一个单引号
+     */
+    @Test
+    public void randomFieldsRoundTrip() throws Exception {
+        Random random = new Random(48);
+        String alphabet = "ab中文,\"\r\n=+-@\t' ";
+        List<String> remarks = new ArrayList<>();
+        for (long id = 1; id <= 300; id++) {
+            StringBuilder remark = new StringBuilder();
+            for (int i = random.nextInt(8) + 1; i > 0; i--) {
+                remark.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            remarks.add(remark.toString());
+            liveOrders.add(order(id, "张三", "北京", remark.toString()));
+        }
+
+        List<List<String>> rows = parse(text(export(recentQuery(), false)));
+
+        assertEquals(remarks.size() + 1, rows.size());
+        for (int i = 0; i < remarks.size(); i++) {
+            String remark = remarks.get(i);
+            String expected = "=+-@\t\r".indexOf(remark.charAt(0)) >= 0 ? "'" + remark : remark;
+            assertEquals(expected, rows.get(i + 1).get(13), "第" + (i + 1) + "行");
+        }
+    }
+
+    /**
+     * gzip 输出解压后与未压缩的输出相同
+     */
+    @Test
+    public void gzipMatchesPlainOutput() throws Exception {
+        for (long id = 1; id <= 2000; id++) {
+            liveOrders.add(order(id, "张三", "北京市海淀区", "备注" + id, detail("宫保鸡丁", 1)));
+        }
+
+        byte[] plain = export(recentQuery(), false);
+        byte[] gzip = export(recentQuery(), true);
+
+        ByteArrayOutputStream unzipped = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            byte[] buffer = new byte[8192];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                unzipped.write(buffer, 0, n);
+            }
+        }
+        assertTrue(Arrays.equals(plain, unzipped.toByteArray()));
+        assertTrue(gzip.length < plain.length);
+    }
+
+    /**
+     * 查询范围包含已归档的订单时先导出归档表，关闭游标后再导出订单表；服务端字段忽略请求中的值
+     */
+    @Test
+    public void exportsArchiveFirstAndIgnoresServerOnlyFields() throws Exception {
+        archivedOrders.add(order(1L, "归档", "北京", null));
+        liveOrders.add(order(2L, "进行中", "北京", null));
+        OrdersPageQueryDTO query = new OrdersPageQueryDTO();
+        query.setIncludeArchive(false);
+        query.setCandidateIds(Collections.singletonList(99L));
+        query.setIndexedMaxId(99L);
+
+        List<List<String>> rows = parse(text(export(query, false)));
+
+        assertEquals("归档", rows.get(1).get(3));
+        assertEquals("进行中", rows.get(2).get(3));
+        assertEquals(2, queries.size());
+        assertTrue(queries.get(0).isIncludeArchive());
+        assertNull(queries.get(0).getCandidateIds());
+        assertNull(queries.get(0).getIndexedMaxId());
+        assertEquals(0, openCursors);
+    }
+
+    /**
+     * 最近的查询不包含归档表，只打开订单表的游标
+     */
+    @Test
+    public void recentRangeSkipsArchive() throws Exception {
+        archivedOrders.add(order(1L, "归档", "北京", null));
+        liveOrders.add(order(2L, "进行中", "北京", null));
+
+        List<List<String>> rows = parse(text(export(recentQuery(), false)));
+
+        assertEquals(2, rows.size());
+        assertEquals("进行中", rows.get(1).get(3));
+        assertEquals(1, queries.size());
+        assertFalse(queries.get(0).isIncludeArchive());
+    }
+}
@@ -0,0 +1,159 @@
+package com.sky.service.impl;
+
+import com.sky.dto.DailyBusinessDTO;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.properties.OrderArchiveProperties;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 导出运营数据报表的测试：SXSSF 流式写出的工作簿重新读入后逐行检查，
+ * 包括没有数据的日期、合计行，以及超过内存行窗口（100行）的长时间区间
+ */
+public class ReportServiceImplTest {
+
+    private static final double DELTA = 1e-9;
+
+    private ReportServiceImpl reportService;
+
+    // 按天的订单数据和新增用户数
+    private final List<DailyBusinessDTO> orderData = new ArrayList<>();
+    private final List<DailyBusinessDTO> userData = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        OrderArchiveRouter orderArchiveRouter = new OrderArchiveRouter();
+        ReflectionTestUtils.setField(orderArchiveRouter, "orderArchiveProperties", new OrderArchiveProperties());
+
+        reportService = new ReportServiceImpl();
+        ReflectionTestUtils.setField(reportService, "orderArchiveRouter", orderArchiveRouter);
+        ReflectionTestUtils.setField(reportService, "orderMapper", Proxy.newProxyInstance(
+                OrderMapper.class.getClassLoader(), new Class<?>[]{OrderMapper.class}, (proxy, method, args) -> {
+                    if ("getDailyBusinessData".equals(method.getName())) {
+                        return orderData;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }));
+        ReflectionTestUtils.setField(reportService, "userMapper", Proxy.newProxyInstance(
+                UserMapper.class.getClassLoader(), new Class<?>[]{UserMapper.class}, (proxy, method, args) -> {
+                    if ("countNewUsersByDay".equals(method.getName())) {
+                        return userData;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }));
+    }
+
+    private Workbook export(LocalDate begin, LocalDate end) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        reportService.exportBusinessData(begin, end, out);
+        return new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static void assertBusinessRow(Row row, String label, double turnover, int validOrderCount,
+                                          double orderCompletionRate, double unitPrice, int newUsers) {
+        assertEquals(label, row.getCell(0).getStringCellValue());
+        assertEquals(turnover, row.getCell(1).getNumericCellValue(), DELTA);
+        assertEquals(validOrderCount, row.getCell(2).getNumericCellValue(), DELTA);
+        assertEquals(orderCompletionRate, row.getCell(3).getNumericCellValue(), DELTA);
+        assertEquals(unitPrice, row.getCell(4).getNumericCellValue(), DELTA);
+        assertEquals(newUsers, row.getCell(5).getNumericCellValue(), DELTA);
+    }
+
+    /**
+     * 标题、概览合计和每天一行的明细；没有数据的日期写0，金额和完成率使用数字格式
+     */
+    @Test
+    public void writesSummaryAndDailyRows() throws Exception {
+        LocalDate begin = LocalDate.of(2024, 10, 1);
+        orderData.add(DailyBusinessDTO.builder().date(begin).turnover(300.0).validOrderCount(3).totalOrderCount(4).build());
+        orderData.add(DailyBusinessDTO.builder().date(begin.plusDays(2)).turnover(100.5).validOrderCount(1).totalOrderCount(1).build());
+        userData.add(DailyBusinessDTO.builder().date(begin.plusDays(1)).newUsers(5).build());
+        userData.add(DailyBusinessDTO.builder().date(begin.plusDays(2)).newUsers(2).build());
+
+        try (Workbook workbook = export(begin, begin.plusDays(2))) {
+            Sheet sheet = workbook.getSheetAt(0);
+            assertEquals("运营数据", sheet.getSheetName());
+            assertEquals("运营数据报表", sheet.getRow(0).getCell(0).getStringCellValue());
+            assertEquals("时间：2024-10-01至2024-10-03", sheet.getRow(1).getCell(0).getStringCellValue());
+            assertEquals("营业额", sheet.getRow(2).getCell(1).getStringCellValue());
+
+            assertBusinessRow(sheet.getRow(3), "合计", 400.5, 4, 4.0 / 5, 400.5 / 4, 7);
+            assertNull(sheet.getRow(4));
+            assertEquals("日期", sheet.getRow(5).getCell(0).getStringCellValue());
+
+            assertBusinessRow(sheet.getRow(6), "2024-10-01", 300.0, 3, 0.75, 100.0, 0);
+            assertBusinessRow(sheet.getRow(7), "2024-10-02", 0, 0, 0, 0, 5);
+            assertBusinessRow(sheet.getRow(8), "2024-10-03", 100.5, 1, 1.0, 100.5, 2);
+            assertEquals(8, sheet.getLastRowNum());
+
+            assertEquals("0.00", sheet.getRow(6).getCell(1).getCellStyle().getDataFormatString());
+            assertEquals("0.00%", sheet.getRow(6).getCell(3).getCellStyle().getDataFormatString());
+            assertEquals("0.00", sheet.getRow(6).getCell(4).getCellStyle().getDataFormatString());
+        }
+    }
+
+    /**
+     * 时间区间超过内存行窗口时，已经写到临时文件的行在输出中完整保留，日期连续
+     */
+    @Test
+    public void longRangeKeepsEveryRowBeyondWindow() throws Exception {
+        LocalDate begin = LocalDate.of(2022, 1, 1);
+        LocalDate end = LocalDate.of(2024, 12, 31);
+        double turnover = 0;
+        int valid = 0;
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            int orders = date.getDayOfMonth();
+            orderData.add(DailyBusinessDTO.builder().date(date).turnover(orders * 10.0)
+                    .validOrderCount(orders).totalOrderCount(orders + 1).build());
+            turnover += orders * 10.0;
+            valid += orders;
+        }
+
+        try (Workbook workbook = export(begin, end)) {
+            Sheet sheet = workbook.getSheetAt(0);
+            int days = (int) (end.toEpochDay() - begin.toEpochDay()) + 1;
+            assertEquals(6 + days - 1, sheet.getLastRowNum());
+            assertEquals(turnover, sheet.getRow(3).getCell(1).getNumericCellValue(), DELTA);
+            assertEquals(valid, sheet.getRow(3).getCell(2).getNumericCellValue(), DELTA);
+
+            LocalDate date = begin;
+            for (int rowIndex = 6; rowIndex <= sheet.getLastRowNum(); rowIndex++, date = date.plusDays(1)) {
+                int orders = date.getDayOfMonth();
+                assertBusinessRow(sheet.getRow(rowIndex), date.toString(), orders * 10.0, orders,
+                        (double) orders / (orders + 1), 10.0, 0);
+            }
+            assertEquals(end.plusDays(1), date);
+        }
+    }
+
+    /**
+     * 没有任何数据时合计和明细都为0，不会除以0
+     */
+    @Test
+    public void emptyRangeWritesZeros() throws Exception {
+        LocalDate day = LocalDate.of(2024, 10, 1);
+
+        try (Workbook workbook = export(day, day)) {
+            Sheet sheet = workbook.getSheetAt(0);
+            assertBusinessRow(sheet.getRow(3), "合计", 0, 0, 0, 0, 0);
+            assertBusinessRow(sheet.getRow(6), "2024-10-01", 0, 0, 0, 0, 0);
+            assertEquals(6, sheet.getLastRowNum());
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.sky.service.impl;
+
+import com.sky.constant.MessageConstant;
+import com.sky.constant.StatusConstant;
+import com.sky.exception.DeletionNotAllowedException;
+import com.sky.mapper.SetmealDishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.search.CatalogSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 批量删除套餐的测试：无论删除多少个套餐，检查和删除都只执行固定数量的语句
+ */
+public class SetmealServiceImplTest {
+
+    private SetmealServiceImpl setmealService;
+
+    // 每次 mapper 调用：方法名和参数
+    private final List<String> calls = new ArrayList<>();
+
+    // 起售中的套餐数量
+    private int onSaleCount;
+
+    // 通知搜索索引的套餐id
+    private final List<Long> changedSetmealIds = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        setmealService = new SetmealServiceImpl();
+        ReflectionTestUtils.setField(setmealService, "setmealMapper", mapper(SetmealMapper.class));
+        ReflectionTestUtils.setField(setmealService, "setmealDishMapper", mapper(SetmealDishMapper.class));
+        ReflectionTestUtils.setField(setmealService, "catalogSearchIndex", new CatalogSearchIndex() {
+            @Override
+            public void setmealChanged(Collection<Long> ids) {
+                changedSetmealIds.addAll(ids);
+            }
+        });
+    }
+
+    private <T> T mapper(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            calls.add(type.getSimpleName() + "." + method.getName() + Arrays.asList(args));
+            return "countByIdsAndStatus".equals(method.getName()) ? onSaleCount : null;
+        }));
+    }
+
+    private static List<Long> ids(int count) {
+        return LongStream.rangeClosed(1, count).boxed().collect(Collectors.toList());
+    }
+
+    /**
+     * 删除500个套餐只执行3条语句：统计起售套餐、删除套餐、删除套餐菜品关系
+     */
+    @Test
+    public void deleteBatchUsesConstantNumberOfStatements() {
+        List<Long> ids = ids(500);
+
+        setmealService.deleteBatch(ids);
+
+        assertEquals(Arrays.asList(
+                "SetmealMapper.countByIdsAndStatus" + Arrays.asList(ids, StatusConstant.ENABLE),
+                "SetmealMapper.deleteByIds" + Collections.singletonList(ids),
+                "SetmealDishMapper.deleteBySetmealIds" + Collections.singletonList(ids)), calls);
+        assertEquals(ids, changedSetmealIds);
+    }
+
+    /**
+     * 存在起售中的套餐时不删除任何套餐
+     */
+    @Test
+    public void onSaleSetmealBlocksWholeBatch() {
+        onSaleCount = 2;
+
+        DeletionNotAllowedException e = assertThrows(DeletionNotAllowedException.class,
+                () -> setmealService.deleteBatch(ids(3)));
+
+        assertEquals(MessageConstant.SETMEAL_ON_SALE, e.getMessage());
+        assertEquals(1, calls.size());
+        assertTrue(changedSetmealIds.isEmpty());
+    }
+
+    /**
+     * 没有要删除的套餐时不执行任何语句
+     */
+    @Test
+    public void emptyBatchExecutesNothing() {
+        setmealService.deleteBatch(Collections.emptyList());
+        setmealService.deleteBatch(null);
+
+        assertTrue(calls.isEmpty());
+        assertTrue(changedSetmealIds.isEmpty());
+    }
+}
@@ -0,0 +1,266 @@
+package com.sky.service.impl;
+
+import com.sky.dto.UserLoginDTO;
+import com.sky.entity.User;
+import com.sky.exception.LoginFailedException;
+import com.sky.mapper.UserMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 微信登录的测试：同一个授权码的并发登录只调用一次微信接口，新用户并发注册时只插入一行
+ * 微信接口由 getOpenid 的子类实现代替，用户表用以 openid 为唯一索引的 Map 模拟
+ */
+public class UserServiceImplTest {
+
+    private TestUserService userService;
+
+    // 模拟的用户表：openid -> 用户，putIfAbsent 相当于 insert ignore
+    private final Map<String, User> table = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    private final AtomicInteger getByOpenidCalls = new AtomicInteger();
+
+    private final AtomicInteger insertCalls = new AtomicInteger();
+
+    // 新用户查询后、插入前等待，用来让并发注册同时通过"用户不存在"的检查
+    private volatile CountDownLatch beforeInsert = new CountDownLatch(0);
+
+    @BeforeEach
+    public void setUp() {
+        userService = new TestUserService();
+        ReflectionTestUtils.setField(userService, "userMapper", userMapper());
+    }
+
+    private UserMapper userMapper() {
+        return (UserMapper) Proxy.newProxyInstance(UserMapper.class.getClassLoader(), new Class<?>[]{UserMapper.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getByOpenid":
+                            getByOpenidCalls.incrementAndGet();
+                            User user = table.get((String) args[0]);
+                            if (user == null) {
+                                beforeInsert.countDown();
+                                beforeInsert.await(5, TimeUnit.SECONDS);
+                            }
+                            return user;
+                        case "insertIgnoreDuplicate":
+                            insertCalls.incrementAndGet();
+                            User inserted = (User) args[0];
+                            if (table.putIfAbsent(inserted.getOpenid(), inserted) != null) {
+                                return 0;
+                            }
+                            inserted.setId(nextId.getAndIncrement());
+                            return 1;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * 微信接口：授权码 -> openid，可以在返回前阻塞
+     */
+    private static class TestUserService extends UserServiceImpl {
+
+        private final Map<String, String> openids = new ConcurrentHashMap<>();
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private volatile CountDownLatch release = new CountDownLatch(0);
+
+        @Override
+        String getOpenid(String code) {
+            calls.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return openids.get(code);
+        }
+    }
+
+    private User login(String code) {
+        UserLoginDTO userLoginDTO = new UserLoginDTO();
+        userLoginDTO.setCode(code);
+        return userService.wxLogin(userLoginDTO);
+    }
+
+    /**
+     * threads 个线程同时调用 task，等所有线程都进入等待状态后执行 release，返回各线程的结果
+     */
+    private static <T> List<Future<T>> concurrently(int threads, Callable<T> task, Runnable release) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Thread> workers = new ArrayList<>();
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    synchronized (workers) {
+                        workers.add(Thread.currentThread());
+                    }
+                    return task.call();
+                }));
+            }
+            await(() -> {
+                synchronized (workers) {
+                    return workers.size() == threads && workers.stream().allMatch(thread ->
+                            thread.getState() == Thread.State.WAITING || thread.getState() == Thread.State.TIMED_WAITING);
+                }
+            });
+            release.run();
+            for (Future<T> future : futures) {
+                try {
+                    future.get(5, TimeUnit.SECONDS);
+                } catch (ExecutionException ignored) {
+                    // 由调用方检查
+                }
+            }
+            return futures;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * 同一个授权码的并发登录只调用一次微信接口，所有请求得到同一个用户
+     */
+    @Test
+    public void concurrentSameCodeCallsWeChatOnce() throws Exception {
+        userService.openids.put("code-1", "openid-1");
+        userService.release = new CountDownLatch(1);
+
+        List<Future<User>> futures = concurrently(8, () -> login("code-1"), () -> userService.release.countDown());
+
+        User first = futures.get(0).get();
+        for (Future<User> future : futures) {
+            assertSame(first, future.get());
+        }
+        assertEquals(1, userService.calls.get());
+        assertEquals(1, insertCalls.get());
+        assertEquals(1, table.size());
+    }
+
+    /**
+     * 登录失败时等待中的请求得到同样的异常；失败后同一个授权码可以重新登录
+     */
+    @Test
+    public void failureIsSharedAndNotRemembered() throws Exception {
+        userService.release = new CountDownLatch(1);
+
+        List<Future<User>> futures = concurrently(4, () -> login("bad-code"), () -> userService.release.countDown());
+
+        for (Future<User> future : futures) {
+            ExecutionException e = assertThrows(ExecutionException.class, future::get);
+            assertTrue(e.getCause() instanceof LoginFailedException);
+        }
+        assertEquals(1, userService.calls.get());
+
+        userService.openids.put("bad-code", "openid-1");
+        assertEquals("openid-1", login("bad-code").getOpenid());
+        assertEquals(2, userService.calls.get());
+    }
+
+    /**
+     * 新用户用不同的授权码同时首次登录（如多个设备），只插入一行，所有请求得到同一个用户id
+     */
+    @Test
+    public void concurrentFirstLoginsRegisterOnce() throws Exception {
+        int threads = 6;
+        for (int i = 0; i < threads; i++) {
+            userService.openids.put("code-" + i, "openid-new");
+        }
+        beforeInsert = new CountDownLatch(threads);
+        AtomicInteger codes = new AtomicInteger();
+
+        List<Future<User>> futures = concurrently(threads, () -> login("code-" + codes.getAndIncrement()), () -> { });
+
+        for (Future<User> future : futures) {
+            assertEquals(1L, future.get().getId().longValue());
+        }
+        assertEquals(threads, userService.calls.get());
+        assertEquals(threads, insertCalls.get());
+        assertEquals(1, table.size());
+    }
+
+    /**
+     * 插入时 openid 已存在（影响行数为0）时重新查询已注册的用户
+     */
+    @Test
+    public void duplicateInsertReloadsExistingUser() {
+        userService.openids.put("code-1", "openid-1");
+        User existing = User.builder().id(42L).openid("openid-1").build();
+        ReflectionTestUtils.setField(userService, "userMapper", (UserMapper) Proxy.newProxyInstance(
+                UserMapper.class.getClassLoader(), new Class<?>[]{UserMapper.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getByOpenid":
+                            // 第一次查询时还不存在，插入前被其它请求注册
+                            return getByOpenidCalls.getAndIncrement() == 0 ? null : existing;
+                        case "insertIgnoreDuplicate":
+                            return 0;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                }));
+
+        assertSame(existing, login("code-1"));
+        assertEquals(2, getByOpenidCalls.get());
+    }
+
+    /**
+     * 老用户再次登录时从缓存获取，不查询数据库
+     */
+    @Test
+    public void returningUserIsServedFromCache() {
+        userService.openids.put("code-1", "openid-1");
+        userService.openids.put("code-2", "openid-1");
+
+        User first = login("code-1");
+        int queries = getByOpenidCalls.get();
+
+        assertSame(first, login("code-2"));
+        assertEquals(queries, getByOpenidCalls.get());
+        assertEquals(2, userService.calls.get());
+    }
+
+    /**
+     * 没有授权码时直接登录失败
+     */
+    @Test
+    public void missingCodeFails() {
+        assertThrows(LoginFailedException.class, () -> login(null));
+        assertEquals(0, userService.calls.get());
+    }
+}
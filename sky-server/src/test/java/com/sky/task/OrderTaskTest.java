@@ -0,0 +1,217 @@
+package com.sky.task;
+
+import com.sky.entity.Orders;
+import com.sky.lock.InMemoryJobLock;
+import com.sky.lock.JobLeader;
+import com.sky.mapper.OrderMapper;
+import com.sky.service.impl.OrderStateMachine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 超时订单和派送中订单定时任务的测试
+ * 订单表用内存中的 Map 模拟：mapper 按状态和下单时间分批查出id，状态机只修改仍处于原状态的订单。
+ */
+public class OrderTaskTest {
+
+    private InMemoryJobLock jobLock;
+
+    private JobLeader jobLeader;
+
+    private OrderTask orderTask;
+
+    // 订单表：id -> 订单
+    private final Map<Long, Orders> table = new TreeMap<>();
+
+    // 每次查询id时的参数：状态、下单时间上限、数量上限
+    private final List<Object[]> selects = new ArrayList<>();
+
+    // 每次批量修改的订单数
+    private final List<Integer> batches = new ArrayList<>();
+
+    // 每次批量修改之前执行，模拟查询之后订单被其它操作修改
+    private Consumer<List<Long>> beforeTransit = ids -> { };
+
+    @BeforeEach
+    public void setUp() {
+        jobLock = new InMemoryJobLock();
+        jobLeader = new JobLeader();
+        ReflectionTestUtils.setField(jobLeader, "jobLock", jobLock);
+
+        orderTask = new OrderTask();
+        ReflectionTestUtils.setField(orderTask, "orderMapper", orderMapper());
+        ReflectionTestUtils.setField(orderTask, "jobLeader", jobLeader);
+        ReflectionTestUtils.setField(orderTask, "orderStateMachine", new FakeStateMachine());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jobLeader.destroy();
+    }
+
+    /**
+     * 只实现 getIdsByStatusAndOrderTimeLT：按主键顺序返回满足条件的前 limit 个id
+     */
+    private OrderMapper orderMapper() {
+        return (OrderMapper) Proxy.newProxyInstance(OrderMapper.class.getClassLoader(), new Class<?>[]{OrderMapper.class},
+                (proxy, method, args) -> {
+                    if (!"getIdsByStatusAndOrderTimeLT".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    Integer status = (Integer) args[0];
+                    LocalDateTime orderTime = (LocalDateTime) args[1];
+                    int limit = (int) args[2];
+                    selects.add(args);
+                    return table.values().stream()
+                            .filter(orders -> orders.getStatus().equals(status) && orders.getOrderTime().isBefore(orderTime))
+                            .map(Orders::getId)
+                            .limit(limit)
+                            .collect(Collectors.toList());
+                });
+    }
+
+    private void insert(long fromId, int count, Integer status, LocalDateTime orderTime) {
+        for (long id = fromId; id < fromId + count; id++) {
+            table.put(id, Orders.builder().id(id).status(status).orderTime(orderTime).build());
+        }
+    }
+
+    private long count(Integer status) {
+        return table.values().stream().filter(orders -> orders.getStatus().equals(status)).count();
+    }
+
+    /**
+     * 超时未支付的订单按每批1000个取消，未超时的订单不受影响
+     */
+    @Test
+    public void timeoutOrdersAreCancelledInChunks() {
+        LocalDateTime now = LocalDateTime.now();
+        insert(1, 2500, Orders.PENDING_PAYMENT, now.minusMinutes(30));
+        insert(3001, 10, Orders.PENDING_PAYMENT, now.minusMinutes(5));
+        insert(4001, 10, Orders.TO_BE_CONFIRMED, now.minusMinutes(30));
+
+        orderTask.processTimeoutOrder();
+
+        assertEquals(Arrays.asList(1000, 1000, 500), batches);
+        assertEquals(2500, count(Orders.CANCELLED));
+        assertEquals(10, count(Orders.PENDING_PAYMENT));
+        assertEquals(10, count(Orders.TO_BE_CONFIRMED));
+        assertEquals(OrderTask.TIMEOUT_CANCEL_REASON, table.get(1L).getCancelReason());
+        assertTrue(table.get(1L).getCancelTime() != null);
+
+        // 按待付款状态、15分钟前的下单时间查询
+        for (Object[] args : selects) {
+            assertEquals(Orders.PENDING_PAYMENT, args[0]);
+            Duration age = Duration.between((LocalDateTime) args[1], now).minusMinutes(OrderTimeoutWheel.TIMEOUT_MINUTES);
+            assertTrue(age.abs().getSeconds() < 5, "下单时间上限：" + args[1]);
+            assertEquals(1000, args[2]);
+        }
+    }
+
+    /**
+     * 订单数正好是整批时，多查一次确认没有剩余订单后结束
+     */
+    @Test
+    public void exactChunkEndsWithEmptySelect() {
+        insert(1, 2000, Orders.PENDING_PAYMENT, LocalDateTime.now().minusMinutes(30));
+
+        orderTask.processTimeoutOrder();
+
+        assertEquals(Arrays.asList(1000, 1000), batches);
+        assertEquals(3, selects.size());
+        assertEquals(2000, count(Orders.CANCELLED));
+    }
+
+    /**
+     * 查询之后被支付的订单不会被取消，也不会让任务重复查询
+     */
+    @Test
+    public void ordersPaidAfterSelectAreSkipped() {
+        insert(1, 1500, Orders.PENDING_PAYMENT, LocalDateTime.now().minusMinutes(30));
+        beforeTransit = ids -> {
+            // 每批的前10个订单在查询之后完成支付
+            for (Long id : ids.subList(0, 10)) {
+                table.get(id).setStatus(Orders.TO_BE_CONFIRMED);
+            }
+        };
+
+        orderTask.processTimeoutOrder();
+
+        assertEquals(2, selects.size());
+        assertEquals(1480, count(Orders.CANCELLED));
+        assertEquals(20, count(Orders.TO_BE_CONFIRMED));
+        assertEquals(0, count(Orders.PENDING_PAYMENT));
+    }
+
+    /**
+     * 派送超过1小时的订单修改为已完成
+     */
+    @Test
+    public void deliveryOrdersAreCompleted() {
+        LocalDateTime now = LocalDateTime.now();
+        insert(1, 1200, Orders.DELIVERY_IN_PROGRESS, now.minusMinutes(90));
+        insert(2001, 5, Orders.DELIVERY_IN_PROGRESS, now.minusMinutes(30));
+
+        orderTask.processDeliveryOrder();
+
+        assertEquals(Arrays.asList(1000, 200), batches);
+        assertEquals(1200, count(Orders.COMPLETED));
+        assertEquals(5, count(Orders.DELIVERY_IN_PROGRESS));
+        assertTrue(table.get(1L).getDeliveryTime() != null);
+        assertEquals(Orders.DELIVERY_IN_PROGRESS, selects.get(0)[0]);
+    }
+
+    /**
+     * 其它节点持有任务锁时本节点不执行
+     */
+    @Test
+    public void runsOnlyOnLeader() {
+        insert(1, 10, Orders.PENDING_PAYMENT, LocalDateTime.now().minusMinutes(30));
+        assertTrue(jobLock.tryAcquire("processTimeoutOrder", "other-node", 60000));
+
+        orderTask.processTimeoutOrder();
+
+        assertTrue(selects.isEmpty());
+        assertEquals(10, count(Orders.PENDING_PAYMENT));
+    }
+
+    /**
+     * 只修改仍处于原状态的订单，返回实际修改的id
+     */
+    private class FakeStateMachine extends OrderStateMachine {
+
+        @Override
+        public List<Long> transit(List<Long> ids, Orders orders, Integer from) {
+            beforeTransit.accept(ids);
+            batches.add(ids.size());
+            List<Long> changed = new ArrayList<>();
+            for (Long id : ids) {
+                Orders current = table.get(id);
+                if (current.getStatus().equals(from)) {
+                    current.setStatus(orders.getStatus());
+                    current.setCancelReason(orders.getCancelReason());
+                    current.setCancelTime(orders.getCancelTime());
+                    current.setDeliveryTime(orders.getDeliveryTime());
+                    changed.add(id);
+                }
+            }
+            return changed;
+        }
+    }
+}
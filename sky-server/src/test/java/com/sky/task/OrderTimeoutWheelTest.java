@@ -0,0 +1,251 @@
+package com.sky.task;
+
+import com.sky.entity.Orders;
+import com.sky.service.impl.OrderStateMachine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 订单支付超时时间轮的测试
+ * 不启动每秒推进的定时器，由测试调用 advance 逐格推进，时间轮的起始时间固定为 START，
+ * 下单时间按 START 计算，使订单落在确定的格数上。
+ */
+public class OrderTimeoutWheelTest {
+
+    private static final long START = 1_729_300_000_000L;
+
+    private OrderTimeoutWheel wheel;
+
+    private ScheduledExecutorService executor;
+
+    // 每次取消的订单id
+    private final List<List<Long>> expired = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        wheel = new OrderTimeoutWheel();
+        executor = Executors.newSingleThreadScheduledExecutor();
+        ReflectionTestUtils.setField(wheel, "orderStateMachine", new FakeStateMachine());
+        ReflectionTestUtils.setField(wheel, "startTime", START);
+        ReflectionTestUtils.setField(wheel, "executor", executor);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        wheel.destroy();
+    }
+
+    /**
+     * 在第 tick 格到期的订单的下单时间
+     */
+    private static LocalDateTime orderTimeExpiringAt(long tick) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(START + tick * 1000), ZoneId.systemDefault())
+                .minusMinutes(OrderTimeoutWheel.TIMEOUT_MINUTES);
+    }
+
+    private void advance(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            ReflectionTestUtils.invokeMethod(wheel, "advance");
+        }
+    }
+
+    private long currentTick() {
+        return (long) ReflectionTestUtils.getField(wheel, "currentTick");
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 订单在到期的那一格被取消，之前不会
+     */
+    @Test
+    public void scheduledOrderExpiresAtDeadline() {
+        wheel.schedule(1L, orderTimeExpiringAt(3));
+        assertEquals(1, wheel.size());
+
+        advance(2);
+        assertTrue(expired.isEmpty());
+
+        advance(1);
+        assertEquals(Collections.singletonList(Collections.singletonList(1L)), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    /**
+     * 支付成功后取消超时任务，到期时不再取消订单
+     */
+    @Test
+    public void cancelledOrderDoesNotExpire() {
+        wheel.schedule(1L, orderTimeExpiringAt(3));
+        wheel.schedule(2L, orderTimeExpiringAt(3));
+        wheel.cancel(1L);
+        // 取消不存在的订单没有影响
+        wheel.cancel(3L);
+        assertEquals(1, wheel.size());
+
+        advance(3);
+        assertEquals(Collections.singletonList(Collections.singletonList(2L)), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    /**
+     * 同一个订单重新登记时移到新的槽位，只取消一次
+     */
+    @Test
+    public void rescheduleMovesOrderToNewSlot() {
+        wheel.schedule(1L, orderTimeExpiringAt(3));
+        wheel.schedule(1L, orderTimeExpiringAt(5));
+        assertEquals(1, wheel.size());
+
+        advance(4);
+        assertTrue(expired.isEmpty());
+
+        advance(1);
+        assertEquals(Collections.singletonList(Collections.singletonList(1L)), expired);
+    }
+
+    /**
+     * 已经超时的订单放入下一格，而不是正在处理的格
+     */
+    @Test
+    public void overdueOrderExpiresOnNextTick() {
+        advance(10);
+        wheel.schedule(1L, orderTimeExpiringAt(2));
+
+        advance(1);
+        assertEquals(Collections.singletonList(Collections.singletonList(1L)), expired);
+    }
+
+    /**
+     * 超过一圈才到期的订单在第一圈经过槽位时不取消
+     */
+    @Test
+    public void orderInLaterRoundWaitsForItsRound() {
+        wheel.schedule(1L, orderTimeExpiringAt(3 + 1024));
+
+        advance(3);
+        assertTrue(expired.isEmpty());
+        assertEquals(1, wheel.size());
+
+        advance(1024);
+        assertEquals(Collections.singletonList(Collections.singletonList(1L)), expired);
+    }
+
+    /**
+     * 同一格到期的订单按每批500个取消
+     */
+    @Test
+    public void expiredOrdersAreCancelledInBatches() {
+        for (long id = 1; id <= 1200; id++) {
+            wheel.schedule(id, orderTimeExpiringAt(3));
+        }
+
+        advance(3);
+        List<Integer> sizes = new ArrayList<>();
+        expired.forEach(ids -> sizes.add(ids.size()));
+        assertEquals(Arrays.asList(500, 500, 200), sizes);
+        assertEquals(1200, expired.stream().flatMap(List::stream).distinct().count());
+        assertEquals(0, wheel.size());
+    }
+
+    /**
+     * 取消订单失败时不影响时间轮继续推进，失败的订单由定时扫描兜底
+     */
+    @Test
+    public void failedCancelDoesNotStopWheel() {
+        ReflectionTestUtils.setField(wheel, "orderStateMachine", new FakeStateMachine() {
+            @Override
+            public List<Long> transit(List<Long> ids, Orders orders, Integer from) {
+                throw new IllegalStateException("数据库不可用");
+            }
+        });
+        wheel.schedule(1L, orderTimeExpiringAt(1));
+
+        advance(2);
+        assertEquals(2L, currentTick());
+        assertEquals(0, wheel.size());
+    }
+
+    /**
+     * schedule 计算出槽位后、放入槽位前，时间轮推进到这一格并处理了该槽位：
+     * 订单不能留在已处理的槽位里等下一圈，而是立即取消
+     */
+    @Test
+    public void scheduleDuringAdvanceExpiresImmediately() throws Exception {
+        advance(10);
+        @SuppressWarnings("unchecked")
+        List<Map<Long, Long>> slots = (List<Map<Long, Long>>) ReflectionTestUtils.getField(wheel, "slots");
+        // 已超时的订单放入第11格
+        Map<Long, Long> bucket = slots.get(11);
+
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> scheduling;
+            Future<?> advancing;
+            synchronized (bucket) {
+                Thread[] scheduler = new Thread[1];
+                scheduling = threads.submit(() -> {
+                    scheduler[0] = Thread.currentThread();
+                    wheel.schedule(1L, orderTimeExpiringAt(2));
+                });
+                // schedule 已算出第11格，等待槽位锁
+                await(() -> scheduler[0] != null && scheduler[0].getState() == Thread.State.BLOCKED);
+
+                advancing = threads.submit(() -> advance(1));
+                // 时间轮已推进到第11格，等待槽位锁
+                await(() -> currentTick() == 11);
+            }
+            scheduling.get(5, TimeUnit.SECONDS);
+            advancing.get(5, TimeUnit.SECONDS);
+        } finally {
+            threads.shutdownNow();
+        }
+
+        await(() -> !expired.isEmpty());
+        assertEquals(Collections.singletonList(Collections.singletonList(1L)), expired);
+        assertEquals(0, wheel.size());
+        assertTrue(bucket.isEmpty());
+    }
+
+    /**
+     * 记录每次取消的订单id
+     */
+    private class FakeStateMachine extends OrderStateMachine {
+
+        @Override
+        public List<Long> transit(List<Long> ids, Orders orders, Integer from) {
+            assertEquals(Orders.CANCELLED, orders.getStatus());
+            assertEquals(Orders.PENDING_PAYMENT, from);
+            assertEquals(OrderTask.TIMEOUT_CANCEL_REASON, orders.getCancelReason());
+            expired.add(new ArrayList<>(ids));
+            return ids;
+        }
+    }
+}
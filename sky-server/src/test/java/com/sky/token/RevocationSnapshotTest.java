@@ -0,0 +1,87 @@
+package com.sky.token;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 吊销列表快照的测试：布隆过滤器没有漏判、误判率在预期范围内，签发时间与吊销时间按秒比较
+ */
+public class RevocationSnapshotTest {
+
+    /**
+     * 加入的主体一定能查到（没有漏判），未加入的主体误判率约1%
+     */
+    @Test
+    public void bloomFilterHasNoFalseNegatives() {
+        int count = 10000;
+        BloomFilter bloomFilter = new BloomFilter(count);
+        for (int i = 0; i < count; i++) {
+            bloomFilter.put(TokenRevocationStore.EMPLOYEE + i);
+        }
+
+        for (int i = 0; i < count; i++) {
+            assertTrue(bloomFilter.mightContain(TokenRevocationStore.EMPLOYEE + i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < count; i++) {
+            if (bloomFilter.mightContain(TokenRevocationStore.USER + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < count * 3 / 100, "误判数：" + falsePositives);
+    }
+
+    /**
+     * 空的吊销列表不吊销任何令牌
+     */
+    @Test
+    public void emptySnapshotRevokesNothing() {
+        assertFalse(RevocationSnapshot.EMPTY.isRevoked(TokenRevocationStore.EMPLOYEE + 1, 0));
+    }
+
+    /**
+     * 吊销那一秒之前签发的令牌失效，同一秒及之后签发的令牌有效，没有签发时间的令牌失效
+     */
+    @Test
+    public void comparesIssueTimeInSeconds() {
+        long revokedAt = 1_700_000_000_500L;
+        Map<String, Long> entries = new HashMap<>();
+        entries.put("emp:1", revokedAt);
+        RevocationSnapshot snapshot = new RevocationSnapshot(entries);
+
+        assertTrue(snapshot.isRevoked("emp:1", 0));
+        assertTrue(snapshot.isRevoked("emp:1", 1_699_999_999_000L));
+        assertTrue(snapshot.isRevoked("emp:1", 1_699_999_999_999L));
+        // iat 只精确到秒，吊销后同一秒内重新登录签发的令牌截断为 1_700_000_000_000
+        assertFalse(snapshot.isRevoked("emp:1", 1_700_000_000_000L));
+        assertFalse(snapshot.isRevoked("emp:1", 1_700_000_001_000L));
+        assertFalse(snapshot.isRevoked("emp:2", 0));
+        assertFalse(snapshot.isRevoked("user:1", 0));
+    }
+
+    /**
+     * 快照复制传入的吊销列表，之后修改原列表不影响快照；entries 丢弃早于 minTime 的记录
+     */
+    @Test
+    public void snapshotIsImmutableAndPrunes() {
+        Map<String, Long> entries = new HashMap<>();
+        entries.put("emp:1", 1000L);
+        entries.put("emp:2", 5000L);
+        RevocationSnapshot snapshot = new RevocationSnapshot(entries);
+        entries.put("emp:3", 9000L);
+
+        assertFalse(snapshot.isRevoked("emp:3", 0));
+        Map<String, Long> pruned = snapshot.entries(2000);
+        assertEquals(1, pruned.size());
+        assertEquals(5000L, pruned.get("emp:2").longValue());
+
+        pruned.put("emp:4", 9000L);
+        assertFalse(snapshot.isRevoked("emp:4", 0));
+    }
+}
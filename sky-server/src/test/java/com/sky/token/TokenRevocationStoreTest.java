@@ -0,0 +1,203 @@
+package com.sky.token;
+
+import com.sky.properties.JwtProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 令牌吊销存储的测试：吊销后本节点立即生效，其它节点在下一次同步后生效；
+ * Redis 不可用时保留上一次的快照，过期的吊销记录在同步时清理
+ */
+public class TokenRevocationStoreTest {
+
+    private static final long TTL = 2 * 60 * 60 * 1000;
+
+    private final JwtProperties jwtProperties = new JwtProperties();
+
+    // 模拟的 Redis：吊销哈希表和版本号
+    private final Map<Object, Object> revokedHash = new ConcurrentHashMap<>();
+
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+
+    // 读取吊销哈希表的次数
+    private final AtomicInteger hashReads = new AtomicInteger();
+
+    private volatile boolean redisDown;
+
+    @BeforeEach
+    public void setUp() {
+        jwtProperties.setAdminTtl(TTL);
+        jwtProperties.setUserTtl(TTL);
+    }
+
+    private RedisTokenRevocationStore newNode() {
+        RedisTokenRevocationStore store = new RedisTokenRevocationStore();
+        ReflectionTestUtils.setField(store, "stringRedisTemplate", redis());
+        ReflectionTestUtils.setField(store, "jwtProperties", jwtProperties);
+        store.afterPropertiesSet();
+        return store;
+    }
+
+    @SuppressWarnings("unchecked")
+    private StringRedisTemplate redis() {
+        HashOperations<String, Object, Object> hashOperations = (HashOperations<String, Object, Object>) Proxy.newProxyInstance(
+                HashOperations.class.getClassLoader(), new Class<?>[]{HashOperations.class}, (proxy, method, args) -> {
+                    checkRedis();
+                    switch (method.getName()) {
+                        case "put":
+                            revokedHash.put(args[1], args[2]);
+                            return null;
+                        case "entries":
+                            hashReads.incrementAndGet();
+                            return new HashMap<>(revokedHash);
+                        case "delete":
+                            for (Object key : (Object[]) args[1]) {
+                                revokedHash.remove(key);
+                            }
+                            return (long) ((Object[]) args[1]).length;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        ValueOperations<String, String> valueOperations = (ValueOperations<String, String>) Proxy.newProxyInstance(
+                ValueOperations.class.getClassLoader(), new Class<?>[]{ValueOperations.class}, (proxy, method, args) -> {
+                    checkRedis();
+                    switch (method.getName()) {
+                        case "get":
+                            return values.get((String) args[0]);
+                        case "increment":
+                            return Long.valueOf(values.merge((String) args[0], "1",
+                                    (old, one) -> String.valueOf(Long.parseLong(old) + 1)));
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return new StringRedisTemplate() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <HK, HV> HashOperations<String, HK, HV> opsForHash() {
+                return (HashOperations<String, HK, HV>) (HashOperations<String, ?, ?>) hashOperations;
+            }
+
+            @Override
+            public ValueOperations<String, String> opsForValue() {
+                return valueOperations;
+            }
+        };
+    }
+
+    private void checkRedis() {
+        if (redisDown) {
+            throw new IllegalStateException("redis down");
+        }
+    }
+
+    /**
+     * 吊销后本节点立即生效，其它节点同步后生效；吊销之后签发的令牌不受影响
+     */
+    @Test
+    public void revocationReachesOtherNodesOnSync() {
+        RedisTokenRevocationStore node1 = newNode();
+        RedisTokenRevocationStore node2 = newNode();
+        long issuedBefore = System.currentTimeMillis() - 5000;
+
+        node1.revoke("emp:1");
+
+        assertTrue(node1.isRevoked("emp:1", issuedBefore));
+        assertFalse(node2.isRevoked("emp:1", issuedBefore));
+        node2.sync();
+        assertTrue(node2.isRevoked("emp:1", issuedBefore));
+        assertFalse(node2.isRevoked("emp:1", System.currentTimeMillis() + 1000));
+        assertFalse(node2.isRevoked("emp:2", issuedBefore));
+
+        // 新启动的节点加载已有的吊销记录
+        assertTrue(newNode().isRevoked("emp:1", issuedBefore));
+    }
+
+    /**
+     * 版本号没有变化时不重新读取吊销列表
+     */
+    @Test
+    public void unchangedVersionSkipsReload() {
+        RedisTokenRevocationStore node = newNode();
+        newNode().revoke("emp:1");
+        node.sync();
+        int reads = hashReads.get();
+
+        node.sync();
+        node.sync();
+
+        assertEquals(reads, hashReads.get());
+    }
+
+    /**
+     * Redis 不可用时同步失败，继续使用上一次的快照；恢复后重新同步
+     */
+    @Test
+    public void redisOutageKeepsLastSnapshot() {
+        RedisTokenRevocationStore node1 = newNode();
+        RedisTokenRevocationStore node2 = newNode();
+        node1.revoke("emp:1");
+        node2.sync();
+        node1.revoke("emp:2");
+        long issuedBefore = System.currentTimeMillis() - 5000;
+
+        redisDown = true;
+        node2.sync();
+        assertTrue(node2.isRevoked("emp:1", issuedBefore));
+        assertFalse(node2.isRevoked("emp:2", issuedBefore));
+
+        redisDown = false;
+        node2.sync();
+        assertTrue(node2.isRevoked("emp:2", issuedBefore));
+    }
+
+    /**
+     * 早于最长有效期的吊销记录在同步时从 Redis 删除
+     */
+    @Test
+    public void expiredRevocationsArePruned() {
+        revokedHash.put("emp:old", String.valueOf(System.currentTimeMillis() - TTL - 60000));
+        revokedHash.put("emp:new", String.valueOf(System.currentTimeMillis()));
+        values.put("jwt:revoked:version", "1");
+
+        RedisTokenRevocationStore node = newNode();
+
+        assertFalse(revokedHash.containsKey("emp:old"));
+        assertTrue(revokedHash.containsKey("emp:new"));
+        assertFalse(node.isRevoked("emp:old", 0));
+        assertTrue(node.isRevoked("emp:new", 0));
+    }
+
+    /**
+     * 内存存储：吊销立即生效，只影响吊销之前签发的令牌
+     */
+    @Test
+    public void inMemoryStoreRevokesImmediately() {
+        InMemoryTokenRevocationStore store = new InMemoryTokenRevocationStore();
+        ReflectionTestUtils.setField(store, "jwtProperties", jwtProperties);
+        long issuedBefore = System.currentTimeMillis() - 5000;
+
+        store.revoke("user:1");
+        store.revoke("emp:1");
+
+        assertTrue(store.isRevoked("user:1", issuedBefore));
+        assertTrue(store.isRevoked("emp:1", issuedBefore));
+        assertFalse(store.isRevoked("emp:2", issuedBefore));
+        assertFalse(store.isRevoked("user:1", System.currentTimeMillis() + 1000));
+    }
+}
@@ -0,0 +1,279 @@
+package com.sky.utils;
+
+import com.alibaba.fastjson.JSONObject;
+import com.sky.properties.WeChatProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.wechat.pay.contrib.apache.httpclient.util.PemUtil;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 本地模拟的微信支付接口，用于测试 WeChatPayUtil 以及依赖它的退款、回调处理
+ * 可以设置响应延迟和前几次请求失败，并记录请求和客户端连接（按客户端端口区分）。
+ * 测试用的商户私钥和平台证书在 test/resources/wechatpay 下，两者是同一对密钥，
+ * 平台证书的序列号为 SERIAL，sign 用该私钥模拟微信支付平台对回调通知签名。
+ */
+public class WeChatPayStub implements AutoCloseable {
+
+    /**
+     * 测试平台证书的序列号
+     */
+    public static final String SERIAL = "5157F09EFDC096DE15EBE81A47057A7232F1B8E1";
+
+    /**
+     * 测试用的 APIv3 密钥，32字节
+     */
+    public static final String API_V3_KEY = "0123456789abcdef0123456789abcdef";
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "wechat-pay-stub");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 收到的请求体
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    // 客户端连接（客户端端口）
+    private final Set<Integer> connections = ConcurrentHashMap.newKeySet();
+
+    // 正在处理的请求数及其最大值
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    // 剩余需要失败的请求数
+    private final AtomicInteger failures = new AtomicInteger();
+
+    // 剩余需要额外延迟的请求数
+    private final AtomicInteger slowRequests = new AtomicInteger();
+
+    private volatile long slowMillis;
+
+    private volatile long latencyMillis;
+
+    public WeChatPayStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(WeChatPayUtil.REFUNDS, exchange ->
+                handle(exchange, "{\"refund_id\":\"50000000382019052709732678859\",\"status\":\"PROCESSING\"}"));
+        server.createContext(WeChatPayUtil.JSAPI, exchange ->
+                handle(exchange, "{\"prepay_id\":\"wx201410272009395522657a690389285100\"}"));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * 模拟服务的根地址
+     * @return
+     */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * 指向模拟服务的配置
+     * @return
+     */
+    public WeChatProperties properties() {
+        WeChatProperties properties = new WeChatProperties();
+        properties.setAppid("wx0000000000000000");
+        properties.setMchid("1900000001");
+        properties.setMchSerialNo(SERIAL);
+        properties.setPrivateKeyFilePath(resource("wechatpay/apiclient_key.pem").toString());
+        properties.setWeChatPayCertFilePath(resource("wechatpay/platform_cert.pem").toString());
+        properties.setApiV3Key(API_V3_KEY);
+        properties.setNotifyUrl("https://localhost/notify/paySuccess");
+        properties.setRefundNotifyUrl("https://localhost/notify/refundSuccess");
+        properties.setBaseUrl(baseUrl());
+        return properties;
+    }
+
+    /**
+     * 每个请求的响应延迟
+     * @param latencyMillis
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * 接下来的 count 个请求额外延迟 millis 毫秒再响应，用于模拟超时
+     * @param count
+     * @param millis
+     */
+    public void slowNext(int count, long millis) {
+        slowMillis = millis;
+        slowRequests.set(count);
+    }
+
+    /**
+     * 接下来的 count 个请求返回500和错误信息
+     * @param count
+     */
+    public void failNext(int count) {
+        failures.set(count);
+    }
+
+    public List<String> getRequests() {
+        return requests;
+    }
+
+    /**
+     * 收到请求的客户端连接数，连接复用时远小于请求数
+     * @return
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * 同时处理的最大请求数
+     * @return
+     */
+    public int getMaxActive() {
+        return maxActive.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange, String success) throws IOException {
+        int current = active.incrementAndGet();
+        maxActive.accumulateAndGet(current, Math::max);
+        try (InputStream in = exchange.getRequestBody()) {
+            connections.add(exchange.getRemoteAddress().getPort());
+            requests.add(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            boolean fail = failures.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0;
+            long delay = latencyMillis;
+            if (slowRequests.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0) {
+                delay += slowMillis;
+            }
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            byte[] body = (fail ? "{\"code\":\"SYSTEM_ERROR\",\"message\":\"系统繁忙，请稍后重试\"}" : success)
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("Request-ID", UUID.randomUUID().toString());
+            exchange.sendResponseHeaders(fail ? 500 : 200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            active.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    /**
+     * 模拟微信支付平台对回调通知签名
+     * @param timestamp 时间戳（秒）
+     * @param nonce     随机串
+     * @param body      通知原文
+     * @return Wechatpay-Signature
+     */
+    public static String sign(String timestamp, String nonce, String body) throws Exception {
+        PrivateKey privateKey;
+        try (InputStream in = Files.newInputStream(resource("wechatpay/apiclient_key.pem"))) {
+            privateKey = PemUtil.loadPrivateKey(in);
+        }
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(privateKey);
+        signature.update((timestamp + "\n" + nonce + "\n" + body + "\n").getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(signature.sign());
+    }
+
+    /**
+     * 模拟微信支付的支付成功通知，resource 使用 APIv3 密钥以 AEAD_AES_256_GCM 加密
+     * @param id            通知id
+     * @param outTradeNo    商户订单号
+     * @param transactionId 微信支付交易号
+     * @return 通知原文
+     */
+    public static String notification(String id, String outTradeNo, String transactionId) throws Exception {
+        JSONObject transaction = new JSONObject();
+        transaction.put("out_trade_no", outTradeNo);
+        transaction.put("transaction_id", transactionId);
+        transaction.put("trade_state", "SUCCESS");
+
+        byte[] nonce = new byte[12];
+        new SecureRandom().nextBytes(nonce);
+        String nonceStr = Base64.getEncoder().encodeToString(nonce).substring(0, 12);
+        String associatedData = "transaction";
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(API_V3_KEY.getBytes(StandardCharsets.UTF_8), "AES"),
+                new GCMParameterSpec(128, nonceStr.getBytes(StandardCharsets.UTF_8)));
+        cipher.updateAAD(associatedData.getBytes(StandardCharsets.UTF_8));
+        byte[] ciphertext = cipher.doFinal(transaction.toJSONString().getBytes(StandardCharsets.UTF_8));
+
+        JSONObject resource = new JSONObject();
+        resource.put("algorithm", "AEAD_AES_256_GCM");
+        resource.put("ciphertext", Base64.getEncoder().encodeToString(ciphertext));
+        resource.put("nonce", nonceStr);
+        resource.put("associated_data", associatedData);
+
+        JSONObject notify = new JSONObject();
+        notify.put("id", id);
+        notify.put("event_type", "TRANSACTION.SUCCESS");
+        notify.put("resource_type", "encrypt-resource");
+        notify.put("resource", resource);
+        return notify.toJSONString();
+    }
+
+    /**
+     * 签名后的回调通知请求头
+     * @param body 通知原文
+     * @return 请求头名称 -> 值
+     */
+    public static Map<String, String> signedHeaders(String body) throws Exception {
+        String timestamp = String.valueOf(System.currentTimeMillis() / 1000);
+        String nonce = UUID.randomUUID().toString().replace("-", "");
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Wechatpay-Serial", SERIAL);
+        headers.put("Wechatpay-Timestamp", timestamp);
+        headers.put("Wechatpay-Nonce", nonce);
+        headers.put("Wechatpay-Signature", sign(timestamp, nonce, body));
+        return headers;
+    }
+
+    private static Path resource(String name) {
+        try {
+            return Paths.get(WeChatPayStub.class.getClassLoader().getResource(name).toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.sky.utils;
+
+import com.sky.properties.WeChatProperties;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.pool.PoolStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 微信支付工具类的测试，请求发往本地模拟的微信支付接口（WeChatPayStub）
+ * 覆盖连接复用、连接池上限、超时以及客户端在并发下只创建一次
+ */
+public class WeChatPayUtilTest {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    private WeChatPayStub stub;
+
+    private WeChatPayUtil weChatPayUtil;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        stub = new WeChatPayStub();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        if (weChatPayUtil != null) {
+            weChatPayUtil.destroy();
+        }
+        stub.close();
+    }
+
+    private WeChatPayUtil newUtil(WeChatProperties properties) {
+        weChatPayUtil = new WeChatPayUtil();
+        ReflectionTestUtils.setField(weChatPayUtil, "weChatProperties", properties);
+        return weChatPayUtil;
+    }
+
+    private String refund(String orderNumber) throws Exception {
+        return weChatPayUtil.refund(orderNumber, orderNumber, AMOUNT, AMOUNT);
+    }
+
+    /**
+     * 连续的请求复用同一个连接，请求结束后连接归还连接池
+     */
+    @Test
+    public void sequentialRequestsReuseOneConnection() throws Exception {
+        newUtil(stub.properties());
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(refund("20241019" + i).contains("refund_id"));
+        }
+
+        assertEquals(20, stub.getRequests().size());
+        assertEquals(1, stub.getConnectionCount());
+        assertEquals(20, weChatPayUtil.getRequestCount());
+        assertEquals(0, weChatPayUtil.getFailureCount());
+        PoolStats stats = weChatPayUtil.getPoolStats();
+        assertEquals(0, stats.getLeased());
+        assertEquals(1, stats.getAvailable());
+    }
+
+    /**
+     * 并发请求共用连接池，同时使用的连接数不超过每个路由的上限
+     */
+    @Test
+    public void concurrentRequestsAreBoundedByPool() throws Exception {
+        WeChatProperties properties = stub.properties();
+        properties.setMaxConnectionsPerRoute(4);
+        properties.setConnectionRequestTimeout(5000);
+        newUtil(properties);
+        stub.setLatencyMillis(50);
+
+        int requests = 32;
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                String orderNumber = "20241019" + i;
+                futures.add(executor.submit(() -> refund(orderNumber)));
+            }
+            for (Future<String> future : futures) {
+                assertTrue(future.get(10, TimeUnit.SECONDS).contains("refund_id"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(requests, stub.getRequests().size());
+        assertTrue(stub.getMaxActive() <= 4, "同时处理的请求数：" + stub.getMaxActive());
+        assertTrue(stub.getConnectionCount() <= 4, "连接数：" + stub.getConnectionCount());
+        assertEquals(0, weChatPayUtil.getPoolStats().getLeased());
+    }
+
+    /**
+     * 响应超过读取超时时间时抛出异常并计入失败，之后的请求不受影响
+     */
+    @Test
+    public void slowResponseTimesOut() throws Exception {
+        WeChatProperties properties = stub.properties();
+        properties.setSocketTimeout(200);
+        newUtil(properties);
+        stub.setLatencyMillis(2000);
+
+        long start = System.currentTimeMillis();
+        assertThrows(SocketTimeoutException.class, () -> refund("202410191"));
+        assertTrue(System.currentTimeMillis() - start < 1500);
+        assertEquals(1, weChatPayUtil.getFailureCount());
+
+        stub.setLatencyMillis(0);
+        assertTrue(refund("202410192").contains("refund_id"));
+        assertEquals(0, weChatPayUtil.getPoolStats().getLeased());
+    }
+
+    /**
+     * 连接池耗尽时等待获取连接超过 connectionRequestTimeout 后失败，而不是无限等待
+     */
+    @Test
+    public void exhaustedPoolTimesOut() throws Exception {
+        WeChatProperties properties = stub.properties();
+        properties.setMaxConnectionsPerRoute(1);
+        properties.setConnectionRequestTimeout(200);
+        newUtil(properties);
+        stub.setLatencyMillis(1500);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> slow = executor.submit(() -> refund("202410191"));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (stub.getRequests().isEmpty()) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+
+            long start = System.currentTimeMillis();
+            assertThrows(ConnectionPoolTimeoutException.class, () -> refund("202410192"));
+            assertTrue(System.currentTimeMillis() - start < 1000);
+
+            assertTrue(slow.get(5, TimeUnit.SECONDS).contains("refund_id"));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, stub.getRequests().size());
+    }
+
+    /**
+     * 第一次使用时并发调用，客户端和连接池只创建一次
+     */
+    @Test
+    public void lazyClientIsBuiltOnceUnderConcurrency() throws Exception {
+        AtomicInteger builds = new AtomicInteger();
+        WeChatProperties properties = new WeChatProperties() {
+            @Override
+            public int getMaxConnections() {
+                // 只在创建客户端时读取
+                builds.incrementAndGet();
+                return super.getMaxConnections();
+            }
+        };
+        WeChatProperties defaults = stub.properties();
+        properties.setMchid(defaults.getMchid());
+        properties.setMchSerialNo(defaults.getMchSerialNo());
+        properties.setPrivateKeyFilePath(defaults.getPrivateKeyFilePath());
+        properties.setWeChatPayCertFilePath(defaults.getWeChatPayCertFilePath());
+        properties.setBaseUrl(defaults.getBaseUrl());
+        newUtil(properties);
+        assertEquals(null, weChatPayUtil.getPoolStats());
+
+        int threads = 32;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                String orderNumber = "20241019" + i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return refund(orderNumber);
+                }));
+            }
+            start.countDown();
+            for (Future<String> future : futures) {
+                assertTrue(future.get(10, TimeUnit.SECONDS).contains("refund_id"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, builds.get());
+        assertEquals(threads, weChatPayUtil.getRequestCount());
+        assertEquals(0, weChatPayUtil.getPoolStats().getLeased());
+    }
+
+    /**
+     * 回调通知的签名用平台证书验证，报文被修改、时间戳过期或证书序列号不对时验签失败
+     */
+    @Test
+    public void verifiesNotificationSignature() throws Exception {
+        newUtil(stub.properties());
+        String body = "{\"id\":\"EV-2018022511223320873\",\"resource\":{\"ciphertext\":\"...\"}}";
+        Map<String, String> headers = WeChatPayStub.signedHeaders(body);
+        String serial = headers.get("Wechatpay-Serial");
+        String timestamp = headers.get("Wechatpay-Timestamp");
+        String nonce = headers.get("Wechatpay-Nonce");
+        String signature = headers.get("Wechatpay-Signature");
+
+        assertTrue(weChatPayUtil.verifyNotification(serial, timestamp, nonce, signature, body));
+        assertFalse(weChatPayUtil.verifyNotification(serial, timestamp, nonce, signature, body.replace("EV-", "EX-")));
+        assertFalse(weChatPayUtil.verifyNotification(serial, timestamp, nonce + "0", signature, body));
+        assertFalse(weChatPayUtil.verifyNotification("1234ABCD", timestamp, nonce, signature, body));
+        assertFalse(weChatPayUtil.verifyNotification(serial, timestamp, nonce, "not-a-signature", body));
+        assertFalse(weChatPayUtil.verifyNotification(serial, timestamp, nonce, null, body));
+
+        String expired = String.valueOf(System.currentTimeMillis() / 1000 - 600);
+        assertFalse(weChatPayUtil.verifyNotification(serial, expired, nonce,
+                WeChatPayStub.sign(expired, nonce, body), body));
+    }
+}